@@ -37,4 +37,15 @@ public interface ContentElementIdGenerationStrategy {
     return id.matches(createContentId(existingElements, elementDigest));
   }
 
+  /**
+   * Return whether the IDs created by this strategy depend on the {@link Digest} of the
+   * {@link ContentElement}. If not, IDs can be created before the content has been received, which
+   * allows content to be streamed straight into the object store.
+   *
+   * @return {@code true} if {@link #createContentId(List, Digest)} requires the digest
+   */
+  default boolean requiresDigest() {
+    return true;
+  }
+
 }
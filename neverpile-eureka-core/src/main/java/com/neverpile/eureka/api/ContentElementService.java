@@ -1,14 +1,17 @@
 package com.neverpile.eureka.api;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.util.List;
 
 import jakarta.ws.rs.core.MediaType;
 
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
 import com.neverpile.eureka.model.ContentElement;
 import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.util.BoundedInputStream;
 
 /**
  * Service to provide access to create/read/delete operations for {@link ContentElement}s within a eureka instance.
@@ -51,6 +54,48 @@ public interface ContentElementService {
    */
   InputStream getContentElement(final String documentId, final String contentId);
 
+  /**
+   * Get a range of a {@link ContentElement} as a generic {@link InputStream}.
+   *
+   * @param documentId {@link Document#documentId} of the associated
+   *                   {@link Document}.
+   * @param contentId  {@link ContentElement#id} of the requested {@link ContentElement}.
+   * @param offset     the offset of the first byte to retrieve
+   * @param length     the maximum number of bytes to retrieve or <code>-1</code> to retrieve all
+   *                   bytes up to the end of the {@link ContentElement}
+   * @return {@link InputStream} of the requested range of the {@link ContentElement}
+   * @see ObjectStoreService#get(ObjectName, long, long)
+   */
+  default InputStream getContentElement(final String documentId, final String contentId, final long offset,
+      final long length) {
+    InputStream is = getContentElement(documentId, contentId);
+    if (null == is)
+      return null;
+
+    try {
+      is.skipNBytes(offset);
+    } catch (IOException e) {
+      throw new ContentElementException("Can't skip to offset " + offset, e);
+    }
+    return length < 0 ? is : new BoundedInputStream(is, length);
+  }
+
+  /**
+   * Get the {@link StoreObject} holding the payload of a {@link ContentElement}. Callers needing
+   * both the payload and details of its storage, like the local file backing it, should resolve
+   * the object once and use it for both, so that they refer to the same stored version.
+   *
+   * @param documentId {@link Document#documentId} of the associated
+   *                   {@link Document}.
+   * @param contentId  {@link ContentElement#id} of the requested {@link ContentElement}.
+   * @return the store object or <code>null</code> if it doesn't exist or the implementation doesn't
+   * expose its store objects
+   * @see ObjectStoreService.StoreObject#getLocalFile()
+   */
+  default StoreObject getContentElementObject(final String documentId, final String contentId) {
+    return null;
+  }
+
   /**
    * Delete an existing {@link ContentElement}.
    *
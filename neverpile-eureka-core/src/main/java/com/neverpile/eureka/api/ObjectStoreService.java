@@ -1,9 +1,17 @@
 package com.neverpile.eureka.api;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.util.BoundedInputStream;
 
 /**
  * The Object Store service provides generic access to a document store and therefore operations like
@@ -40,6 +48,29 @@ public interface ObjectStoreService {
      * @return Object version String.
      */
     String getVersion();
+
+    /**
+     * Return the local file holding the object's payload if the object is backed by one. Callers may
+     * use it to transfer the payload without copying it through the heap, e.g. using
+     * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     * The file must be treated as read-only and may cease to exist once the object has been
+     * overwritten or deleted.
+     *
+     * @return the backing file or an empty {@link Optional} if the object isn't backed by a local file
+     */
+    default Optional<Path> getLocalFile() {
+      return Optional.empty();
+    }
+
+    /**
+     * Release the resources held for retrieving the object's payload, like an open file. Callers
+     * which don't end up reading the payload via {@link #getInputStream()}, e.g. because they
+     * transfer the {@link #getLocalFile() local file} instead, should call this once they are done
+     * with the object. Streams already handed out are not affected.
+     */
+    default void release() {
+      // nothing to release
+    }
   }
 
   /**
@@ -132,6 +163,103 @@ public interface ObjectStoreService {
    */
   StoreObject get(ObjectName objectName);
 
+  /**
+   * Retrieve a range of the payload of a single object by its fully qualified {@link ObjectName}.
+   * The {@link StoreObject#getInputStream() stream} of the returned object starts at the given offset
+   * and ends after the given number of bytes or at the end of the object, whichever comes first.
+   * <p>
+   * Implementations are encouraged to read only the requested range from the underlying store. The
+   * default implementation skips to the offset within the stream returned by
+   * {@link #get(ObjectName)}.
+   *
+   * @param objectName identifier (possibly with multiple name components) which will be used for
+   *                   retrieving this object
+   * @param offset     the offset of the first byte to retrieve
+   * @param length     the maximum number of bytes to retrieve or <code>-1</code> to retrieve all
+   *                   bytes up to the end of the object
+   * @return Storage Bridge-specific object containing i.a. name and stream. Return
+   * <code>null</code> if the object cannot be found.
+   */
+  default StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    StoreObject storeObject = get(objectName);
+    if (null == storeObject)
+      return null;
+
+    return new StoreObject() {
+      @Override
+      public ObjectName getObjectName() {
+        return storeObject.getObjectName();
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        InputStream is = storeObject.getInputStream();
+        try {
+          is.skipNBytes(offset);
+        } catch (EOFException e) {
+          // offset beyond the end of the object: return an empty range
+          return InputStream.nullInputStream();
+        } catch (IOException e) {
+          throw new ObjectStoreException(objectName, "Can't skip to offset " + offset, e);
+        }
+        return length < 0 ? is : new BoundedInputStream(is, length);
+      }
+
+      @Override
+      public String getVersion() {
+        return storeObject.getVersion();
+      }
+
+      @Override
+      public void release() {
+        storeObject.release();
+      }
+    };
+  }
+
+  /**
+   * Retrieve multiple objects by their fully qualified {@link ObjectName}s. Implementations are
+   * encouraged to fetch the objects in parallel or by using bulk operations of the underlying store,
+   * so that retrieving many (small) objects doesn't incur one round trip per object. The default
+   * implementation simply retrieves the objects one by one using {@link #get(ObjectName)}.
+   *
+   * @param objectNames identifiers of the objects to retrieve
+   * @return a map from object names to the objects retrieved, in the iteration order of the given
+   *         names. Objects which cannot be found are not contained in the map.
+   */
+  default Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    for (ObjectName objectName : objectNames) {
+      StoreObject storeObject = get(objectName);
+      if (null != storeObject)
+        result.put(objectName, storeObject);
+    }
+    return result;
+  }
+
+  /**
+   * Return whether this object store is able to rename objects cheaply, i.e. without copying their
+   * payload, using {@link #rename(ObjectName, ObjectName)}.
+   *
+   * @return {@code true} if renaming is supported
+   */
+  default boolean supportsRename() {
+    return false;
+  }
+
+  /**
+   * Rename an object. The object must not yet exist under the new name. Like all other mutations,
+   * renaming is transactional.
+   *
+   * @param from the current name of the object
+   * @param to   the new name of the object
+   * @throws UnsupportedOperationException if the object store doesn't support renaming
+   * @see #supportsRename()
+   */
+  default void rename(final ObjectName from, final ObjectName to) {
+    throw new UnsupportedOperationException("Renaming objects is not supported by this object store");
+  }
+
   // FIXME: version checking?
 
   /**
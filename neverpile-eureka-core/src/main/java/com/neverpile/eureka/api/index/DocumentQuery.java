@@ -8,6 +8,12 @@ import com.neverpile.common.condition.Condition;
  * format e.g. paging and sort order.
  */
 public class DocumentQuery {
+  /**
+   * The continuation token requesting the first page of a cursor. Subsequent pages are requested
+   * with the continuation token returned along with the previous page.
+   */
+  public static final String INITIAL_CONTINUATION_TOKEN = "*";
+
   public static class DocumentQueryBuilder {
     private final DocumentQuery query = new DocumentQuery(new AndCondition(), null, SortOrder.ASC, 0, 1000);
 
@@ -49,6 +55,16 @@ public class DocumentQuery {
       return this;
     }
 
+    public DocumentQueryBuilder withCursor() {
+      query.setContinuationToken(INITIAL_CONTINUATION_TOKEN);
+      return this;
+    }
+
+    public DocumentQueryBuilder continueAfter(final String continuationToken) {
+      query.setContinuationToken(continuationToken);
+      return this;
+    }
+
     public DocumentQuery build() {
       return query;
     }
@@ -68,6 +84,8 @@ public class DocumentQuery {
 
   private int pageSize;
 
+  private String continuationToken;
+
   public DocumentQuery() {
   }
 
@@ -123,4 +141,18 @@ public class DocumentQuery {
     this.pageSize = pageSize;
   }
 
+  /**
+   * Return the continuation token of a cursor-based query. If set, the page number is ignored and
+   * the page following the one the token has been returned with is retrieved.
+   *
+   * @return the continuation token or <code>null</code> for page number based paging
+   */
+  public String getContinuationToken() {
+    return continuationToken;
+  }
+
+  public void setContinuationToken(final String continuationToken) {
+    this.continuationToken = continuationToken;
+  }
+
 }
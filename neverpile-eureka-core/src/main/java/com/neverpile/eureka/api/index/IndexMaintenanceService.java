@@ -1,5 +1,7 @@
 package com.neverpile.eureka.api.index;
 
+import java.util.Optional;
+
 import com.neverpile.eureka.model.Document;
 
 /**
@@ -44,4 +46,14 @@ public interface IndexMaintenanceService {
    * until rebuild is complete.
    */
   void rebuildIndex();
+
+  /**
+   * Get the progress of the current or most recent index rebuild.
+   *
+   * @return the rebuild status or empty if no rebuild is known or the implementation doesn't track
+   *         rebuilds
+   */
+  default Optional<IndexRebuildStatus> getRebuildStatus() {
+    return Optional.empty();
+  }
 }
@@ -0,0 +1,114 @@
+package com.neverpile.eureka.api.index;
+
+import java.time.Instant;
+
+/**
+ * The progress of the current or most recent index rebuild, as reported by
+ * {@link IndexMaintenanceService#getRebuildStatus()}.
+ */
+public class IndexRebuildStatus {
+  public enum State {
+    RUNNING, COMPLETED
+  }
+
+  private State state;
+
+  private String indexName;
+
+  private Instant started;
+
+  private Instant finished;
+
+  private int partitionCount;
+
+  private int completedPartitionCount;
+
+  private long indexedDocumentCount;
+
+  private long failedDocumentCount;
+
+  public State getState() {
+    return state;
+  }
+
+  public void setState(final State state) {
+    this.state = state;
+  }
+
+  /**
+   * Get the name of the index being built.
+   *
+   * @return the index name
+   */
+  public String getIndexName() {
+    return indexName;
+  }
+
+  public void setIndexName(final String indexName) {
+    this.indexName = indexName;
+  }
+
+  public Instant getStarted() {
+    return started;
+  }
+
+  public void setStarted(final Instant started) {
+    this.started = started;
+  }
+
+  /**
+   * Get the time the rebuild completed.
+   *
+   * @return the completion time or <code>null</code> if the rebuild is still running
+   */
+  public Instant getFinished() {
+    return finished;
+  }
+
+  public void setFinished(final Instant finished) {
+    this.finished = finished;
+  }
+
+  /**
+   * Get the number of partitions the documents have been split into for the rebuild.
+   *
+   * @return the partition count
+   */
+  public int getPartitionCount() {
+    return partitionCount;
+  }
+
+  public void setPartitionCount(final int partitionCount) {
+    this.partitionCount = partitionCount;
+  }
+
+  public int getCompletedPartitionCount() {
+    return completedPartitionCount;
+  }
+
+  public void setCompletedPartitionCount(final int completedPartitionCount) {
+    this.completedPartitionCount = completedPartitionCount;
+  }
+
+  public long getIndexedDocumentCount() {
+    return indexedDocumentCount;
+  }
+
+  public void setIndexedDocumentCount(final long indexedDocumentCount) {
+    this.indexedDocumentCount = indexedDocumentCount;
+  }
+
+  /**
+   * Get the number of documents which failed to be indexed and are waiting to be retried. The
+   * rebuild does not complete as long as there are any.
+   *
+   * @return the number of failed documents
+   */
+  public long getFailedDocumentCount() {
+    return failedDocumentCount;
+  }
+
+  public void setFailedDocumentCount(final long failedDocumentCount) {
+    this.failedDocumentCount = failedDocumentCount;
+  }
+}
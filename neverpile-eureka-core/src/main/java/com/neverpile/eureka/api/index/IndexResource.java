@@ -2,13 +2,22 @@ package com.neverpile.eureka.api.index;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,10 +25,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.neverpile.eureka.api.DocumentService;
 import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.rest.api.document.DocumentDto;
 import com.neverpile.eureka.rest.api.document.DocumentFacet;
+import com.neverpile.eureka.rest.api.exception.BadInputParameter;
+import com.neverpile.eureka.rest.api.exception.NotFoundException;
 
 import io.micrometer.core.annotation.Timed;
 
@@ -30,6 +44,16 @@ import io.micrometer.core.annotation.Timed;
 public class IndexResource {
   private static final Logger LOGGER = LoggerFactory.getLogger(IndexResource.class);
 
+  /**
+   * The response header carrying the token to retrieve the next page of a cursor-based query.
+   */
+  public static final String CONTINUATION_TOKEN_HEADER = "X-NPE-Continuation-Token";
+
+  public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+  private record RenderedPage(List<DocumentDto> documents, String continuationToken) {
+  }
+
   @Autowired
   private ObjectMapper objectMapper;
 
@@ -39,6 +63,12 @@ public class IndexResource {
   @Autowired(required = false)
   IndexMaintenanceService indexMaintenanceService;
 
+  @Autowired
+  private DocumentService documentService;
+
+  @Value("${neverpile-eureka.index.projection.enabled:true}")
+  private boolean projectionEnabled = true;
+
   @Autowired(required = false)
   private final List<DocumentFacet<?>> facets = new ArrayList<DocumentFacet<?>>();
 
@@ -56,27 +86,124 @@ public class IndexResource {
     indexMaintenanceService.rebuildIndex();
   }
 
+  @GetMapping(value = "/rebuild")
+  @Timed(description = "get index rebuild status", value = "eureka.index.rebuild.status")
+  public IndexRebuildStatus rebuildStatus() {
+    return indexMaintenanceService.getRebuildStatus() //
+        .orElseThrow(() -> new NotFoundException("No index rebuild known"));
+  }
+
   @GetMapping(value = "query/{query}")
   // @Timed(description = "query document", extraTags = {"operation", "retrieve", "target",
   // "document", "query"}, value="eureka.document.query")
-  public List<DocumentDto> query(@PathVariable("query") final String queryJson,
-      @RequestParam(name = "facets", required = false) final List<String> requestedFacets) {
+  public ResponseEntity<List<DocumentDto>> query(@PathVariable("query") final String queryJson,
+      @RequestParam(name = "facets", required = false) final List<String> requestedFacets,
+      @RequestParam(name = "continuationToken", required = false) final String continuationToken) {
     // @formatter:on
-    List<DocumentDto> dtos = new ArrayList<>();
     try {
       DocumentQuery query = objectMapper.readValue(queryJson, DocumentQuery.class);
-      List<Document> documents = indexService.queryDocuments(query);
+      if (null != continuationToken)
+        query.setContinuationToken(continuationToken);
 
-      for (Document document : documents) {
-        DocumentDto responseDto = new DocumentDto();
-        activeFacets(requestedFacets, f -> f.onRetrieve(document, responseDto));
-        dtos.add(responseDto);
-      }
+      RenderedPage page = render(query, requestedFacets);
+
+      ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+      if (null != page.continuationToken())
+        response.header(CONTINUATION_TOKEN_HEADER, page.continuationToken());
+      return response.body(page.documents());
     } catch (IOException e) {
       e.printStackTrace();
-      return new ArrayList<>();
+      return ResponseEntity.ok(new ArrayList<>());
+    }
+  }
+
+  @GetMapping(value = "export/{query}", produces = NDJSON_MEDIA_TYPE)
+  @Timed(description = "export query results", value = "eureka.index.export")
+  public void export(@PathVariable("query") final String queryJson,
+      @RequestParam(name = "facets", required = false) final List<String> requestedFacets,
+      @RequestParam(name = "continuationToken", required = false) final String continuationToken,
+      final HttpServletResponse response) throws IOException {
+    DocumentQuery query;
+    try {
+      query = objectMapper.readValue(queryJson, DocumentQuery.class);
+    } catch (IOException e) {
+      throw new BadInputParameter("Invalid query: " + e.getMessage());
+    }
+    query.setContinuationToken(
+        null != continuationToken ? continuationToken : DocumentQuery.INITIAL_CONTINUATION_TOKEN);
+
+    // render the first page before committing the response, so that errors can still be reported
+    RenderedPage page = render(query, requestedFacets);
+
+    response.setContentType(NDJSON_MEDIA_TYPE);
+    try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(
+        response.getOutputStream())) {
+      while (true) {
+        writer.writeAll(page.documents());
+        writer.flush();
+
+        if (null == page.continuationToken())
+          break;
+
+        query.setContinuationToken(page.continuationToken());
+        page = render(query, requestedFacets);
+      }
+    }
+  }
+
+  /**
+   * Retrieve a page of query results and render it, preferably from the data indexed for the active
+   * facets. The documents are retrieved from the store only for those results where some facet
+   * cannot be rendered from its index data.
+   *
+   * @param query the query
+   * @param requestedFacets the requested facets
+   * @return the rendered results
+   */
+  private RenderedPage render(final DocumentQuery query, final List<String> requestedFacets) {
+    List<DocumentFacet<?>> active = new ArrayList<>();
+    activeFacets(requestedFacets, active::add);
+    Set<String> indexedFacets = !projectionEnabled
+        ? Collections.emptySet()
+        : active.stream() //
+            .filter(f -> null != f.getIndexSchema()) //
+            .map(DocumentFacet::getName) //
+            .collect(Collectors.toSet());
+
+    QueryResultPage page;
+    try {
+      page = indexService.queryPage(query, indexedFacets);
+    } catch (InvalidContinuationTokenException e) {
+      throw new BadInputParameter(e.getMessage());
     }
-    return dtos;
+
+    Map<String, DocumentDto> dtos = new LinkedHashMap<>();
+    Map<String, List<DocumentFacet<?>>> unrendered = new LinkedHashMap<>();
+    for (IndexedDocument result : page.getResults()) {
+      DocumentDto responseDto = new DocumentDto();
+      dtos.put(result.getDocumentId(), responseDto);
+      for (DocumentFacet<?> facet : active) {
+        if (null != result.getDocument()) {
+          facet.onRetrieve(result.getDocument(), responseDto);
+        } else {
+          JsonNode indexData = result.getIndexData(facet.getName());
+          if (null == indexData || !facet.onRetrieveFromIndex(result.getDocumentId(), indexData, responseDto))
+            unrendered.computeIfAbsent(result.getDocumentId(), id -> new ArrayList<>()).add(facet);
+        }
+      }
+    }
+
+    if (!unrendered.isEmpty()) {
+      for (Document document : documentService.getDocuments(new ArrayList<>(unrendered.keySet()))) {
+        DocumentDto responseDto = dtos.get(document.getDocumentId());
+        unrendered.remove(document.getDocumentId()).forEach(f -> f.onRetrieve(document, responseDto));
+      }
+
+      // documents deleted since they have been indexed
+      unrendered.keySet().forEach(dtos::remove);
+    }
+
+    return new RenderedPage(new ArrayList<>(dtos.values()), page.getContinuationToken());
   }
 
   private void activeFacets(final List<String> requestedFacets, final Consumer<DocumentFacet<?>> facetConsumer) {
@@ -0,0 +1,58 @@
+package com.neverpile.eureka.api.index;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neverpile.eureka.model.Document;
+import com.neverpile.eureka.rest.api.document.DocumentFacet;
+
+/**
+ * A query result as represented in the index: the id of a matching document along with the data
+ * indexed for its facets by {@link DocumentFacet#getIndexData(Document)}. Query services which
+ * retrieve the documents anyway may supply the document as well.
+ */
+public class IndexedDocument {
+  private final String documentId;
+
+  private final Map<String, JsonNode> indexData;
+
+  private final Document document;
+
+  public IndexedDocument(final String documentId, final Map<String, JsonNode> indexData) {
+    this(documentId, indexData, null);
+  }
+
+  public IndexedDocument(final Document document) {
+    this(document.getDocumentId(), Collections.emptyMap(), document);
+  }
+
+  private IndexedDocument(final String documentId, final Map<String, JsonNode> indexData, final Document document) {
+    this.documentId = documentId;
+    this.indexData = indexData;
+    this.document = document;
+  }
+
+  public String getDocumentId() {
+    return documentId;
+  }
+
+  /**
+   * Return the data indexed for the facet with the given name.
+   *
+   * @param facetName the facet name
+   * @return the index data or <code>null</code> if no data has been retrieved for the facet
+   */
+  public JsonNode getIndexData(final String facetName) {
+    return indexData.get(facetName);
+  }
+
+  /**
+   * Return the document if it has been retrieved by the query service.
+   *
+   * @return the document or <code>null</code>
+   */
+  public Document getDocument() {
+    return document;
+  }
+}
@@ -0,0 +1,18 @@
+package com.neverpile.eureka.api.index;
+
+import com.neverpile.eureka.api.NeverpileException;
+
+/**
+ * Thrown if the continuation token of a query is malformed or the cursor it refers to has expired.
+ */
+public class InvalidContinuationTokenException extends NeverpileException {
+  private static final long serialVersionUID = 1L;
+
+  public InvalidContinuationTokenException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+
+  public InvalidContinuationTokenException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,31 @@
+package com.neverpile.eureka.api.index;
+
+import java.util.List;
+
+/**
+ * A page of query results along with the token to retrieve the next page of a cursor-based query.
+ */
+public class QueryResultPage {
+  private final List<IndexedDocument> results;
+
+  private final String continuationToken;
+
+  public QueryResultPage(final List<IndexedDocument> results, final String continuationToken) {
+    this.results = results;
+    this.continuationToken = continuationToken;
+  }
+
+  public List<IndexedDocument> getResults() {
+    return results;
+  }
+
+  /**
+   * Return the token to retrieve the next page with.
+   *
+   * @return the continuation token or <code>null</code> if this is the last page or the query
+   *         doesn't use a cursor
+   */
+  public String getContinuationToken() {
+    return continuationToken;
+  }
+}
@@ -1,6 +1,8 @@
 package com.neverpile.eureka.api.index;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import com.neverpile.eureka.model.Document;
 import com.neverpile.common.condition.Condition;
@@ -19,4 +21,51 @@ public interface QueryService {
    * @return List of matching documents
    */
   List<Document> queryDocuments(DocumentQuery searchQuery);
+
+  /**
+   * Uses a Query object to list all matching documents as represented in the index, including the
+   * data indexed for the given facets. This allows query results to be rendered without retrieving
+   * the documents themselves. Implementations not supporting this retrieve the documents instead.
+   *
+   * @param searchQuery the query to use
+   * @param facetNames the names of the facets whose index data to return
+   * @return List of matching documents
+   */
+  default List<IndexedDocument> queryIndexData(final DocumentQuery searchQuery, final Collection<String> facetNames) {
+    return queryDocuments(searchQuery).stream().map(IndexedDocument::new).collect(Collectors.toList());
+  }
+
+  /**
+   * Uses a Query object to retrieve a page of matching documents like
+   * {@link #queryIndexData(DocumentQuery, Collection)}, along with the continuation token for the
+   * next page if the query uses a cursor (see {@link DocumentQuery#getContinuationToken()}).
+   * Implementations not supporting cursors emulate them using page numbers.
+   *
+   * @param searchQuery the query to use
+   * @param facetNames the names of the facets whose index data to return
+   * @return the page of matching documents
+   * @throws InvalidContinuationTokenException if the continuation token is invalid or has expired
+   */
+  default QueryResultPage queryPage(final DocumentQuery searchQuery, final Collection<String> facetNames) {
+    String token = searchQuery.getContinuationToken();
+    if (null == token)
+      return new QueryResultPage(queryIndexData(searchQuery, facetNames), null);
+
+    int pageNo = DocumentQuery.INITIAL_CONTINUATION_TOKEN.equals(token) ? 0 : parsePageNo(token);
+    searchQuery.setPageNo(pageNo);
+    List<IndexedDocument> results = queryIndexData(searchQuery, facetNames);
+    return new QueryResultPage(results,
+        results.size() < searchQuery.getPageSize() ? null : Integer.toString(pageNo + 1));
+  }
+
+  private static int parsePageNo(final String token) {
+    try {
+      int pageNo = Integer.parseInt(token);
+      if (pageNo >= 0)
+        return pageNo;
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new InvalidContinuationTokenException("Invalid continuation token");
+  }
 }
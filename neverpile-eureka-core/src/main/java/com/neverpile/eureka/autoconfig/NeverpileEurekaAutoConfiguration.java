@@ -2,10 +2,15 @@ package com.neverpile.eureka.autoconfig;
 
 import java.io.IOException;
 import java.time.Clock;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InjectionPoint;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -16,7 +21,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.Ordered;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.context.annotation.RequestScope;
 
 import com.neverpile.common.authorization.api.AuthorizationService;
@@ -40,6 +47,12 @@ import com.neverpile.eureka.impl.documentservice.DefaultDocumentService;
 import com.neverpile.eureka.impl.documentservice.DefaultMultiVersioningDocumentService;
 import com.neverpile.eureka.impl.documentservice.UuidContentElementIdGenerationStrategy;
 import com.neverpile.eureka.impl.documentservice.UuidDocumentIdGenerationStrategy;
+import com.neverpile.eureka.impl.objectstore.CompressingObjectStoreService;
+import com.neverpile.eureka.impl.objectstore.CompressionCodec;
+import com.neverpile.eureka.impl.objectstore.CompressionPolicy;
+import com.neverpile.eureka.impl.objectstore.DeduplicatingObjectStoreService;
+import com.neverpile.eureka.impl.objectstore.DeduplicationGarbageCollector;
+import com.neverpile.eureka.impl.tasks.LocalTaskQueue;
 import com.neverpile.eureka.impl.tx.atomic.LocalAtomicReference;
 import com.neverpile.eureka.impl.tx.lock.LocalLockFactory;
 import com.neverpile.eureka.rest.api.document.DocumentResource;
@@ -54,6 +67,8 @@ import com.neverpile.eureka.rest.api.document.core.VersionTimestampFacet;
 import com.neverpile.eureka.rest.api.exception.ExceptionHandlers;
 import com.neverpile.eureka.rest.configuration.FacetedDocumentDtoModule;
 import com.neverpile.eureka.rest.configuration.JacksonConfiguration;
+import com.neverpile.eureka.tasks.DistributedPersistentQueueType;
+import com.neverpile.eureka.tasks.TaskQueue;
 import com.neverpile.eureka.tx.atomic.DistributedAtomicReference;
 import com.neverpile.eureka.tx.atomic.DistributedAtomicType;
 import com.neverpile.eureka.tx.lock.ClusterLockFactory;
@@ -61,6 +76,7 @@ import com.neverpile.eureka.tx.wal.TransactionWAL;
 import com.neverpile.eureka.tx.wal.WriteAheadLog;
 import com.neverpile.eureka.tx.wal.local.DefaultTransactionWAL;
 import com.neverpile.eureka.tx.wal.local.FileBasedWAL;
+import com.neverpile.eureka.tx.wal.local.SegmentedFileWAL;
 
 /**
  * This configuration builds the base auto configuration for neverpile eureka. All configuration defined here
@@ -80,6 +96,10 @@ import com.neverpile.eureka.tx.wal.local.FileBasedWAL;
 public class NeverpileEurekaAutoConfiguration {
   private static final Logger LOGGER = LoggerFactory.getLogger(NeverpileEurekaAutoConfiguration.class);
 
+  private static final int COMPRESSION_ORDER = 100;
+
+  private static final int DEDUPLICATION_ORDER = 200;
+
   @ConditionalOnWebApplication
   @ConditionalOnBean(value = DocumentService.class)
   @Import({
@@ -157,6 +177,158 @@ public class NeverpileEurekaAutoConfiguration {
     }
   }
 
+  /**
+   * A decorator to be wrapped around all {@link ObjectStoreService}s. Decorators with a lower order
+   * are applied first and thus end up closer to the actual object store.
+   */
+  static final class ObjectStoreDecorator implements Ordered {
+    private final int order;
+
+    private final Class<? extends ObjectStoreService> decoratorType;
+
+    private final UnaryOperator<ObjectStoreService> decorator;
+
+    ObjectStoreDecorator(final int order, final Class<? extends ObjectStoreService> decoratorType,
+        final UnaryOperator<ObjectStoreService> decorator) {
+      this.order = order;
+      this.decoratorType = decoratorType;
+      this.decorator = decorator;
+    }
+
+    ObjectStoreService decorate(final ObjectStoreService objectStore) {
+      return decoratorType.isInstance(objectStore) ? objectStore : decorator.apply(objectStore);
+    }
+
+    @Override
+    public int getOrder() {
+      return order;
+    }
+  }
+
+  /**
+   * A BeanPostProcessor wrapping all {@link ObjectStoreService}s with the
+   * {@link ObjectStoreDecorator}s. It is deliberately not {@link Ordered}, as unordered post
+   * processors run after all ordered ones, among them the auto proxy creator. Thus the decorators
+   * wrap the proxy of the object store, so that its metrics and tracing aspects remain in effect.
+   */
+  private static class ObjectStoreDecoratingPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<ObjectStoreDecorator> decorators;
+
+    ObjectStoreDecoratingPostProcessor(final ObjectProvider<ObjectStoreDecorator> decorators) {
+      this.decorators = decorators;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+      if (!(bean instanceof ObjectStoreService objectStore))
+        return bean;
+
+      ObjectStoreService decorated = objectStore;
+      for (ObjectStoreDecorator decorator : decorators.orderedStream().toList())
+        decorated = decorator.decorate(decorated);
+      return decorated;
+    }
+  }
+
+  /**
+   * Register the {@link ObjectStoreDecoratingPostProcessor}. Imported by the configurations
+   * providing {@link ObjectStoreDecorator}s, so that these can be used on their own.
+   */
+  @Configuration
+  public static class ObjectStoreDecorationConfiguration {
+    /**
+     * Decorate all object stores with the {@link ObjectStoreDecorator}s present.
+     *
+     * @param decorators the decorators
+     * @return a BeanPostProcessor decorating ObjectStoreServices
+     */
+    @Bean
+    public static BeanPostProcessor objectStoreDecoratingPostProcessor(
+        final ObjectProvider<ObjectStoreDecorator> decorators) {
+      return new ObjectStoreDecoratingPostProcessor(decorators);
+    }
+  }
+
+  /**
+   * Compress the content of the {@link ObjectStoreService} by decorating it with a
+   * {@link CompressingObjectStoreService}. Activated by setting the property
+   * <code>neverpile-eureka.compression.enabled=true</code>.
+   */
+  @Configuration
+  @ConditionalOnProperty(name = "neverpile-eureka.compression.enabled", havingValue = "true")
+  @Import(ObjectStoreDecorationConfiguration.class)
+  public static class CompressionConfiguration {
+    /**
+     * Decorate all object stores. Compression is applied below deduplication, so that deduplicated
+     * blobs are compressed while the pointers to them are not.
+     * <ul>
+     * <li><code>neverpile-eureka.compression.codec</code>: <code>lz4</code> (default) or
+     * <code>zstd</code></li>
+     * <li><code>neverpile-eureka.compression.level</code>: the Zstandard compression level (default:
+     * 3)</li>
+     * <li><code>neverpile-eureka.compression.include</code>,
+     * <code>neverpile-eureka.compression.exclude</code>: comma-separated patterns of object names to
+     * compress or to leave alone (default: compress everything)</li>
+     * <li><code>neverpile-eureka.compression.min-size</code>: the size objects must exceed to be
+     * compressed (default: 256 bytes)</li>
+     * </ul>
+     *
+     * @param codec the name of the codec to compress with
+     * @param level the compression level
+     * @param includes the patterns of object names to compress
+     * @param excludes the patterns of object names not to compress
+     * @param minSize the minimum size of objects to be compressed
+     * @return the decorator of ObjectStoreServices
+     */
+    @Bean
+    public ObjectStoreDecorator compressingObjectStoreDecorator(
+        @Value("${neverpile-eureka.compression.codec:lz4}") final String codec,
+        @Value("${neverpile-eureka.compression.level:3}") final int level,
+        @Value("${neverpile-eureka.compression.include:**}") final String[] includes,
+        @Value("${neverpile-eureka.compression.exclude:}") final String[] excludes,
+        @Value("${neverpile-eureka.compression.min-size:256}") final int minSize) {
+      CompressionCodec compressionCodec = CompressionCodec.forName(codec, level);
+      CompressionPolicy policy = new CompressionPolicy(List.of(includes), List.of(excludes), minSize);
+      LOGGER.info("Compressing object store content using {}", codec);
+
+      return new ObjectStoreDecorator(COMPRESSION_ORDER, CompressingObjectStoreService.class,
+          objectStore -> new CompressingObjectStoreService(objectStore, compressionCodec, policy));
+    }
+  }
+
+  /**
+   * Deduplicate the content of the {@link ObjectStoreService} by decorating it with a
+   * {@link DeduplicatingObjectStoreService}. Activated by setting the property
+   * <code>neverpile-eureka.deduplication.enabled=true</code>.
+   */
+  @Configuration
+  @ConditionalOnProperty(name = "neverpile-eureka.deduplication.enabled", havingValue = "true")
+  @EnableScheduling
+  @Import(ObjectStoreDecorationConfiguration.class)
+  public static class DeduplicationConfiguration {
+    /**
+     * Decorate all object stores. Objects smaller than
+     * <code>neverpile-eureka.deduplication.min-size</code> bytes (default: 64 KiB) are stored as they
+     * are.
+     *
+     * @param minSize the minimum size of objects to be deduplicated
+     * @param lockFactory the factory of the cluster-wide locks guarding the blobs
+     * @return the decorator of ObjectStoreServices
+     */
+    @Bean
+    public ObjectStoreDecorator deduplicatingObjectStoreDecorator(
+        @Value("${neverpile-eureka.deduplication.min-size:65536}") final int minSize,
+        final ObjectProvider<ClusterLockFactory> lockFactory) {
+      return new ObjectStoreDecorator(DEDUPLICATION_ORDER, DeduplicatingObjectStoreService.class,
+          objectStore -> new DeduplicatingObjectStoreService(objectStore, minSize, lockFactory.getObject()));
+    }
+
+    @Bean
+    public DeduplicationGarbageCollector deduplicationGarbageCollector() {
+      return new DeduplicationGarbageCollector();
+    }
+  }
+
   /**
    * Provide an implementation of {@link DocumentIdGenerationStrategy} which is based on UUIDs.
    * <p>
@@ -200,8 +372,9 @@ public class NeverpileEurekaAutoConfiguration {
   }
 
   /**
-   * Provide an implementation of {@link WriteAheadLog} which is backed by a local file. This
-   * implementation is <em>not</em> suitable for distributed installations.
+   * Provide an implementation of {@link WriteAheadLog} which is backed by segmented local files
+   * containing binary records. This implementation is <em>not</em> suitable for distributed
+   * installations.
    * <p>
    * Back off if any other implementation is present.
    *
@@ -209,6 +382,26 @@ public class NeverpileEurekaAutoConfiguration {
    */
   @Bean
   @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "neverpile-eureka.wal.segmented", matchIfMissing = true)
+  public WriteAheadLog segmentedFileWriteAheadLog() {
+    return new SegmentedFileWAL();
+  }
+
+  /**
+   * Provide an implementation of {@link WriteAheadLog} which is backed by a single local file of
+   * Java-serialized entries. This implementation is <em>not</em> suitable for distributed
+   * installations.
+   * <p>
+   * This legacy implementation is activated by setting the property
+   * <code>neverpile-eureka.wal.segmented=false</code>.
+   * <p>
+   * Back off if any other implementation is present.
+   *
+   * @return a WriteAheadLog implementation
+   */
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "neverpile-eureka.wal.segmented", matchIfMissing = false, havingValue = "false")
   public WriteAheadLog fileBasedWriteAheadLog() {
     return new FileBasedWAL();
   }
@@ -288,6 +481,23 @@ public class NeverpileEurekaAutoConfiguration {
   public DistributedAtomicReference<?> localAtomicReference(final InjectionPoint ip) {
     return new LocalAtomicReference<>(ip.getAnnotation(DistributedAtomicType.class).value());
   }
+
+  /**
+   * Provide a default implementation of {@link TaskQueue} which is based on a purely local, non-persistent
+   * implementation.
+   * Has To be annotated with {@link DistributedPersistentQueueType} to work, which represents a unique name, to
+   * distinguish between queues.
+   * <p>
+   * Back off if any other implementation is present.
+   *
+   * @return a LocalTaskQueue
+   */
+  @Bean
+  @Scope("prototype")
+  @ConditionalOnMissingBean
+  public TaskQueue<?> localTaskQueue() {
+    return new LocalTaskQueue<>();
+  }
   
   /**
    * Provide a {@link Clock}-Bean if none is provided. Clocks are injected in order to improve testability.
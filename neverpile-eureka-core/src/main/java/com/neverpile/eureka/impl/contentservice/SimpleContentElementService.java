@@ -5,9 +5,11 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.util.List;
+import java.util.UUID;
 
 import jakarta.ws.rs.core.MediaType;
 
@@ -28,6 +30,7 @@ import com.neverpile.eureka.model.Digest;
 import com.neverpile.eureka.model.EncryptionType;
 import com.neverpile.eureka.model.HashAlgorithm;
 import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.util.SizeTrackingInputStream;
 import com.neverpile.eureka.util.SizeTrackingOutputStream;
 
 @Component
@@ -61,6 +64,18 @@ public class SimpleContentElementService implements ContentElementService {
     return storeObject == null ? null : storeObject.getInputStream();
   }
 
+  @Override
+  public InputStream getContentElement(final String documentId, final String contentId, final long offset,
+      final long length) {
+    StoreObject storeObject = objectStore.get(createObjectName(documentId, contentId), offset, length);
+    return storeObject == null ? null : storeObject.getInputStream();
+  }
+
+  @Override
+  public StoreObject getContentElementObject(final String documentId, final String contentId) {
+    return objectStore.get(createObjectName(documentId, contentId));
+  }
+
   @Override
   public boolean deleteContentElement(final String documentId, final String contentId) {
     ObjectName objectName = ObjectName.of("document", documentId, contentId);
@@ -79,65 +94,139 @@ public class SimpleContentElementService implements ContentElementService {
     return objectStore.checkObjectExists(createObjectName(documentId, contentId));
   }
 
+  /**
+   * Create a new content element. Whenever possible, the content is streamed straight into the
+   * object store while its digest and length are being determined on the fly:
+   * <ul>
+   * <li>if the content element ID is given or the {@link ContentElementIdGenerationStrategy} doesn't
+   * depend on the digest, the content is stored under its final name right away,
+   * <li>otherwise, if the object store {@link ObjectStoreService#supportsRename() supports renaming},
+   * the content is stored under a temporary name and renamed once the ID is known,
+   * <li>otherwise the content is spooled to a temporary file first.
+   * </ul>
+   */
   @Override
   public ContentElement createContentElement(final String documentId, final String elementId, final InputStream is,
       final String role, final String filename, final String contentType, final MessageDigest elementDigest, final List<ContentElement> existingElements) {
-    try {
-      File tempFile = File.createTempFile("neverpile-eureka-", null);
-      try {
-        // write source to temporary file, determining digest and length on the fly
-        Digest digest;
-        long length;
-
-        try (InputStream source = is) {
-          try (FileOutputStream tmpOut = new FileOutputStream(tempFile)) {
-            SizeTrackingOutputStream sizeTrackingOutputStream = new SizeTrackingOutputStream(tmpOut);
-            DigestOutputStream digestOutputStream = new DigestOutputStream(sizeTrackingOutputStream, elementDigest);
-
-            StreamUtils.copy(source, digestOutputStream);
-
-            digest = new Digest();
-            digest.setAlgorithm(HashAlgorithm.fromValue(elementDigest.getAlgorithm()));
-            digest.setBytes(digestOutputStream.getMessageDigest().digest());
-
-            length = sizeTrackingOutputStream.getBytesWritten();
-          }
-        }
-
-        // Set Id
-        String contentElementId = null;
-        if (null != elementId) {
-          idGenerationStrategy.validateContentId(elementId, existingElements, digest);
-          contentElementId = elementId;
-        } else {
-          contentElementId = idGenerationStrategy.createContentId(existingElements, digest);
-        }
-
-        // save Content via ObjectStore
-        try (InputStream tmpIn = new FileInputStream(tempFile)) {
-          objectStore.put(ObjectName.of("document", documentId, contentElementId), ObjectStoreService.NEW_VERSION, tmpIn, length);
-        }
-
-        // Create ContentElementDto
-        ContentElement newContentDto = new ContentElement();
-
-        newContentDto.setContentElementId(contentElementId);
-        newContentDto.setDigest(digest);
-        newContentDto.setEncryption(EncryptionType.SHARED);
-        newContentDto.setRole(role);
-        newContentDto.setType(null != contentType
-            ? MediaType.valueOf(contentType)
-            : MediaType.APPLICATION_OCTET_STREAM_TYPE);
-        newContentDto.setFileName(filename);
-        newContentDto.setLength(length);
-
-        return newContentDto;
-      } finally {
-        tempFile.delete();
-      }
+    try (InputStream source = is) {
+      StoredContent stored;
+      if (null != elementId || !idGenerationStrategy.requiresDigest())
+        stored = storeDirectly(documentId, elementId, source, elementDigest, existingElements);
+      else if (objectStore.supportsRename())
+        stored = storeAndRename(documentId, source, elementDigest, existingElements);
+      else
+        stored = storeViaTempFile(documentId, source, elementDigest, existingElements);
+
+      // Create ContentElementDto
+      ContentElement newContentDto = new ContentElement();
+
+      newContentDto.setContentElementId(stored.contentElementId);
+      newContentDto.setDigest(stored.digest);
+      newContentDto.setEncryption(EncryptionType.SHARED);
+      newContentDto.setRole(role);
+      newContentDto.setType(null != contentType
+          ? MediaType.valueOf(contentType)
+          : MediaType.APPLICATION_OCTET_STREAM_TYPE);
+      newContentDto.setFileName(filename);
+      newContentDto.setLength(stored.length);
+
+      return newContentDto;
     } catch (IOException e) {
       throw new ContentElementException("Can't create content element", e);
     }
   }
-}
 
+  /**
+   * The outcome of storing the content of a new content element.
+   */
+  private static class StoredContent {
+    final String contentElementId;
+
+    final Digest digest;
+
+    final long length;
+
+    StoredContent(final String contentElementId, final Digest digest, final long length) {
+      this.contentElementId = contentElementId;
+      this.digest = digest;
+      this.length = length;
+    }
+  }
+
+  private StoredContent storeDirectly(final String documentId, final String elementId, final InputStream source,
+      final MessageDigest elementDigest, final List<ContentElement> existingElements) {
+    String contentElementId = null != elementId
+        ? elementId
+        : idGenerationStrategy.createContentId(existingElements, null);
+
+    SizeTrackingInputStream sizeTrackingInputStream = new SizeTrackingInputStream(source);
+    DigestInputStream digestInputStream = new DigestInputStream(sizeTrackingInputStream, elementDigest);
+
+    objectStore.put(createObjectName(documentId, contentElementId), ObjectStoreService.NEW_VERSION,
+        digestInputStream, -1L);
+
+    Digest digest = toDigest(elementDigest);
+
+    if (null != elementId)
+      idGenerationStrategy.validateContentId(elementId, existingElements, digest);
+
+    return new StoredContent(contentElementId, digest, sizeTrackingInputStream.getBytesRead());
+  }
+
+  private StoredContent storeAndRename(final String documentId, final InputStream source,
+      final MessageDigest elementDigest, final List<ContentElement> existingElements) {
+    ObjectName stagingName = createObjectName(documentId, ".upload-" + UUID.randomUUID());
+
+    SizeTrackingInputStream sizeTrackingInputStream = new SizeTrackingInputStream(source);
+    DigestInputStream digestInputStream = new DigestInputStream(sizeTrackingInputStream, elementDigest);
+
+    objectStore.put(stagingName, ObjectStoreService.NEW_VERSION, digestInputStream, -1L);
+
+    Digest digest = toDigest(elementDigest);
+    String contentElementId = idGenerationStrategy.createContentId(existingElements, digest);
+
+    objectStore.rename(stagingName, createObjectName(documentId, contentElementId));
+
+    return new StoredContent(contentElementId, digest, sizeTrackingInputStream.getBytesRead());
+  }
+
+  private StoredContent storeViaTempFile(final String documentId, final InputStream source,
+      final MessageDigest elementDigest, final List<ContentElement> existingElements) throws IOException {
+    File tempFile = File.createTempFile("neverpile-eureka-", null);
+    try {
+      // write source to temporary file, determining digest and length on the fly
+      Digest digest;
+      long length;
+
+      try (FileOutputStream tmpOut = new FileOutputStream(tempFile)) {
+        SizeTrackingOutputStream sizeTrackingOutputStream = new SizeTrackingOutputStream(tmpOut);
+        DigestOutputStream digestOutputStream = new DigestOutputStream(sizeTrackingOutputStream, elementDigest);
+
+        StreamUtils.copy(source, digestOutputStream);
+
+        digest = toDigest(digestOutputStream.getMessageDigest());
+
+        length = sizeTrackingOutputStream.getBytesWritten();
+      }
+
+      // Set Id
+      String contentElementId = idGenerationStrategy.createContentId(existingElements, digest);
+
+      // save Content via ObjectStore
+      try (InputStream tmpIn = new FileInputStream(tempFile)) {
+        objectStore.put(createObjectName(documentId, contentElementId), ObjectStoreService.NEW_VERSION, tmpIn, length);
+      }
+
+      return new StoredContent(contentElementId, digest, length);
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  private static Digest toDigest(final MessageDigest elementDigest) {
+    Digest digest = new Digest();
+    digest.setAlgorithm(HashAlgorithm.fromValue(elementDigest.getAlgorithm()));
+    digest.setBytes(elementDigest.digest());
+    return digest;
+  }
+}
@@ -4,8 +4,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -106,6 +108,26 @@ public class DefaultDocumentService implements DocumentService, DocumentAssociat
       return documents.computeIfAbsent(documentId, DefaultDocumentService.this::doRetrieveDocument);
     }
 
+    /**
+     * Retrieve all given documents not yet known to this registry using a single bulk retrieval
+     * from the object store.
+     *
+     * @param documentIds the ids of the documents to retrieve
+     */
+    public void prefetch(final Collection<String> documentIds) {
+      Map<ObjectName, String> toFetch = new LinkedHashMap<>();
+      documentIds.stream() //
+          .filter(id -> !documents.containsKey(id)) //
+          .forEach(id -> toFetch.put(createDocumentObjectName(id), id));
+
+      if (toFetch.isEmpty())
+        return;
+
+      Map<ObjectName, StoreObject> fetched = objectStore.getMany(toFetch.keySet());
+      toFetch.forEach(
+          (objectName, id) -> documents.put(id, toTransactionalDocument(objectName, fetched.get(objectName))));
+    }
+
     public void create(final DocumentPdo document) {
       if (!mutable)
         throw new IllegalStateException("Mutations not supported outside transactions");
@@ -292,14 +314,16 @@ public class DefaultDocumentService implements DocumentService, DocumentAssociat
   @Override
   @TraceInvocation
   public List<Document> getDocuments(final List<String> documentIds) {
+    EntityRegistry registry = txEntityRegistry();
+    registry.prefetch(documentIds);
+
     // @formatter:off
     return documentIds.stream()
-        .map(this::getDocument)
+        .map(id -> registry.document(id).document.map(d -> (Document) d))
         .filter(Optional::isPresent)
         .map(Optional::get)
         .collect(Collectors.toList());
     // @formatter:on
-
   }
 
   @Override
@@ -328,8 +352,11 @@ public class DefaultDocumentService implements DocumentService, DocumentAssociat
    */
   private TransactionalDocument doRetrieveDocument(final String documentId) {
     ObjectName objectName = createDocumentObjectName(documentId);
-    StoreObject storedDocument = objectStore.get(objectName);
+    return toTransactionalDocument(objectName, objectStore.get(objectName));
+  }
 
+  private TransactionalDocument toTransactionalDocument(final ObjectName objectName,
+      final StoreObject storedDocument) {
     if (null == storedDocument)
       return new TransactionalDocument(Optional.empty(), ObjectStoreService.NEW_VERSION);
 
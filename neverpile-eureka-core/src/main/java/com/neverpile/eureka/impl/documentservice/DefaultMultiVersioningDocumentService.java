@@ -3,11 +3,14 @@ package com.neverpile.eureka.impl.documentservice;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,12 +18,16 @@ import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import jakarta.annotation.PostConstruct;
+
 import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -37,7 +44,12 @@ import com.neverpile.eureka.api.ObjectStoreService.ObjectNotFoundException;
 import com.neverpile.eureka.api.ObjectStoreService.ObjectStoreException;
 import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
 import com.neverpile.eureka.api.exception.VersionMismatchException;
+import com.neverpile.eureka.event.CreateEvent;
+import com.neverpile.eureka.event.Event;
 import com.neverpile.eureka.event.EventPublisher;
+import com.neverpile.eureka.event.UpdateEvent;
+import com.neverpile.eureka.impl.tx.lock.LocalLockFactory;
+import com.neverpile.eureka.model.ContentElement;
 import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.model.ObjectName;
 import com.neverpile.eureka.rest.api.exception.NotFoundException;
@@ -50,6 +62,20 @@ import com.neverpile.eureka.util.CompositeKey;
  * <p>
  * Optimistic concurrency control is implemented based on object store object version tracking as
  * well as document version timestamp checking.
+ * <p>
+ * The version list of each document is held in a {@link DocumentVersionCache}, so that retrieving
+ * the current version of a document does not require listing the object store. The cache is never
+ * trusted for the version clash check: writes re-read the version list from the object store while
+ * holding the cluster-wide document lock and replace the cached list with the result. Document
+ * events for versions not written through this instance evict the cached list. If a Spring
+ * {@link CacheManager} is present, its <code>documentVersions</code> cache is used, which keeps the
+ * version lists coherent across the nodes of a cluster if the cache is distributed. Otherwise a
+ * bounded node-local cache is used, but only if the {@link ClusterLockFactory} is node-local as
+ * well, as a node-local cache cannot be kept coherent within a cluster.
+ * <p>
+ * Optionally, deserialized document versions are held in a {@link ParsedDocumentCache}. As document
+ * versions are immutable, this cache needs no coherence protocol. Cached instances are never handed
+ * out directly but copied on retrieval, as callers may modify the documents they obtain.
  */
 public class DefaultMultiVersioningDocumentService
     implements
@@ -77,6 +103,32 @@ public class DefaultMultiVersioningDocumentService
   @Autowired
   private Clock clock;
 
+  @Autowired(required = false)
+  private CacheManager cacheManager;
+
+  @Value("${neverpile-eureka.document-service.version-cache.enabled:true}")
+  private boolean versionCacheEnabled = true;
+
+  @Value("${neverpile-eureka.document-service.version-cache.max-size:10000}")
+  private int versionCacheMaxSize = 10000;
+
+  private DocumentVersionCache versionCache = DocumentVersionCache.disabled();
+
+  @Value("${neverpile-eureka.document-service.document-cache.enabled:false}")
+  private boolean documentCacheEnabled = false;
+
+  @Value("${neverpile-eureka.document-service.document-cache.use-cache-manager:false}")
+  private boolean documentCacheUseCacheManager = false;
+
+  @Value("${neverpile-eureka.document-service.document-cache.max-size:10000}")
+  private int documentCacheMaxSize = 10000;
+
+  @Value("${neverpile-eureka.document-service.document-cache.max-weight:67108864}")
+  private long documentCacheMaxWeight = 64 * 1024 * 1024;
+
+  // null if caching of parsed documents is disabled
+  private ParsedDocumentCache documentCache;
+
   @VisibleForTesting
   public static final String DOCUMENT_PREFIX = "document";
 
@@ -115,6 +167,8 @@ public class DefaultMultiVersioningDocumentService
 
     final Map<CompositeKey, TransactionalDocument> documents = new HashMap<>();
 
+    final Map<String, Instant> persistedVersions = new HashMap<>();
+
     public EntityRegistry(final boolean mutable) {
       this.mutable = mutable;
     }
@@ -140,6 +194,44 @@ public class DefaultMultiVersioningDocumentService
           k -> new TransactionalDocument(doRetrieveDocument(documentId, effectiveTimestamp)));
     }
 
+    /**
+     * Retrieve the current versions of all given documents not yet known to this registry using a
+     * single bulk retrieval from the object store.
+     *
+     * @param documentIds the ids of the documents to retrieve
+     * @return the current version timestamps of the documents which exist
+     */
+    public Map<String, Instant> prefetch(final Collection<String> documentIds) {
+      Map<String, Instant> currentVersions = new HashMap<>();
+      Map<ObjectName, CompositeKey> toFetch = new LinkedHashMap<>();
+
+      for (String documentId : documentIds) {
+        Optional<Instant> ts = getCurrentVersionTimestamp(documentId);
+        if (!ts.isPresent())
+          continue;
+
+        currentVersions.put(documentId, ts.get());
+
+        CompositeKey key = new CompositeKey(documentId, ts.get());
+        if (documents.containsKey(key))
+          continue;
+
+        Optional<DocumentPdo> cached = getCachedDocument(documentId, ts.get());
+        if (cached.isPresent())
+          documents.put(key, new TransactionalDocument(cached.get()));
+        else
+          toFetch.put(createDocumentObjectName(documentId, ts.get()), key);
+      }
+
+      if (!toFetch.isEmpty()) {
+        Map<ObjectName, StoreObject> fetched = objectStore.getMany(toFetch.keySet());
+        toFetch.forEach((objectName, key) -> documents.put(key,
+            new TransactionalDocument(toDocument(objectName, fetched.get(objectName)))));
+      }
+
+      return currentVersions;
+    }
+
     public Instant create(final DocumentPdo document) {
       if (!mutable)
         throw new IllegalStateException("Mutations not supported outside transactions");
@@ -223,6 +315,7 @@ public class DefaultMultiVersioningDocumentService
           .peek(txd -> txd.document.setAssociatedFacetData(txd.sidecar)) //
           .forEach(txd -> {
             Document persisted = doPersistDocument(txd.document, txd.initialTimestamp);
+            persistedVersions.put(persisted.getDocumentId(), persisted.getVersionTimestamp());
 
             switch (txd.state){
               case Created :
@@ -279,9 +372,48 @@ public class DefaultMultiVersioningDocumentService
     @Override
     public void afterCompletion(final int status) {
       TransactionSynchronizationManager.unbindResourceIfPossible(DefaultMultiVersioningDocumentService.this);
+
+      // the caches already contain the versions written by this transaction
+      if (status != STATUS_COMMITTED)
+        registry.persistedVersions.forEach((documentId, versionTimestamp) -> {
+          versionCache.evict(documentId);
+          if (null != documentCache)
+            documentCache.evict(documentId, versionTimestamp);
+        });
     }
   }
 
+  @PostConstruct
+  public void initVersionCache() {
+    Cache sharedCache = null != cacheManager ? cacheManager.getCache(DocumentVersionCache.CACHE_NAME) : null;
+
+    if (!versionCacheEnabled)
+      versionCache = DocumentVersionCache.disabled();
+    else if (null != sharedCache)
+      versionCache = DocumentVersionCache.shared(sharedCache);
+    else if (lock instanceof LocalLockFactory)
+      versionCache = DocumentVersionCache.local(versionCacheMaxSize);
+    else {
+      LOGGER.info("No CacheManager present in a clustered setup - document version lists will not be cached");
+      versionCache = DocumentVersionCache.disabled();
+    }
+  }
+
+  @PostConstruct
+  public void initDocumentCache() {
+    if (!documentCacheEnabled)
+      documentCache = null;
+    else if (documentCacheUseCacheManager) {
+      Cache sharedCache = null != cacheManager ? cacheManager.getCache(ParsedDocumentCache.CACHE_NAME) : null;
+      if (null == sharedCache)
+        throw new IllegalStateException(
+            "Parsed document cache configured to use a CacheManager, but no cache '" + ParsedDocumentCache.CACHE_NAME
+                + "' is available");
+      documentCache = ParsedDocumentCache.shared(sharedCache);
+    } else
+      documentCache = ParsedDocumentCache.local(documentCacheMaxSize, documentCacheMaxWeight);
+  }
+
   EntityRegistry txEntityRegistry() {
     if (!TransactionSynchronizationManager.isSynchronizationActive()) {
       // return a read-only entity registry
@@ -302,7 +434,11 @@ public class DefaultMultiVersioningDocumentService
   @TraceInvocation
   public Optional<Document> getDocument(final String documentId) {
     // Go through tx registry for current version
-    DocumentPdo doc = txEntityRegistry().document(documentId, null).document;
+    return currentDocument(txEntityRegistry().document(documentId, null));
+  }
+
+  private Optional<Document> currentDocument(final TransactionalDocument txd) {
+    DocumentPdo doc = txd.document;
 
     // we verify the deleted-status only upon retrieval of the current version
     if (doc != null && doc.isDeleted()) {
@@ -313,7 +449,6 @@ public class DefaultMultiVersioningDocumentService
   }
 
   @Override
-  @CacheEvict(cacheNames = "documentVersions", key = "#document.documentId")
   @TraceInvocation
   public Document createDocument(final Document document) {
     if (!getVersions(document.getDocumentId()).isEmpty())
@@ -330,7 +465,6 @@ public class DefaultMultiVersioningDocumentService
   }
 
   @Override
-  @CacheEvict(cacheNames = "documentVersions", key = "#documentId")
   @TraceInvocation
   public boolean deleteDocument(final String documentId) {
     txEntityRegistry().delete(documentId);
@@ -338,7 +472,6 @@ public class DefaultMultiVersioningDocumentService
   }
 
   @Override
-  @CacheEvict(cacheNames = "documentVersions", key = "#document.documentId")
   @TraceInvocation
   public Optional<Document> update(final Document document) {
     DefaultDocumentService.ensureBasicMetadataPresent(document);
@@ -367,9 +500,12 @@ public class DefaultMultiVersioningDocumentService
   @Override
   @TraceInvocation
   public List<Document> getDocuments(final List<String> documentIds) {
+    EntityRegistry registry = txEntityRegistry();
+    Map<String, Instant> currentVersions = registry.prefetch(documentIds);
+
     // @formatter:off
     return documentIds.stream()
-        .map(this::getDocument)
+        .map(id -> currentDocument(registry.document(id, currentVersions.get(id))))
         .filter(Optional::isPresent)
         .map(Optional::get)
         .collect(Collectors.toList());
@@ -412,20 +548,82 @@ public class DefaultMultiVersioningDocumentService
    * @return the document
    */
   private DocumentPdo doRetrieveDocument(final String documentId, final Instant versionTimestamp) {
+    Optional<DocumentPdo> cached = getCachedDocument(documentId, versionTimestamp);
+    if (cached.isPresent())
+      return cached.get();
+
     ObjectName objectName = createDocumentObjectName(documentId, versionTimestamp);
-    StoreObject storedDocument = objectStore.get(objectName);
+    return toDocument(objectName, objectStore.get(objectName));
+  }
+
+  /**
+   * Retrieve a document from the parsed document cache, if enabled.
+   *
+   * @param documentId the id of the document to retrieve
+   * @param versionTimestamp timestamp acting as document version identifier
+   * @return a private copy of the cached document or the empty optional on a cache miss
+   */
+  private Optional<DocumentPdo> getCachedDocument(final String documentId, final Instant versionTimestamp) {
+    if (null == documentCache)
+      return Optional.empty();
+
+    return documentCache.get(documentId, versionTimestamp).map(this::copyOf);
+  }
 
+  /**
+   * Deserialize a document retrieved from the object store and add it to the parsed document cache,
+   * if enabled.
+   *
+   * @param objectName the name of the document object
+   * @param storedDocument the document object or <code>null</code> if it does not exist
+   * @return the document or <code>null</code> if it does not exist
+   */
+  private DocumentPdo toDocument(final ObjectName objectName, final StoreObject storedDocument) {
     if (null == storedDocument)
       return null;
 
     try {
-      return objectMapper.readValue(storedDocument.getInputStream(), DocumentPdo.class);
+      if (null == documentCache)
+        return objectMapper.readValue(storedDocument.getInputStream(), DocumentPdo.class);
+
+      byte[] serialized;
+      try (InputStream is = storedDocument.getInputStream()) {
+        serialized = is.readAllBytes();
+      }
+      DocumentPdo document = objectMapper.readValue(serialized, DocumentPdo.class);
+      documentCache.put(copyOf(document), serialized.length);
+      return document;
     } catch (IOException e) {
       LOGGER.error("Failed to deserialize document @{}", objectName, e);
       throw new DocumentServiceException("Failed to retrieve document");
     }
   }
 
+  /**
+   * Create a copy of the given document which shares no mutable state with the original. This is
+   * considerably cheaper than deserializing the document again.
+   *
+   * @param document the document to copy
+   * @return the copy
+   */
+  private DocumentPdo copyOf(final DocumentPdo document) {
+    DocumentPdo copy = new DocumentPdo(document.getDocumentId());
+    copy.setVersionTimestamp(document.getVersionTimestamp());
+    copy.setDateCreated(document.getDateCreated());
+    copy.setDateModified(document.getDateModified());
+    copy.setDeleted(document.isDeleted());
+    if (null != document.getContentElements())
+      copy.setContentElements(document.getContentElements().stream() //
+          .map(ce -> modelMapper.map(ce, ContentElement.class)) //
+          .collect(Collectors.toList()));
+
+    if (null != document.getAssociatedFacetData())
+      document.getAssociatedFacetData().forEach(
+          (k, v) -> copy.getAssociatedFacetData().put(k, null != v ? v.deepCopy() : null));
+
+    return copy;
+  }
+
   /**
    * Persist changes to or create the given document.
    *
@@ -438,13 +636,15 @@ public class DefaultMultiVersioningDocumentService
     writeLock.lock();
     try {
       try {
-        // check for last minute version clash _within_ the write lock
+        // check for last minute version clash _within_ the write lock - the cache might be stale
         List<Instant> upToDateVersionList = doRetrieveVersionList(document.getDocumentId());
 
         // no initial timestamp or empty version list means: new document and thus no clash
         if (initialTimestamp != null //
             && !upToDateVersionList.isEmpty() //
             && upToDateVersionList.get(upToDateVersionList.size() - 1).isAfter(initialTimestamp)) {
+          // we hold the write lock, so the list we just read is authoritative
+          versionCache.put(document.getDocumentId(), upToDateVersionList);
           throw new VersionMismatchException("Mid-air-collision writing a document version",
               document.getVersionTimestamp().toString(),
               upToDateVersionList.get(upToDateVersionList.size() - 1).toString());
@@ -458,6 +658,10 @@ public class DefaultMultiVersioningDocumentService
           objectStore.put(objectName, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(baos.toByteArray()),
               baos.size());
 
+          versionCache.append(document.getDocumentId(), upToDateVersionList, document.getVersionTimestamp());
+          if (null != documentCache && document instanceof DocumentPdo pdo)
+            documentCache.put(copyOf(pdo), baos.size());
+
           return document;
         } catch (ObjectStoreException e) {
           LOGGER.error("Failed to store document @{}", objectName, e);
@@ -472,6 +676,32 @@ public class DefaultMultiVersioningDocumentService
     }
   }
 
+  /**
+   * Keep the version cache coherent with writes which did not go through this instance, e.g. those
+   * of another service instance sharing the object store. Writes of this instance have already
+   * updated the cached list under the document write lock, so the list is retained if its head is
+   * the version the event refers to.
+   *
+   * @param event the document event
+   */
+  @EventListener
+  public void onDocumentEvent(final Event event) {
+    String documentId = event.getDocumentId();
+    if (null == documentId)
+      return;
+
+    Instant written = null;
+    if (event instanceof CreateEvent ce)
+      written = ce.getDocument().getVersionTimestamp();
+    else if (event instanceof UpdateEvent ue)
+      written = ue.getDocument().getVersionTimestamp();
+
+    Optional<List<Instant>> cached = versionCache.get(documentId);
+    if (cached.isPresent() && (null == written || cached.get().isEmpty()
+        || !written.equals(cached.get().get(cached.get().size() - 1))))
+      versionCache.evict(documentId);
+  }
+
   protected ObjectName createDocumentDirectoryName(final String documentId) {
     return ObjectName.of(DOCUMENT_PREFIX, documentId, META_SUB_PREFIX);
   }
@@ -494,10 +724,25 @@ public class DefaultMultiVersioningDocumentService
    * @return the list of version timestamps - the empty list for documents that do not exist
    */
   @Override
-  @Cacheable("documentVersions")
   @TraceInvocation
   public List<Instant> getVersions(final String documentId) {
-    return doRetrieveVersionList(documentId);
+    Optional<List<Instant>> cached = versionCache.get(documentId);
+    if (cached.isPresent())
+      return cached.get();
+
+    /*
+     * Populate the cache under the read lock, so that we cannot overwrite the result of a concurrent
+     * write with a stale version list.
+     */
+    Lock readLock = lock.readLock("document-" + documentId);
+    readLock.lock();
+    try {
+      List<Instant> versions = doRetrieveVersionList(documentId);
+      versionCache.put(documentId, versions);
+      return versions;
+    } finally {
+      readLock.unlock();
+    }
   }
 
   /**
@@ -0,0 +1,115 @@
+package com.neverpile.eureka.impl.documentservice;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.cache.Cache;
+
+/**
+ * A cache of the version lists of multi-versioned documents keyed by document ID. The last element
+ * of a cached list is the current version (the version head) of the document.
+ * <p>
+ * The cache is either backed by a {@link Cache} obtained from a Spring
+ * {@link org.springframework.cache.CacheManager} (which, if backed by e.g. Ignite, is shared by all
+ * nodes of a cluster) or by a bounded, node-local LRU map. It may also be disabled altogether, in
+ * which case all lookups miss.
+ * <p>
+ * Cached lists are immutable. Writers are expected to update an entry only while holding the
+ * cluster-wide write lock of the respective document and only with a list they have just read from
+ * the object store. As writers which don't go through the cache may exist, an entry may still be
+ * stale and must not be relied upon for version clash detection.
+ */
+class DocumentVersionCache {
+  public static final String CACHE_NAME = "documentVersions";
+
+  private final Cache sharedCache;
+
+  private final Map<String, List<Instant>> localCache;
+
+  private DocumentVersionCache(final Cache sharedCache, final Map<String, List<Instant>> localCache) {
+    this.sharedCache = sharedCache;
+    this.localCache = localCache;
+  }
+
+  /**
+   * Create a version cache backed by the given Spring cache.
+   *
+   * @param cache the backing cache
+   * @return a version cache
+   */
+  static DocumentVersionCache shared(final Cache cache) {
+    return new DocumentVersionCache(cache, null);
+  }
+
+  /**
+   * Create a node-local version cache holding at most the given number of entries. Least recently
+   * used entries are evicted first.
+   *
+   * @param maxSize the maximum number of entries
+   * @return a version cache
+   */
+  static DocumentVersionCache local(final int maxSize) {
+    return new DocumentVersionCache(null, Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, List<Instant>> eldest) {
+        return size() > maxSize;
+      }
+    }));
+  }
+
+  /**
+   * Create a version cache which doesn't cache anything.
+   *
+   * @return a version cache
+   */
+  static DocumentVersionCache disabled() {
+    return new DocumentVersionCache(null, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  Optional<List<Instant>> get(final String documentId) {
+    if (null != sharedCache)
+      return Optional.ofNullable(sharedCache.get(documentId, List.class));
+    if (null != localCache)
+      return Optional.ofNullable(localCache.get(documentId));
+    return Optional.empty();
+  }
+
+  void put(final String documentId, final List<Instant> versions) {
+    // defensive, serializable copy
+    List<Instant> copy = Collections.unmodifiableList(new ArrayList<>(versions));
+    if (null != sharedCache)
+      sharedCache.put(documentId, copy);
+    else if (null != localCache)
+      localCache.put(documentId, copy);
+  }
+
+  /**
+   * Update the cached version list of the given document by appending a newly written version.
+   *
+   * @param documentId the document ID
+   * @param previousVersions the authoritative version list before the new version was written
+   * @param newVersion the newly written version
+   */
+  void append(final String documentId, final List<Instant> previousVersions, final Instant newVersion) {
+    List<Instant> updated = new ArrayList<>(previousVersions.size() + 1);
+    updated.addAll(previousVersions);
+    updated.add(newVersion);
+    updated.sort(null);
+    put(documentId, updated);
+  }
+
+  void evict(final String documentId) {
+    if (null != sharedCache)
+      sharedCache.evict(documentId);
+    else if (null != localCache)
+      localCache.remove(documentId);
+  }
+}
@@ -0,0 +1,161 @@
+package com.neverpile.eureka.impl.documentservice;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+import org.springframework.cache.Cache;
+
+/**
+ * A second-level cache of deserialized {@link DocumentPdo}s keyed by document ID and version
+ * timestamp. As versions of multi-versioned documents are never modified once written, cached
+ * entries never become stale and need not be invalidated except when a version is removed.
+ * <p>
+ * The cache is either backed by a {@link Cache} obtained from a Spring
+ * {@link org.springframework.cache.CacheManager} (e.g. the Ignite-based one, in which case eviction
+ * is subject to the configuration of the respective Ignite cache) or by a node-local LRU map which
+ * is bounded both by the number of entries and by the accumulated weight of the entries. The
+ * weight of an entry is the size of its serialized form.
+ * <p>
+ * Cached instances must be treated as immutable. Callers are responsible for copying instances
+ * before handing them out to code which might modify them.
+ */
+class ParsedDocumentCache {
+  public static final String CACHE_NAME = "documents";
+
+  private static class WeightedEntry {
+    final DocumentPdo document;
+
+    final long weight;
+
+    WeightedEntry(final DocumentPdo document, final long weight) {
+      this.document = document;
+      this.weight = weight;
+    }
+  }
+
+  private final Cache sharedCache;
+
+  private final LinkedHashMap<String, WeightedEntry> localCache;
+
+  private final int maxSize;
+
+  private final long maxWeight;
+
+  private long weight;
+
+  private ParsedDocumentCache(final Cache sharedCache, final int maxSize, final long maxWeight) {
+    this.sharedCache = sharedCache;
+    this.localCache = null == sharedCache ? new LinkedHashMap<>(16, 0.75f, true) : null;
+    this.maxSize = maxSize;
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Create a document cache backed by the given Spring cache.
+   *
+   * @param cache the backing cache
+   * @return a document cache
+   */
+  static ParsedDocumentCache shared(final Cache cache) {
+    return new ParsedDocumentCache(cache, 0, 0);
+  }
+
+  /**
+   * Create a node-local document cache. Least recently used entries are evicted first once either
+   * limit is exceeded.
+   *
+   * @param maxSize the maximum number of entries
+   * @param maxWeight the maximum accumulated weight of all entries in bytes
+   * @return a document cache
+   */
+  static ParsedDocumentCache local(final int maxSize, final long maxWeight) {
+    return new ParsedDocumentCache(null, maxSize, maxWeight);
+  }
+
+  private static String key(final String documentId, final Instant versionTimestamp) {
+    return documentId + "@" + DefaultMultiVersioningDocumentService.VERSION_FORMATTER.format(versionTimestamp);
+  }
+
+  Optional<DocumentPdo> get(final String documentId, final Instant versionTimestamp) {
+    String key = key(documentId, versionTimestamp);
+    if (null != sharedCache)
+      return Optional.ofNullable(sharedCache.get(key, DocumentPdo.class));
+
+    synchronized (localCache) {
+      WeightedEntry e = localCache.get(key);
+      return Optional.ofNullable(null != e ? e.document : null);
+    }
+  }
+
+  /**
+   * Add a document to the cache.
+   *
+   * @param document the document which must not be modified after it has been added
+   * @param weight the size of the serialized document
+   */
+  void put(final DocumentPdo document, final long weight) {
+    String key = key(document.getDocumentId(), document.getVersionTimestamp());
+    if (null != sharedCache) {
+      sharedCache.put(key, document);
+      return;
+    }
+
+    synchronized (localCache) {
+      WeightedEntry previous = localCache.put(key, new WeightedEntry(document, weight));
+      if (null != previous)
+        this.weight -= previous.weight;
+      this.weight += weight;
+
+      Iterator<WeightedEntry> i = localCache.values().iterator();
+      while (i.hasNext() && (localCache.size() > maxSize || this.weight > maxWeight)) {
+        this.weight -= i.next().weight;
+        i.remove();
+      }
+    }
+  }
+
+  void evict(final String documentId, final Instant versionTimestamp) {
+    String key = key(documentId, versionTimestamp);
+    if (null != sharedCache) {
+      sharedCache.evict(key);
+      return;
+    }
+
+    synchronized (localCache) {
+      WeightedEntry previous = localCache.remove(key);
+      if (null != previous)
+        this.weight -= previous.weight;
+    }
+  }
+
+  /**
+   * Return the number of entries held in the node-local cache. For testing purposes only.
+   *
+   * @return the number of entries or -1 if the cache is not node-local
+   */
+  int localSize() {
+    if (null == localCache)
+      return -1;
+
+    synchronized (localCache) {
+      return localCache.size();
+    }
+  }
+
+  /**
+   * Return the accumulated weight of the entries held in the node-local cache. For testing purposes
+   * only.
+   *
+   * @return the weight or -1 if the cache is not node-local
+   */
+  long localWeight() {
+    if (null == localCache)
+      return -1;
+
+    synchronized (localCache) {
+      return weight;
+    }
+  }
+}
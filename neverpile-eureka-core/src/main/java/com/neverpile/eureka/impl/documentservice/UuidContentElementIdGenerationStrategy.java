@@ -25,6 +25,11 @@ public class UuidContentElementIdGenerationStrategy implements ContentElementIdG
     return UUID.randomUUID().toString();
   }
 
+  @Override
+  public boolean requiresDigest() {
+    return false;
+  }
+
   @Override
   public boolean validateContentId(final String id, final List<ContentElement> existingElements, final Digest elementDigest) {
     return id.matches(UUID_PATTERN);
@@ -0,0 +1,118 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * An input stream returning the compressed form of the data read from another stream. As the
+ * object stores consume the data to store as an {@link InputStream}, compression is driven by the
+ * consumer: whenever the compressed data buffered so far has been consumed, another portion of the
+ * source is pushed through the compressor.
+ */
+class CompressingInputStream extends InputStream {
+  private static final int READ_SIZE = 64 * 1024;
+
+  /**
+   * A byte array output stream granting access to its buffer to avoid copying it.
+   */
+  private static class Buffer extends ByteArrayOutputStream {
+    Buffer() {
+      super(READ_SIZE);
+    }
+
+    byte[] array() {
+      return buf;
+    }
+  }
+
+  private final InputStream source;
+
+  private final Buffer buffer = new Buffer();
+
+  private final OutputStream compressor;
+
+  private final byte[] chunk = new byte[READ_SIZE];
+
+  private int position;
+
+  private boolean finished;
+
+  /**
+   * Create a stream compressing the given source.
+   *
+   * @param source the data to compress
+   * @param codec the codec to compress with
+   * @param header bytes to return ahead of the compressed data
+   * @throws IOException if the compressor cannot be started
+   */
+  CompressingInputStream(final InputStream source, final CompressionCodec codec, final byte[] header)
+      throws IOException {
+    this.source = source;
+    buffer.writeBytes(header);
+    this.compressor = codec.compress(buffer);
+  }
+
+  /**
+   * Make sure that compressed data is buffered.
+   *
+   * @return <code>false</code> if all compressed data has been consumed
+   */
+  private boolean fill() throws IOException {
+    while (position >= buffer.size()) {
+      if (finished)
+        return false;
+
+      buffer.reset();
+      position = 0;
+
+      int read = source.read(chunk);
+      if (read < 0) {
+        compressor.close();
+        finished = true;
+      } else {
+        compressor.write(chunk, 0, read);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return fill() ? buffer.array()[position++] & 0xff : -1;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0)
+      return 0;
+    if (!fill())
+      return -1;
+
+    int toCopy = Math.min(len, buffer.size() - position);
+    System.arraycopy(buffer.array(), position, b, off, toCopy);
+    position += toCopy;
+    return toCopy;
+  }
+
+  @Override
+  public int available() {
+    return buffer.size() - position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!finished) {
+        // release the resources held by the compressor
+        finished = true;
+        compressor.close();
+      }
+    } finally {
+      source.close();
+    }
+  }
+}
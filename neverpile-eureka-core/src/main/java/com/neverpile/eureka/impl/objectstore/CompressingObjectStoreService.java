@@ -0,0 +1,244 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * An {@link ObjectStoreService} decorator which transparently compresses the content of objects.
+ * <p>
+ * Compressed objects start with a frame header consisting of {@link #MAGIC} followed by the id of
+ * the {@link CompressionCodec} used. Objects without a frame header are returned as they are, so
+ * that objects stored before compression was enabled, as well as objects the
+ * {@link CompressionPolicy} decided not to compress, remain readable. Content which would be
+ * mistaken for a frame header is stored behind a frame header marking it as
+ * {@link #STORED uncompressed}.
+ * <p>
+ * Ranged reads of compressed objects need to decompress the content up to the requested range.
+ */
+public class CompressingObjectStoreService implements ObjectStoreService {
+  static final byte[] MAGIC = {0, 'N', 'P', 'Z'};
+
+  static final int HEADER_LENGTH = MAGIC.length + 1;
+
+  /**
+   * The codec id marking content stored uncompressed.
+   */
+  static final byte STORED = 0;
+
+  /**
+   * An object read through the decorator. Whether the underlying object is compressed is determined
+   * lazily, when the content is accessed.
+   */
+  private class DecompressedStoreObject implements StoreObject {
+    private final StoreObject storeObject;
+
+    DecompressedStoreObject(final StoreObject storeObject) {
+      this.storeObject = storeObject;
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+      return storeObject.getObjectName();
+    }
+
+    @Override
+    public String getVersion() {
+      return storeObject.getVersion();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      return open(storeObject);
+    }
+
+    @Override
+    public Optional<Path> getLocalFile() {
+      Optional<Path> localFile = storeObject.getLocalFile();
+      if (localFile.isEmpty())
+        return localFile;
+
+      // a local file is of no use if its content needs to be decompressed
+      StoreObject head = delegate.get(getObjectName(), 0, HEADER_LENGTH);
+      return null != head && isFramed(readHeader(head)) ? Optional.empty() : localFile;
+    }
+
+    @Override
+    public void release() {
+      storeObject.release();
+    }
+  }
+
+  private final ObjectStoreService delegate;
+
+  private final CompressionCodec codec;
+
+  private final CompressionPolicy policy;
+
+  /**
+   * Create a decorator for the given object store.
+   *
+   * @param delegate the object store to decorate
+   * @param codec the codec to compress new objects with
+   * @param policy the policy deciding which objects to compress
+   */
+  public CompressingObjectStoreService(final ObjectStoreService delegate, final CompressionCodec codec,
+      final CompressionPolicy policy) {
+    this.delegate = delegate;
+    this.codec = codec;
+    this.policy = policy;
+  }
+
+  public ObjectStoreService getDelegate() {
+    return delegate;
+  }
+
+  static byte[] header(final byte codecId) {
+    byte[] header = Arrays.copyOf(MAGIC, HEADER_LENGTH);
+    header[MAGIC.length] = codecId;
+    return header;
+  }
+
+  static boolean isFramed(final byte[] head) {
+    return head.length >= MAGIC.length && Arrays.equals(head, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+  }
+
+  @Override
+  public void put(final ObjectName objectName, final String version, final InputStream content, final long length) {
+    try {
+      boolean candidate = policy.appliesTo(objectName);
+      byte[] head = content.readNBytes(candidate ? policy.getHeadLength() : MAGIC.length);
+      InputStream all = new SequenceInputStream(new ByteArrayInputStream(head), content);
+
+      if (candidate && policy.shouldCompress(head)) {
+        delegate.put(objectName, version, new CompressingInputStream(all, codec, header(codec.getId())), -1L);
+      } else if (isFramed(head)) {
+        // escape content which would be mistaken for a frame header
+        delegate.put(objectName, version, new SequenceInputStream(new ByteArrayInputStream(header(STORED)), all),
+            length >= 0 ? length + HEADER_LENGTH : -1L);
+      } else {
+        delegate.put(objectName, version, all, length);
+      }
+    } catch (IOException e) {
+      throw new ObjectStoreException(objectName, "Can't store content", e);
+    }
+  }
+
+  /**
+   * Open the content of the given object, decompressing it if necessary.
+   */
+  private InputStream open(final StoreObject storeObject) {
+    InputStream is = storeObject.getInputStream();
+    try {
+      byte[] head = is.readNBytes(HEADER_LENGTH);
+      if (!isFramed(head))
+        return new SequenceInputStream(new ByteArrayInputStream(head), is);
+
+      if (head.length < HEADER_LENGTH)
+        throw new IOException("Truncated frame header");
+
+      byte codecId = head[MAGIC.length];
+      return codecId == STORED ? is : decoder(storeObject.getObjectName(), codecId).decompress(is);
+    } catch (IOException e) {
+      try {
+        is.close();
+      } catch (IOException f) {
+        e.addSuppressed(f);
+      }
+      throw new ObjectStoreException(storeObject.getObjectName(), "Can't read object", e);
+    }
+  }
+
+  private CompressionCodec decoder(final ObjectName objectName, final byte codecId) {
+    if (codecId == codec.getId())
+      return codec;
+
+    CompressionCodec decoder;
+    try {
+      decoder = CompressionCodec.forId(codecId);
+    } catch (LinkageError e) {
+      throw new ObjectStoreException(objectName, "The codec " + codecId + " is not available", e);
+    }
+    if (null == decoder)
+      throw new ObjectStoreException(objectName, "Unknown compression codec " + codecId);
+    return decoder;
+  }
+
+  private byte[] readHeader(final StoreObject storeObject) {
+    try (InputStream is = storeObject.getInputStream()) {
+      return is.readNBytes(HEADER_LENGTH);
+    } catch (IOException e) {
+      throw new ObjectStoreException(storeObject.getObjectName(), "Can't read object", e);
+    }
+  }
+
+  @Override
+  public Stream<StoreObject> list(final ObjectName prefix) {
+    return delegate.list(prefix).map(DecompressedStoreObject::new);
+  }
+
+  @Override
+  public StoreObject get(final ObjectName objectName) {
+    StoreObject storeObject = delegate.get(objectName);
+    return null != storeObject ? new DecompressedStoreObject(storeObject) : null;
+  }
+
+  /**
+   * Retrieve a range of an object. Ranges of uncompressed objects are retrieved from the underlying
+   * object store directly, while compressed objects are decompressed up to the requested range. The
+   * frame header is determined by a ranged read of its length, so that uncompressed objects aren't
+   * retrieved as a whole.
+   */
+  @Override
+  public StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    StoreObject storeObject = delegate.get(objectName, 0, HEADER_LENGTH);
+    if (null == storeObject)
+      return null;
+
+    byte[] head = readHeader(storeObject);
+    if (!isFramed(head))
+      return delegate.get(objectName, offset, length);
+    if (head.length == HEADER_LENGTH && head[MAGIC.length] == STORED)
+      return delegate.get(objectName, offset + HEADER_LENGTH, length);
+
+    return ObjectStoreService.super.get(objectName, offset, length);
+  }
+
+  @Override
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    delegate.getMany(objectNames).forEach((n, o) -> result.put(n, new DecompressedStoreObject(o)));
+    return result;
+  }
+
+  @Override
+  public boolean supportsRename() {
+    return delegate.supportsRename();
+  }
+
+  @Override
+  public void rename(final ObjectName from, final ObjectName to) {
+    delegate.rename(from, to);
+  }
+
+  @Override
+  public void delete(final ObjectName objectName) {
+    delegate.delete(objectName);
+  }
+
+  @Override
+  public boolean checkObjectExists(final ObjectName objectName) {
+    return delegate.checkObjectExists(objectName);
+  }
+}
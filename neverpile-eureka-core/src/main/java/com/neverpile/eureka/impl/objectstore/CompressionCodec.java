@@ -0,0 +1,68 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+/**
+ * A compression algorithm used by the {@link CompressingObjectStoreService}. The id of the codec
+ * is recorded in the frame header of every object compressed with it, so ids must never be
+ * re-assigned.
+ */
+public interface CompressionCodec {
+  /**
+   * Return the id identifying this codec in frame headers.
+   *
+   * @return the codec id
+   */
+  byte getId();
+
+  /**
+   * Return a stream compressing the data written to it into the given stream. Closing the returned
+   * stream finishes the compressed data.
+   *
+   * @param out the stream to write the compressed data to
+   * @return the compressing stream
+   * @throws IOException if the compressed stream cannot be started
+   */
+  OutputStream compress(OutputStream out) throws IOException;
+
+  /**
+   * Return a stream decompressing the data read from the given stream.
+   *
+   * @param in the stream to read the compressed data from
+   * @return the decompressing stream
+   * @throws IOException if the compressed stream cannot be read
+   */
+  InputStream decompress(InputStream in) throws IOException;
+
+  /**
+   * Return the codec with the given name.
+   *
+   * @param name the codec name, either <code>lz4</code> or <code>zstd</code>
+   * @param level the compression level, used by codecs supporting levels only
+   * @return the codec
+   */
+  static CompressionCodec forName(final String name, final int level) {
+    return switch (name.trim().toLowerCase(Locale.ROOT)) {
+      case "lz4" -> new Lz4CompressionCodec();
+      case "zstd" -> new ZstdCompressionCodec(level);
+      default -> throw new IllegalArgumentException("Unsupported compression codec: " + name);
+    };
+  }
+
+  /**
+   * Return a codec suitable for decompressing data compressed by the codec with the given id.
+   *
+   * @param id the codec id
+   * @return the codec or <code>null</code> if the id is unknown
+   */
+  static CompressionCodec forId(final byte id) {
+    return switch (id) {
+      case Lz4CompressionCodec.ID -> new Lz4CompressionCodec();
+      case ZstdCompressionCodec.ID -> new ZstdCompressionCodec(ZstdCompressionCodec.DEFAULT_LEVEL);
+      default -> null;
+    };
+  }
+}
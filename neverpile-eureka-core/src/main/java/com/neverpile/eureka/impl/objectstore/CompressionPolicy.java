@@ -0,0 +1,113 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.AntPathMatcher;
+
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * Decides which objects are compressed by the {@link CompressingObjectStoreService}.
+ * <p>
+ * Object names, with their components joined by '/', are matched against Ant-style include and
+ * exclude patterns, e.g. <code>document/&#42;/document.json</code> or <code>**&#47;*.json</code>.
+ * An object is considered for compression if it matches at least one include and no exclude
+ * pattern. Its content is compressed only if it is larger than the minimum size and does not start
+ * with the signature of a common, already compressed format like JPEG, PNG, ZIP (including office
+ * documents) or gzip, as those do not shrink any further.
+ */
+public class CompressionPolicy {
+  /**
+   * The number of leading bytes needed to recognize compressed formats.
+   */
+  static final int SIGNATURE_LENGTH = 12;
+
+  private static final byte[][] SIGNATURES = {
+      {(byte) 0x1f, (byte) 0x8b}, // gzip
+      {'P', 'K', 3, 4}, // zip, office documents, jar
+      {(byte) 0x89, 'P', 'N', 'G'}, // PNG
+      {(byte) 0xff, (byte) 0xd8, (byte) 0xff}, // JPEG
+      {'G', 'I', 'F', '8'}, // GIF
+      {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}, // Zstandard
+      {(byte) 0x04, (byte) 0x22, (byte) 0x4d, (byte) 0x18}, // LZ4
+      {'B', 'Z', 'h'}, // bzip2
+      {(byte) 0xfd, '7', 'z', 'X', 'Z', 0}, // xz
+      {'7', 'z', (byte) 0xbc, (byte) 0xaf, (byte) 0x27, (byte) 0x1c}, // 7-Zip
+      {'R', 'a', 'r', '!'}, // RAR
+      {'O', 'g', 'g', 'S'}, // Ogg
+      {'I', 'D', '3'}, // MP3
+  };
+
+  private final AntPathMatcher matcher = new AntPathMatcher();
+
+  private final List<String> includes;
+
+  private final List<String> excludes;
+
+  private final int minSize;
+
+  /**
+   * Create a policy.
+   *
+   * @param includes the patterns of names to compress
+   * @param excludes the patterns of names to never compress
+   * @param minSize the size objects must exceed to be compressed
+   */
+  public CompressionPolicy(final List<String> includes, final List<String> excludes, final int minSize) {
+    this.includes = includes;
+    this.excludes = excludes;
+    this.minSize = Math.max(0, minSize);
+  }
+
+  /**
+   * Return whether objects with the given name are to be compressed, provided their content is
+   * suitable.
+   *
+   * @param objectName the object name
+   * @return whether the object is a candidate for compression
+   */
+  public boolean appliesTo(final ObjectName objectName) {
+    String path = String.join("/", objectName.to());
+    return includes.stream().anyMatch(p -> matcher.match(p, path))
+        && excludes.stream().noneMatch(p -> matcher.match(p, path));
+  }
+
+  /**
+   * Return the number of leading bytes of an object's content {@link #shouldCompress(byte[])} needs
+   * to see.
+   *
+   * @return the head length
+   */
+  public int getHeadLength() {
+    return Math.max(minSize + 1, SIGNATURE_LENGTH);
+  }
+
+  /**
+   * Return whether the content starting with the given bytes is to be compressed.
+   *
+   * @param head the first {@link #getHeadLength()} bytes of the content, or all of it if it is
+   *          shorter
+   * @return whether to compress the content
+   */
+  public boolean shouldCompress(final byte[] head) {
+    return head.length > minSize && !isCompressedFormat(head);
+  }
+
+  static boolean isCompressedFormat(final byte[] head) {
+    for (byte[] signature : SIGNATURES)
+      if (head.length >= signature.length && Arrays.equals(head, 0, signature.length, signature, 0, signature.length))
+        return true;
+
+    // RIFF based WebP and ISO base media files (MP4, HEIC, AVIF)
+    return head.length >= 12
+        && (startsWith(head, 0, "RIFF") && startsWith(head, 8, "WEBP") || startsWith(head, 4, "ftyp"));
+  }
+
+  private static boolean startsWith(final byte[] head, final int offset, final String ascii) {
+    for (int i = 0; i < ascii.length(); i++)
+      if (head[offset + i] != ascii.charAt(i))
+        return false;
+    return true;
+  }
+}
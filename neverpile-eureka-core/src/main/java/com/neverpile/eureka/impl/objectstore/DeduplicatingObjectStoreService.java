@@ -0,0 +1,612 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.impl.tx.lock.LocalLockFactory;
+import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.tx.lock.ClusterLockFactory;
+import com.neverpile.eureka.util.ObjectNames;
+import com.neverpile.eureka.util.SizeTrackingInputStream;
+import com.neverpile.eureka.util.SizeTrackingOutputStream;
+
+/**
+ * An {@link ObjectStoreService} decorator which stores the payload of objects only once per
+ * distinct content, on top of any other object store.
+ * <p>
+ * The payload of an object larger than the configured minimum size is stored as a blob named by
+ * its SHA-256 digest below {@link #BLOB_PREFIX}. The object itself then merely holds a small
+ * pointer to the blob. Smaller objects are stored as they are, as are objects stored before the
+ * decorator was introduced, so that both kinds of objects can be read transparently.
+ * <p>
+ * For every object pointing to a blob, an empty reference marker is stored below
+ * {@link #REFERENCE_PREFIX}. Markers are only hints: they are neither removed when objects are
+ * deleted nor when they are overwritten. Instead, {@link #collectGarbage()} verifies them against
+ * the objects they name, removes stale ones and deletes blobs no longer referenced by any object.
+ * A blob is deleted only if it has been found unreferenced by two consecutive collections.
+ * <p>
+ * A transaction creating or referencing a blob holds the cluster-wide lock of the blob until it
+ * completes. The garbage collection examines a blob and its markers only while holding the same
+ * lock and holds on to it until its own deletions have been committed. Thus the marker of a pointer
+ * not committed yet is never taken for a stale one, and a transaction storing content whose blob is
+ * being created by a concurrent transaction waits for that transaction to complete, re-creating the
+ * blob if the transaction has been rolled back.
+ */
+public class DeduplicatingObjectStoreService implements ObjectStoreService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicatingObjectStoreService.class);
+
+  /**
+   * The prefix of all objects maintained by the decorator itself.
+   */
+  public static final ObjectName AREA = ObjectName.of("dedup");
+
+  public static final ObjectName BLOB_PREFIX = AREA.append("blob");
+
+  public static final ObjectName REFERENCE_PREFIX = AREA.append("ref");
+
+  static final ObjectName STAGING_PREFIX = AREA.append("staging");
+
+  static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private static final byte[] POINTER_MAGIC = "\0neverpile-dedup:".getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The maximum size of a pointer. Objects of at least this size are never pointers.
+   */
+  private static final int MAX_POINTER_SIZE = 256;
+
+  private static final String LOCK_PREFIX = "neverpile-eureka-dedup-";
+
+  /**
+   * The time to wait for the lock of a blob before giving up, e.g. because of transactions
+   * referencing the same blobs in reverse order.
+   */
+  private static final long LOCK_TIMEOUT_SECONDS = 60;
+
+  /**
+   * A pointer to the blob holding the payload of an object.
+   */
+  record Pointer(String digest, long length) {
+    byte[] toBytes() {
+      byte[] body = (digest + " " + length + "\n").getBytes(StandardCharsets.US_ASCII);
+      byte[] bytes = Arrays.copyOf(POINTER_MAGIC, POINTER_MAGIC.length + body.length);
+      System.arraycopy(body, 0, bytes, POINTER_MAGIC.length, body.length);
+      return bytes;
+    }
+
+    static Optional<Pointer> parse(final byte[] head) {
+      if (head.length >= MAX_POINTER_SIZE || !startsWithMagic(head))
+        return Optional.empty();
+
+      String[] fields = new String(head, POINTER_MAGIC.length, head.length - POINTER_MAGIC.length,
+          StandardCharsets.US_ASCII).trim().split(" ");
+      try {
+        return fields.length == 2 ? Optional.of(new Pointer(fields[0], Long.parseLong(fields[1]))) : Optional.empty();
+      } catch (NumberFormatException e) {
+        return Optional.empty();
+      }
+    }
+  }
+
+  /**
+   * An object read through the decorator. Whether the underlying object is a pointer is determined
+   * lazily, when the payload is accessed.
+   */
+  private class DeduplicatedStoreObject implements StoreObject {
+    private final StoreObject storeObject;
+
+    DeduplicatedStoreObject(final StoreObject storeObject) {
+      this.storeObject = storeObject;
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+      return storeObject.getObjectName();
+    }
+
+    @Override
+    public String getVersion() {
+      return storeObject.getVersion();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      BufferedInputStream is = new BufferedInputStream(storeObject.getInputStream(), MAX_POINTER_SIZE);
+      try {
+        is.mark(MAX_POINTER_SIZE + 1);
+        Optional<Pointer> pointer = Pointer.parse(is.readNBytes(MAX_POINTER_SIZE));
+        if (pointer.isEmpty()) {
+          is.reset();
+          return is;
+        }
+
+        is.close();
+        return getBlob(pointer.get()).getInputStream();
+      } catch (IOException e) {
+        throw new ObjectStoreException(getObjectName(), "Can't read object", e);
+      }
+    }
+
+    /**
+     * Return the local file of the blob if the object is a pointer. Blobs are kept in the same store
+     * as the objects pointing to them, so objects without a local file aren't sniffed at all.
+     */
+    @Override
+    public Optional<Path> getLocalFile() {
+      Optional<Path> localFile = storeObject.getLocalFile();
+      if (localFile.isEmpty())
+        return localFile;
+
+      Optional<Pointer> pointer = readPointer(getObjectName());
+      if (pointer.isEmpty())
+        return localFile;
+
+      StoreObject blob = getBlob(pointer.get());
+      try {
+        return blob.getLocalFile();
+      } finally {
+        blob.release();
+      }
+    }
+
+    @Override
+    public void release() {
+      storeObject.release();
+    }
+  }
+
+  /**
+   * Content staged for being stored as a blob, either as an object of the store or as a temporary
+   * file.
+   */
+  private record StagedContent(Pointer pointer, ObjectName stagingObject, File tempFile) {
+  }
+
+  private final ObjectStoreService delegate;
+
+  private final int minSize;
+
+  private final ClusterLockFactory lockFactory;
+
+  /**
+   * The digests of the blobs found unreferenced by the previous garbage collection.
+   */
+  private Set<String> garbageCandidates = new HashSet<>();
+
+  /**
+   * Create a decorator for the given object store, locking blobs using node-local locks. Only good
+   * for use in single-instance setups.
+   *
+   * @param delegate the object store to decorate
+   * @param minSize the minimum size of objects to be deduplicated
+   */
+  public DeduplicatingObjectStoreService(final ObjectStoreService delegate, final int minSize) {
+    this(delegate, minSize, new LocalLockFactory());
+  }
+
+  /**
+   * Create a decorator for the given object store.
+   *
+   * @param delegate the object store to decorate
+   * @param minSize the minimum size of objects to be deduplicated
+   * @param lockFactory the factory of the locks of the blobs
+   */
+  public DeduplicatingObjectStoreService(final ObjectStoreService delegate, final int minSize,
+      final ClusterLockFactory lockFactory) {
+    this.delegate = delegate;
+    this.minSize = Math.max(minSize, MAX_POINTER_SIZE);
+    this.lockFactory = lockFactory;
+  }
+
+  public ObjectStoreService getDelegate() {
+    return delegate;
+  }
+
+  private static boolean startsWithMagic(final byte[] head) {
+    return head.length >= POINTER_MAGIC.length
+        && Arrays.equals(head, 0, POINTER_MAGIC.length, POINTER_MAGIC, 0, POINTER_MAGIC.length);
+  }
+
+  private static boolean isReserved(final ObjectName objectName) {
+    return objectName.length() > 0 && AREA.element(0).equals(objectName.element(0));
+  }
+
+  static ObjectName blobName(final String digest) {
+    return BLOB_PREFIX.append(digest.substring(0, 2)).append(digest);
+  }
+
+  /**
+   * Return the name of the marker recording that the given object references the given blob. The
+   * name components of the object are escaped and joined using '.', which is always escaped.
+   */
+  static ObjectName referenceName(final String digest, final ObjectName objectName) {
+    return REFERENCE_PREFIX.append(digest).append(
+        objectName.stream().map(ObjectNames::escape).collect(Collectors.joining(".")));
+  }
+
+  static ObjectName referencingObjectName(final String reference) {
+    return ObjectName.of(Arrays.stream(reference.split("\\.", -1)).map(ObjectNames::unescape).toArray(String[]::new));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public void put(final ObjectName objectName, final String version, final InputStream content, final long length) {
+    if (isReserved(objectName))
+      throw new ObjectStoreException(objectName, "The name is reserved for deduplicated content");
+
+    try {
+      byte[] head = content.readNBytes(minSize + 1);
+      if (head.length <= minSize && !startsWithMagic(head)) {
+        // too small to be worth deduplicating
+        delegate.put(objectName, version, new ByteArrayInputStream(head), head.length);
+        return;
+      }
+
+      StagedContent staged = stage(new SequenceInputStream(new ByteArrayInputStream(head), content), length);
+      try {
+        Pointer pointer = staged.pointer();
+        Lock lock = lockBlob(pointer.digest());
+        try {
+          storeBlob(staged);
+          addReference(pointer.digest(), objectName);
+
+          byte[] pointerBytes = pointer.toBytes();
+          delegate.put(objectName, version, new ByteArrayInputStream(pointerBytes), pointerBytes.length);
+        } finally {
+          releaseOnCompletion(lock);
+        }
+      } finally {
+        if (null != staged.tempFile())
+          staged.tempFile().delete();
+      }
+    } catch (IOException e) {
+      throw new ObjectStoreException(objectName, "Can't store content", e);
+    }
+  }
+
+  /**
+   * Stage the content in order to determine its digest. The content is staged in the object store if
+   * it supports renaming and in a temporary file otherwise.
+   */
+  private StagedContent stage(final InputStream content, final long length) throws IOException {
+    MessageDigest digest = newDigest();
+
+    if (delegate.supportsRename()) {
+      ObjectName staging = STAGING_PREFIX.append(UUID.randomUUID().toString());
+      SizeTrackingInputStream sizeTrackingInputStream = new SizeTrackingInputStream(content);
+      delegate.put(staging, NEW_VERSION, new DigestInputStream(sizeTrackingInputStream, digest), length);
+
+      return new StagedContent(
+          new Pointer(HexFormat.of().formatHex(digest.digest()), sizeTrackingInputStream.getBytesRead()), staging,
+          null);
+    }
+
+    File tempFile = File.createTempFile("neverpile-eureka-dedup-", null);
+    try (OutputStream os = new FileOutputStream(tempFile)) {
+      SizeTrackingOutputStream sizeTrackingOutputStream = new SizeTrackingOutputStream(os);
+      content.transferTo(new DigestOutputStream(sizeTrackingOutputStream, digest));
+      return new StagedContent(
+          new Pointer(HexFormat.of().formatHex(digest.digest()), sizeTrackingOutputStream.getBytesWritten()), null,
+          tempFile);
+    } catch (IOException | RuntimeException e) {
+      tempFile.delete();
+      throw e;
+    }
+  }
+
+  /**
+   * Store the staged content as a blob unless a blob with the same digest exists already. Must be
+   * called holding the lock of the blob.
+   */
+  private void storeBlob(final StagedContent staged) throws IOException {
+    ObjectName blob = blobName(staged.pointer().digest());
+    boolean exists = delegate.checkObjectExists(blob);
+
+    if (null != staged.stagingObject()) {
+      if (exists)
+        delegate.delete(staged.stagingObject());
+      else
+        delegate.rename(staged.stagingObject(), blob);
+    } else if (!exists) {
+      try (InputStream is = new FileInputStream(staged.tempFile())) {
+        delegate.put(blob, NEW_VERSION, is, staged.pointer().length());
+      }
+    }
+  }
+
+  /**
+   * Record that the given object references the blob with the given digest. Must be called holding
+   * the lock of the blob.
+   */
+  private void addReference(final String digest, final ObjectName objectName) {
+    ObjectName reference = referenceName(digest, objectName);
+    if (!delegate.checkObjectExists(reference))
+      delegate.put(reference, NEW_VERSION, InputStream.nullInputStream(), 0);
+  }
+
+  /**
+   * Acquire the lock of the blob with the given digest, waiting for at most
+   * {@value #LOCK_TIMEOUT_SECONDS} seconds.
+   */
+  private Lock lockBlob(final String digest) {
+    Lock lock = lockFactory.writeLock(LOCK_PREFIX + digest);
+    try {
+      if (lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        return lock;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new ObjectStoreException(blobName(digest), "Can't acquire the lock of the blob");
+  }
+
+  /**
+   * Release the lock of a blob once the current transaction has completed, so that concurrent
+   * transactions and the garbage collection only get to see the outcome of the changes made by this
+   * one. Without a transaction, the lock is released right away.
+   */
+  private void releaseOnCompletion(final Lock lock) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      lock.unlock();
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCompletion(final int status) {
+        lock.unlock();
+      }
+    });
+  }
+
+  private StoreObject getBlob(final Pointer pointer) {
+    ObjectName blob = blobName(pointer.digest());
+    StoreObject storeObject = delegate.get(blob);
+    if (null == storeObject)
+      throw new ObjectNotFoundException(blob);
+    return storeObject;
+  }
+
+  /**
+   * Read the pointer held by the given object, if any. Only the first {@value #MAX_POINTER_SIZE}
+   * bytes of the object are retrieved.
+   */
+  private Optional<Pointer> readPointer(final ObjectName objectName) {
+    StoreObject head = delegate.get(objectName, 0, MAX_POINTER_SIZE);
+    return null != head ? readPointer(head) : Optional.empty();
+  }
+
+  /**
+   * Read the pointer held by the given object, if any.
+   */
+  private Optional<Pointer> readPointer(final StoreObject storeObject) {
+    try (InputStream is = storeObject.getInputStream()) {
+      return Pointer.parse(is.readNBytes(MAX_POINTER_SIZE));
+    } catch (IOException e) {
+      throw new ObjectStoreException(storeObject.getObjectName(), "Can't read object", e);
+    }
+  }
+
+  @Override
+  public Stream<StoreObject> list(final ObjectName prefix) {
+    return delegate.list(prefix) //
+        .filter(o -> prefix.length() > 0 || !isReserved(o.getObjectName())) //
+        .map(DeduplicatedStoreObject::new);
+  }
+
+  @Override
+  public StoreObject get(final ObjectName objectName) {
+    StoreObject storeObject = delegate.get(objectName);
+    return null != storeObject ? new DeduplicatedStoreObject(storeObject) : null;
+  }
+
+  @Override
+  public StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    StoreObject storeObject = delegate.get(objectName, 0, MAX_POINTER_SIZE);
+    if (null == storeObject)
+      return null;
+
+    Optional<Pointer> pointer = readPointer(storeObject);
+    if (pointer.isEmpty())
+      return delegate.get(objectName, offset, length);
+
+    ObjectName blob = blobName(pointer.get().digest());
+    StoreObject range = delegate.get(blob, offset, length);
+    if (null == range)
+      throw new ObjectNotFoundException(blob);
+
+    return new StoreObject() {
+      @Override
+      public ObjectName getObjectName() {
+        return storeObject.getObjectName();
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        return range.getInputStream();
+      }
+
+      @Override
+      public String getVersion() {
+        return storeObject.getVersion();
+      }
+    };
+  }
+
+  @Override
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    delegate.getMany(objectNames).forEach((n, o) -> result.put(n, new DeduplicatedStoreObject(o)));
+    return result;
+  }
+
+  @Override
+  public boolean supportsRename() {
+    return delegate.supportsRename();
+  }
+
+  /**
+   * Rename an object. If the object points to a blob, a reference marker for the new name is added,
+   * as the blob would otherwise be considered garbage.
+   */
+  @Override
+  public void rename(final ObjectName from, final ObjectName to) {
+    if (isReserved(to))
+      throw new ObjectStoreException(to, "The name is reserved for deduplicated content");
+
+    Optional<Pointer> pointer = readPointer(from);
+    if (pointer.isEmpty()) {
+      delegate.rename(from, to);
+      return;
+    }
+
+    Lock lock = lockBlob(pointer.get().digest());
+    try {
+      addReference(pointer.get().digest(), to);
+      delegate.rename(from, to);
+    } finally {
+      releaseOnCompletion(lock);
+    }
+  }
+
+  @Override
+  public void delete(final ObjectName objectName) {
+    // stale reference markers are removed by the garbage collection
+    delegate.delete(objectName);
+  }
+
+  @Override
+  public boolean checkObjectExists(final ObjectName objectName) {
+    return delegate.checkObjectExists(objectName);
+  }
+
+  /**
+   * Remove stale reference markers and delete blobs which have been found unreferenced by this and
+   * the previous collection. Blobs locked by transactions in progress are skipped. Must be called
+   * within a transaction and should not be called concurrently, not even by different instances
+   * sharing the object store.
+   *
+   * @return the number of blobs deleted
+   */
+  public synchronized int collectGarbage() {
+    Set<String> blobs = new LinkedHashSet<>();
+    for (String fanOut : childNames(BLOB_PREFIX))
+      blobs.addAll(childNames(BLOB_PREFIX.append(fanOut)));
+
+    Set<String> candidates = new HashSet<>();
+    int deleted = 0;
+    for (String digest : blobs) {
+      if (collectGarbage(digest, true, candidates))
+        deleted++;
+    }
+
+    // markers referencing blobs which don't exist
+    for (String digest : childNames(REFERENCE_PREFIX)) {
+      if (!blobs.contains(digest))
+        collectGarbage(digest, false, candidates);
+    }
+    garbageCandidates = candidates;
+
+    LOGGER.debug("Deleted {} unreferenced blobs, {} more are candidates for deletion", deleted, candidates.size());
+    return deleted;
+  }
+
+  /**
+   * Remove the stale reference markers of the blob with the given digest and delete the blob if it
+   * has been found unreferenced by the previous collection as well. The blob is skipped if its lock
+   * is held by a transaction in progress. If anything has been deleted, the lock is held until the
+   * current transaction has completed.
+   *
+   * @return whether the blob has been deleted
+   */
+  private boolean collectGarbage(final String digest, final boolean blobExists, final Set<String> candidates) {
+    Lock lock = lockFactory.writeLock(LOCK_PREFIX + digest);
+    if (!lock.tryLock())
+      return false;
+
+    boolean modified = false;
+    try {
+      boolean referenced = false;
+      for (String reference : childNames(REFERENCE_PREFIX.append(digest))) {
+        if (readPointer(referencingObjectName(reference)).map(p -> p.digest().equals(digest)).orElse(false)) {
+          referenced = true;
+        } else {
+          delegate.delete(REFERENCE_PREFIX.append(digest).append(reference));
+          modified = true;
+        }
+      }
+
+      if (referenced || !blobExists)
+        return false;
+
+      if (!garbageCandidates.contains(digest)) {
+        candidates.add(digest);
+        return false;
+      }
+
+      delegate.delete(blobName(digest));
+      modified = true;
+      return true;
+    } finally {
+      if (modified)
+        releaseOnCompletion(lock);
+      else
+        lock.unlock();
+    }
+  }
+
+  /**
+   * Return the last name components of the direct children of the given prefix.
+   */
+  private Set<String> childNames(final ObjectName prefix) {
+    try (Stream<StoreObject> children = delegate.list(prefix)) {
+      return children //
+          .map(StoreObject::getObjectName) //
+          .filter(n -> n.length() == prefix.length() + 1) //
+          .map(ObjectName::tail) //
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+    } catch (ObjectNotFoundException e) {
+      return Collections.emptySet();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.util.concurrent.locks.Lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.tx.lock.ClusterLockFactory;
+
+/**
+ * Periodically collects the blobs of the {@link DeduplicatingObjectStoreService} which are no longer
+ * referenced. Only one instance of a cluster collects garbage at a time.
+ */
+public class DeduplicationGarbageCollector {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeduplicationGarbageCollector.class);
+
+  private static final String LOCK_ID = "neverpile-eureka-deduplication-gc";
+
+  @Autowired
+  private ObjectStoreService objectStore;
+
+  @Autowired
+  private ClusterLockFactory lockFactory;
+
+  @Scheduled(fixedDelayString = "${neverpile-eureka.deduplication.gc-interval:3600000}",
+      initialDelayString = "${neverpile-eureka.deduplication.gc-interval:3600000}")
+  @Transactional
+  public void collectGarbage() {
+    if (!(objectStore instanceof DeduplicatingObjectStoreService deduplicatingObjectStore)) {
+      LOGGER.warn("The object store {} isn't deduplicating, not collecting garbage", objectStore);
+      return;
+    }
+
+    Lock lock = lockFactory.writeLock(LOCK_ID);
+    if (lock.tryLock()) {
+      try {
+        int deleted = deduplicatingObjectStore.collectGarbage();
+        LOGGER.info("Deduplication garbage collection deleted {} unreferenced blobs", deleted);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * A {@link CompressionCodec} producing LZ4 frames. LZ4 trades compression ratio for very high
+ * compression and decompression speed.
+ */
+public class Lz4CompressionCodec implements CompressionCodec {
+  static final byte ID = 1;
+
+  @Override
+  public byte getId() {
+    return ID;
+  }
+
+  @Override
+  public OutputStream compress(final OutputStream out) throws IOException {
+    return new LZ4FrameOutputStream(out);
+  }
+
+  @Override
+  public InputStream decompress(final InputStream in) throws IOException {
+    return new LZ4FrameInputStream(in);
+  }
+}
@@ -0,0 +1,45 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+/**
+ * A {@link CompressionCodec} producing Zstandard frames. Zstandard achieves considerably better
+ * compression ratios than LZ4 at still moderate cost. Requires <code>zstd-jni</code> on the class
+ * path.
+ */
+public class ZstdCompressionCodec implements CompressionCodec {
+  static final byte ID = 2;
+
+  static final int DEFAULT_LEVEL = 3;
+
+  private final int level;
+
+  /**
+   * Create a codec compressing at the given level.
+   *
+   * @param level the Zstandard compression level
+   */
+  public ZstdCompressionCodec(final int level) {
+    this.level = level;
+  }
+
+  @Override
+  public byte getId() {
+    return ID;
+  }
+
+  @Override
+  public OutputStream compress(final OutputStream out) throws IOException {
+    return new ZstdOutputStream(out, level);
+  }
+
+  @Override
+  public InputStream decompress(final InputStream in) throws IOException {
+    return new ZstdInputStream(in);
+  }
+}
@@ -2,12 +2,12 @@ package com.neverpile.eureka.impl.tasks;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -65,7 +65,7 @@ public class LocalTaskQueue<T> implements TaskQueue<T> {
     }
   }
 
-  private Map<String, CacheData<T>> queueCache = new HashMap<>();
+  private final Map<String, CacheData<T>> queueCache = new ConcurrentHashMap<>();
 
   private final ExecutorService notificationExecutor = Executors.newFixedThreadPool(10);
 
@@ -117,11 +117,8 @@ public class LocalTaskQueue<T> implements TaskQueue<T> {
 
   @Override
   public boolean removeProcessedElement(final String key) {
-    if (queueCache.containsKey(key) && State.INPROCESS == queueCache.get(key).getState()) {
-      queueCache.remove(key);
-      return true;
-    }
-    return false;
+    CacheData<T> data = queueCache.get(key);
+    return null != data && State.INPROCESS == data.getState() && queueCache.remove(key, data);
   }
 
   @Override
@@ -65,7 +65,10 @@ public class LocalLockFactory implements ClusterLockFactory {
       }
 
       public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
-        return delegate.tryLock(time, unit);
+        boolean success = delegate.tryLock(time, unit);
+        if (success)
+          incrementHoldCount();
+        return success;
       }
 
       public void unlock() {
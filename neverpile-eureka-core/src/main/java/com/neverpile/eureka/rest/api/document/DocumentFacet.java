@@ -233,6 +233,23 @@ public interface DocumentFacet<V> {
     return null;
   }
 
+  /**
+   * Called during the retrieval of query results in order to populate the response DTO from the
+   * data indexed for this facet by {@link #getIndexData(Document)} instead of the document itself.
+   * Facets should only do so if the index data represents the facet faithfully, otherwise they
+   * return <code>false</code> and {@link #onRetrieve(Document, DocumentDto)} is called with the
+   * document retrieved from the store.
+   *
+   * @param documentId the id of the document
+   * @param indexData the data indexed for this facet, which may be a null node
+   * @param responseDto the response DTO to be populated
+   * @return <code>true</code> if the response DTO has been populated
+   */
+  default boolean onRetrieveFromIndex(final String documentId, final JsonNode indexData,
+      final DocumentDto responseDto) {
+    return false;
+  }
+
   /**
    * Can contribute contextual information for authorization checks related to some document by providing an
    * implementation of {@link AuthorizationContext}.
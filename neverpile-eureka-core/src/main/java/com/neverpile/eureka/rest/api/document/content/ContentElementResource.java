@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
@@ -31,6 +33,7 @@ import org.springframework.hateoas.IanaLinkRelations;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -48,12 +51,15 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.eureka.api.ContentElementService;
 import com.neverpile.eureka.api.DocumentIdGenerationStrategy;
 import com.neverpile.eureka.api.DocumentService;
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
 import com.neverpile.eureka.model.ContentElement;
 import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.rest.api.document.DocumentDto;
@@ -63,6 +69,7 @@ import com.neverpile.eureka.rest.api.document.core.ModificationDateFacet;
 import com.neverpile.eureka.rest.api.exception.ConflictException;
 import com.neverpile.eureka.rest.api.exception.NotAcceptableException;
 import com.neverpile.eureka.rest.api.exception.NotFoundException;
+import com.neverpile.eureka.util.BoundedInputStream;
 import com.neverpile.urlcrypto.PreSignedUrlEnabled;
 
 import io.micrometer.core.annotation.Timed;
@@ -78,6 +85,21 @@ public class ContentElementResource {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ContentElementResource.class);
 
+  /*
+   * Request attributes used to hand a file over to the servlet container's sendfile support (see
+   * Tomcat's DefaultServlet).
+   */
+  private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+  /**
+   * Minimum size of a response body for it to be delivered using sendfile. Smaller bodies are
+   * cheaper to just copy. The value matches the default of Tomcat's DefaultServlet.
+   */
+  private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
   private static final Type CE_DTO_TYPE = new TypeToken<List<ContentElementDto>>() {
   }.getType();
 
@@ -118,7 +140,7 @@ public class ContentElementResource {
       "operation", "retrieve", "target", "content"
   }, value = "eureka.content.get")
   public ResponseEntity<?> getById(@PathVariable("documentID") final String documentId,
-      @PathVariable("element") final String contentId) {
+      @PathVariable("element") final String contentId, @RequestHeader final HttpHeaders requestHeaders) {
     // preconditions
     documentResource.validateDocumentId(documentId);
     assertContentExists(documentId, contentId);
@@ -131,7 +153,7 @@ public class ContentElementResource {
         e -> e.getId().equals(contentId)).findFirst().orElseThrow(
             () -> new NotFoundException("Content element not found"));
 
-    return returnSingleContentElement(document, contentElement, contentElementService);
+    return returnSingleContentElement(document, contentElement, contentElementService, requestHeaders);
   }
 
   public enum Return {
@@ -157,7 +179,8 @@ public class ContentElementResource {
   public ResponseEntity<?> query(@PathVariable("documentID") final String documentId,
       @RequestParam(name = "role", required = false) final List<String> roles,
       @RequestParam(name = "return", required = false, defaultValue = "first") final Return ret,
-      @RequestHeader(name = "Accept") final List<String> acceptHeader) {
+      @RequestHeader(name = "Accept") final List<String> acceptHeader,
+      @RequestHeader final HttpHeaders requestHeaders) {
     // preconditions
     documentResource.validateDocumentId(documentId);
 
@@ -165,11 +188,13 @@ public class ContentElementResource {
     Document document = documentService.getDocument(documentId) //
         .orElseThrow(() -> new NotFoundException("Document not found"));
 
-    return returnMatches(ret, document, applyFilters(roles, acceptHeader, document), contentElementService);
+    return returnMatches(ret, document, applyFilters(roles, acceptHeader, document), contentElementService,
+        requestHeaders);
   }
 
   static ResponseEntity<?> returnMatches(final Return ret, final Document document,
-      final List<ContentElement> matches, final ContentElementService contentElementService) {
+      final List<ContentElement> matches, final ContentElementService contentElementService,
+      final HttpHeaders requestHeaders) {
     // return mode
     switch (ret){
       case only :
@@ -181,7 +206,7 @@ public class ContentElementResource {
         if (matches.isEmpty())
           throw new NotFoundException("No matching content element");
 
-        return returnSingleContentElement(document, matches.get(0), contentElementService);
+        return returnSingleContentElement(document, matches.get(0), contentElementService, requestHeaders);
 
       case all :
         return returnMultipleElementsAsMultipart(document, matches, contentElementService);
@@ -220,7 +245,8 @@ public class ContentElementResource {
       final Document document, final List<ContentElement> matches,  final ContentElementService contentElementService) {
     MultiValueMap<String, HttpEntity<?>> mbb = new LinkedMultiValueMap<>(matches.size());
 
-    matches.forEach(ce -> mbb.add(ce.getRole(), returnSingleContentElement(document, ce, contentElementService)));
+    matches.forEach(
+        ce -> mbb.add(ce.getRole(), returnSingleContentElement(document, ce, contentElementService, null)));
 
     return ResponseEntity.ok() //
         .lastModified(document.getDateModified() != null
@@ -232,11 +258,86 @@ public class ContentElementResource {
         .body(mbb);
   }
 
-  private static ResponseEntity<?> returnSingleContentElement(final Document document, final ContentElement contentElement, final ContentElementService contentElementService) {
-    // retrieve content
-    InputStream contentElementInputStream = contentElementService.getContentElement(document.getDocumentId(),
-        contentElement.getId());
-    if (contentElementInputStream == null)
+  /**
+   * Return a single content element. Unless the element is returned as part of a multipart response
+   * (<code>requestHeaders</code> being <code>null</code>), conditional and range requests are
+   * honored:
+   * <ul>
+   * <li>if an <code>If-None-Match</code> header matches the element's ETag, a body-less
+   * <code>304 Not Modified</code> is returned without touching the backing store,
+   * <li>a single byte range requested via <code>Range</code> (and not invalidated by a
+   * non-matching <code>If-Range</code>) is returned as <code>206 Partial Content</code> and only
+   * the requested range is read from the backing store. Unsatisfiable ranges yield a
+   * <code>416 Range Not Satisfiable</code>. Requests for multiple ranges are answered with the
+   * whole element.
+   * </ul>
+   */
+  private static ResponseEntity<?> returnSingleContentElement(final Document document,
+      final ContentElement contentElement, final ContentElementService contentElementService,
+      final HttpHeaders requestHeaders) {
+    // try to canonicalize the algorithm name
+    String digestAlgorithmName = contentElement.getDigest().getAlgorithm().name().toLowerCase().replaceAll("_", "-");
+    String encodedDigest = Base64.getEncoder().encodeToString(contentElement.getDigest().getBytes());
+    // yes, the specification proscribes the quotes
+    String eTag = '"' + digestAlgorithmName + "_" + encodedDigest + '"';
+    long lastModified = document.getDateModified() != null
+        ? document.getDateModified().toEpochMilli()
+        : document.getDateCreated() != null
+            ? document.getDateCreated().toEpochMilli()
+            : Instant.now().toEpochMilli();
+
+    if (null != requestHeaders && matchesIfNoneMatch(requestHeaders, eTag))
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED) //
+          .lastModified(lastModified) //
+          .eTag(eTag) //
+          .build();
+
+    long length = contentElement.getLength();
+    HttpRange range = null != requestHeaders ? requestedRange(requestHeaders, eTag) : null;
+    long rangeStart = 0;
+    long rangeEnd = length - 1;
+    if (null != range) {
+      try {
+        rangeStart = range.getRangeStart(length);
+        rangeEnd = range.getRangeEnd(length);
+      } catch (IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE) //
+            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length) //
+            .eTag(eTag) //
+            .build();
+      }
+    }
+
+    // try zero-copy delivery of file-backed content
+    long responseLength = rangeEnd - rangeStart + 1;
+    HttpServletRequest sendfileRequest = null != requestHeaders && responseLength >= SENDFILE_THRESHOLD
+        ? sendfileCapableRequest()
+        : null;
+    StoreObject storeObject = null != sendfileRequest
+        ? contentElementService.getContentElementObject(document.getDocumentId(), contentElement.getId())
+        : null;
+    boolean sendfile = null != storeObject
+        && trySendfile(sendfileRequest, document, contentElement, storeObject, rangeStart, rangeEnd + 1);
+
+    // the store object may hold on to an open file until its payload is read
+    boolean readStoreObject = !sendfile && null != storeObject
+        && (null == range || storeObject.getLocalFile().isPresent());
+    if (null != storeObject && !readStoreObject)
+      storeObject.release();
+
+    // retrieve content - preferably from the store object we already resolved
+    InputStream contentElementInputStream;
+    if (sendfile)
+      contentElementInputStream = null;
+    else if (readStoreObject)
+      contentElementInputStream = openRange(storeObject, rangeStart, null != range ? responseLength : -1);
+    else if (null != range)
+      contentElementInputStream = contentElementService.getContentElement(document.getDocumentId(),
+          contentElement.getId(), rangeStart, responseLength);
+    else
+      contentElementInputStream = contentElementService.getContentElement(document.getDocumentId(),
+          contentElement.getId());
+    if (!sendfile && contentElementInputStream == null)
       throw new NotFoundException("Object not found in backing store");
 
     LOGGER.info("add Content response");
@@ -256,28 +357,115 @@ public class ContentElementResource {
     }
     ContentDisposition contentDisposition = cdBuilder.build();
 
-    // try to canonicalize the algorithm name
-    String digestAlgorithmName = contentElement.getDigest().getAlgorithm().name().toLowerCase().replaceAll("_", "-");
-    String encodedDigest = Base64.getEncoder().encodeToString(contentElement.getDigest().getBytes());
+    ResponseEntity.BodyBuilder response = null != range
+        ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT) //
+            .header(HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + length)
+        : ResponseEntity.ok();
 
-    return ResponseEntity.ok() //
-        .lastModified(document.getDateModified() != null
-            ? document.getDateModified().toEpochMilli()
-            : document.getDateCreated() != null
-                ? document.getDateCreated().toEpochMilli()
-                : Instant.now().toEpochMilli()) //
+    response //
+        .lastModified(lastModified) //
         .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition.toString()) //
         .header(HttpHeaders.CONTENT_TYPE, contentElement.getType().toString()) //
-        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(contentElement.getLength())) //
+        .header(HttpHeaders.CONTENT_LENGTH, Long.toString(responseLength)) //
+        .header(HttpHeaders.ACCEPT_RANGES, "bytes") //
         .header(VERSION_TIMESTAMP_HEADER,
             document.getVersionTimestamp() != null ? document.getVersionTimestamp().toString() : "-") //
-        // add ETag header - yes, the specification proscribes the quotes
-        .header(HttpHeaders.ETAG, '"' + digestAlgorithmName + "_" + encodedDigest + '"') //
-        .header("Digest", digestAlgorithmName + "=" + encodedDigest) //
-        .body(new InputStreamResource( //
+        .header(HttpHeaders.ETAG, eTag) //
+        .header("Digest", digestAlgorithmName + "=" + encodedDigest);
+
+    // with sendfile the container writes the body once the headers have been sent
+    return sendfile
+        ? response.build()
+        : response.body(new InputStreamResource( //
             contentElementInputStream, document.getDocumentId() + "/" + contentElement.getId()));
   }
 
+  /**
+   * Return the current request if the servlet container supports sendfile for it (Tomcat does for
+   * unencrypted NIO connections).
+   *
+   * @return the request or <code>null</code> if sendfile isn't supported
+   */
+  private static HttpServletRequest sendfileCapableRequest() {
+    if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes))
+      return null;
+
+    HttpServletRequest request = attributes.getRequest();
+    return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR)) ? request : null;
+  }
+
+  /**
+   * Try to arrange for the given range of a content element to be written straight from the file
+   * backing it to the socket by the servlet container, bypassing the JVM heap. This is possible if
+   * the store object holding the content element is a local file which still exists. Otherwise the
+   * caller falls back to streaming the already resolved store object.
+   *
+   * @return <code>true</code> if the container will deliver the body
+   */
+  private static boolean trySendfile(final HttpServletRequest request, final Document document,
+      final ContentElement contentElement, final StoreObject storeObject, final long start, final long end) {
+    Optional<Path> file = storeObject.getLocalFile();
+    // the file might have been superseded and purged since the object was resolved
+    if (file.isEmpty() || !Files.isReadable(file.get()))
+      return false;
+
+    try {
+      // the container insists on canonical paths
+      request.setAttribute(SENDFILE_FILENAME_ATTR, file.get().toFile().getCanonicalPath());
+      request.setAttribute(SENDFILE_START_ATTR, start);
+      request.setAttribute(SENDFILE_END_ATTR, end);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      LOGGER.warn("Can't use sendfile for {}/{}", document.getDocumentId(), contentElement.getId(), e);
+      request.removeAttribute(SENDFILE_FILENAME_ATTR);
+      return false;
+    }
+  }
+
+  private static InputStream openRange(final StoreObject storeObject, final long offset, final long length) {
+    InputStream is = storeObject.getInputStream();
+    try {
+      is.skipNBytes(offset);
+    } catch (IOException e) {
+      throw new ContentElementService.ContentElementException("Can't skip to offset " + offset, e);
+    }
+    return length < 0 ? is : new BoundedInputStream(is, length);
+  }
+
+  private static boolean matchesIfNoneMatch(final HttpHeaders requestHeaders, final String eTag) {
+    try {
+      // If-None-Match uses the weak comparison function
+      return requestHeaders.getIfNoneMatch().stream().anyMatch(
+          c -> c.equals("*") || c.replaceFirst("^W/", "").equals(eTag));
+    } catch (IllegalArgumentException e) {
+      // unparseable header: treat as absent
+      return false;
+    }
+  }
+
+  /**
+   * Determine the single byte range to be served for the given request.
+   *
+   * @return the requested range or <code>null</code> if the whole element shall be served
+   */
+  private static HttpRange requestedRange(final HttpHeaders requestHeaders, final String eTag) {
+    if (null == requestHeaders.getFirst(HttpHeaders.RANGE))
+      return null;
+
+    // a range is only served if the representation didn't change - If-Range uses strong comparison
+    String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+    if (null != ifRange && !ifRange.equals(eTag))
+      return null;
+
+    try {
+      List<HttpRange> ranges = requestHeaders.getRange();
+      return ranges.size() == 1 ? ranges.get(0) : null;
+    } catch (IllegalArgumentException e) {
+      // syntactically invalid Range headers must be ignored
+      return null;
+    }
+  }
+
   @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   public ResponseEntity<DocumentDto> createDocumentFromMultipart(
       // mapped using AllRequestPartsMethodArgumentResolver
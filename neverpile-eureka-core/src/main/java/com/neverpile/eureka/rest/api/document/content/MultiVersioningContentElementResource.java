@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
@@ -55,7 +56,8 @@ public class MultiVersioningContentElementResource {
       @PathVariable("versionTimestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant versionTimestamp,
       @RequestParam(name = "role", required = false) final List<String> roles,
       @RequestParam(name = "return", required = false, defaultValue = "first") final Return ret,
-      @RequestHeader(name = "Accept") final List<String> acceptHeader) {
+      @RequestHeader(name = "Accept") final List<String> acceptHeader,
+      @RequestHeader final HttpHeaders requestHeaders) {
     // preconditions
     documentResource.validateDocumentId(documentId);
 
@@ -63,6 +65,6 @@ public class MultiVersioningContentElementResource {
     Document document = multiVersioningDocumentService.getDocumentVersion(documentId, versionTimestamp) //
         .orElseThrow(() -> new NotFoundException("Document not found"));
 
-    return ContentElementResource.returnMatches(ret, document, ContentElementResource.applyFilters(roles, acceptHeader, document), contentElementService);
+    return ContentElementResource.returnMatches(ret, document, ContentElementResource.applyFilters(roles, acceptHeader, document), contentElementService, requestHeaders);
   }
 }
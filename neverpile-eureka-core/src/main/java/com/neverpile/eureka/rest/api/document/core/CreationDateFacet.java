@@ -53,6 +53,14 @@ public class CreationDateFacet implements DocumentFacet<Instant> {
     }
   }
 
+  @Override
+  public boolean onRetrieveFromIndex(final String documentId, final JsonNode indexData, final DocumentDto dto) {
+    if (indexData.isNumber()) {
+      dto.setFacet(getName(), Instant.ofEpochMilli(indexData.longValue()));
+    }
+    return true;
+  }
+
   @Override
   public Schema getIndexSchema() {
     return new Field(getName(), Type.DateTime);
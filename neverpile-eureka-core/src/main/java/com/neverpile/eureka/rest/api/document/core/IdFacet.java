@@ -61,6 +61,13 @@ public class IdFacet implements DocumentFacet<String> {
     dto.add(linkTo(DocumentResource.class).slash(document.getDocumentId()).withSelfRel());
   }
 
+  @Override
+  public boolean onRetrieveFromIndex(final String documentId, final JsonNode indexData, final DocumentDto dto) {
+    dto.setDocumentId(documentId);
+    dto.add(linkTo(DocumentResource.class).slash(documentId).withSelfRel());
+    return true;
+  }
+
   @Override
   public Schema getIndexSchema() {
     return new Field(getName(), Type.Keyword);
@@ -0,0 +1,705 @@
+package com.neverpile.eureka.tx.wal.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.neverpile.common.opentracing.Tag;
+import com.neverpile.common.opentracing.TraceInvocation;
+import com.neverpile.eureka.tx.wal.TransactionWAL.TransactionalAction;
+import com.neverpile.eureka.tx.wal.WALException;
+import com.neverpile.eureka.tx.wal.WriteAheadLog;
+import com.neverpile.eureka.tx.wal.util.ActionEntry;
+import com.neverpile.eureka.tx.wal.util.Entry;
+import com.neverpile.eureka.tx.wal.util.EventEntry;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A {@link WriteAheadLog} backed by a sequence of local segment files. Each entry is written as a
+ * binary record consisting of the payload length, a CRC32C checksum and the payload itself. Only
+ * the {@link TransactionalAction} carried by an action entry is stored in Java-serialized form.
+ * <p>
+ * An in-memory index maps each incomplete transaction to the positions of its records, so that
+ * applying the actions of a transaction only reads the records of that transaction. Once all
+ * transactions with records in the oldest segments have completed, those segments are deleted as a
+ * whole.
+ * <p>
+ * If group commit is enabled, concurrent callers of {@link #sync()} share a single
+ * {@link FileChannel#force(boolean)}: the first caller becomes the leader, waits up to the
+ * configured maximum time for further committers to join, and then flushes on behalf of all of
+ * them. The batch size and fsync latency are published as the metrics
+ * <code>wal.sync.batch.size</code> and <code>wal.sync.latency</code>.
+ * <p>
+ * This implementation is <em>not</em> suitable for distributed installations.
+ */
+@Component
+@Lazy
+public class SegmentedFileWAL implements WriteAheadLog {
+  protected static final Logger logger = LoggerFactory.getLogger(SegmentedFileWAL.class);
+
+  private static final int SEGMENT_MAGIC = 0x4e50574c; // "NPWL"
+
+  private static final int SEGMENT_VERSION = 1;
+
+  private static final int SEGMENT_HEADER_SIZE = 8;
+
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private static final byte RECORD_ACTION = 1;
+
+  private static final byte RECORD_EVENT = 2;
+
+  private static final Pattern SEGMENT_NAME = Pattern.compile("tx-([0-9a-f]{16})\\.seg");
+
+  /**
+   * A single segment file together with the set of incomplete transactions having records in it.
+   */
+  private static class Segment {
+    final long id;
+
+    final Path path;
+
+    final FileChannel channel;
+
+    final Set<String> liveTransactions = new HashSet<>();
+
+    long size;
+
+    Segment(final long id, final Path path, final FileChannel channel, final long size) {
+      this.id = id;
+      this.path = path;
+      this.channel = channel;
+      this.size = size;
+    }
+  }
+
+  /**
+   * The location of an action record within a segment.
+   */
+  private static class RecordPointer {
+    final Segment segment;
+
+    final long position;
+
+    final int length;
+
+    final ActionType type;
+
+    RecordPointer(final Segment segment, final long position, final int length, final ActionType type) {
+      this.segment = segment;
+      this.position = position;
+      this.length = length;
+      this.type = type;
+    }
+  }
+
+  @Value("${neverpile-eureka.wal.directory:./data}")
+  String logFileDirectory = "./data";
+
+  @Value("${neverpile-eureka.wal.segment-size:4194304}")
+  long segmentSize = 4L * 1024 * 1024;
+
+  @Value("${neverpile-eureka.wal.group-commit.enabled:false}")
+  boolean groupCommitEnabled = false;
+
+  @Value("${neverpile-eureka.wal.group-commit.max-wait-micros:500}")
+  long groupCommitMaxWaitMicros = 500;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private final ReadWriteLock fileLock = new ReentrantReadWriteLock(true);
+
+  /*
+   * State of the group commit flush barrier. appendSequence counts appended records and is guarded
+   * by the fileLock, syncedSequence is the highest record known to be durable. Both are only
+   * compared while holding the flushLock.
+   */
+  private final Lock flushLock = new ReentrantLock();
+
+  private final Condition flushCompleted = flushLock.newCondition();
+
+  private volatile long appendSequence;
+
+  private long syncedSequence;
+
+  private boolean flushInProgress;
+
+  private int committersWaiting;
+
+  private DistributionSummary syncBatchSize;
+
+  private Timer syncLatency;
+
+  private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+  private final Map<String, List<RecordPointer>> index = new HashMap<>();
+
+  private Segment currentSegment;
+
+  public SegmentedFileWAL() {
+  }
+
+  public SegmentedFileWAL(final String logFileDirectory, final long segmentSize) {
+    this.logFileDirectory = logFileDirectory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Enable or disable group commit for {@link #sync()}.
+   *
+   * @param enabled whether to enable group commit
+   * @param maxWaitMicros the maximum time the flushing committer waits for others to join
+   */
+  public void setGroupCommit(final boolean enabled, final long maxWaitMicros) {
+    this.groupCommitEnabled = enabled;
+    this.groupCommitMaxWaitMicros = maxWaitMicros;
+  }
+
+  /**
+   * Set the registry the WAL's metrics are published to. Must be called before {@link #start()}.
+   *
+   * @param meterRegistry the registry to use
+   */
+  public void setMeterRegistry(final MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    MeterRegistry registry = null != meterRegistry ? meterRegistry : Metrics.globalRegistry;
+    syncBatchSize = DistributionSummary.builder("wal.sync.batch.size") //
+        .description("Number of committers covered by a single WAL fsync") //
+        .register(registry);
+    syncLatency = Timer.builder("wal.sync.latency") //
+        .description("Duration of WAL fsyncs") //
+        .register(registry);
+
+    File dir = new File(logFileDirectory);
+    dir.mkdirs();
+
+    migrateLegacyLog(dir);
+
+    TreeMap<Long, Path> existing = findSegments(dir.toPath());
+
+    rollbackIncompleteTransactions(existing);
+
+    // all transactions are resolved now - start over with an empty log
+    for (Path p : existing.values())
+      Files.delete(p);
+
+    long nextId = existing.isEmpty() ? 1 : existing.lastKey() + 1;
+    fileLock.writeLock().lock();
+    try {
+      currentSegment = createSegment(nextId);
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Recover a log written by {@link FileBasedWAL} (if present) before the segmented log takes over.
+   */
+  private void migrateLegacyLog(final File dir) throws IOException {
+    File legacy = new File(dir, "tx.log");
+    if (!legacy.exists())
+      return;
+
+    if (legacy.length() > 0) {
+      logger.info("Recovering legacy write-ahead log {}", legacy);
+      FileBasedWAL legacyWal = new FileBasedWAL();
+      legacyWal.logFileDirectory = logFileDirectory;
+      legacyWal.start();
+      legacyWal.stop();
+    }
+
+    Files.delete(legacy.toPath());
+  }
+
+  private TreeMap<Long, Path> findSegments(final Path dir) throws IOException {
+    TreeMap<Long, Path> result = new TreeMap<>();
+    try (var files = Files.list(dir)) {
+      files.forEach(p -> {
+        Matcher m = SEGMENT_NAME.matcher(p.getFileName().toString());
+        if (m.matches())
+          result.put(Long.parseUnsignedLong(m.group(1), 16), p);
+      });
+    }
+    return result;
+  }
+
+  private void rollbackIncompleteTransactions(final TreeMap<Long, Path> existing) {
+    List<Entry> entries = new ArrayList<>();
+    for (Path p : existing.values()) {
+      try {
+        readSegment(p, entries);
+      } catch (IOException e) {
+        logger.error("Can't read WAL segment " + p, e);
+      }
+    }
+
+    // collect list of completed (either committed or properly rolled back) transactions
+    Set<String> completedTxIds = new HashSet<>();
+    for (Entry e : entries)
+      if (e instanceof EventEntry ee && ee.type == EventType.COMPLETED)
+        completedTxIds.add(ee.txId);
+
+    // apply all rollback-actions from incomplete transactions
+    List<Entry> reversed = new ArrayList<>(entries);
+    Collections.reverse(reversed);
+    for (Entry e : reversed)
+      if (e instanceof ActionEntry ae && !completedTxIds.contains(ae.txId) && ae.type == ActionType.ROLLBACK)
+        apply(ae);
+
+    // apply all commit-actions from completed transactions
+    for (Entry e : entries)
+      if (e instanceof ActionEntry ae && completedTxIds.contains(ae.txId) && ae.type == ActionType.COMMIT)
+        apply(ae);
+  }
+
+  /**
+   * Read all intact records of the given segment. Reading stops at the first torn or corrupt record,
+   * which can only be the result of a crash while appending.
+   */
+  private void readSegment(final Path path, final List<Entry> entries) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < SEGMENT_HEADER_SIZE)
+        return;
+
+      ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+      readFully(channel, header, 0);
+      if (header.getInt() != SEGMENT_MAGIC || header.getInt() != SEGMENT_VERSION) {
+        logger.error("Ignoring WAL segment {} with unknown format", path);
+        return;
+      }
+
+      long position = SEGMENT_HEADER_SIZE;
+      while (position + RECORD_HEADER_SIZE <= size) {
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        readFully(channel, recordHeader, position);
+        int length = recordHeader.getInt();
+        int crc = recordHeader.getInt();
+        if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+          logger.warn("Truncated record at {} in WAL segment {} - ignoring remainder", position, path);
+          return;
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + RECORD_HEADER_SIZE);
+        if (crc != checksum(payload.array())) {
+          logger.warn("Corrupt record at {} in WAL segment {} - ignoring remainder", position, path);
+          return;
+        }
+
+        try {
+          entries.add(decode(payload.array()));
+        } catch (ClassNotFoundException e) {
+          // indicates an action, we no longer know
+          logger.error("Can't read event log entry due to missing class", e);
+        }
+
+        position += RECORD_HEADER_SIZE + length;
+      }
+    }
+  }
+
+  private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+      throws IOException {
+    long p = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, p);
+      if (read < 0)
+        throw new IOException("Unexpected end of WAL segment");
+      p += read;
+    }
+    buffer.flip();
+  }
+
+  private static void apply(final ActionEntry ae) {
+    try {
+      ae.apply();
+    } catch (Exception e) {
+      logger.error("Exception running WAL action of type " + ae.type + " for tx " + ae.txId, e);
+    }
+  }
+
+  @PreDestroy
+  public void stop() throws IOException {
+    fileLock.writeLock().lock();
+    try {
+      for (Segment s : segments.values())
+        s.channel.close();
+      segments.clear();
+      index.clear();
+      currentSegment = null;
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  private Segment createSegment(final long id) throws IOException {
+    Path path = new File(logFileDirectory, String.format("tx-%016x.seg", id)).toPath();
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+
+    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+    header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+    writeFully(channel, header, 0);
+
+    Segment segment = new Segment(id, path, channel, SEGMENT_HEADER_SIZE);
+    segments.put(id, segment);
+    return segment;
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+      throws IOException {
+    long p = position;
+    while (buffer.hasRemaining())
+      p += channel.write(buffer, p);
+  }
+
+  /**
+   * Append a record to the current segment, rolling over to a new segment if the current one is full.
+   * Must be called with the write lock held.
+   *
+   * @return the pointer to the written record
+   */
+  private RecordPointer append(final byte[] payload, final ActionType type) throws IOException {
+    if (currentSegment.size >= segmentSize) {
+      // make sure the sealed segment is durable, so that sync() only needs to care about the current one
+      currentSegment.channel.force(true);
+      currentSegment = createSegment(currentSegment.id + 1);
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+    record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+
+    long position = currentSegment.size;
+    writeFully(currentSegment.channel, record, position);
+    currentSegment.size += record.limit();
+    appendSequence++;
+
+    return new RecordPointer(currentSegment, position, record.limit(), type);
+  }
+
+  private static int checksum(final byte[] payload) {
+    CRC32C crc = new CRC32C();
+    crc.update(payload, 0, payload.length);
+    return (int) crc.getValue();
+  }
+
+  private static byte[] encode(final String id, final ActionType type, final TransactionalAction action)
+      throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+    DataOutputStream dos = new DataOutputStream(baos);
+    dos.writeByte(RECORD_ACTION);
+    dos.writeUTF(id);
+    dos.writeByte(type.ordinal());
+    try (ObjectOutputStream oos = new ObjectOutputStream(dos)) {
+      oos.writeObject(action);
+    }
+    return baos.toByteArray();
+  }
+
+  private static byte[] encode(final String id, final EventType type) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+    DataOutputStream dos = new DataOutputStream(baos);
+    dos.writeByte(RECORD_EVENT);
+    dos.writeUTF(id);
+    dos.writeByte(type.ordinal());
+    dos.flush();
+    return baos.toByteArray();
+  }
+
+  private static Entry decode(final byte[] payload) throws IOException, ClassNotFoundException {
+    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(payload));
+    byte kind = dis.readByte();
+    String txId = dis.readUTF();
+    int type = dis.readUnsignedByte();
+    switch (kind) {
+      case RECORD_ACTION:
+        try (ObjectInputStream ois = new ObjectInputStream(dis)) {
+          return new ActionEntry(txId, ActionType.values()[type], (TransactionalAction) ois.readObject());
+        }
+      case RECORD_EVENT:
+        return new EventEntry(txId, EventType.values()[type]);
+      default:
+        throw new IOException("Unknown WAL record kind " + kind);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.neverpile.eureka.tx.wal.WriteAheadLog#logAction(java.lang.String,
+   * com.neverpile.eureka.tx.wal.WriteAheadLog.ActionType,
+   * com.neverpile.eureka.tx.wal.TransactionWAL.TransactionalAction)
+   */
+  @Override
+  @TraceInvocation
+  public void logAction(final String id, @Tag(name = "action") final ActionType type,
+      final TransactionalAction action) {
+    byte[] payload;
+    try {
+      payload = encode(id, type, action);
+    } catch (IOException e) {
+      throw new WALException("Can't serialize action", e);
+    }
+
+    fileLock.writeLock().lock();
+    try {
+      RecordPointer pointer = append(payload, type);
+      logger.debug("Logging {} action for tx {} at {}/{}: {}", type, id, pointer.segment.id, pointer.position,
+          action);
+
+      index.computeIfAbsent(id, k -> new ArrayList<>()).add(pointer);
+      pointer.segment.liveTransactions.add(id);
+    } catch (IOException e) {
+      throw new WALException("Can't log action", e);
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.neverpile.eureka.tx.wal.WriteAheadLog#logCompletion(java.lang.String)
+   */
+  @Override
+  @TraceInvocation
+  public void logCompletion(final String id) {
+    fileLock.writeLock().lock();
+    try {
+      RecordPointer pointer = append(encode(id, EventType.COMPLETED), null);
+      logger.debug("Logging {} event for tx {} at {}/{}", EventType.COMPLETED, id, pointer.segment.id,
+          pointer.position);
+
+      List<RecordPointer> pointers = index.remove(id);
+      if (null != pointers)
+        for (RecordPointer p : pointers)
+          p.segment.liveTransactions.remove(id);
+
+      pruneSegments();
+    } catch (IOException e) {
+      throw new WALException("Can't log completion", e);
+    } finally {
+      fileLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Drop the oldest segments as long as they don't contain records of incomplete transactions.
+   * Segments are only ever dropped from the head of the log, so that the completion event of a
+   * transaction is retained as long as any of its records are. Must be called with the write lock
+   * held.
+   */
+  private void pruneSegments() {
+    Iterator<Segment> i = segments.values().iterator();
+    while (i.hasNext()) {
+      Segment s = i.next();
+      if (s == currentSegment || !s.liveTransactions.isEmpty())
+        break;
+
+      try {
+        s.channel.close();
+        Files.delete(s.path);
+        logger.debug("Pruned WAL segment {}", s.path);
+      } catch (IOException e) {
+        logger.error("Can't delete WAL segment " + s.path, e);
+      }
+      i.remove();
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.neverpile.eureka.tx.wal.WriteAheadLog#applyLoggedActions(java.lang.String,
+   * com.neverpile.eureka.tx.wal.WriteAheadLog.ActionType, boolean)
+   */
+  @Override
+  public void applyLoggedActions(final String id, final ActionType type, final boolean reverseOrder) {
+    List<ActionEntry> actions = new ArrayList<>();
+
+    fileLock.readLock().lock();
+    try {
+      List<RecordPointer> pointers = index.get(id);
+      if (null == pointers)
+        return;
+
+      for (RecordPointer p : pointers) {
+        if (p.type != type)
+          continue;
+
+        ByteBuffer record = ByteBuffer.allocate(p.length);
+        readFully(p.segment.channel, record, p.position);
+        record.getInt(); // length
+        int crc = record.getInt();
+        byte[] payload = new byte[p.length - RECORD_HEADER_SIZE];
+        record.get(payload);
+        if (crc != checksum(payload))
+          throw new WALException("Corrupt record for tx " + id + " in WAL segment " + p.segment.path);
+
+        try {
+          actions.add((ActionEntry) decode(payload));
+        } catch (ClassNotFoundException e) {
+          // indicates an action, we no longer know
+          logger.error("Can't read event log entry due to missing class", e);
+        }
+      }
+    } catch (IOException e) {
+      throw new WALException("Can't apply logged actions", e);
+    } finally {
+      fileLock.readLock().unlock();
+    }
+
+    if (reverseOrder)
+      Collections.reverse(actions);
+
+    for (ActionEntry ae : actions) {
+      logger.debug("Applying {} action for tx {}: {}", type, id, ae.action);
+      apply(ae);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.neverpile.eureka.tx.wal.WriteAheadLog#sync()
+   */
+  @Override
+  public void sync() {
+    if (!groupCommitEnabled) {
+      fileLock.readLock().lock();
+      try {
+        force(currentSegment);
+        syncBatchSize.record(1);
+      } finally {
+        fileLock.readLock().unlock();
+      }
+      return;
+    }
+
+    long target = appendSequence;
+
+    flushLock.lock();
+    try {
+      if (syncedSequence < target)
+        committersWaiting++;
+      while (syncedSequence < target) {
+        if (!flushInProgress) {
+          flushInProgress = true;
+          flushAsLeader();
+        } else {
+          flushCompleted.awaitUninterruptibly();
+        }
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Perform a group flush on behalf of all waiting committers. Must be called with the flushLock
+   * held. The lock is released while waiting for further committers and while flushing.
+   */
+  private void flushAsLeader() {
+    long upTo;
+    int batchSize;
+    Segment segment;
+    try {
+      // give concurrent committers the chance to join this flush
+      if (groupCommitMaxWaitMicros > 0)
+        flushCompleted.awaitNanos(TimeUnit.MICROSECONDS.toNanos(groupCommitMaxWaitMicros));
+
+      batchSize = committersWaiting;
+      committersWaiting = 0;
+
+      fileLock.readLock().lock();
+      try {
+        upTo = appendSequence;
+        segment = currentSegment;
+      } finally {
+        fileLock.readLock().unlock();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      flushInProgress = false;
+      flushCompleted.signalAll();
+      throw new WALException("Interrupted while waiting for WAL flush");
+    }
+
+    flushLock.unlock();
+    boolean success = false;
+    try {
+      force(segment);
+      success = true;
+    } finally {
+      flushLock.lock();
+      if (success) {
+        syncedSequence = Math.max(syncedSequence, upTo);
+        syncBatchSize.record(batchSize);
+      }
+      flushInProgress = false;
+      flushCompleted.signalAll();
+    }
+  }
+
+  private void force(final Segment segment) {
+    long start = System.nanoTime();
+    try {
+      segment.channel.force(true);
+    } catch (ClosedChannelException e) {
+      // the segment has been sealed (and therefore forced) and pruned in the meantime
+    } catch (IOException e) {
+      throw new WALException("Cannot flush WAL", e);
+    } finally {
+      syncLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
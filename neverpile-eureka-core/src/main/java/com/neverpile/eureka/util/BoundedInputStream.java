@@ -0,0 +1,60 @@
+package com.neverpile.eureka.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link FilterInputStream} that delegates reads to another stream but signals the end of the
+ * stream once a given number of bytes has been read.
+ * <p>
+ * Thread safety: this stream implementation is not thread safe.
+ */
+public class BoundedInputStream extends FilterInputStream {
+
+  private long remaining;
+
+  public BoundedInputStream(final InputStream in, final long limit) {
+    super(in);
+    this.remaining = limit;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (remaining <= 0)
+      return -1;
+
+    int b = in.read();
+    if (b >= 0)
+      remaining--;
+    return b;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    if (remaining <= 0)
+      return -1;
+
+    int r = in.read(b, off, (int) Math.min(len, remaining));
+    if (r > 0)
+      remaining -= r;
+    return r;
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    long skipped = in.skip(Math.min(n, remaining));
+    remaining -= skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(in.available(), remaining);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+}
@@ -0,0 +1,50 @@
+package com.neverpile.eureka.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of equally sized buffers, e.g. for object stores buffering the chunks or parts of
+ * objects being written. Buffers are allocated lazily and retained for reuse once released.
+ * Acquiring a buffer blocks while all buffers are in use, so that the heap used by concurrent users
+ * never exceeds <code>bufferCount * bufferSize</code>.
+ */
+public class BufferPool {
+  private final int bufferSize;
+
+  private final Semaphore available;
+
+  private final Queue<byte[]> free = new ConcurrentLinkedQueue<>();
+
+  public BufferPool(final int bufferCount, final int bufferSize) {
+    this.bufferSize = bufferSize;
+    this.available = new Semaphore(bufferCount);
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Acquire a buffer, waiting until one becomes available if necessary.
+   *
+   * @return the buffer
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public byte[] acquire() throws InterruptedException {
+    available.acquire();
+    byte[] buffer = free.poll();
+    return null != buffer ? buffer : new byte[bufferSize];
+  }
+
+  /**
+   * Return a buffer obtained from {@link #acquire()} to the pool.
+   *
+   * @param buffer the buffer
+   */
+  public void release(final byte[] buffer) {
+    free.offer(buffer);
+    available.release();
+  }
+}
@@ -0,0 +1,47 @@
+package com.neverpile.eureka.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link FilterInputStream} that delegates reads to another stream and tracks the number of bytes
+ * read.
+ * <p>
+ * Thread safety: this stream implementation is not thread safe.
+ */
+public class SizeTrackingInputStream extends FilterInputStream {
+
+  private long read;
+
+  public SizeTrackingInputStream(final InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b >= 0)
+      read++;
+    return b;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    int r = in.read(b, off, len);
+    if (r > 0)
+      read += r;
+    return r;
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    long skipped = in.skip(n);
+    read += skipped;
+    return skipped;
+  }
+
+  public long getBytesRead() {
+    return read;
+  }
+}
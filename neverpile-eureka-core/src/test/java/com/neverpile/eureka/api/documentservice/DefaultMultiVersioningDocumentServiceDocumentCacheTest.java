@@ -0,0 +1,120 @@
+package com.neverpile.eureka.api.documentservice;
+
+import static com.neverpile.eureka.impl.documentservice.DefaultMultiVersioningDocumentService.DOCUMENT_PREFIX;
+import static com.neverpile.eureka.impl.documentservice.DefaultMultiVersioningDocumentService.VERSION_FORMATTER;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.eureka.api.MultiVersioningDocumentService;
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.event.EventPublisher;
+import com.neverpile.eureka.impl.documentservice.DefaultMultiVersioningDocumentService;
+import com.neverpile.eureka.impl.documentservice.DocumentPdo;
+import com.neverpile.eureka.model.Document;
+import com.neverpile.eureka.model.ObjectName;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "neverpile-eureka.document-service.document-cache.enabled=true")
+public class DefaultMultiVersioningDocumentServiceDocumentCacheTest {
+  @TestConfiguration
+  @EnableTransactionManagement
+  public static class ServiceConfig {
+    @Bean
+    MultiVersioningDocumentService documentService() {
+      return new DefaultMultiVersioningDocumentService();
+    }
+  }
+
+  @MockBean
+  protected ObjectStoreService objectStoreService;
+  @MockBean
+  protected EventPublisher eventPublisher;
+  @Autowired
+  protected ObjectMapper mapper;
+  @Autowired
+  protected MultiVersioningDocumentService documentService;
+  @Autowired
+  protected TransactionTemplate transactionTemplate;
+
+  @Test
+  public void testThat_documentVersionIsParsedOnlyOnce() {
+    // the cache survives test methods, so use a fresh document id every time
+    DocumentPdo doc = anExistingDocument();
+    ObjectName name = mockExistingVersion(doc);
+
+    Document first = documentService.getDocumentVersion(doc.getDocumentId(), doc.getVersionTimestamp()).get();
+    Document second = documentService.getDocumentVersion(doc.getDocumentId(), doc.getVersionTimestamp()).get();
+
+    assertThat(second.getVersionTimestamp(), equalTo(first.getVersionTimestamp()));
+    assertThat(second, not(sameInstance(first)));
+    verify(objectStoreService, times(1)).get(eq(name));
+  }
+
+  @Test
+  public void testThat_modificationsDoNotLeakIntoTheCache() {
+    DocumentPdo doc = anExistingDocument();
+    mockExistingVersion(doc);
+
+    DocumentPdo first = (DocumentPdo) documentService.getDocumentVersion(doc.getDocumentId(),
+        doc.getVersionTimestamp()).get();
+    first.getAssociatedFacetData().put("foo", mapper.createObjectNode().put("bar", "modified"));
+
+    DocumentPdo second = (DocumentPdo) documentService.getDocumentVersion(doc.getDocumentId(),
+        doc.getVersionTimestamp()).get();
+    assertThat(second.getSidecarElement("foo"), equalTo(mapper.createObjectNode().put("bar", "baz")));
+  }
+
+  @Test
+  public void testThat_writtenVersionsAreCached() {
+    String id = UUID.randomUUID().toString();
+    given(objectStoreService.list(any())).willAnswer(i -> Stream.empty());
+
+    Document doc = new Document(id);
+    Document created = transactionTemplate.execute(status -> documentService.createDocument(doc));
+
+    Document retrieved = documentService.getDocumentVersion(id, created.getVersionTimestamp()).get();
+    assertThat(retrieved.getDocumentId(), equalTo(id));
+    verify(objectStoreService, never()).get(any());
+  }
+
+  private DocumentPdo anExistingDocument() {
+    DocumentPdo doc = new DocumentPdo(UUID.randomUUID().toString());
+    doc.setVersionTimestamp(Instant.now());
+    doc.putSidecarElement("foo", mapper.createObjectNode().put("bar", "baz"));
+    return doc;
+  }
+
+  private ObjectName mockExistingVersion(final Document doc) {
+    ObjectName metaPrefix = ObjectName.of(DOCUMENT_PREFIX, doc.getDocumentId(), "meta");
+    ObjectName name = metaPrefix.append(VERSION_FORMATTER.format(doc.getVersionTimestamp()));
+
+    given(objectStoreService.list(eq(metaPrefix))).will(i -> Stream.of(new DocObject(mapper, doc, name)));
+    given(objectStoreService.get(eq(name))).will(i -> new DocObject(mapper, doc, name));
+
+    return name;
+  }
+}
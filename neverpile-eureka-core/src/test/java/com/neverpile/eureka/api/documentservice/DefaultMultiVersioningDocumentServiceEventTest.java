@@ -8,10 +8,14 @@ import static org.mockito.BDDMockito.given;
 import java.time.Instant;
 import java.util.stream.Stream;
 
+import org.junit.Before;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
@@ -36,6 +40,7 @@ public class DefaultMultiVersioningDocumentServiceEventTest extends AbstractEven
   @TestConfiguration
   @EnableTransactionManagement
   @EnableAutoConfiguration
+  @EnableCaching
   public static class ServiceConfig {
     @Bean
     DocumentService documentService() {
@@ -54,6 +59,15 @@ public class DefaultMultiVersioningDocumentServiceEventTest extends AbstractEven
     }
   }
 
+  @Autowired
+  CacheManager cacheManager;
+
+  @Before
+  public void clearCache() {
+    // The cache isn't automatically cleared between test methods
+    cacheManager.getCacheNames().forEach(n -> cacheManager.getCache(n).clear());
+  }
+
   protected void mockExistingDocument() {
     Document doc = new Document(D);
     doc.setVersionTimestamp(Instant.now());
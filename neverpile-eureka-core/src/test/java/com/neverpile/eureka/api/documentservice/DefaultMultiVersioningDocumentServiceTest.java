@@ -6,12 +6,14 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.*;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -20,7 +22,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.apache.tomcat.util.http.fileupload.IOUtils;
@@ -35,9 +40,12 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -50,6 +58,7 @@ import com.neverpile.eureka.api.MultiVersioningDocumentService;
 import com.neverpile.eureka.api.ObjectStoreService;
 import com.neverpile.eureka.api.exception.VersionMismatchException;
 import com.neverpile.eureka.event.EventPublisher;
+import com.neverpile.eureka.event.UpdateEvent;
 import com.neverpile.eureka.impl.documentservice.DefaultMultiVersioningDocumentService;
 import com.neverpile.eureka.impl.documentservice.DocumentPdo;
 import com.neverpile.eureka.model.Document;
@@ -87,6 +96,9 @@ public class DefaultMultiVersioningDocumentServiceTest {
   @Autowired
   CacheManager cacheManager;
 
+  @Autowired
+  ApplicationEventPublisher applicationEventPublisher;
+
   @Before
   public void clearCache() {
     // The cache isn't automatically cleared between test methods
@@ -308,11 +320,6 @@ public class DefaultMultiVersioningDocumentServiceTest {
       // replace the mockery with a new version which appears as having changed outside the scope of the current transaction
       Document lostUpdateCandidate = prepareEmptyDocument();
       mockExistingVersion(lostUpdateCandidate);
-      try {
-        Thread.sleep(10);
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      }
 
       // update has correct timestamp but we have a clash on the object store since it is no longer the current version
       Document update = prepareEmptyDocument();
@@ -405,16 +412,13 @@ public class DefaultMultiVersioningDocumentServiceTest {
   }
 
   @Test
-  public void testThat_cachedVersionListIsInvalidatedOnUpdate() throws IOException {
+  public void testThat_cachedVersionListIsUpdatedOnUpdate() throws IOException {
     Document docv1 = anEmptyDocument();
     docv1.setVersionTimestamp(Instant.ofEpochMilli(1234567L));
-    Document docv2 = anEmptyDocument();
-    docv2.setVersionTimestamp(Instant.ofEpochMilli(2345678L));
 
     ObjectName base = ObjectName.of(DOCUMENT_PREFIX, D);
     ObjectName meta = base.append("meta");
     ObjectName namev1 = meta.append(VERSION_FORMATTER.format(docv1.getVersionTimestamp()));
-    ObjectName namev2 = meta.append(VERSION_FORMATTER.format(docv2.getVersionTimestamp()));
 
     given(objectStoreService.list(eq(meta))).will(i -> Stream.of( //
         new DocObject(mapper, docv1, namev1)
@@ -424,27 +428,68 @@ public class DefaultMultiVersioningDocumentServiceTest {
     // prime cache
     assertThat(documentService.getVersions(D), hasSize(1));
 
-    // re-mock with two versions
-    given(objectStoreService.list(eq(meta))).will(i -> Stream.of( //
-        new DocObject(mapper, docv1, namev1),
-        new DocObject(mapper, docv1, namev2)
-    ));
-    given(objectStoreService.get(eq(namev1))).will(i -> new DocObject(mapper, docv1, namev1));
-    given(objectStoreService.get(eq(namev2))).will(i -> new DocObject(mapper, docv2, namev2));
+    // now perform an update which is supposed to update the cached list in place
+    Document updated = transactionTemplate.execute(c -> documentService.update(docv1).get());
 
-    // list supposed to be cached
-    assertThat(documentService.getVersions(D), hasSize(1));
+    // now the new version must be visible without having to list the versions again
+    assertThat(documentService.getVersions(D),
+        Matchers.contains(Instant.ofEpochMilli(1234567L), updated.getVersionTimestamp()));
 
-    // now simulate an update so that the list is invalidated
-    transactionTemplate.execute(c -> documentService.update(docv2));
+    // once to prime the cache, once for the version clash check under the write lock
+    verify(objectStoreService, times(2)).list(eq(meta));
+  }
 
-    // now the new size must be visible
-    assertThat(documentService.getVersions(D), hasSize(2));
+  @Test
+  public void testThat_versionClashWithWriterBypassingTheCacheIsDetected() throws Exception {
+    DocumentPdo existing = prepareEmptyDocument();
+    mockExistingVersion(existing);
+
+    // prime the version cache
+    assertThat(documentService.getVersions(D), Matchers.contains(existing.getVersionTimestamp()));
+
+    Thread.sleep(10);
+
+    // a second writer, e.g. on another node, stores a new version without touching our cache
+    DocumentPdo foreign = prepareEmptyDocument();
+    mockExistingVersion(foreign);
+    assertThat(documentService.getVersions(D), Matchers.contains(existing.getVersionTimestamp()));
+
+    try {
+      transactionTemplate.execute(status -> {
+        Document update = prepareEmptyDocument();
+        update.setVersionTimestamp(existing.getVersionTimestamp());
+        return documentService.update(update);
+      });
+      fail("Expected VersionMismatchException");
+    } catch (VersionMismatchException e) {
+      // expected
+    }
+
+    // the failed write must have refreshed the stale list
+    assertThat(documentService.getVersions(D), Matchers.contains(foreign.getVersionTimestamp()));
   }
 
   @Test
-  public void testThat_cachedVersionListIsInvalidatedOnDelete() throws IOException {
-    mockExistingVersion(prepareEmptyDocument());
+  public void testThat_foreignDocumentEventEvictsCachedVersionList() throws Exception {
+    DocumentPdo existing = prepareEmptyDocument();
+    mockExistingVersion(existing);
+
+    // prime the version cache
+    assertThat(documentService.getVersions(D), Matchers.contains(existing.getVersionTimestamp()));
+
+    Thread.sleep(10);
+
+    DocumentPdo foreign = prepareEmptyDocument();
+    mockExistingVersion(foreign);
+    applicationEventPublisher.publishEvent(new UpdateEvent(foreign));
+
+    assertThat(documentService.getVersions(D), Matchers.contains(foreign.getVersionTimestamp()));
+  }
+
+  @Test
+  public void testThat_cachedVersionListIsUpdatedOnDelete() throws IOException {
+    DocumentPdo existing = prepareEmptyDocument();
+    mockExistingVersion(existing);
 
     // prime cache
     assertThat(documentService.getVersions(D), hasSize(1));
@@ -454,15 +499,42 @@ public class DefaultMultiVersioningDocumentServiceTest {
     // list supposed to be cached
     assertThat(documentService.getVersions(D), hasSize(1));
 
-    mockExistingVersion(prepareEmptyDocument());
+    mockExistingVersion(existing);
 
-    // now simulate a create so that the list is invalidated
+    // now simulate a delete so that the deletion marker is added to the list
     transactionTemplate.execute(c -> documentService.deleteDocument(D));
 
     mockNonexistentDocument();
 
     // now the new size must be visible
-    assertThat(documentService.getVersions(D), hasSize(0));
+    assertThat(documentService.getVersions(D), hasSize(2));
+  }
+
+  @Test
+  public void testThat_cachedVersionListIsInvalidatedOnRollback() throws IOException {
+    DocumentPdo existing = prepareEmptyDocument();
+    mockExistingVersion(existing);
+
+    try {
+      transactionTemplate.execute(status -> {
+        entityStore.store(existing, "foo", mapper.createObjectNode().put("bar", "baz"));
+
+        // fail the commit after the document has been flushed
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+          @Override
+          public void beforeCommit(final boolean readOnly) {
+            throw new IllegalStateException("Simulated commit failure");
+          }
+        });
+        return null;
+      });
+      fail("Commit should have failed");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    // the version written by the failed transaction must not remain cached
+    assertThat(documentService.getVersions(D), hasSize(1));
   }
 
   @Test
@@ -487,6 +559,22 @@ public class DefaultMultiVersioningDocumentServiceTest {
     documentService.getDocumentVersion(D, Instant.ofEpochMilli(2345678L)).get();
   }
 
+  @Test
+  public void testThat_documentsAreRetrievedInBulk() throws IOException {
+    mockThreeVersions();
+    given(objectStoreService.list(eq(ObjectName.of(DOCUMENT_PREFIX, "nonexistent", "meta")))).will(
+        i -> Stream.empty());
+    given(objectStoreService.getMany(any())).willCallRealMethod();
+
+    List<Document> documents = documentService.getDocuments(Arrays.asList(D, "nonexistent"));
+
+    assertThat(documents, hasSize(1));
+    assertThat(documents.get(0).getVersionTimestamp(), is(Instant.ofEpochMilli(3456789L)));
+    ObjectName currentVersion = ObjectName.of(DOCUMENT_PREFIX, D, "meta",
+        VERSION_FORMATTER.format(Instant.ofEpochMilli(3456789L)));
+    verify(objectStoreService, times(1)).getMany(eq(Collections.singleton(currentVersion)));
+  }
+
   private ObjectName mockThreeVersions() {
     DocumentPdo docv1 = anEmptyDocument();
     docv1.setVersionTimestamp(Instant.ofEpochMilli(1234567L));
@@ -0,0 +1,292 @@
+package com.neverpile.eureka.api.index;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import jakarta.servlet.ServletException;
+import jakarta.ws.rs.core.MediaType;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.neverpile.eureka.api.BaseTestConfiguration;
+import com.neverpile.eureka.api.ContentElementIdGenerationStrategy;
+import com.neverpile.eureka.api.DocumentIdGenerationStrategy;
+import com.neverpile.eureka.api.MultiVersioningDocumentService;
+import com.neverpile.eureka.event.EventPublisher;
+import com.neverpile.eureka.model.ContentElement;
+import com.neverpile.eureka.model.Document;
+
+/**
+ * Verify the rendering of query results from the data indexed for the facets, falling back to the
+ * documents in the store, and the export of query results as NDJSON.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BaseTestConfiguration.class)
+@AutoConfigureMockMvc
+public class IndexResourceTest {
+  @TestConfiguration
+  @Import(IndexResource.class)
+  public static class ServiceConfig {
+  }
+
+  private static final String AUTHORIZATION = "Basic "
+      + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+  private static final Instant CREATED = Instant.ofEpochMilli(1000000000000L);
+
+  @MockBean
+  MultiVersioningDocumentService mockDocumentService;
+
+  @MockBean
+  QueryService mockQueryService;
+
+  @MockBean
+  EventPublisher eventPublisher;
+
+  @MockBean
+  DocumentIdGenerationStrategy documentIdGenerationStrategy;
+
+  @MockBean
+  ContentElementIdGenerationStrategy contentElementIdGenerationStrategy;
+
+  @Autowired
+  IndexResource indexResource;
+
+  @Autowired
+  MockMvc mockMvc;
+
+  @Autowired
+  ObjectMapper objectMapper;
+
+  @After
+  public void enableProjection() {
+    ReflectionTestUtils.setField(indexResource, "projectionEnabled", true);
+  }
+
+  private MockHttpServletRequestBuilder query(final String... facets) {
+    return get("/api/v1/index/query/{query}", "{}") //
+        .param("facets", facets) //
+        .header(HttpHeaders.AUTHORIZATION, AUTHORIZATION) //
+        .accept(org.springframework.http.MediaType.APPLICATION_JSON);
+  }
+
+  private MockHttpServletRequestBuilder export(final String continuationToken) {
+    MockHttpServletRequestBuilder request = get("/api/v1/index/export/{query}", "{}") //
+        .param("facets", "documentId") //
+        .header(HttpHeaders.AUTHORIZATION, AUTHORIZATION) //
+        .accept(IndexResource.NDJSON_MEDIA_TYPE);
+    return null != continuationToken ? request.param("continuationToken", continuationToken) : request;
+  }
+
+  /**
+   * Serve the given pages of results, chained by the continuation tokens "1", "2", ... .
+   */
+  private void givenPages(final List<List<IndexedDocument>> pages) {
+    given(mockQueryService.queryPage(any(), anyCollection())).willAnswer(i -> {
+      String token = i.<DocumentQuery> getArgument(0).getContinuationToken();
+      int pageNo = DocumentQuery.INITIAL_CONTINUATION_TOKEN.equals(token) ? 0 : Integer.parseInt(token);
+      return new QueryResultPage(pages.get(pageNo), pageNo + 1 < pages.size() ? Integer.toString(pageNo + 1) : null);
+    });
+  }
+
+  private List<String> exportedDocumentIds(final String ndjson) throws Exception {
+    return Arrays.stream(ndjson.split("\n")) //
+        .filter(line -> !line.isBlank()) //
+        .map(line -> {
+          try {
+            return objectMapper.readTree(line).get("documentId").asText();
+          } catch (Exception e) {
+            throw new AssertionError("Invalid line: " + line, e);
+          }
+        }) //
+        .collect(Collectors.toList());
+  }
+
+  private static IndexedDocument indexed(final String documentId) {
+    Map<String, JsonNode> indexData = new HashMap<>();
+    indexData.put("documentId", JsonNodeFactory.instance.textNode(documentId));
+    indexData.put("dateCreated", JsonNodeFactory.instance.numberNode(CREATED.toEpochMilli()));
+    indexData.put("contentElements", JsonNodeFactory.instance.arrayNode());
+    return new IndexedDocument(documentId, indexData);
+  }
+
+  private static Document document(final String documentId) {
+    Document document = new Document(documentId);
+    document.setDateCreated(CREATED);
+
+    ContentElement ce = new ContentElement();
+    ce.setContentElementId("ce-" + documentId);
+    ce.setType(MediaType.TEXT_PLAIN_TYPE);
+    ce.setFileName("foo.txt");
+    ce.setLength(3);
+    ce.setRole("part");
+    document.setContentElements(Collections.singletonList(ce));
+    return document;
+  }
+
+  private void givenResults(final IndexedDocument... results) {
+    given(mockQueryService.queryPage(any(), anyCollection())).willReturn(
+        new QueryResultPage(Arrays.asList(results), null));
+  }
+
+  @Test
+  public void testThat_resultsRenderedFromIndexDataAreNotRetrieved() throws Exception {
+    givenResults(indexed("a"), indexed("b"));
+
+    mockMvc.perform(query("documentId", "dateCreated")) //
+        .andExpect(status().isOk()) //
+        .andExpect(jsonPath("$.length()").value(2)) //
+        .andExpect(jsonPath("$[0].documentId").value("a")) //
+        .andExpect(jsonPath("$[0].dateCreated").exists()) //
+        .andExpect(jsonPath("$[1].documentId").value("b"));
+
+    verify(mockQueryService).queryPage(any(),
+        argThat(names -> containsInAnyOrder("documentId", "dateCreated").matches(names)));
+    verify(mockDocumentService, never()).getDocuments(any());
+    verify(mockDocumentService, never()).getDocument(any());
+  }
+
+  @Test
+  public void testThat_facetsNotRenderableFromIndexDataFallBackToStore() throws Exception {
+    givenResults(indexed("a"), indexed("b"));
+    given(mockDocumentService.getDocuments(any())).willReturn(Arrays.asList(document("a"), document("b")));
+
+    mockMvc.perform(query("documentId", "contentElements")) //
+        .andExpect(status().isOk()) //
+        .andExpect(jsonPath("$.length()").value(2)) //
+        .andExpect(jsonPath("$[0].documentId").value("a")) //
+        .andExpect(jsonPath("$[0].contentElements[0].id").value("ce-a")) //
+        .andExpect(jsonPath("$[1].contentElements[0].id").value("ce-b"));
+
+    // a single retrieval for all results
+    verify(mockDocumentService).getDocuments(Arrays.asList("a", "b"));
+  }
+
+  @Test
+  public void testThat_documentDeletedAfterIndexingIsDropped() throws Exception {
+    givenResults(indexed("a"), indexed("gone"), indexed("b"));
+    given(mockDocumentService.getDocuments(any())).willReturn(Arrays.asList(document("a"), document("b")));
+
+    mockMvc.perform(query("documentId", "contentElements")) //
+        .andExpect(status().isOk()) //
+        .andExpect(jsonPath("$.length()").value(2)) //
+        .andExpect(jsonPath("$[0].documentId").value("a")) //
+        .andExpect(jsonPath("$[1].documentId").value("b"));
+  }
+
+  @Test
+  public void testThat_disabledProjectionRetrievesAllDocuments() throws Exception {
+    ReflectionTestUtils.setField(indexResource, "projectionEnabled", false);
+
+    // without requested facets, the index data isn't returned
+    given(mockQueryService.queryPage(any(), anyCollection())).willReturn(new QueryResultPage(
+        Arrays.asList(new IndexedDocument("a", Collections.emptyMap()), new IndexedDocument("b", Collections.emptyMap())),
+        null));
+    given(mockDocumentService.getDocuments(any())).willReturn(Arrays.asList(document("a"), document("b")));
+
+    mockMvc.perform(query("documentId", "dateCreated")) //
+        .andExpect(status().isOk()) //
+        .andExpect(jsonPath("$.length()").value(2)) //
+        .andExpect(jsonPath("$[0].documentId").value("a")) //
+        .andExpect(jsonPath("$[0].dateCreated").exists()) //
+        .andExpect(jsonPath("$[1].documentId").value("b"));
+
+    verify(mockQueryService).queryPage(any(), argThat(Collection::isEmpty));
+    verify(mockDocumentService).getDocuments(Arrays.asList("a", "b"));
+  }
+
+  @Test
+  public void testThat_exportFollowsContinuationTokensToTheLastPage() throws Exception {
+    givenPages(Arrays.asList( //
+        Arrays.asList(indexed("a"), indexed("b")), //
+        Arrays.asList(indexed("c"), indexed("d")), //
+        Arrays.asList(indexed("e"))));
+
+    String ndjson = mockMvc.perform(export(null)) //
+        .andExpect(status().isOk()) //
+        .andExpect(content().contentTypeCompatibleWith(IndexResource.NDJSON_MEDIA_TYPE)) //
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(exportedDocumentIds(ndjson), contains("a", "b", "c", "d", "e"));
+    verify(mockQueryService, times(3)).queryPage(any(), anyCollection());
+  }
+
+  @Test
+  public void testThat_exportResumesAtGivenContinuationToken() throws Exception {
+    givenPages(Arrays.asList( //
+        Arrays.asList(indexed("a"), indexed("b")), //
+        Arrays.asList(indexed("c"), indexed("d")), //
+        Arrays.asList(indexed("e"))));
+
+    String ndjson = mockMvc.perform(export("1")) //
+        .andExpect(status().isOk()) //
+        .andReturn().getResponse().getContentAsString();
+
+    assertThat(exportedDocumentIds(ndjson), contains("c", "d", "e"));
+  }
+
+  @Test
+  public void testThat_invalidContinuationTokenIsABadRequest() throws Exception {
+    given(mockQueryService.queryPage(any(), anyCollection())).willThrow(
+        new InvalidContinuationTokenException("The cursor has expired"));
+
+    mockMvc.perform(export("expired")) //
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(query("documentId").param("continuationToken", "expired")) //
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void testThat_otherIllegalArgumentsAreNotBlamedOnTheToken() throws Exception {
+    given(mockQueryService.queryPage(any(), anyCollection())).willThrow(new IllegalArgumentException("bug"));
+
+    // the exception isn't mapped to a bad request, but propagates out of the dispatcher
+    try {
+      mockMvc.perform(query("documentId"));
+      fail("Expected the IllegalArgumentException to propagate");
+    } catch (ServletException e) {
+      assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+    }
+  }
+}
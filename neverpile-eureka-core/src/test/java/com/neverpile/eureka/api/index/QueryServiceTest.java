@@ -0,0 +1,83 @@
+package com.neverpile.eureka.api.index;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.neverpile.common.condition.AndCondition;
+import com.neverpile.eureka.model.Document;
+
+/**
+ * Verify the emulation of cursors by page numbers for query services not supporting them.
+ */
+public class QueryServiceTest {
+  private static final int PAGE_SIZE = 10;
+
+  private final List<Document> documents = IntStream.range(0, 25).mapToObj(i -> new Document("id" + i)).collect(
+      Collectors.toList());
+
+  // pages through the documents by page number only
+  private final QueryService queryService = query -> documents.stream() //
+      .skip((long) query.getPageNo() * query.getPageSize()) //
+      .limit(query.getPageSize()) //
+      .collect(Collectors.toList());
+
+  private static DocumentQuery query(final String continuationToken) {
+    DocumentQuery query = new DocumentQuery(new AndCondition(), null, DocumentQuery.SortOrder.ASC, 0, PAGE_SIZE);
+    query.setContinuationToken(continuationToken);
+    return query;
+  }
+
+  private static List<String> ids(final QueryResultPage page) {
+    return page.getResults().stream().map(IndexedDocument::getDocumentId).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testThat_initialTokenStartsAtTheFirstPage() {
+    QueryResultPage page = queryService.queryPage(query(DocumentQuery.INITIAL_CONTINUATION_TOKEN),
+        Collections.emptySet());
+
+    assertThat(page.getResults().size(), equalTo(PAGE_SIZE));
+    assertThat(ids(page).get(0), equalTo("id0"));
+    assertThat(page.getContinuationToken(), equalTo("1"));
+  }
+
+  @Test
+  public void testThat_lastPageHasNoContinuationToken() {
+    QueryResultPage page = queryService.queryPage(query("2"), Collections.emptySet());
+
+    assertThat(ids(page), contains("id20", "id21", "id22", "id23", "id24"));
+    assertThat(page.getContinuationToken(), nullValue());
+  }
+
+  @Test
+  public void testThat_queryWithoutCursorHasNoContinuationToken() {
+    QueryResultPage page = queryService.queryPage(query(null), Collections.emptySet());
+
+    assertThat(page.getResults().size(), equalTo(PAGE_SIZE));
+    assertThat(page.getContinuationToken(), nullValue());
+  }
+
+  @Test
+  public void testThat_invalidTokensAreRejected() {
+    for (String token : new String[]{
+        "foo", "-1", "", "99999999999"
+    }) {
+      try {
+        queryService.queryPage(query(token), Collections.emptySet());
+        fail("Expected InvalidContinuationTokenException for " + token);
+      } catch (InvalidContinuationTokenException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -4,12 +4,14 @@ import static java.lang.Math.max;
 import static java.lang.Math.min;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
@@ -21,6 +23,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Stack;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -37,6 +41,7 @@ import org.springframework.util.StreamUtils;
 
 import com.neverpile.common.util.DevNullOutputStream;
 import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
 import com.neverpile.eureka.api.exception.VersionMismatchException;
 import com.neverpile.eureka.model.ObjectName;
 
@@ -71,6 +76,37 @@ public abstract class AbstractObjectStoreServiceTest {
     assertContent(name2, name2);
   }
 
+  @Test
+  @Transactional
+  public void testThat_multipleElementsCanBeRetrievedAtOnce() {
+    String name2 = "-someOtherObject";
+
+    objectStore.put(defaultName(), ObjectStoreService.NEW_VERSION, defaultStream());
+    objectStore.put(name(name2), ObjectStoreService.NEW_VERSION, stream(name2));
+
+    Map<ObjectName, StoreObject> retrieved = objectStore.getMany(
+        Arrays.asList(name(name2), name("Unicorn"), defaultName()));
+
+    assertThat(retrieved.keySet(), contains(name(name2), defaultName()));
+    assertEquals("TEST CONTENT" + name2, stringInputStreamToString(retrieved.get(name(name2)).getInputStream()));
+    assertEquals("TEST CONTENT", stringInputStreamToString(retrieved.get(defaultName()).getInputStream()));
+    assertEquals(currentVersion(), retrieved.get(defaultName()).getVersion());
+  }
+
+  @Test
+  @Transactional
+  public void testThat_rangeOfElementCanBeRetrieved() {
+    objectStore.put(defaultName(), ObjectStoreService.NEW_VERSION, defaultStream());
+
+    // "TEST CONTENT"
+    assertEquals("CONT", stringInputStreamToString(objectStore.get(defaultName(), 5, 4).getInputStream()));
+    assertEquals("TENT", stringInputStreamToString(objectStore.get(defaultName(), 8, -1).getInputStream()));
+    assertEquals("TENT", stringInputStreamToString(objectStore.get(defaultName(), 8, 100).getInputStream()));
+    assertEquals("", stringInputStreamToString(objectStore.get(defaultName(), 100, 4).getInputStream()));
+    assertEquals(currentVersion(), objectStore.get(defaultName(), 5, 4).getVersion());
+    assertNull(objectStore.get(name("Unicorn"), 0, 1));
+  }
+
   @Test
   @Transactional
   public void testThat_existenceOfObjectsCanBeChecked() {
@@ -233,6 +269,41 @@ public abstract class AbstractObjectStoreServiceTest {
     assertDefaultContent();
   }
 
+  @Test
+  public void testThat_renameIsSaveOnCompletion() {
+    assumeTrue(objectStore.supportsRename());
+
+    String renamed = "-renamed";
+    transactionTemplate.execute(status -> {
+      objectStore.put(defaultName(), ObjectStoreService.NEW_VERSION, defaultStream());
+      objectStore.rename(defaultName(), name(renamed));
+      return null;
+    });
+
+    assertNull(objectStore.get(defaultName()));
+    assertContent(renamed, "");
+  }
+
+  @Test
+  public void testThat_renameIsSaveOnRollback() {
+    assumeTrue(objectStore.supportsRename());
+
+    transactionTemplate.execute(status -> {
+      objectStore.put(defaultName(), ObjectStoreService.NEW_VERSION, defaultStream());
+      return null;
+    });
+
+    String renamed = "-renamed";
+    transactionTemplate.execute(status -> {
+      objectStore.rename(defaultName(), name(renamed));
+      status.setRollbackOnly();
+      return null;
+    });
+
+    assertNull(objectStore.get(name(renamed)));
+    assertDefaultContent();
+  }
+
   @Test
   public void testThat_updateTransactionIsSaveOnRollback() {
     transactionTemplate.execute(status -> {
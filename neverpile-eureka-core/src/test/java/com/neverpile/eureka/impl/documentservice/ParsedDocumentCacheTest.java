@@ -0,0 +1,58 @@
+package com.neverpile.eureka.impl.documentservice;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+public class ParsedDocumentCacheTest {
+  private static DocumentPdo aDocument(final String id) {
+    DocumentPdo doc = new DocumentPdo(id);
+    doc.setVersionTimestamp(Instant.ofEpochMilli(1234567L));
+    return doc;
+  }
+
+  @Test
+  public void testThat_entriesAreEvictedBySize() {
+    ParsedDocumentCache cache = ParsedDocumentCache.local(2, Long.MAX_VALUE);
+
+    cache.put(aDocument("a"), 10);
+    cache.put(aDocument("b"), 10);
+    cache.get("a", Instant.ofEpochMilli(1234567L)); // make b the least recently used one
+    cache.put(aDocument("c"), 10);
+
+    assertThat(cache.localSize(), equalTo(2));
+    assertThat(cache.get("a", Instant.ofEpochMilli(1234567L)).isPresent(), is(true));
+    assertThat(cache.get("b", Instant.ofEpochMilli(1234567L)).isPresent(), is(false));
+    assertThat(cache.get("c", Instant.ofEpochMilli(1234567L)).isPresent(), is(true));
+  }
+
+  @Test
+  public void testThat_entriesAreEvictedByWeight() {
+    ParsedDocumentCache cache = ParsedDocumentCache.local(100, 25);
+
+    cache.put(aDocument("a"), 10);
+    cache.put(aDocument("b"), 10);
+    cache.put(aDocument("c"), 10);
+
+    assertThat(cache.localSize(), equalTo(2));
+    assertThat(cache.localWeight(), equalTo(20L));
+    assertThat(cache.get("a", Instant.ofEpochMilli(1234567L)).isPresent(), is(false));
+  }
+
+  @Test
+  public void testThat_evictionReleasesWeight() {
+    ParsedDocumentCache cache = ParsedDocumentCache.local(100, 100);
+
+    cache.put(aDocument("a"), 10);
+    cache.put(aDocument("a"), 20);
+    assertThat(cache.localWeight(), equalTo(20L));
+
+    cache.evict("a", Instant.ofEpochMilli(1234567L));
+    assertThat(cache.localSize(), equalTo(0));
+    assertThat(cache.localWeight(), equalTo(0L));
+  }
+}
@@ -0,0 +1,172 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+public class CompressingObjectStoreServiceTest {
+  private static final ObjectName DOCUMENT_JSON = ObjectName.of("document", "a", "document.json");
+
+  private final byte[] json = jsonContent();
+
+  private InMemoryObjectStoreService backingStore;
+
+  private CompressingObjectStoreService objectStore;
+
+  private static byte[] jsonContent() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < 1000; i++)
+      sb.append(i > 0 ? "," : "").append("{\"id\":\"element-").append(i).append("\",\"type\":\"text/plain\"}");
+    return sb.append("]").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Before
+  public void createStore() {
+    backingStore = new InMemoryObjectStoreService(true);
+    objectStore = createStore(new Lz4CompressionCodec());
+  }
+
+  private CompressingObjectStoreService createStore(final CompressionCodec codec) {
+    return new CompressingObjectStoreService(backingStore, codec,
+        new CompressionPolicy(List.of("**"), List.of("document/*/raw/**"), 256));
+  }
+
+  private void put(final ObjectName name, final byte[] bytes) {
+    objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(bytes));
+  }
+
+  private byte[] read(final ObjectName name) throws IOException {
+    try (InputStream is = objectStore.get(name).getInputStream()) {
+      return is.readAllBytes();
+    }
+  }
+
+  private byte[] stored(final ObjectName name) {
+    return backingStore.objects.get(name);
+  }
+
+  @Test
+  public void testThat_jsonIsCompressed() throws IOException {
+    put(DOCUMENT_JSON, json);
+
+    assertThat(stored(DOCUMENT_JSON).length, lessThan(json.length / 4));
+    assertThat(CompressingObjectStoreService.isFramed(stored(DOCUMENT_JSON)), equalTo(true));
+    assertThat(read(DOCUMENT_JSON), equalTo(json));
+  }
+
+  @Test
+  public void testThat_zstdCompressedObjectsAreReadByLz4Store() throws IOException {
+    objectStore = createStore(new ZstdCompressionCodec(3));
+    put(DOCUMENT_JSON, json);
+    assertThat(stored(DOCUMENT_JSON)[CompressingObjectStoreService.MAGIC.length], equalTo(ZstdCompressionCodec.ID));
+
+    objectStore = createStore(new Lz4CompressionCodec());
+    assertThat(read(DOCUMENT_JSON), equalTo(json));
+  }
+
+  @Test
+  public void testThat_uncompressedObjectsRemainReadable() throws IOException {
+    backingStore.put(DOCUMENT_JSON, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(json));
+
+    assertThat(read(DOCUMENT_JSON), equalTo(json));
+    try (InputStream is = objectStore.get(DOCUMENT_JSON, 100, 50).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(json, 100, 150)));
+    }
+  }
+
+  @Test
+  public void testThat_rangesOfUncompressedObjectsAreReadWithoutRetrievingWholeObject() throws IOException {
+    backingStore = spy(new InMemoryObjectStoreService(true));
+    objectStore = createStore(new Lz4CompressionCodec());
+    backingStore.put(DOCUMENT_JSON, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(json));
+
+    try (InputStream is = objectStore.get(DOCUMENT_JSON, 100, 50).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(json, 100, 150)));
+    }
+    verify(backingStore, never()).get(DOCUMENT_JSON);
+  }
+
+  @Test
+  public void testThat_smallAndExcludedObjectsAreStoredAsIs() throws IOException {
+    byte[] small = Arrays.copyOf(json, 256);
+    put(DOCUMENT_JSON, small);
+    assertThat(stored(DOCUMENT_JSON), equalTo(small));
+
+    ObjectName raw = ObjectName.of("document", "a", "raw", "content");
+    put(raw, json);
+    assertThat(stored(raw), equalTo(json));
+  }
+
+  @Test
+  public void testThat_compressedFormatsAreStoredAsIs() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+      gzip.write(json);
+    }
+    byte[] gzipped = baos.toByteArray();
+
+    ObjectName content = ObjectName.of("document", "a", "content");
+    put(content, gzipped);
+
+    assertThat(stored(content), equalTo(gzipped));
+    assertThat(read(content), equalTo(gzipped));
+  }
+
+  @Test
+  public void testThat_contentResemblingFrameHeaderIsEscaped() throws IOException {
+    byte[] tricky = Arrays.copyOf(CompressingObjectStoreService.header(Lz4CompressionCodec.ID), 64);
+    put(DOCUMENT_JSON, tricky);
+
+    assertThat(stored(DOCUMENT_JSON).length, equalTo(tricky.length + CompressingObjectStoreService.HEADER_LENGTH));
+    assertThat(read(DOCUMENT_JSON), equalTo(tricky));
+    try (InputStream is = objectStore.get(DOCUMENT_JSON, 2, 10).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(tricky, 2, 12)));
+    }
+  }
+
+  @Test
+  public void testThat_rangesOfCompressedObjectsAreRead() throws IOException {
+    put(DOCUMENT_JSON, json);
+
+    try (InputStream is = objectStore.get(DOCUMENT_JSON, 1000, 100).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(json, 1000, 1100)));
+    }
+  }
+
+  @Test
+  public void testThat_deduplicatedBlobsAreCompressed() throws IOException {
+    DeduplicatingObjectStoreService deduplicating = new DeduplicatingObjectStoreService(objectStore, 1024);
+    byte[] content = new byte[100_000];
+    new Random(4711).nextBytes(content);
+    Arrays.fill(content, 0, 50_000, (byte) 'x');
+
+    deduplicating.put(DOCUMENT_JSON, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(content));
+
+    byte[] blob = backingStore.objects.entrySet().stream() //
+        .filter(e -> DeduplicatingObjectStoreService.BLOB_PREFIX.isPrefixOf(e.getKey())) //
+        .findFirst().orElseThrow().getValue();
+    assertThat(blob.length, lessThan(60_000));
+    try (InputStream is = deduplicating.get(DOCUMENT_JSON).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(content));
+    }
+  }
+}
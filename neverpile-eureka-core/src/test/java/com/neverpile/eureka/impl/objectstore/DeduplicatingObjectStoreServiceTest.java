@@ -0,0 +1,285 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+public class DeduplicatingObjectStoreServiceTest {
+  private static final int MIN_SIZE = 1024;
+
+  private final byte[] content = new byte[10 * MIN_SIZE];
+
+  private InMemoryObjectStoreService backingStore;
+
+  private DeduplicatingObjectStoreService objectStore;
+
+  @Before
+  public void createStore() {
+    new Random(4711).nextBytes(content);
+    backingStore = new InMemoryObjectStoreService(true);
+    objectStore = new DeduplicatingObjectStoreService(backingStore, MIN_SIZE);
+  }
+
+  private void put(final ObjectName name, final byte[] bytes) {
+    objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(bytes));
+  }
+
+  private byte[] read(final ObjectName name) throws IOException {
+    try (InputStream is = objectStore.get(name).getInputStream()) {
+      return is.readAllBytes();
+    }
+  }
+
+  private List<ObjectName> blobs() {
+    return backingStore.objects.keySet().stream() //
+        .filter(DeduplicatingObjectStoreService.BLOB_PREFIX::isPrefixOf) //
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Run the action in a simulated transaction which is committed or rolled back afterwards.
+   */
+  private static void inTransaction(final boolean commit, final Runnable action) {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      action.run();
+    } finally {
+      completeTransaction(commit);
+    }
+  }
+
+  private static void completeTransaction(final boolean commit) {
+    List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations,
+        commit ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK);
+    TransactionSynchronizationManager.clearSynchronization();
+  }
+
+  private void awaitStagedContent() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (backingStore.objects.keySet().stream().noneMatch(DeduplicatingObjectStoreService.STAGING_PREFIX::isPrefixOf)
+        && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    // give the concurrent put a moment to proceed to locking the blob
+    Thread.sleep(100);
+  }
+
+  @Test
+  public void testThat_identicalContentIsStoredOnce() throws IOException {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    ObjectName b = ObjectName.of("document", "b", "content");
+    put(a, content);
+    put(b, content);
+
+    assertThat(blobs(), hasSize(1));
+    assertThat(backingStore.objects.get(a).length, lessThan(256));
+    assertThat(read(a), equalTo(content));
+    assertThat(read(b), equalTo(content));
+  }
+
+  @Test
+  public void testThat_contentIsDeduplicatedWithoutRename() throws IOException {
+    backingStore = new InMemoryObjectStoreService(false);
+    objectStore = new DeduplicatingObjectStoreService(backingStore, MIN_SIZE);
+
+    ObjectName a = ObjectName.of("document", "a", "content");
+    ObjectName b = ObjectName.of("document", "b", "content");
+    put(a, content);
+    put(b, content);
+
+    assertThat(blobs(), hasSize(1));
+    assertThat(read(b), equalTo(content));
+  }
+
+  @Test
+  public void testThat_smallContentIsStoredAsIs() throws IOException {
+    ObjectName a = ObjectName.of("document", "a", "document.json");
+    byte[] small = Arrays.copyOf(content, MIN_SIZE);
+    put(a, small);
+
+    assertThat(blobs(), hasSize(0));
+    assertThat(backingStore.objects.get(a), equalTo(small));
+    assertThat(read(a), equalTo(small));
+  }
+
+  @Test
+  public void testThat_rangesAreReadFromBlob() throws IOException {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    put(a, content);
+
+    try (InputStream is = objectStore.get(a, 100, 50).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(content, 100, 150)));
+    }
+  }
+
+  @Test
+  public void testThat_deduplicationAreaIsHiddenFromRootListing() {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    put(a, content);
+
+    assertThat(objectStore.list(ObjectName.of()).map(o -> o.getObjectName()).collect(Collectors.toList()),
+        contains(ObjectName.of("document")));
+  }
+
+  @Test
+  public void testThat_blobIsCollectedOnlyOnceUnreferencedTwice() {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    ObjectName b = ObjectName.of("document", "b", "content");
+    put(a, content);
+    put(b, content);
+
+    objectStore.delete(a);
+    assertThat(objectStore.collectGarbage(), equalTo(0));
+    assertThat(blobs(), hasSize(1));
+
+    objectStore.delete(b);
+    assertThat(objectStore.collectGarbage(), equalTo(0));
+    assertThat(blobs(), hasSize(1));
+
+    assertThat(objectStore.collectGarbage(), equalTo(1));
+    assertThat(blobs(), hasSize(0));
+  }
+
+  @Test
+  public void testThat_renamedObjectKeepsBlobReferenced() throws IOException {
+    ObjectName staging = ObjectName.of("document", "a", ".upload-1");
+    ObjectName a = ObjectName.of("document", "a", "content");
+    put(staging, content);
+    objectStore.rename(staging, a);
+
+    objectStore.collectGarbage();
+    objectStore.collectGarbage();
+
+    assertThat(blobs(), hasSize(1));
+    assertThat(read(a), equalTo(content));
+  }
+
+  @Test
+  public void testThat_rollbackRemovesCreatedBlobAndMarker() {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    inTransaction(false, () -> put(a, content));
+
+    assertThat(backingStore.objects.keySet(), empty());
+  }
+
+  @Test
+  public void testThat_rollbackKeepsBlobReferencedByConcurrentTransaction() throws Exception {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    ObjectName b = ObjectName.of("document", "b", "content");
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> concurrentPut;
+      TransactionSynchronizationManager.initSynchronization();
+      try {
+        put(a, content);
+
+        // the concurrent transaction has to wait for this one to complete
+        concurrentPut = executor.submit(() -> inTransaction(true, () -> put(b, content)));
+        awaitStagedContent();
+      } finally {
+        completeTransaction(false);
+      }
+      concurrentPut.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(objectStore.checkObjectExists(a), equalTo(false));
+    assertThat(blobs(), hasSize(1));
+    assertThat(read(b), equalTo(content));
+  }
+
+  @Test
+  public void testThat_garbageCollectionKeepsMarkerOfPointerNotStoredYet() throws Exception {
+    ObjectName a = ObjectName.of("document", "a", "content");
+    CountDownLatch pointerReached = new CountDownLatch(1);
+    CountDownLatch collected = new CountDownLatch(1);
+
+    backingStore = new InMemoryObjectStoreService(true) {
+      @Override
+      public void put(final ObjectName objectName, final String version, final InputStream content,
+          final long length) {
+        if (objectName.equals(a)) {
+          pointerReached.countDown();
+          try {
+            collected.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        super.put(objectName, version, content, length);
+      }
+    };
+    objectStore = new DeduplicatingObjectStoreService(backingStore, MIN_SIZE);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> transaction = executor.submit(() -> inTransaction(true, () -> put(a, content)));
+      assertThat(pointerReached.await(10, TimeUnit.SECONDS), equalTo(true));
+
+      // the blob and the marker have been stored, the pointer hasn't
+      objectStore.collectGarbage();
+      objectStore.collectGarbage();
+      collected.countDown();
+      transaction.get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    objectStore.collectGarbage();
+    objectStore.collectGarbage();
+
+    assertThat(blobs(), hasSize(1));
+    assertThat(read(a), equalTo(content));
+  }
+
+  @Test
+  public void testThat_rangedReadSniffsPointerWithoutRetrievingWholeObject() throws IOException {
+    backingStore = spy(new InMemoryObjectStoreService(true));
+    objectStore = new DeduplicatingObjectStoreService(backingStore, MIN_SIZE);
+
+    ObjectName a = ObjectName.of("document", "a", "content");
+    ObjectName small = ObjectName.of("document", "a", "document.json");
+    put(a, content);
+    put(small, Arrays.copyOf(content, MIN_SIZE));
+
+    try (InputStream is = objectStore.get(a, 100, 50).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(content, 100, 150)));
+    }
+    try (InputStream is = objectStore.get(small, 300, 50).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(content, 300, 350)));
+    }
+
+    verify(backingStore, never()).get(a);
+    verify(backingStore, never()).get(small);
+  }
+}
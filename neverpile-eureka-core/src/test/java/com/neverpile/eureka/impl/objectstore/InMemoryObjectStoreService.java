@@ -0,0 +1,160 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * A minimal object store keeping the objects in memory, used as the backing store of object store
+ * decorators under test. If transaction synchronization is active, the changes are undone when the
+ * transaction is rolled back. Changes are visible to other threads right away, though.
+ */
+class InMemoryObjectStoreService implements ObjectStoreService {
+  final Map<ObjectName, byte[]> objects = new ConcurrentSkipListMap<>();
+
+  private final boolean supportsRename;
+
+  /**
+   * The undo actions of the changes made by the current transaction, to be run in reverse order
+   * upon rollback.
+   */
+  private class UndoLog implements TransactionSynchronization {
+    private final Deque<Runnable> undoActions = new ArrayDeque<>();
+
+    @Override
+    public void afterCompletion(final int status) {
+      TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryObjectStoreService.this);
+      if (status != STATUS_COMMITTED)
+        undoActions.forEach(Runnable::run);
+    }
+  }
+
+  InMemoryObjectStoreService(final boolean supportsRename) {
+    this.supportsRename = supportsRename;
+  }
+
+  private StoreObject storeObject(final ObjectName name, final byte[] content) {
+    return new StoreObject() {
+      @Override
+      public ObjectName getObjectName() {
+        return name;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        if (null == content)
+          throw new UnsupportedOperationException();
+        return new ByteArrayInputStream(content);
+      }
+
+      @Override
+      public String getVersion() {
+        return null != content ? "1" : null;
+      }
+    };
+  }
+
+  /**
+   * Record the current state of the given object, so that it is restored if the current transaction
+   * is rolled back.
+   */
+  private void recordUndo(final ObjectName objectName) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+      return;
+
+    UndoLog undoLog = (UndoLog) TransactionSynchronizationManager.getResource(this);
+    if (null == undoLog) {
+      undoLog = new UndoLog();
+      TransactionSynchronizationManager.bindResource(this, undoLog);
+      TransactionSynchronizationManager.registerSynchronization(undoLog);
+    }
+
+    byte[] previous = objects.get(objectName);
+    undoLog.undoActions.push(() -> {
+      if (null != previous)
+        objects.put(objectName, previous);
+      else
+        objects.remove(objectName);
+    });
+  }
+
+  @Override
+  public void put(final ObjectName objectName, final String version, final InputStream content,
+      final long length) {
+    try {
+      byte[] bytes = content.readAllBytes();
+      recordUndo(objectName);
+      objects.put(objectName, bytes);
+    } catch (IOException e) {
+      throw new ObjectStoreException(objectName, e);
+    }
+  }
+
+  @Override
+  public Stream<StoreObject> list(final ObjectName prefix) {
+    return objects.keySet().stream() //
+        .filter(n -> n.length() > prefix.length() && prefix.isPrefixOf(n)) //
+        .map(n -> ObjectName.of(Arrays.copyOf(n.to(), prefix.length() + 1))) //
+        .collect(Collectors.toCollection(LinkedHashSet::new)).stream() //
+        .map(n -> storeObject(n, objects.get(n)));
+  }
+
+  @Override
+  public StoreObject get(final ObjectName objectName) {
+    byte[] content = objects.get(objectName);
+    return null != content ? storeObject(objectName, content) : null;
+  }
+
+  @Override
+  public StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    byte[] content = objects.get(objectName);
+    if (null == content)
+      return null;
+
+    int from = (int) Math.min(offset, content.length);
+    int to = length < 0 ? content.length : (int) Math.min(content.length, from + length);
+    return storeObject(objectName, Arrays.copyOfRange(content, from, to));
+  }
+
+  @Override
+  public boolean supportsRename() {
+    return supportsRename;
+  }
+
+  @Override
+  public void rename(final ObjectName from, final ObjectName to) {
+    recordUndo(from);
+    recordUndo(to);
+    objects.put(to, objects.remove(from));
+  }
+
+  @Override
+  public void delete(final ObjectName objectName) {
+    objects.keySet().stream() //
+        .filter(n -> n.length() >= objectName.length() && objectName.isPrefixOf(n)) //
+        .collect(Collectors.toList()) //
+        .forEach(n -> {
+          recordUndo(n);
+          objects.remove(n);
+        });
+  }
+
+  @Override
+  public boolean checkObjectExists(final ObjectName objectName) {
+    return objects.containsKey(objectName);
+  }
+}
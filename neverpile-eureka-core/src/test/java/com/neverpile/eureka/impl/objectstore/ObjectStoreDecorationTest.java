@@ -0,0 +1,131 @@
+package com.neverpile.eureka.impl.objectstore;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.autoconfig.NeverpileEurekaAutoConfiguration;
+import com.neverpile.eureka.impl.tx.lock.LocalLockFactory;
+import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.tx.lock.ClusterLockFactory;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Verify that the object store decorators wrap the proxy of the actual object store, so that the
+ * aspects applied to it, like metrics, remain in effect.
+ */
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {
+    ObjectStoreDecorationTest.ServiceConfig.class, NeverpileEurekaAutoConfiguration.CompressionConfiguration.class,
+    NeverpileEurekaAutoConfiguration.DeduplicationConfiguration.class
+})
+@TestPropertySource(properties = {
+    "neverpile-eureka.compression.enabled=true", "neverpile-eureka.deduplication.enabled=true",
+    "neverpile-eureka.deduplication.min-size=1024"
+})
+public class ObjectStoreDecorationTest {
+  @Configuration
+  @EnableAspectJAutoProxy
+  public static class ServiceConfig {
+    @Bean
+    public MeterRegistry meterRegistry() {
+      return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    public TimedAspect timedAspect(final MeterRegistry meterRegistry) {
+      return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public ClusterLockFactory lockFactory() {
+      return new LocalLockFactory();
+    }
+
+    @Bean
+    public ObjectStoreService objectStoreService() {
+      return new TimedObjectStoreService();
+    }
+  }
+
+  /**
+   * An object store timing its operations like the actual ones do.
+   */
+  static class TimedObjectStoreService extends InMemoryObjectStoreService {
+    TimedObjectStoreService() {
+      super(true);
+    }
+
+    @Override
+    @Timed("test.object-store.put")
+    public void put(final ObjectName objectName, final String version, final InputStream content,
+        final long length) {
+      super.put(objectName, version, content, length);
+    }
+
+    @Override
+    @Timed("test.object-store.get")
+    public StoreObject get(final ObjectName objectName) {
+      return super.get(objectName);
+    }
+  }
+
+  @Autowired
+  ObjectStoreService objectStore;
+
+  @Autowired
+  MeterRegistry meterRegistry;
+
+  @Test
+  public void testThat_decoratorsWrapTheProxiedObjectStore() {
+    // deduplication on top of compression on top of the proxy
+    assertThat(objectStore, instanceOf(DeduplicatingObjectStoreService.class));
+    Object compressing = ReflectionTestUtils.getField(objectStore, "delegate");
+    assertThat(compressing, instanceOf(CompressingObjectStoreService.class));
+    Object inner = ReflectionTestUtils.getField(compressing, "delegate");
+    assertThat(AopUtils.isAopProxy(inner), equalTo(true));
+  }
+
+  @Test
+  public void testThat_metricsOfTheDecoratedObjectStoreAreRecorded() throws Exception {
+    byte[] content = new byte[4096];
+    new Random(42).nextBytes(content);
+    ObjectName name = ObjectName.of("document", "foo", "bar");
+
+    objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(content), content.length);
+    try (InputStream is = objectStore.get(name).getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(content));
+    }
+
+    Timer puts = meterRegistry.find("test.object-store.put").timer();
+    Timer gets = meterRegistry.find("test.object-store.get").timer();
+    assertThat(puts, notNullValue());
+    assertThat(puts.count(), greaterThan(0L));
+    assertThat(gets, notNullValue());
+    assertThat(gets.count(), greaterThan(0L));
+  }
+}
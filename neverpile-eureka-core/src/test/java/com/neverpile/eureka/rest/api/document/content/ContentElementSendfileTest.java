@@ -0,0 +1,253 @@
+package com.neverpile.eureka.rest.api.document.content;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.ws.rs.core.MediaType;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.neverpile.eureka.api.BaseTestConfiguration;
+import com.neverpile.eureka.api.ContentElementIdGenerationStrategy;
+import com.neverpile.eureka.api.DocumentIdGenerationStrategy;
+import com.neverpile.eureka.api.MultiVersioningDocumentService;
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
+import com.neverpile.eureka.event.EventPublisher;
+import com.neverpile.eureka.model.ContentElement;
+import com.neverpile.eureka.model.Digest;
+import com.neverpile.eureka.model.Document;
+import com.neverpile.eureka.model.HashAlgorithm;
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * Verify the zero-copy delivery of file-backed content elements. MockMvc doesn't write response
+ * bodies handed to the container via sendfile, so the tests check the request attributes the
+ * container would act upon against the content of the file.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BaseTestConfiguration.class)
+@AutoConfigureMockMvc
+public class ContentElementSendfileTest {
+  private static final String D = "aTestDocument";
+
+  private static final String CE = "aContentElement";
+
+  private static final ObjectName OBJECT_NAME = ObjectName.of("document", D, CE);
+
+  private static final String AUTHORIZATION = "Basic "
+      + Base64.getEncoder().encodeToString("user:password".getBytes(StandardCharsets.UTF_8));
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @MockBean
+  MultiVersioningDocumentService mockDocumentService;
+
+  @MockBean
+  ObjectStoreService mockObjectStoreService;
+
+  @MockBean
+  EventPublisher eventPublisher;
+
+  @MockBean
+  DocumentIdGenerationStrategy documentIdGenerationStrategy;
+
+  @MockBean
+  ContentElementIdGenerationStrategy contentElementIdGenerationStrategy;
+
+  @Autowired
+  MockMvc mockMvc;
+
+  private byte[] content;
+
+  private File file;
+
+  private final AtomicInteger releaseCount = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    content = new byte[128 * 1024];
+    new Random(42).nextBytes(content);
+    file = folder.newFile("content.dat");
+    Files.write(file.toPath(), content);
+
+    Document doc = new Document();
+    doc.setDocumentId(D);
+    doc.setDateCreated(Instant.now());
+    doc.setDateModified(Instant.now());
+    doc.setVersionTimestamp(Instant.ofEpochMilli(42L));
+
+    ContentElement ce = new ContentElement();
+    ce.setContentElementId(CE);
+    ce.setType(MediaType.APPLICATION_OCTET_STREAM_TYPE);
+    ce.setDigest(new Digest());
+    ce.getDigest().setAlgorithm(HashAlgorithm.SHA_256);
+    ce.getDigest().setBytes(MessageDigest.getInstance("SHA-256").digest(content));
+    ce.setFileName("content.dat");
+    ce.setLength(content.length);
+    ce.setRole("part");
+    doc.setContentElements(Collections.singletonList(ce));
+
+    given(documentIdGenerationStrategy.validateDocumentId(any())).willReturn(true);
+    given(mockDocumentService.getDocument(D)).willReturn(Optional.of(doc));
+    given(mockObjectStoreService.checkObjectExists(OBJECT_NAME)).willReturn(true);
+  }
+
+  private StoreObject fileBackedObject(final Path localFile) {
+    return new StoreObject() {
+      @Override
+      public ObjectName getObjectName() {
+        return OBJECT_NAME;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        try {
+          return Files.newInputStream(file.toPath());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      @Override
+      public String getVersion() {
+        return "1";
+      }
+
+      @Override
+      public Optional<Path> getLocalFile() {
+        return Optional.of(localFile);
+      }
+
+      @Override
+      public void release() {
+        releaseCount.incrementAndGet();
+      }
+    };
+  }
+
+  private MockHttpServletRequestBuilder getContent(final boolean sendfileSupported) {
+    MockHttpServletRequestBuilder request = get("/api/v1/documents/{documentID}/content/{part}", D, CE) //
+        .header(HttpHeaders.AUTHORIZATION, AUTHORIZATION) //
+        .accept(org.springframework.http.MediaType.ALL);
+    return sendfileSupported ? request.requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE) : request;
+  }
+
+  private byte[] sendfileRegion(final MvcResult result) throws IOException {
+    String filename = (String) result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename");
+    long start = (Long) result.getRequest().getAttribute("org.apache.tomcat.sendfile.start");
+    long end = (Long) result.getRequest().getAttribute("org.apache.tomcat.sendfile.end");
+    return Arrays.copyOfRange(Files.readAllBytes(new File(filename).toPath()), (int) start, (int) end);
+  }
+
+  @Test
+  public void testThat_fileBackedContentElementIsDeliveredViaSendfile() throws Exception {
+    given(mockObjectStoreService.get(OBJECT_NAME)).willReturn(fileBackedObject(file.toPath()));
+
+    MvcResult result = mockMvc.perform(getContent(true)) //
+        .andExpect(status().isOk()) //
+        .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, Integer.toString(content.length))) //
+        .andReturn();
+
+    assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"),
+        equalTo(file.getCanonicalPath()));
+    assertThat(sendfileRegion(result), equalTo(content));
+    assertThat(result.getResponse().getContentAsByteArray().length, equalTo(0));
+
+    // the file is resolved from the single store object retrieved, which is released unread
+    verify(mockObjectStoreService, times(1)).get(eq(OBJECT_NAME));
+    verify(mockObjectStoreService, never()).get(any(), anyLong(), anyLong());
+    assertThat(releaseCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void testThat_rangeOfFileBackedContentElementIsDeliveredViaSendfile() throws Exception {
+    given(mockObjectStoreService.get(OBJECT_NAME)).willReturn(fileBackedObject(file.toPath()));
+
+    MvcResult result = mockMvc.perform(getContent(true).header(HttpHeaders.RANGE, "bytes=1000-60999")) //
+        .andExpect(status().isPartialContent()) //
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-60999/" + content.length)) //
+        .andExpect(header().string(HttpHeaders.CONTENT_LENGTH, "60000")) //
+        .andReturn();
+
+    assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"), equalTo(1000L));
+    assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"), equalTo(61000L));
+    assertThat(sendfileRegion(result), equalTo(Arrays.copyOfRange(content, 1000, 61000)));
+
+    verify(mockObjectStoreService, times(1)).get(eq(OBJECT_NAME));
+    verify(mockObjectStoreService, never()).get(any(), anyLong(), anyLong());
+    assertThat(releaseCount.get(), equalTo(1));
+  }
+
+  @Test
+  public void testThat_purgedFileFallsBackToStreamingTheResolvedObject() throws Exception {
+    // the file has been superseded and purged after the object was resolved
+    given(mockObjectStoreService.get(OBJECT_NAME))
+        .willReturn(fileBackedObject(folder.getRoot().toPath().resolve("purged.dat")));
+
+    MvcResult result = mockMvc.perform(getContent(true).header(HttpHeaders.RANGE, "bytes=1000-60999")) //
+        .andExpect(status().isPartialContent()) //
+        .andReturn();
+
+    assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"), nullValue());
+    assertThat(result.getResponse().getContentAsByteArray(), equalTo(Arrays.copyOfRange(content, 1000, 61000)));
+
+    verify(mockObjectStoreService, times(1)).get(eq(OBJECT_NAME));
+    verify(mockObjectStoreService, never()).get(any(), anyLong(), anyLong());
+    // the payload is read from the object, which therefore isn't released
+    assertThat(releaseCount.get(), equalTo(0));
+  }
+
+  @Test
+  public void testThat_contentIsStreamedWithoutSendfileSupport() throws Exception {
+    given(mockObjectStoreService.get(OBJECT_NAME)).willReturn(fileBackedObject(file.toPath()));
+
+    MvcResult result = mockMvc.perform(getContent(false)) //
+        .andExpect(status().isOk()) //
+        .andReturn();
+
+    assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"), nullValue());
+    assertThat(result.getResponse().getContentAsByteArray(), equalTo(content));
+  }
+}
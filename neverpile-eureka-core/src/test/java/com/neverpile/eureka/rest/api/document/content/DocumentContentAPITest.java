@@ -319,6 +319,98 @@ public class DocumentContentAPITest extends AbstractRestAssuredTest {
     // @formatter:on
   }
 
+  @Test
+  public void testThat_contentElementRangeCanBeRetrieved() throws Exception {
+    Document doc = createTestDocumentWithContent();
+
+    // @formatter:off
+    BDDMockito.given(mockDocumentService.getDocument(D)).willReturn(Optional.of(doc));
+
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("Range", "bytes=4-8")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(3).getId())
+        .then()
+          .statusCode(206)
+          .header("Content-Range", Matchers.equalTo("bytes 4-8/44"))
+          .header("Content-Length", Matchers.equalTo("5"))
+          .header("Accept-Ranges", Matchers.equalTo("bytes"))
+          .body(equalTo("quick"));
+
+    // suffix range
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("Range", "bytes=-3")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(3).getId())
+        .then()
+          .statusCode(206)
+          .header("Content-Range", Matchers.equalTo("bytes 41-43/44"))
+          .body(equalTo("dog"));
+
+    // unsatisfiable range
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("Range", "bytes=44-")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(3).getId())
+        .then()
+          .statusCode(416)
+          .header("Content-Range", Matchers.equalTo("bytes */44"));
+
+    // stale If-Range: the whole element is returned
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("Range", "bytes=4-8")
+          .header("If-Range", "\"sha-256_somethingElse\"")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(3).getId())
+        .then()
+          .statusCode(200)
+          .body(equalTo("The quick brown fox jumped over the lazy dog"));
+    // @formatter:on
+  }
+
+  @Test
+  public void testThat_conditionalRequestForUnmodifiedContentElementYieldsNotModified() throws Exception {
+    Document doc = createTestDocumentWithContent();
+
+    // @formatter:off
+    BDDMockito.given(mockDocumentService.getDocument(D)).willReturn(Optional.of(doc));
+
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("If-None-Match", "\"sha-256_LCa0a2j/xo/5m0U8HTBBNBNCLXBkg7+g+YpeiGJm564=\"")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(0).getId())
+        .then()
+          .statusCode(304)
+          .header("ETag", Matchers.equalTo("\"sha-256_LCa0a2j/xo/5m0U8HTBBNBNCLXBkg7+g+YpeiGJm564=\""));
+
+    RestAssured
+        .given()
+          .accept(ContentType.ANY)
+          .auth().preemptive().basic("user", "password")
+          .header("If-None-Match", "\"sha-256_STjYc7Z1UJKRK1T5cDMFIgYZKk6q5c6aTyNaEGfQSw0=\"")
+        .when().get("/api/v1/documents/{documentID}/content/{part}", D,
+            doc.getContentElements().get(0).getId())
+        .then()
+          .statusCode(200)
+          .body(equalTo("foo"));
+    // @formatter:on
+  }
+
   @Test
   public void testThat_contentElementsWithSomeMissingMetadataRetrieved() throws Exception {
     Document doc = createTestDocument();
@@ -0,0 +1,195 @@
+package com.neverpile.eureka.tx.wal;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.neverpile.eureka.tx.wal.WriteAheadLog.ActionType;
+import com.neverpile.eureka.tx.wal.local.SegmentedFileWAL;
+
+public class SegmentedFileWALTest {
+  private static final String DIRECTORY = "./data/segmented-wal-test";
+
+  private static int segmentCount() {
+    File[] segments = new File(DIRECTORY).listFiles((d, n) -> n.endsWith(".seg"));
+    return null != segments ? segments.length : 0;
+  }
+
+  @Test
+  public void testThat_recoveryOfFailedTransactionsOnRestartWorks() throws Exception {
+    SomeTransactionalAction a1 = new SomeTransactionalAction("testThat_recoveryOfFailedTransactionsOnRestartWorks tx1");
+    SomeTransactionalAction a2 = new SomeTransactionalAction("testThat_recoveryOfFailedTransactionsOnRestartWorks tx2");
+
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 4096);
+    wal.start();
+    try {
+      wal.logAction("tx1", ActionType.ROLLBACK, a1);
+      wal.logAction("tx2", ActionType.ROLLBACK, a2);
+
+      // complete tx1, tx2 remains incomplete
+      wal.logCompletion("tx1");
+
+    } finally {
+      wal.stop();
+    }
+
+    SegmentedFileWAL recoveryWal = new SegmentedFileWAL(DIRECTORY, 4096);
+    recoveryWal.start();
+    recoveryWal.stop();
+
+    a1.assertNotExecuted();
+    a2.assertExecuted();
+  }
+
+  @Test
+  public void testThat_tornRecordIsIgnoredOnRecovery() throws Exception {
+    SomeTransactionalAction a1 = new SomeTransactionalAction("testThat_tornRecordIsIgnoredOnRecovery tx1");
+    SomeTransactionalAction a2 = new SomeTransactionalAction("testThat_tornRecordIsIgnoredOnRecovery tx2");
+
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 1024 * 1024);
+    wal.start();
+    try {
+      wal.logAction("tx1", ActionType.ROLLBACK, a1);
+      wal.logAction("tx2", ActionType.ROLLBACK, a2);
+    } finally {
+      wal.stop();
+    }
+
+    // simulate a crash in the middle of appending the second record
+    File[] segments = new File(DIRECTORY).listFiles((d, n) -> n.endsWith(".seg"));
+    assertThat(segments.length, equalTo(1));
+    try (RandomAccessFile raf = new RandomAccessFile(segments[0], "rw")) {
+      raf.setLength(raf.length() - 10);
+    }
+
+    SegmentedFileWAL recoveryWal = new SegmentedFileWAL(DIRECTORY, 1024 * 1024);
+    recoveryWal.start();
+    recoveryWal.stop();
+
+    a1.assertExecuted();
+    a2.assertNotExecuted();
+  }
+
+  @Test
+  public void testThat_completedSegmentsArePruned() throws Exception {
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 1024);
+    wal.start();
+    try {
+      for (int i = 0; i < 100; i++)
+        wal.logAction("tx" + i, ActionType.COMMIT,
+            new SomeTransactionalAction("testThat_completedSegmentsArePruned " + i));
+
+      int segmentsBefore = segmentCount();
+      assertThat(segmentsBefore, greaterThan(1));
+
+      for (int i = 0; i < 100; i++)
+        wal.logCompletion("tx" + i);
+
+      // verify that whole segments have been dropped
+      assertThat(segmentCount(), lessThan(segmentsBefore));
+    } finally {
+      wal.stop();
+    }
+  }
+
+  @Test
+  public void testThat_pruningPreservesActiveEntries() throws Exception {
+    SomeTransactionalAction a1 = new SomeTransactionalAction("testThat_pruningPreservesActiveEntries tx1");
+
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 1024);
+    wal.start();
+
+    wal.logAction("tx1", ActionType.ROLLBACK, a1);
+
+    try {
+      // trigger pruning
+      for (int i = 0; i <= 120; i++) {
+        wal.logAction("txXXX" + i, ActionType.COMMIT,
+            new SomeTransactionalAction("testThat_pruningPreservesActiveEntries " + i));
+        wal.logCompletion("txXXX" + i);
+      }
+
+      wal.applyLoggedActions("tx1", ActionType.ROLLBACK, false);
+
+      a1.assertExecuted();
+    } finally {
+      wal.stop();
+    }
+  }
+
+  @Test
+  public void testThat_onlyActionsOfRequestedTypeAreApplied() throws Exception {
+    SomeTransactionalAction commit = new SomeTransactionalAction("testThat_onlyActionsOfRequestedTypeAreApplied commit");
+    SomeTransactionalAction undo = new SomeTransactionalAction("testThat_onlyActionsOfRequestedTypeAreApplied undo");
+
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 4096);
+    wal.start();
+    try {
+      wal.logAction("tx1", ActionType.COMMIT, commit);
+      wal.logAction("tx1", ActionType.ROLLBACK, undo);
+
+      wal.applyLoggedActions("tx1", ActionType.COMMIT, false);
+      wal.logCompletion("tx1");
+
+      commit.assertExecuted();
+      undo.assertNotExecuted();
+    } finally {
+      wal.stop();
+    }
+  }
+
+  @Test
+  public void testThat_groupCommitSyncsConcurrentCommitters() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    SegmentedFileWAL wal = new SegmentedFileWAL(DIRECTORY, 1024 * 1024);
+    wal.setGroupCommit(true, 1000);
+    wal.setMeterRegistry(registry);
+    wal.start();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      List<SomeTransactionalAction> actions = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        String txId = "tx" + i;
+        SomeTransactionalAction action = new SomeTransactionalAction("testThat_groupCommitSyncsConcurrentCommitters " + i);
+        actions.add(action);
+        futures.add(executor.submit(() -> {
+          wal.logAction(txId, ActionType.COMMIT, action);
+          wal.sync();
+        }));
+      }
+
+      for (Future<?> f : futures)
+        f.get();
+
+      // every committer must be covered, but by fewer fsyncs than there were committers
+      long forces = registry.get("wal.sync.latency").timer().count();
+      assertThat(forces, greaterThan(0L));
+      assertThat(forces, lessThan(64L));
+      assertThat(registry.get("wal.sync.batch.size").summary().count(), equalTo(forces));
+
+      for (int i = 0; i < 64; i++) {
+        wal.applyLoggedActions("tx" + i, ActionType.COMMIT, false);
+        wal.logCompletion("tx" + i);
+        actions.get(i).assertExecuted();
+      }
+    } finally {
+      executor.shutdown();
+      wal.stop();
+    }
+  }
+}
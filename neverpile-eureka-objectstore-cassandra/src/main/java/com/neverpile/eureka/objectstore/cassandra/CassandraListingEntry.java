@@ -0,0 +1,97 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import java.util.UUID;
+
+import org.springframework.data.cassandra.core.cql.Ordering;
+import org.springframework.data.cassandra.core.cql.PrimaryKeyType;
+import org.springframework.data.cassandra.core.mapping.Column;
+import org.springframework.data.cassandra.core.mapping.PrimaryKeyColumn;
+import org.springframework.data.cassandra.core.mapping.Table;
+
+/**
+ * An entry of the listing of a prefix: a direct child of the prefix, which may be an object, the
+ * prefix of further objects or both. The entries are maintained along with the objects, so that a
+ * prefix can be listed by reading a single partition.
+ */
+@Table(value = "listing")
+public class CassandraListingEntry {
+  @PrimaryKeyColumn(name = "parent", ordinal = 0, type = PrimaryKeyType.PARTITIONED)
+  private String parent;
+
+  @PrimaryKeyColumn(name = "name", ordinal = 1, type = PrimaryKeyType.CLUSTERED, ordering = Ordering.ASCENDING)
+  private String name;
+
+  @Column("isObject")
+  private Boolean object;
+
+  @Column("hasChildren")
+  private Boolean children;
+
+  @Column
+  private Integer version;
+
+  @Column
+  private Integer chunkCount;
+
+  @Column
+  private UUID revision;
+
+  public CassandraListingEntry() {
+  }
+
+  public String getParent() {
+    return parent;
+  }
+
+  public void setParent(final String parent) {
+    this.parent = parent;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(final String name) {
+    this.name = name;
+  }
+
+  public boolean isObject() {
+    return Boolean.TRUE.equals(object);
+  }
+
+  public void setObject(final Boolean object) {
+    this.object = object;
+  }
+
+  public boolean hasChildren() {
+    return Boolean.TRUE.equals(children);
+  }
+
+  public void setChildren(final Boolean children) {
+    this.children = children;
+  }
+
+  public int getVersion() {
+    return null != version ? version : 0;
+  }
+
+  public void setVersion(final Integer version) {
+    this.version = version;
+  }
+
+  public int getChunkCount() {
+    return null != chunkCount ? chunkCount : 0;
+  }
+
+  public void setChunkCount(final Integer chunkCount) {
+    this.chunkCount = chunkCount;
+  }
+
+  public UUID getRevision() {
+    return revision;
+  }
+
+  public void setRevision(final UUID revision) {
+    this.revision = revision;
+  }
+}
@@ -0,0 +1,220 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.data.cassandra.repository.CassandraRepository;
+import org.springframework.data.cassandra.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.datastax.oss.driver.api.core.cql.ResultSet;
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * Maintains the {@link CassandraListingEntry listing} of the object names. The partition of a prefix
+ * holds an entry for every direct child of the prefix.
+ * <p>
+ * Every write to an entry renews its revision. All writes to entries are lightweight transactions,
+ * since Cassandra doesn't order plain writes with respect to conditional ones. Entries are created
+ * using <code>IF NOT EXISTS</code> and otherwise modified conditional on the revision read before
+ * deciding to do so, re-examining the entry if it has been modified meanwhile. Thus an entry is never
+ * removed if an object or child has been added to it meanwhile, e.g. when the last child of a prefix
+ * is removed while another one is added, and marking an entry is never lost to a concurrent removal.
+ */
+@Repository
+public interface CassandraListingRepository extends CassandraRepository<CassandraListingEntry, Void> {
+  /**
+   * The key of the root partition. Partition keys are prefixed with it, as Cassandra doesn't allow
+   * empty partition keys.
+   */
+  String ROOT = "/";
+
+  /**
+   * The key of the partition holding the state of the listing itself. It doesn't start with
+   * {@link #ROOT}, so it can't clash with the partition of a prefix.
+   */
+  String STATE = "#state";
+
+  /**
+   * The name of the entry marking the listing as complete.
+   */
+  String COMPLETE = "complete";
+
+  @Query("select * from listing where \"parent\" = ?0 ;")
+  Stream<CassandraListingEntry> findByParent(String parent);
+
+  @Query("select * from listing where \"parent\" = ?0 and \"name\" = ?1 ;")
+  Optional<CassandraListingEntry> findEntry(String parent, String name);
+
+  @Query("select * from listing where \"parent\" = ?0 limit 1 ;")
+  Optional<CassandraListingEntry> findAnyByParent(String parent);
+
+  @Query("insert into listing (\"parent\", \"name\", \"isObject\", \"hasChildren\", \"version\", \"chunkCount\", \"revision\") values (?0, ?1, true, false, ?2, ?3, ?4) if not exists ;")
+  ResultSet insertObjectIfNotExists(String parent, String name, int version, int chunkCount, UUID revision);
+
+  @Query("update listing set \"isObject\" = true, \"version\" = ?2, \"chunkCount\" = ?3, \"revision\" = ?5 where \"parent\" = ?0 and \"name\" = ?1 if \"revision\" = ?4 ;")
+  ResultSet markObjectIfRevision(String parent, String name, int version, int chunkCount, UUID expectedRevision,
+      UUID revision);
+
+  @Query("update listing set \"isObject\" = false, \"revision\" = ?3 where \"parent\" = ?0 and \"name\" = ?1 if \"revision\" = ?2 ;")
+  ResultSet unmarkObjectIfRevision(String parent, String name, UUID expectedRevision, UUID revision);
+
+  @Query("insert into listing (\"parent\", \"name\", \"isObject\", \"hasChildren\", \"revision\") values (?0, ?1, false, true, ?2) if not exists ;")
+  ResultSet insertChildrenIfNotExists(String parent, String name, UUID revision);
+
+  @Query("update listing set \"hasChildren\" = true, \"revision\" = ?3 where \"parent\" = ?0 and \"name\" = ?1 if \"revision\" = ?2 ;")
+  ResultSet markChildrenIfRevision(String parent, String name, UUID expectedRevision, UUID revision);
+
+  @Query("update listing set \"hasChildren\" = false, \"revision\" = ?3 where \"parent\" = ?0 and \"name\" = ?1 if \"revision\" = ?2 ;")
+  ResultSet unmarkChildrenIfRevision(String parent, String name, UUID expectedRevision, UUID revision);
+
+  @Query("delete from listing where \"parent\" = ?0 and \"name\" = ?1 if exists ;")
+  ResultSet deleteEntryIfExists(String parent, String name);
+
+  @Query("delete from listing where \"parent\" = ?0 and \"name\" = ?1 if \"revision\" = ?2 ;")
+  ResultSet deleteEntryIfRevision(String parent, String name, UUID expectedRevision);
+
+  /**
+   * Return the partition key of the prefix made up of the first <code>length</code> components of
+   * the given name.
+   */
+  static String partitionKey(final ObjectName name, final int length) {
+    return ROOT + String.join(CassandraObjectStoreService.OBJECT_NAME_DELIMITER, Arrays.copyOf(name.to(), length));
+  }
+
+  /**
+   * Return whether the listing has been marked as complete, i.e. whether it reflects all objects.
+   */
+  default boolean isComplete() {
+    return findEntry(STATE, COMPLETE).isPresent();
+  }
+
+  /**
+   * Mark the listing as complete.
+   */
+  default void markComplete() {
+    markChildren(STATE, COMPLETE);
+  }
+
+  /**
+   * Find the direct children of the given prefix. The entries are read lazily, page by page.
+   */
+  default Stream<CassandraListingEntry> findChildren(final ObjectName prefix) {
+    return findByParent(partitionKey(prefix, prefix.length()));
+  }
+
+  /**
+   * Record a new object and mark its ancestors as having children.
+   */
+  default void addObject(final ObjectName name, final int version, final int chunkCount) {
+    updateObject(name, version, chunkCount);
+    for (int i = name.length() - 1; i > 0; i--)
+      markChildren(partitionKey(name, i - 1), name.element(i - 1));
+  }
+
+  /**
+   * Update the version of an object already recorded.
+   */
+  default void updateObject(final ObjectName name, final int version, final int chunkCount) {
+    String parent = partitionKey(name, name.length() - 1);
+    for (;;) {
+      Optional<CassandraListingEntry> entry = findEntry(parent, name.tail());
+      if (entry.isEmpty()
+          ? insertObjectIfNotExists(parent, name.tail(), version, chunkCount, UUID.randomUUID()).wasApplied()
+          : markObjectIfRevision(parent, name.tail(), version, chunkCount, entry.get().getRevision(),
+              UUID.randomUUID()).wasApplied())
+        return;
+      // the entry has been modified concurrently: re-examine it
+    }
+  }
+
+  /**
+   * Mark the entry of the given name as having children, creating it if necessary. The revision is
+   * renewed even if the entry is marked already, so that a concurrent pruning keeps it.
+   */
+  private void markChildren(final String parent, final String name) {
+    for (;;) {
+      Optional<CassandraListingEntry> entry = findEntry(parent, name);
+      if (entry.isEmpty()
+          ? insertChildrenIfNotExists(parent, name, UUID.randomUUID()).wasApplied()
+          : markChildrenIfRevision(parent, name, entry.get().getRevision(), UUID.randomUUID()).wasApplied())
+        return;
+      // the entry has been modified concurrently: re-examine it
+    }
+  }
+
+  /**
+   * Remove the record of an object, keeping its entry if it has children.
+   */
+  default void removeObject(final ObjectName name) {
+    String parent = partitionKey(name, name.length() - 1);
+    for (;;) {
+      Optional<CassandraListingEntry> entry = findEntry(parent, name.tail());
+      if (entry.isEmpty())
+        return;
+
+      UUID revision = entry.get().getRevision();
+      if (entry.get().hasChildren()) {
+        if (unmarkObjectIfRevision(parent, name.tail(), revision, UUID.randomUUID()).wasApplied())
+          return;
+      } else if (deleteEntryIfRevision(parent, name.tail(), revision).wasApplied()) {
+        pruneAncestors(name, name.length() - 1);
+        return;
+      }
+      // the entry has been modified concurrently: re-examine it
+    }
+  }
+
+  /**
+   * Remove the entry of the given name along with the entries of all names below it.
+   */
+  default void removeTree(final ObjectName name) {
+    removeDescendants(name);
+    deleteEntryIfExists(partitionKey(name, name.length() - 1), name.tail());
+    pruneAncestors(name, name.length() - 1);
+  }
+
+  /**
+   * Remove the entries below the given name. They are deleted one by one rather than by deleting
+   * the partition, as a partition deletion can't be a lightweight transaction.
+   */
+  private void removeDescendants(final ObjectName name) {
+    String key = partitionKey(name, name.length());
+    List<CassandraListingEntry> entries = findByParent(key).collect(Collectors.toList());
+    for (CassandraListingEntry entry : entries) {
+      if (entry.hasChildren())
+        removeDescendants(name.append(entry.getName()));
+      deleteEntryIfExists(key, entry.getName());
+    }
+  }
+
+  /**
+   * Walk up from the prefix made up of the first <code>length</code> components of the given name,
+   * removing the entries of prefixes which no longer have children, unless they are objects as well.
+   * The revision of an entry is read before looking for children, so that the entry is kept if a
+   * child is added in between.
+   */
+  private void pruneAncestors(final ObjectName name, final int length) {
+    int i = length;
+    while (i > 0) {
+      String parent = partitionKey(name, i - 1);
+      String child = name.element(i - 1);
+      Optional<CassandraListingEntry> entry = findEntry(parent, child);
+      if (entry.isEmpty() || !entry.get().hasChildren() || findAnyByParent(partitionKey(name, i)).isPresent())
+        return;
+
+      UUID revision = entry.get().getRevision();
+      if (entry.get().isObject()) {
+        if (unmarkChildrenIfRevision(parent, child, revision, UUID.randomUUID()).wasApplied())
+          return;
+      } else if (deleteEntryIfRevision(parent, child, revision).wasApplied()) {
+        i--;
+      }
+      // otherwise the entry has been modified concurrently: re-examine it
+    }
+  }
+}
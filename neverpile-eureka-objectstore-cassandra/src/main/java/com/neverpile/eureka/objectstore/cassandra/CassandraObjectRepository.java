@@ -1,5 +1,7 @@
 package com.neverpile.eureka.objectstore.cassandra;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -13,6 +15,12 @@ public interface CassandraObjectRepository extends CassandraRepository<Cassandra
   @Query("SELECT * FROM object WHERE \"objectName\" = ?0 order by \"version\" DESC limit 1;")
   Optional<CassandraObject> findByObjectName(String objectName);
 
+  @Query("SELECT * FROM object WHERE \"objectName\" IN ?0 PER PARTITION LIMIT 1;")
+  List<CassandraObject> findByObjectNameIn(Collection<String> objectNames);
+
+  @Query("SELECT * FROM object limit 1;")
+  Optional<CassandraObject> findAnyCassandraObject();
+
   @Query("delete from object where \"objectName\" = ?0 ;")
   void deleteByObjectName(String objectName);
 
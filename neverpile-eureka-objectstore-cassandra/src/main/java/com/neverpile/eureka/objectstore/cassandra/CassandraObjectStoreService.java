@@ -4,23 +4,40 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Stack;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import jakarta.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.neverpile.eureka.api.ObjectStoreService;
 import com.neverpile.eureka.api.exception.VersionMismatchException;
 import com.neverpile.eureka.api.exception.VersionNotFoundException;
 import com.neverpile.eureka.model.ObjectName;
 import com.neverpile.eureka.tx.wal.TransactionWAL;
 import com.neverpile.eureka.tx.wal.TransactionWAL.TransactionalAction;
+import com.neverpile.eureka.util.BoundedInputStream;
+import com.neverpile.eureka.util.BufferPool;
 
 import io.micrometer.core.annotation.Timed;
 
@@ -67,6 +84,8 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     public void run() {
       getObjectRepository().deleteByObjectNameAndVersionGreaterThan(objectNameToString(objectName), version);
       getObjectDataRepository().deleteByObjectNameAndVersionGreaterThan(objectNameToString(objectName), version);
+      getObjectRepository().findByObjectName(objectNameToString(objectName)) //
+          .ifPresent(o -> getListingRepository().updateObject(objectName, o.getVersion(), o.getDataChunkCount()));
     }
 
     @Override
@@ -88,12 +107,9 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     public void run() {
       getObjectRepository().deleteByObjectName(objectNameToString(objectName));
       getObjectDataRepository().deleteByObjectName(objectNameToString(objectName));
-      if (objectName.to().length > 1) {
-        getPrefixRepository().delete(CassandraObjectPrefix.from(objectName));
-      }
+      getListingRepository().removeObject(objectName);
     }
 
-
     @Override
     public String toString() {
       return "UndoWriteObject [objectName=" + objectName + "]";
@@ -111,20 +127,21 @@ public class CassandraObjectStoreService implements ObjectStoreService {
 
     @Override
     public void run() {
-      delete(objectName);
+      delete(objectName, true);
+      getListingRepository().removeTree(objectName);
     }
 
-    private void delete(final ObjectName toDelete) {
+    private void delete(final ObjectName toDelete, final boolean hasChildren) {
       // delete object
       getObjectRepository().deleteByObjectName(objectNameToString(toDelete));
       getObjectDataRepository().deleteByObjectName(objectNameToString(toDelete));
-      if (toDelete.to().length > 1) {
-        getPrefixRepository().delete(CassandraObjectPrefix.from(toDelete));
-      }
       // find recursively deeper elements and delete recursively
-      getPrefixRepository() //
-          .findPrefixes(toDelete) //
-          .forEach(recursivePrefix -> delete(recursivePrefix.toObjectName()));
+      if (hasChildren) {
+        getListingRepository() //
+            .findChildren(toDelete) //
+            .collect(Collectors.toList()) //
+            .forEach(child -> delete(toDelete.append(child.getName()), child.hasChildren()));
+      }
     }
 
     @Override
@@ -144,8 +161,8 @@ public class CassandraObjectStoreService implements ObjectStoreService {
       return CassandraTransactionConfiguration.applicationContext.getBean(CassandraObjectRepository.class);
     }
 
-    CassandraPrefixRepository getPrefixRepository() {
-      return CassandraTransactionConfiguration.applicationContext.getBean(CassandraPrefixRepository.class);
+    CassandraListingRepository getListingRepository() {
+      return CassandraTransactionConfiguration.applicationContext.getBean(CassandraListingRepository.class);
     }
   }
 
@@ -153,11 +170,20 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     private final ObjectName objectName;
     private final int chunkCount;
     private final String version;
+    private final long offset;
+    private final long length;
 
     private CassandraStoreObject(final ObjectName objectName, final String version, final int chunkCount) {
+      this(objectName, version, chunkCount, 0, -1);
+    }
+
+    private CassandraStoreObject(final ObjectName objectName, final String version, final int chunkCount,
+        final long offset, final long length) {
       this.objectName = objectName;
       this.chunkCount = chunkCount;
       this.version = version;
+      this.offset = offset;
+      this.length = length;
     }
 
     @Override
@@ -167,7 +193,9 @@ public class CassandraObjectStoreService implements ObjectStoreService {
 
     @Override
     public InputStream getInputStream() {
-      return new ChunkedCassandraInputStream(objectNameToString(objectName), Integer.parseInt(version), chunkCount);
+      InputStream is = openChunkedStream(objectNameToString(objectName), Integer.parseInt(version), chunkCount,
+          offset);
+      return length < 0 ? is : new BoundedInputStream(is, length);
     }
 
     @Override
@@ -176,62 +204,6 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     }
   }
 
-  private class ChunkedCassandraInputStream extends InputStream {
-    private final String objectName;
-    private final int totalChunkCount;
-    private int currentChunkCount = 0;
-    private Iterator<CassandraObjectData> chunkIterator;
-    private ByteBuffer currentChunk = null;
-    private final int version;
-
-    ChunkedCassandraInputStream(final String objectName, final int version, final int totalChunkCount) {
-      this.objectName = objectName;
-      this.version = version;
-      this.totalChunkCount = totalChunkCount;
-      this.chunkIterator = objectDataRepository.findByObjectNameAndVersion(objectName, version,
-          maxResponseQueryBatchSize).iterator();
-    }
-
-    @Override
-    public int read() {
-      if (null == currentChunk || !currentChunk.hasRemaining())
-        if (!nextChunk() || !currentChunk.hasRemaining())
-          return -1;
-
-      return currentChunk.get() & 0xff;
-    }
-
-    private boolean nextChunk() {
-      if (chunkIterator.hasNext()) {
-        currentChunk = chunkIterator.next().getData();
-        currentChunkCount++;
-        return true;
-      } else if (totalChunkCount > currentChunkCount) {
-        chunkIterator = objectDataRepository.findByObjectNameAndChunkNoGreaterThanEqual(objectName, version,
-            currentChunkCount, maxResponseQueryBatchSize).iterator();
-        if(!chunkIterator.hasNext())
-          return false;
-        
-        currentChunk = chunkIterator.next().getData();
-        currentChunkCount++;
-        return true;
-      } else
-        return false;
-    }
-
-    @Override
-    public int read(final byte[] b, final int off, final int len) throws IOException {
-      if (null == currentChunk || !currentChunk.hasRemaining())
-        if (!nextChunk())
-          return -1;
-
-      int toGet = Math.min(currentChunk.remaining(), len);
-      currentChunk.get(b, off, toGet);
-      return toGet;
-    }
-
-  }
-
   @Autowired
   private TransactionWAL wal;
 
@@ -242,7 +214,18 @@ public class CassandraObjectStoreService implements ObjectStoreService {
   private CassandraObjectDataRepository objectDataRepository;
 
   @Autowired
-  private CassandraPrefixRepository prefixRepository;
+  private CassandraListingRepository listingRepository;
+
+  @Autowired
+  private CqlSession session;
+
+  private volatile PreparedStatement chunkRangeQuery;
+
+  private volatile PreparedStatement chunkInsertQuery;
+
+  private volatile BufferPool chunkBufferPool;
+
+  private volatile TokenBucket writeRateLimiter;
 
   /**
    * 1 MB in Bytes.
@@ -266,20 +249,41 @@ public class CassandraObjectStoreService implements ObjectStoreService {
   private int maxResponseQueryBatchSize = 100;
 
   /**
-   * Maximum batch size for grouping Cassandra request queries. <br>
+   * Maximum number of chunk inserts in flight while writing a single object. <br>
    * maxBufferSize * maxRequestQueryBatchSize < 15 MB. <br>
    * Default: 10.
    */
   private int maxRequestQueryBatchSize = 10;
 
   /**
-   * The cool down time in ms between request to not overwhelm the DB with too many requests at once.
-   * This has to be balanced with maxRequestQueryBatchSize to optimize the DB load.
+   * The time in ms it takes to earn the permission for maxRequestQueryBatchSize chunk inserts, to not
+   * overwhelm the DB with too many requests at once. The permissions are shared by all writes and
+   * may be used in bursts of up to maxRequestQueryBatchSize inserts.
    * Rate limiting can be turned off by setting this to 0 or below.
    * Default: 0.
    */
    private int rateLimit = 0;
 
+  /**
+   * The number of chunk buffers shared by all writes. Bounds the heap used for writing to
+   * writeBufferCount * maxBufferSize. <br>
+   * Default: 32.
+   */
+  private int writeBufferCount = 32;
+
+  /**
+   * The number of chunk queries kept in flight ahead of the consumer when reading an object. <br>
+   * Default: 4.
+   */
+  private int readAheadQueryCount = 4;
+
+  /**
+   * The maximum number of bytes of chunk data a single stream may hold, including the chunks being
+   * read ahead. Limits the number of chunks fetched per query. <br>
+   * Default: 16 MB.
+   */
+  private int readAheadBufferSize = 16 * MB;
+
   int getMaxResponseQueryBatchSize() {
     return maxResponseQueryBatchSize;
   }
@@ -314,6 +318,41 @@ public class CassandraObjectStoreService implements ObjectStoreService {
 
   public void setRateLimit(int rateLimit) {
     this.rateLimit = rateLimit;
+    updateWriteRateLimiter();
+  }
+
+  private void updateWriteRateLimiter() {
+    writeRateLimiter = rateLimit > 0
+        ? new TokenBucket(Math.max(1, maxRequestQueryBatchSize), rateLimit, TimeUnit.MILLISECONDS)
+        : null;
+  }
+
+  int getWriteBufferCount() {
+    return writeBufferCount;
+  }
+
+  @Value("${neverpile-eureka.storage.cassandra.write-buffer-count:32}")
+  void setWriteBufferCount(final int writeBufferCount) {
+    this.writeBufferCount = Math.max(1, writeBufferCount);
+    this.chunkBufferPool = null;
+  }
+
+  int getReadAheadQueryCount() {
+    return readAheadQueryCount;
+  }
+
+  @Value("${neverpile-eureka.storage.cassandra.read-ahead-query-count:4}")
+  void setReadAheadQueryCount(final int readAheadQueryCount) {
+    this.readAheadQueryCount = Math.max(1, readAheadQueryCount);
+  }
+
+  int getReadAheadBufferSize() {
+    return readAheadBufferSize;
+  }
+
+  @Value("${neverpile-eureka.storage.cassandra.read-ahead-buffer-size:16777216}")
+  void setReadAheadBufferSize(final int readAheadBufferSize) {
+    this.readAheadBufferSize = readAheadBufferSize;
   }
 
   void setMaxRequestQueryBatchSize(final int maxRequestQueryBatchSize) {
@@ -322,6 +361,7 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     } else {
       this.maxRequestQueryBatchSize = (15 * MB) / maxBufferSize;
     }
+    updateWriteRateLimiter();
   }
 
   void truncateObjectTable() {
@@ -332,8 +372,8 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     objectDataRepository.deleteAll();
   }
 
-  void truncatePrefixTable() {
-    prefixRepository.deleteAll();
+  void truncateListingTable() {
+    listingRepository.deleteAll();
   }
 
   @Override
@@ -363,58 +403,154 @@ public class CassandraObjectStoreService implements ObjectStoreService {
         throw new VersionNotFoundException("Can't Put", String.valueOf(version));
       }
       wal.appendUndoAction(new UndoWriteObject(objectName));
-      if (objectName.to().length > 1) {
-        savePrefixesToRepo(objectName);
-      }
     }
+    int chunkCount;
     try {
-      saveObjectToRepo(objectName, content, currentVersion, length);
+      chunkCount = saveObjectToRepo(objectName, content, currentVersion);
     } catch (IOException e) {
       LOGGER.warn("Can't put: {}", objectName, e);
       throw new ObjectStoreException(objectName, "Can't put", e);
     }
+    if (object.isPresent())
+      listingRepository.updateObject(objectName, currentVersion, chunkCount);
+    else
+      listingRepository.addObject(objectName, currentVersion, chunkCount);
   }
 
-  private void savePrefixesToRepo(final ObjectName objectName) {
-    ArrayList<CassandraObjectPrefix> prefixes = new ArrayList<>();
-    prefixes.add(CassandraObjectPrefix.from(objectName));
-    for (int i = objectName.to().length - 1; i > 1; i--) {
-      prefixes.add(CassandraObjectPrefix.from(ObjectName.of(Arrays.copyOf(objectName.to(), i))));
-    }
-
-    prefixRepository.saveAll(prefixes);
-  }
-
-  private void saveObjectToRepo(final ObjectName objectName, final InputStream content, final int version,
-      final long length) throws IOException {
-    byte[] bytes = new byte[getBufferSize(length)];
+  /**
+   * Write the content in chunks of {@link #getMaxBufferSize()} bytes. Chunks are read into buffers
+   * taken from a pool shared by all writes and inserted asynchronously, with up to
+   * {@link #getMaxRequestQueryBatchSize()} inserts in flight per object. A buffer is returned to the
+   * pool once its insert has completed. If a rate limit is configured, each insert takes a token from
+   * a bucket shared by all writes.
+   *
+   * @return the number of chunks written
+   */
+  private int saveObjectToRepo(final ObjectName objectName, final InputStream content, final int version)
+      throws IOException {
+    String key = objectNameToString(objectName);
+    BufferPool pool = getChunkBufferPool();
+    TokenBucket bucket = writeRateLimiter;
+    PreparedStatement insert = getChunkInsertQuery();
+
+    int inFlightLimit = Math.max(1, maxRequestQueryBatchSize);
+    Semaphore inFlight = new Semaphore(inFlightLimit);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
     int chunkNo = 0;
-
-    Stack<CassandraObjectData> query = new Stack<>();
-    int read;
-    while ((read = readAll(bytes, content)) > 0) {
-      query.push(
-          new CassandraObjectData(objectNameToString(objectName), version, chunkNo, ByteBuffer.wrap(bytes, 0, read)));
-      if (query.size() >= maxRequestQueryBatchSize) {
-        objectDataRepository.saveAll(query);
-        if(rateLimit > 0) {
+    try {
+      while (null == failure.get()) {
+        byte[] buffer = pool.acquire();
+        boolean submitted = false;
+        try {
+          int read = readAll(buffer, content);
+          if (read <= 0)
+            break;
+
+          if (null != bucket)
+            bucket.acquire();
+          inFlight.acquire();
           try {
-            Thread.sleep(rateLimit);
-          } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            session.executeAsync(insert.bind(key, version, chunkNo, ByteBuffer.wrap(buffer, 0, read))) //
+                .whenComplete((rs, t) -> {
+                  if (null != t)
+                    failure.compareAndSet(null, t);
+                  // the driver doesn't copy the data, so the buffer may be reused only now
+                  pool.release(buffer);
+                  inFlight.release();
+                });
+            submitted = true;
+          } finally {
+            if (!submitted)
+              inFlight.release();
           }
+        } finally {
+          if (!submitted)
+            pool.release(buffer);
         }
-        query = new Stack<>();
+        chunkNo++;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing object data", e);
+    } finally {
+      // wait for the inserts in flight, also so that they can't outlive a rollback
+      inFlight.acquireUninterruptibly(inFlightLimit);
+    }
+
+    if (null != failure.get())
+      throw new IOException("Can't write object data", failure.get());
+
+    objectRepository.save(new CassandraObject(key, version, chunkNo));
+    return chunkNo;
+  }
+
+  private BufferPool getChunkBufferPool() {
+    BufferPool pool = chunkBufferPool;
+    if (null == pool || pool.getBufferSize() != maxBufferSize) {
+      synchronized (this) {
+        pool = chunkBufferPool;
+        if (null == pool || pool.getBufferSize() != maxBufferSize)
+          chunkBufferPool = pool = new BufferPool(writeBufferCount, maxBufferSize);
       }
-      bytes = new byte[getBufferSize(length)];
-      chunkNo++;
     }
+    return pool;
+  }
 
-    if (!query.isEmpty()) {
-      objectDataRepository.saveAll(query);
+  private PreparedStatement getChunkInsertQuery() {
+    if (null == chunkInsertQuery)
+      chunkInsertQuery = session.prepare(
+          "insert into objectdata (\"objectName\", \"version\", \"chunkNo\", data) values (?, ?, ?, ?) ;");
+    return chunkInsertQuery;
+  }
+
+  /**
+   * Open a stream over the data of an object starting at the given offset. As all chunks but the
+   * last one have the same size, the chunk containing the offset can be computed from the size of the
+   * first chunk, so that the chunks before it needn't be read at all.
+   */
+  private InputStream openChunkedStream(final String objectName, final int version, final int totalChunkCount,
+      final long offset) {
+    int chunkSize = maxBufferSize;
+    int firstChunkNo = 0;
+    long skipInFirstChunk = 0;
+    if (offset > 0) {
+      Iterator<CassandraObjectData> first = objectDataRepository.findByObjectNameAndVersion(objectName, version,
+          1).iterator();
+      chunkSize = first.hasNext() ? first.next().getData().remaining() : 0;
+      if (chunkSize > 0) {
+        firstChunkNo = (int) Math.min(offset / chunkSize, totalChunkCount);
+        skipInFirstChunk = offset - (long) firstChunkNo * chunkSize;
+      }
     }
 
-    objectRepository.save(new CassandraObject(objectNameToString(objectName), version, chunkNo));
+    // the batch being read plus those in flight must fit into the read-ahead buffer
+    int chunksPerQuery = (int) Math.min(maxResponseQueryBatchSize,
+        readAheadBufferSize / ((readAheadQueryCount + 1L) * Math.max(1, chunkSize)));
+
+    return new ChunkedCassandraInputStream((from, to) -> fetchChunks(objectName, version, from, to), firstChunkNo,
+        totalChunkCount, skipInFirstChunk, chunksPerQuery, readAheadQueryCount);
+  }
+
+  private CompletableFuture<List<ByteBuffer>> fetchChunks(final String objectName, final int version,
+      final int fromChunk, final int toChunk) {
+    return session.executeAsync(getChunkRangeQuery().bind(objectName, version, fromChunk, toChunk)) //
+        .thenCompose(rs -> collectChunks(rs, new ArrayList<>(toChunk - fromChunk))) //
+        .toCompletableFuture();
+  }
+
+  private static CompletionStage<List<ByteBuffer>> collectChunks(final AsyncResultSet rs,
+      final List<ByteBuffer> chunks) {
+    rs.currentPage().forEach(row -> chunks.add(row.getByteBuffer("data")));
+    return rs.hasMorePages()
+        ? rs.fetchNextPage().thenCompose(next -> collectChunks(next, chunks))
+        : CompletableFuture.completedFuture(chunks);
+  }
+
+  private PreparedStatement getChunkRangeQuery() {
+    if (null == chunkRangeQuery)
+      chunkRangeQuery = session.prepare("select data from objectdata where \"objectName\" = ? and \"version\" = ?"
+          + " and \"chunkNo\" >= ? and \"chunkNo\" < ? order by \"version\", \"chunkNo\" ASC ;");
+    return chunkRangeQuery;
   }
 
   private int readAll(final byte[] buffer, final InputStream is) throws IOException {
@@ -430,39 +566,26 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     return read;
   }
 
-  private int getBufferSize(final long length) {
-    if (length <= 0)
-      return maxBufferSize;
-    return (int) Math.min(length, maxBufferSize);
-  }
-
+  /**
+   * List the direct children of the prefix by reading its partition of the listing. The entries are
+   * fetched lazily, page by page, as the stream is consumed.
+   */
   @Override
   @Timed(description = "list object store elements", extraTags = {
       "subsystem", "cassandra.object-store"
   }, value = "eureka.cassandra.object-store.list")
   public Stream<StoreObject> list(final ObjectName prefix) {
-    if (prefix.to().length == 0) {
-      return listAll();
-    }
-
-    return prefixRepository.findPrefixes(prefix) //
-        .flatMap(p -> {
-          ObjectName objectName = p.toObjectName();
-
-          return findObject(objectName) //
-              .map(o -> {
-                CassandraStoreObject storeObject = createStoreObject(o);
-
-                // is this just an object or also another prefix?
-                int count = prefixRepository.countSuffixes(
-                    String.join(CassandraObjectPrefix.PREFIX_DELIMITER, objectName.to()));
-
-                if (count > 0)
-                  return Stream.of(storeObject, createPrefixObject(p));
-                else
-                  return Stream.of(storeObject);
-              }) //
-              .orElse(Stream.of(createPrefixObject(p)));
+    return listingRepository.findChildren(prefix) //
+        .flatMap(e -> {
+          ObjectName objectName = prefix.append(e.getName());
+
+          // is this just an object or also another prefix?
+          Stream.Builder<StoreObject> objects = Stream.builder();
+          if (e.isObject())
+            objects.add(new CassandraStoreObject(objectName, String.valueOf(e.getVersion()), e.getChunkCount()));
+          if (e.hasChildren())
+            objects.add(createPrefixObject(objectName));
+          return objects.build();
         });
   }
 
@@ -475,7 +598,7 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     return objectRepository.findByObjectName(objectNameToString(objectName));
   }
 
-  private StoreObject createPrefixObject(final CassandraObjectPrefix prefix) {
+  private StoreObject createPrefixObject(final ObjectName prefix) {
     return new StoreObject() {
       @Override
       public String getVersion() {
@@ -484,7 +607,7 @@ public class CassandraObjectStoreService implements ObjectStoreService {
 
       @Override
       public ObjectName getObjectName() {
-        return prefix.toObjectName();
+        return prefix;
       }
 
       @Override
@@ -494,11 +617,45 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     };
   }
 
+  /**
+   * List all objects, regardless of their prefix, by walking the whole object table.
+   */
   public Stream<StoreObject> listAll() {
     Stream<CassandraObject> stream = objectRepository.findAllCassandraObjects();
     return stream.map((object) -> createStoreObject(object));
   }
 
+  /**
+   * Build the listing of a store created before the listing was introduced, from the latest
+   * versions of the objects. The listing is marked as complete once built, so that a build
+   * interrupted e.g. by a restart is resumed upon the next start. As the listing is written using
+   * updates, entries already present are simply overwritten.
+   */
+  @PostConstruct
+  void initListing() {
+    if (listingRepository.isComplete())
+      return;
+
+    if (objectRepository.findAnyCassandraObject().isEmpty()) {
+      listingRepository.markComplete();
+      return;
+    }
+
+    LOGGER.info("Building the object listing...");
+    String last = null;
+    try (Stream<CassandraObject> objects = objectRepository.findAllCassandraObjects()) {
+      for (CassandraObject o : (Iterable<CassandraObject>) objects::iterator) {
+        // the latest version comes first within the rows of an object
+        if (o.getObjectName().equals(last))
+          continue;
+        last = o.getObjectName();
+        listingRepository.addObject(objectNameFromString(o.getObjectName()), o.getVersion(), o.getDataChunkCount());
+      }
+    }
+    listingRepository.markComplete();
+    LOGGER.info("Object listing built");
+  }
+
   @Override
   @Timed(description = "retrieve object store element", extraTags = {
       "subsystem", "cassandra.object-store"
@@ -512,6 +669,51 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     return null;
   }
 
+  /**
+   * Retrieve a range of an object. Reading starts at the data chunk containing the offset, so that
+   * preceding chunks aren't fetched.
+   */
+  @Override
+  @Timed(description = "retrieve object store element range", extraTags = {
+      "subsystem", "cassandra.object-store"
+  }, value = "eureka.cassandra.object-store.get-range")
+  public StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    return findObject(objectName) //
+        .map(o -> new CassandraStoreObject(objectName, String.valueOf(o.getVersion()), o.getDataChunkCount(), offset,
+            length)) //
+        .orElse(null);
+  }
+
+  /**
+   * Retrieve the metadata of the given objects using <code>IN</code> queries of at most
+   * {@link #getMaxResponseQueryBatchSize()} object names each. The object data is still read lazily
+   * upon {@link StoreObject#getInputStream()}.
+   */
+  @Override
+  @Timed(description = "retrieve multiple object store elements", extraTags = {
+      "subsystem", "cassandra.object-store"
+  }, value = "eureka.cassandra.object-store.get-many")
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<String, ObjectName> byKey = new LinkedHashMap<>();
+    objectNames.forEach(n -> byKey.put(objectNameToString(n), n));
+
+    Map<String, CassandraObject> found = new HashMap<>();
+    List<String> keys = new ArrayList<>(byKey.keySet());
+    for (int i = 0; i < keys.size(); i += maxResponseQueryBatchSize) {
+      objectRepository.findByObjectNameIn(keys.subList(i, Math.min(keys.size(), i + maxResponseQueryBatchSize))) //
+          .forEach(o -> found.put(o.getObjectName(), o));
+    }
+
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    byKey.forEach((key, objectName) -> {
+      CassandraObject object = found.get(key);
+      if (null != object)
+        result.put(objectName,
+            new CassandraStoreObject(objectName, String.valueOf(object.getVersion()), object.getDataChunkCount()));
+    });
+    return result;
+  }
+
   @Override
   @Timed(description = "delete object store element", extraTags = {
       "subsystem", "cassandra.object-store"
@@ -529,7 +731,7 @@ public class CassandraObjectStoreService implements ObjectStoreService {
     return objects.isPresent();
   }
 
-  private final static String OBJECT_NAME_DELIMITER = "\t";
+  final static String OBJECT_NAME_DELIMITER = "\t";
 
   private static String objectNameToString(final ObjectName objectName) {
     return String.join(OBJECT_NAME_DELIMITER, objectName.to());
@@ -59,7 +59,7 @@ public class CassandraStandaloneConfig extends AbstractNeverpileCassandraConfig
     cassandraTemplate().createTable(true, CqlIdentifier.fromCql("object"), CassandraObject.class, new HashMap<>());
     cassandraTemplate().createTable(true, CqlIdentifier.fromCql("objectdata"), CassandraObjectData.class,
         new HashMap<>());
-    cassandraTemplate().createTable(true, CqlIdentifier.fromCql("prefix"), CassandraObjectPrefix.class,
+    cassandraTemplate().createTable(true, CqlIdentifier.fromCql("listing"), CassandraListingEntry.class,
         new HashMap<>());
   }
 
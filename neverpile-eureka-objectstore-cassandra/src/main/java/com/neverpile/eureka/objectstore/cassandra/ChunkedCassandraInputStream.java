@@ -0,0 +1,204 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An input stream over the data chunks of an object which reads ahead of the consumer.
+ * <p>
+ * Chunks are fetched in batches of consecutive chunk numbers. Up to <code>queryCount</code> batches
+ * are requested asynchronously ahead of the one currently being consumed, and a new batch is
+ * requested as soon as the consumer moves on to the next one. The memory held by the stream is thus
+ * bounded by <code>(queryCount + 1) * chunksPerQuery * chunkSize</code>, while the consumer usually
+ * finds the next batch already available at batch boundaries.
+ * <p>
+ * {@link #read(byte[], int, int)} and {@link #transferTo(OutputStream)} copy whole chunks (or the
+ * remainder of them) at a time.
+ */
+class ChunkedCassandraInputStream extends InputStream {
+  /**
+   * Fetches the chunks with numbers in the range <code>[fromChunk, toChunk)</code>, in order.
+   * Chunks missing from the end of the range indicate the end of the object.
+   */
+  @FunctionalInterface
+  interface ChunkFetcher {
+    CompletableFuture<List<ByteBuffer>> fetch(int fromChunk, int toChunk);
+  }
+
+  private final ChunkFetcher fetcher;
+
+  private final int totalChunkCount;
+
+  private final int chunksPerQuery;
+
+  private final int queryCount;
+
+  /**
+   * A requested batch of chunks. Fewer chunks than requested mark the end of the object.
+   */
+  private record Batch(int chunkCount, CompletableFuture<List<ByteBuffer>> chunks) {
+  }
+
+  private final Deque<Batch> pending = new ArrayDeque<>();
+
+  /**
+   * The number of the first chunk not yet requested.
+   */
+  private int nextChunkNo;
+
+  private boolean exhausted;
+
+  private Iterator<ByteBuffer> batch = Collections.emptyIterator();
+
+  private ByteBuffer currentChunk = ByteBuffer.allocate(0);
+
+  private long skipInFirstChunk;
+
+  /**
+   * Create a stream starting at the given chunk.
+   *
+   * @param fetcher the function requesting a range of chunks
+   * @param firstChunkNo the number of the first chunk to read
+   * @param totalChunkCount the number of chunks of the object
+   * @param skipInFirstChunk the number of bytes to skip in the first chunk
+   * @param chunksPerQuery the number of chunks fetched by a single query
+   * @param queryCount the maximum number of batches in flight
+   */
+  ChunkedCassandraInputStream(final ChunkFetcher fetcher, final int firstChunkNo, final int totalChunkCount,
+      final long skipInFirstChunk, final int chunksPerQuery, final int queryCount) {
+    this.fetcher = fetcher;
+    this.nextChunkNo = firstChunkNo;
+    this.totalChunkCount = totalChunkCount;
+    this.skipInFirstChunk = skipInFirstChunk;
+    this.chunksPerQuery = Math.max(1, chunksPerQuery);
+    this.queryCount = Math.max(1, queryCount);
+
+    requestBatches();
+  }
+
+  private void requestBatches() {
+    while (pending.size() < queryCount && nextChunkNo < totalChunkCount) {
+      int to = (int) Math.min((long) nextChunkNo + chunksPerQuery, totalChunkCount);
+      pending.add(new Batch(to - nextChunkNo, fetcher.fetch(nextChunkNo, to)));
+      nextChunkNo = to;
+    }
+  }
+
+  /**
+   * Advance to the next chunk.
+   *
+   * @param wait whether to wait for the next batch if it hasn't been received yet
+   * @return <code>true</code> if a chunk is available, <code>false</code> at the end of the object or
+   *         if the next batch isn't available without waiting
+   */
+  private boolean nextChunk(final boolean wait) throws IOException {
+    while (!batch.hasNext()) {
+      Batch next = pending.peek();
+      if (exhausted || null == next || (!wait && !next.chunks().isDone()))
+        return false;
+
+      pending.remove();
+      List<ByteBuffer> chunks = join(next.chunks());
+      batch = chunks.iterator();
+      if (chunks.size() < next.chunkCount())
+        // a short batch indicates that the object ends early, e.g. because it has been deleted
+        cancelPending();
+      else
+        requestBatches();
+    }
+
+    currentChunk = batch.next();
+    if (skipInFirstChunk > 0) {
+      currentChunk.position(currentChunk.position() + (int) Math.min(skipInFirstChunk, currentChunk.remaining()));
+      skipInFirstChunk = 0;
+    }
+    return true;
+  }
+
+  private static List<ByteBuffer> join(final CompletableFuture<List<ByteBuffer>> batch) throws IOException {
+    try {
+      return batch.join();
+    } catch (CompletionException | CancellationException e) {
+      throw new IOException("Can't read object data", null != e.getCause() ? e.getCause() : e);
+    }
+  }
+
+  private void cancelPending() {
+    pending.forEach(b -> b.chunks().cancel(false));
+    pending.clear();
+    exhausted = true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    while (!currentChunk.hasRemaining())
+      if (!nextChunk(true))
+        return -1;
+
+    return currentChunk.get() & 0xff;
+  }
+
+  /**
+   * Read as many bytes as are requested, spanning chunks as long as they have already been received.
+   * Blocks only if no bytes at all are available.
+   */
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0)
+      return 0;
+
+    int read = 0;
+    while (read < len) {
+      if (!currentChunk.hasRemaining() && !nextChunk(read == 0))
+        break;
+
+      int toGet = Math.min(currentChunk.remaining(), len - read);
+      currentChunk.get(b, off + read, toGet);
+      read += toGet;
+    }
+
+    return read > 0 ? read : -1;
+  }
+
+  @Override
+  public long transferTo(final OutputStream out) throws IOException {
+    long transferred = 0;
+    while (currentChunk.hasRemaining() || nextChunk(true)) {
+      int length = currentChunk.remaining();
+      if (currentChunk.hasArray()) {
+        out.write(currentChunk.array(), currentChunk.arrayOffset() + currentChunk.position(), length);
+        currentChunk.position(currentChunk.limit());
+      } else {
+        byte[] copy = new byte[length];
+        currentChunk.get(copy);
+        out.write(copy);
+      }
+      transferred += length;
+    }
+    return transferred;
+  }
+
+  @Override
+  public int available() {
+    return currentChunk.remaining();
+  }
+
+  @Override
+  public void close() {
+    cancelPending();
+    batch = Collections.emptyIterator();
+    currentChunk = ByteBuffer.allocate(0);
+  }
+}
@@ -0,0 +1,53 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limiting the rate of operations to a number of tokens per period, while allowing
+ * bursts of up to that number of tokens. Tokens may be taken in advance: a caller taking a token
+ * from an empty bucket waits just as long as it takes to refill the tokens taken in advance. Waiting
+ * callers are thus served in the order they arrived.
+ */
+class TokenBucket {
+  private final double capacity;
+
+  private final double tokensPerNano;
+
+  private double tokens;
+
+  private long lastRefill;
+
+  /**
+   * Create a full bucket.
+   *
+   * @param tokensPerPeriod the number of tokens refilled per period, also the capacity of the bucket
+   * @param period the period
+   * @param unit the unit of the period
+   */
+  TokenBucket(final int tokensPerPeriod, final long period, final TimeUnit unit) {
+    this.capacity = tokensPerPeriod;
+    this.tokensPerNano = tokensPerPeriod / (double) unit.toNanos(period);
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Take a token, waiting until it becomes available if necessary.
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  void acquire() throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+      lastRefill = now;
+
+      tokens -= 1;
+      waitNanos = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    if (waitNanos > 0)
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+}
@@ -1,7 +1,19 @@
 package com.neverpile.eureka.objectstore.cassandra;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
 import jakarta.annotation.PostConstruct;
 
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -9,8 +21,11 @@ import org.springframework.boot.autoconfigure.data.cassandra.CassandraDataAutoCo
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.neverpile.eureka.api.ObjectStoreService;
 import com.neverpile.eureka.api.objectstore.AbstractObjectStoreServiceTest;
+import com.neverpile.eureka.model.ObjectName;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest(classes = CassandraTestConfig.class)
@@ -22,10 +37,112 @@ public class CassandraObjectStoreServiceIT extends AbstractObjectStoreServiceTes
   @Autowired
   private CassandraObjectStoreService cassandraObjectStore;
 
+  @Autowired
+  private CassandraListingRepository listingRepository;
+
+  @Autowired
+  private TransactionTemplate listingTransactionTemplate;
+
   @PostConstruct
   public void cleanUp() {
     cassandraObjectStore.truncateDataTable();
     cassandraObjectStore.truncateObjectTable();
-    cassandraObjectStore.truncatePrefixTable();
+    cassandraObjectStore.truncateListingTable();
+  }
+
+  @Test
+  public void testThat_prefixesWithoutObjectsAreRemovedFromListing() {
+    ObjectName root = ObjectName.of("listing");
+    ObjectName keep = root.append("keep");
+    ObjectName gone = root.append("gone").append("a").append("b");
+
+    listingTransactionTemplate.executeWithoutResult(status -> {
+      objectStore.put(keep, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(new byte[1]));
+      objectStore.put(gone, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(new byte[1]));
+    });
+    listingTransactionTemplate.executeWithoutResult(status -> objectStore.delete(gone));
+
+    assertThat(objectStore.list(root).map(o -> o.getObjectName()).collect(Collectors.toList()), contains(keep));
+    assertThat(objectStore.list(root.append("gone")).collect(Collectors.toList()), empty());
+  }
+
+  @Test
+  public void testThat_interruptedListingBuildIsResumed() {
+    ObjectName root = ObjectName.of("rebuild");
+    ObjectName a = root.append("a");
+    ObjectName b = root.append("b").append("c");
+
+    listingTransactionTemplate.executeWithoutResult(status -> {
+      objectStore.put(a, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(new byte[1]));
+      objectStore.put(b, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(new byte[1]));
+    });
+
+    // simulate a build which got as far as the first object before being interrupted
+    cassandraObjectStore.truncateListingTable();
+    listingRepository.addObject(a, 1, 1);
+
+    cassandraObjectStore.initListing();
+
+    assertThat(listingRepository.isComplete(), equalTo(true));
+    assertThat(objectStore.list(root).map(o -> o.getObjectName()).collect(Collectors.toList()),
+        containsInAnyOrder(a, root.append("b")));
+    assertThat(objectStore.list(root.append("b")).map(o -> o.getObjectName()).collect(Collectors.toList()),
+        contains(b));
+  }
+
+  @Test
+  public void testThat_prefixGainingChildWhilePrunedIsKept() {
+    ObjectName root = ObjectName.of("prune");
+    ObjectName a = root.append("p").append("a");
+    ObjectName b = root.append("p").append("b");
+    String parent = CassandraListingRepository.partitionKey(a, 1);
+
+    listingRepository.addObject(a, 1, 1);
+    UUID revision = listingRepository.findEntry(parent, "p").get().getRevision();
+
+    // a concurrent put adds a sibling after the pruning read the revision of the prefix
+    listingRepository.addObject(b, 1, 1);
+
+    assertThat(listingRepository.deleteEntryIfRevision(parent, "p", revision).wasApplied(),
+        equalTo(false));
+
+    listingRepository.removeObject(a);
+    assertThat(objectStore.list(root.append("p")).map(o -> o.getObjectName()).collect(Collectors.toList()),
+        contains(b));
+  }
+
+  @Test
+  public void testThat_objectRemarkedWhileRemovedIsKept() {
+    ObjectName a = ObjectName.of("remark", "a");
+    String parent = CassandraListingRepository.partitionKey(a, 1);
+
+    listingRepository.addObject(a, 1, 1);
+    UUID revision = listingRepository.findEntry(parent, "a").get().getRevision();
+
+    // a concurrent put re-marks the object after the removal read its revision
+    listingRepository.updateObject(a, 2, 1);
+    assertThat(listingRepository.findEntry(parent, "a").get().getRevision(), not(equalTo(revision)));
+
+    assertThat(listingRepository.deleteEntryIfRevision(parent, "a", revision).wasApplied(), equalTo(false));
+    assertThat(listingRepository.findEntry(parent, "a").get().getVersion(), equalTo(2));
+  }
+
+  @Test
+  public void testThat_removedTreeCanBeRecreated() {
+    ObjectName root = ObjectName.of("tree");
+    ObjectName a = root.append("p").append("a");
+    ObjectName b = root.append("p").append("q").append("b");
+
+    listingRepository.addObject(a, 1, 1);
+    listingRepository.addObject(b, 1, 1);
+    listingRepository.removeTree(root.append("p"));
+
+    assertThat(objectStore.list(root).collect(Collectors.toList()), empty());
+    assertThat(listingRepository.findChildren(root.append("p").append("q")).collect(Collectors.toList()), empty());
+
+    // the entries deleted by lightweight transactions are created anew
+    listingRepository.addObject(b, 2, 1);
+    assertThat(objectStore.list(root.append("p").append("q")).map(o -> o.getObjectName()).collect(
+        Collectors.toList()), contains(b));
   }
 }
@@ -61,7 +61,7 @@ public class CassandraTestConfig extends AbstractNeverpileCassandraConfig {
 
     cassandraTemplate().createTable(true, CqlIdentifier.fromCql("objectdata"), CassandraObjectData.class,
         new HashMap<>());
-    cassandraTemplate().createTable(true, CqlIdentifier.fromCql("prefix"), CassandraObjectPrefix.class,
+    cassandraTemplate().createTable(true, CqlIdentifier.fromCql("listing"), CassandraListingEntry.class,
         new HashMap<>());
   }
 
@@ -0,0 +1,117 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ChunkedCassandraInputStreamTest {
+  private static final int CHUNK_SIZE = 100;
+
+  private static final int CHUNK_COUNT = 25;
+
+  private final byte[] content = new byte[CHUNK_SIZE * (CHUNK_COUNT - 1) + 42];
+
+  private final List<CompletableFuture<List<ByteBuffer>>> requests = new ArrayList<>();
+
+  private int availableChunkCount = CHUNK_COUNT;
+
+  @Before
+  public void createContent() {
+    new Random(4711).nextBytes(content);
+  }
+
+  /**
+   * Emulates the chunk query, returning only the first {@link #availableChunkCount} chunks.
+   */
+  private CompletableFuture<List<ByteBuffer>> fetch(final int fromChunk, final int toChunk) {
+    CompletableFuture<List<ByteBuffer>> request = new CompletableFuture<>();
+    requests.add(request);
+
+    List<ByteBuffer> chunks = new ArrayList<>();
+    for (int i = fromChunk; i < Math.min(toChunk, availableChunkCount); i++) {
+      int from = i * CHUNK_SIZE;
+      chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(content, from, Math.min(content.length, from + CHUNK_SIZE))));
+    }
+    // complete asynchronously like the driver would
+    CompletableFuture.runAsync(() -> request.complete(chunks));
+    return request;
+  }
+
+  private ChunkedCassandraInputStream open(final long offset, final int chunksPerQuery, final int queryCount) {
+    int firstChunkNo = (int) (offset / CHUNK_SIZE);
+    return new ChunkedCassandraInputStream(this::fetch, firstChunkNo, CHUNK_COUNT, offset % CHUNK_SIZE,
+        chunksPerQuery, queryCount);
+  }
+
+  @Test
+  public void testThat_contentIsReadBytewise() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (InputStream is = open(0, 3, 2)) {
+      int b;
+      while ((b = is.read()) >= 0)
+        baos.write(b);
+    }
+
+    assertThat(baos.toByteArray(), equalTo(content));
+  }
+
+  @Test
+  public void testThat_contentIsReadInBulk() throws IOException {
+    try (InputStream is = open(0, 3, 2)) {
+      assertThat(is.readAllBytes(), equalTo(content));
+    }
+  }
+
+  @Test
+  public void testThat_contentIsTransferred() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (InputStream is = open(0, 4, 3)) {
+      assertThat(is.transferTo(baos), equalTo((long) content.length));
+    }
+
+    assertThat(baos.toByteArray(), equalTo(content));
+  }
+
+  @Test
+  public void testThat_readingStartsAtOffset() throws IOException {
+    try (InputStream is = open(1234, 3, 2)) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOfRange(content, 1234, content.length)));
+    }
+  }
+
+  @Test
+  public void testThat_queriesInFlightAreBounded() throws IOException {
+    try (InputStream is = open(0, 3, 2)) {
+      assertThat(requests.size(), equalTo(2));
+
+      // moving on to the first batch requests the next one
+      is.read();
+      assertThat(requests.size(), equalTo(3));
+
+      is.readAllBytes();
+    }
+
+    // ceil(25 / 3) queries in total
+    assertThat(requests.size(), equalTo(9));
+  }
+
+  @Test
+  public void testThat_readingStopsAtMissingChunks() throws IOException {
+    availableChunkCount = 10;
+    try (InputStream is = open(0, 3, 2)) {
+      assertThat(is.readAllBytes(), equalTo(Arrays.copyOf(content, 10 * CHUNK_SIZE)));
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package com.neverpile.eureka.objectstore.cassandra;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+  @Test
+  public void testThat_burstIsNotDelayed() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(10, 1, TimeUnit.SECONDS);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 10; i++)
+      bucket.acquire();
+
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(500L));
+  }
+
+  @Test
+  public void testThat_rateIsLimitedOnceBucketIsEmpty() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket(10, 200, TimeUnit.MILLISECONDS);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < 30; i++)
+      bucket.acquire();
+
+    // 10 tokens from the full bucket, 20 more take two periods to refill
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(390L));
+  }
+}
@@ -5,19 +5,27 @@ import static com.neverpile.eureka.util.ObjectNames.unescape;
 import static java.util.stream.Collectors.joining;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -25,6 +33,7 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,12 +41,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import com.neverpile.eureka.api.ObjectStoreService;
 import com.neverpile.eureka.api.exception.VersionMismatchException;
 import com.neverpile.eureka.model.ObjectName;
 import com.neverpile.eureka.tx.wal.TransactionWAL;
 import com.neverpile.eureka.tx.wal.TransactionWAL.TransactionalAction;
+import com.neverpile.eureka.util.BoundedInputStream;
 
 import io.micrometer.core.annotation.Timed;
 
@@ -49,6 +60,11 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
 
   private final String newVersion = String.format("%06X", 0);
 
+  /**
+   * Closes the channels of store objects which have never been read.
+   */
+  private static final Cleaner CLEANER = Cleaner.create();
+
   private static final class PurgeBackup implements TransactionalAction {
 
     private static final long serialVersionUID = 1L;
@@ -112,6 +128,8 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
             Files.move(undoTarget, tmp, StandardCopyOption.ATOMIC_MOVE);
           }
           Files.move(backupFile.toPath(), undoTarget, StandardCopyOption.ATOMIC_MOVE);
+          versionIndex.invalidate(undoTarget);
+          versionIndex.invalidate(backupFile.toPath());
           if (Files.exists(tmp))
             delete(objectName, tmp);
         } catch (IOException e) {
@@ -176,6 +194,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       try {
         readWriteLocker.writeLockObject(objectName);
         Files.deleteIfExists(targetFile.toPath());
+        versionIndex.invalidate(targetFile.toPath());
       } catch (IOException e) {
         throw new ObjectStoreException(objectName, "Can't revert put", e);
       } finally {
@@ -198,6 +217,10 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
 
     private final String version;
 
+    private final long offset;
+
+    private final long length;
+
     @Override
     public String toString() {
       return "FilesystemStoreObject{" +
@@ -207,10 +230,28 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
               '}';
     }
 
+    /**
+     * The channel opened upon retrieval, handed out by the first call to {@link #getInputStream()}.
+     * Shared with the cleaner, which closes it if it is never handed out.
+     */
+    private final AtomicReference<FileChannel> openChannel;
+
     public FilesystemStoreObject(final ObjectName objectName, final File file, final String version) {
+      this(objectName, file, version, 0, -1, null);
+    }
+
+    public FilesystemStoreObject(final ObjectName objectName, final File file, final String version,
+        final long offset, final long length, final FileChannel channel) {
       this.objectName = objectName;
       this.file = file;
       this.version = version;
+      this.offset = offset;
+      this.length = length;
+      this.openChannel = new AtomicReference<>(channel);
+      if (null != channel) {
+        AtomicReference<FileChannel> unclaimed = openChannel;
+        CLEANER.register(this, () -> closeQuietly(unclaimed.getAndSet(null)));
+      }
     }
 
     @Override
@@ -220,11 +261,29 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
 
     @Override
     public InputStream getInputStream() {
+      FileChannel channel = openChannel.getAndSet(null);
       try {
-        return new LockedFileInputStream(file);
-      } catch (FileNotFoundException e) {
+        if (null == channel)
+          channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      } catch (NoSuchFileException e) {
+        // the version has been superseded by a committed transaction in the meantime
+        throw new ObjectNotFoundException(objectName, e);
+      } catch (IOException e) {
+        throw new ObjectStoreException(objectName, "Can't retrieve object stream", e);
+      }
+
+      if (offset == 0 && length < 0)
+        return new LockedFileInputStream(Channels.newInputStream(channel));
+
+      // ranged read: position the channel instead of skipping through the stream
+      try {
+        channel.position(offset);
+      } catch (IOException e) {
+        closeQuietly(channel);
         throw new ObjectStoreException(objectName, "Can't retrieve object stream", e);
       }
+      InputStream is = Channels.newInputStream(channel);
+      return length < 0 ? is : new BoundedInputStream(is, length);
     }
 
     @Override
@@ -232,13 +291,26 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       return version;
     }
 
+    @Override
+    public Optional<Path> getLocalFile() {
+      return Optional.of(file.toPath());
+    }
+
+    /**
+     * Close the channel opened upon retrieval unless it has been handed out already, instead of
+     * leaving it to the cleaner.
+     */
+    @Override
+    public void release() {
+      closeQuietly(openChannel.getAndSet(null));
+    }
+
   }
 
   class LockedFileInputStream extends FilterInputStream {
 
-    public LockedFileInputStream(final File file) throws FileNotFoundException {
-      super(null);
-      this.in = new FileInputStream(file);
+    public LockedFileInputStream(final InputStream in) {
+      super(in);
     }
 
     @Override
@@ -267,7 +339,29 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
   @Value("${neverpile-eureka.storage.filesystem.rootPath:./neverpile-eureka_default}")
   private String rootPath;
 
-  private static ReadWriteLocker readWriteLocker = new SimpleReadWriteLocker();
+  @Value("${neverpile-eureka.storage.filesystem.version-index.enabled:true}")
+  private boolean versionIndexEnabled;
+
+  @Value("${neverpile-eureka.storage.filesystem.version-index.max-directories:100000}")
+  private int versionIndexMaxDirectories;
+
+  /**
+   * File to save the version index to upon shutdown and to restore it from upon startup. Leave empty
+   * to disable snapshots.
+   */
+  @Value("${neverpile-eureka.storage.filesystem.version-index.snapshot-file:}")
+  private String versionIndexSnapshotFile;
+
+  /**
+   * The number of locks guarding the objects. Objects are mapped to the locks by the hash of their
+   * name.
+   */
+  @Value("${neverpile-eureka.storage.filesystem.lock-stripes:1024}")
+  private int lockStripes;
+
+  private static volatile StripedReadWriteLocker readWriteLocker = new StripedReadWriteLocker(1024);
+
+  private static final FilesystemVersionIndex versionIndex = new FilesystemVersionIndex();
 
   private static final String DELIMITER = FileSystems.getDefault().getSeparator();
 
@@ -293,6 +387,39 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
             rootPathAsFile.canWrite() ? "Write, " : "", //
             rootPathAsFile.canExecute() ? "eXecute" : "");
     LOGGER.info("-----");
+
+    if (StripedReadWriteLocker.tableSize(lockStripes) != readWriteLocker.getStripes())
+      readWriteLocker = new StripedReadWriteLocker(lockStripes);
+
+    versionIndex.setEnabled(versionIndexEnabled);
+    versionIndex.setMaxDirectories(versionIndexMaxDirectories);
+    if (versionIndexEnabled && StringUtils.hasText(versionIndexSnapshotFile)) {
+      Path snapshot = Paths.get(versionIndexSnapshotFile);
+      if (Files.exists(snapshot)) {
+        try {
+          versionIndex.readSnapshot(root, snapshot);
+          LOGGER.info("Restored version index from {}", snapshot);
+        } catch (IOException e) {
+          LOGGER.warn("Can't restore version index from {} - rebuilding it lazily", snapshot, e);
+          versionIndex.clear();
+        }
+        // a snapshot is only valid until the first modification
+        Files.delete(snapshot);
+      }
+    }
+  }
+
+  @PreDestroy
+  private void saveVersionIndex() {
+    if (versionIndexEnabled && StringUtils.hasText(versionIndexSnapshotFile)) {
+      Path snapshot = Paths.get(versionIndexSnapshotFile);
+      try {
+        versionIndex.writeSnapshot(root, snapshot);
+        LOGGER.info("Saved version index to {}", snapshot);
+      } catch (IOException e) {
+        LOGGER.warn("Can't save version index to {}", snapshot, e);
+      }
+    }
   }
 
   @Override
@@ -306,33 +433,56 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
     if (version.equals(NEW_VERSION)) {
       version = this.newVersion;
     }
-    String currentVersion = getVersion(objectName);
-    if (Long.parseLong(currentVersion, 16) != Long.parseLong(version, 16)) {
-      throw new VersionMismatchException("Can't Put", version, currentVersion);
-    }
+    checkVersion(objectName, version);
     Path target = toObjectPath(objectName, version);
     File targetFile = target.toFile();
     // on rollback: remove created directory tree
     wal.appendUndoAction(new UndoCreateDirectories(targetFile));
+    Path tmp = null;
     try {
-      readWriteLocker.writeLockObject(objectName);
       // create directory hierarchy - if not existing
       Files.createDirectories(target.getParent());
-      if (Files.exists(target)) {
-        backupObject(objectName, target);
-        delete(objectName, target);
+      // receive the content without holding the lock
+      tmp = target.resolveSibling(target.getFileName() + randomNameTrailer("tmp"));
+      Files.copy(content, tmp);
+
+      readWriteLocker.writeLockObject(objectName);
+      try {
+        checkVersion(objectName, version);
+        if (Files.exists(target)) {
+          // the superseded version is kept until commit and thus serves as the backup
+          wal.appendCommitAction(new PurgeBackup(target.toAbsolutePath().toFile(), objectName));
+        }
+        version = String.format("%06X", Long.parseLong(version, 16) + 1);
+        target = toObjectPath(objectName, version);
+        targetFile = target.toFile();
+        // on rollback: delete written object
+        wal.appendUndoAction(new UndoWriteObject(objectName, targetFile));
+        // publish atomically, so that versioned files are immutable once visible
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        tmp = null;
+        indexVersion(objectName, version);
+      } finally {
+        readWriteLocker.writeUnlockObject(objectName);
       }
-      version = String.format("%06X", Long.parseLong(version, 16) + 1);
-      target = toObjectPath(objectName, version);
-      targetFile = target.toFile();
-      // on rollback: delete written object
-      wal.appendUndoAction(new UndoWriteObject(objectName, targetFile));
-      Files.copy(content, target, StandardCopyOption.REPLACE_EXISTING);
     } catch (IOException e) {
       LOGGER.warn("Can't put: {}", targetFile, e);
       throw new ObjectStoreException(objectName, "Can't put", e);
     } finally {
-      readWriteLocker.writeUnlockObject(objectName);
+      if (null != tmp) {
+        try {
+          Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+          LOGGER.warn("Can't delete temporary file {}", tmp, e);
+        }
+      }
+    }
+  }
+
+  private void checkVersion(final ObjectName objectName, final String version) {
+    String currentVersion = getVersion(objectName);
+    if (Long.parseLong(currentVersion, 16) != Long.parseLong(version, 16)) {
+      throw new VersionMismatchException("Can't Put", version, currentVersion);
     }
   }
 
@@ -341,7 +491,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
     put(objectName, version, content);
   }
 
-  private void backupObject(final ObjectName objectName, final Path objectPath) {
+  private void moveToBackup(final ObjectName objectName, final Path objectPath) {
     Path backup = objectPath.resolveSibling(objectPath.getFileName() + randomNameTrailer("backup"));
     // need to "transport" target/backup as files, since Path instances aren't serializable.
     File targetFile = objectPath.toAbsolutePath().toFile();
@@ -351,7 +501,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
     // on commit: purge backup
     wal.appendCommitAction(new PurgeBackup(backupFile, objectName));
     try {
-      Files.copy(objectPath, backup);
+      Files.move(objectPath, backup, StandardCopyOption.ATOMIC_MOVE);
     } catch (IOException e) {
       throw new ObjectStoreException(objectName, "Can't create backup", e);
     }
@@ -390,6 +540,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       return Files
           .walk(start, 1) //
           .filter(p -> !p.equals(start)) // exclude start directory
+          .filter(p -> p.toFile().isDirectory() || isCurrentVersion(p)) // exclude superseded versions etc.
           .map(p -> p.toFile().isDirectory() ? toPrefix(p) : toStoreObject(p));
     } catch (NoSuchFileException e) {
       throw new ObjectNotFoundException(prefix, e);
@@ -406,16 +557,127 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       },
       value = "eureka.filesystem.object-store.get")
   public StoreObject get(final ObjectName objectName) {
-    final File target = new File(toObjectPath(objectName, getVersion(objectName)).toUri());
+    return open(objectName, 0, -1);
+  }
+
+  @Override
+  @Timed(
+      description = "retrieve object store element range",
+      extraTags = {
+          "subsystem", "filesystem.object-store"
+      },
+      value = "eureka.filesystem.object-store.get-range")
+  public StoreObject get(final ObjectName objectName, final long offset, final long length) {
+    return open(objectName, offset, length);
+  }
+
+  /**
+   * Resolve the current version of an object and open its file right away. Versioned files are
+   * immutable once visible, but a superseded version is purged when the superseding transaction
+   * commits. Opening the file under the read lock keeps the purge from racing with the open, and
+   * the open channel keeps the content readable should the purge happen before the caller reads.
+   *
+   * @param objectName the object name
+   * @param offset the offset of the first byte to read
+   * @param length the number of bytes to read or <code>-1</code> to read up to the end
+   * @return the store object or <code>null</code> if there is no such object
+   */
+  private StoreObject open(final ObjectName objectName, final long offset, final long length) {
     readWriteLocker.readLockObject(objectName);
-    if (!target.exists()) {
-      readWriteLocker.readUnlockObject(objectName);
+    try {
+      String version = getVersion(objectName);
+      if (NULL_VERSION.equals(version))
+        return null;
+
+      File file = toObjectPath(objectName, version).toFile();
+      FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+      // StoreObject successfully found + initialized
+      return new FilesystemStoreObject(objectName, file, version, offset, length, channel);
+    } catch (NoSuchFileException e) {
+      // removed behind our back
       return null;
+    } catch (IOException e) {
+      throw new ObjectStoreException(objectName, "Can't open object", e);
+    } finally {
+      readWriteLocker.readUnlockObject(objectName);
+    }
+  }
+
+  private static void closeQuietly(final FileChannel channel) {
+    if (null == channel)
+      return;
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.warn("Can't close file channel", e);
+    }
+  }
+
+  /**
+   * Retrieve the given objects in parallel. Resolving an object requires a scan of its parent
+   * directory in order to determine its current version, which dominates the cost of retrieving small
+   * objects.
+   */
+  @Override
+  @Timed(
+      description = "retrieve multiple object store elements",
+      extraTags = {
+          "subsystem", "filesystem.object-store"
+      },
+      value = "eureka.filesystem.object-store.get-many")
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<ObjectName, StoreObject> found = new ConcurrentHashMap<>();
+    objectNames.parallelStream().distinct().forEach(n -> {
+      StoreObject storeObject = get(n);
+      if (null != storeObject)
+        found.put(n, storeObject);
+    });
+
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    objectNames.stream().filter(found::containsKey).forEach(n -> result.put(n, found.get(n)));
+    return result;
+  }
+
+  @Override
+  public boolean supportsRename() {
+    return true;
+  }
+
+  @Override
+  @Timed(
+      description = "rename object store element",
+      extraTags = {
+          "subsystem", "filesystem.object-store"
+      },
+      value = "eureka.filesystem.object-store.rename")
+  public void rename(final ObjectName from, final ObjectName to) {
+    String targetVersion = getVersion(to);
+    if (!NULL_VERSION.equals(targetVersion)) {
+      throw new VersionMismatchException("Can't rename", NEW_VERSION, targetVersion);
+    }
+    Path source = toObjectPath(from, getVersion(from));
+    if (!Files.isRegularFile(source)) {
+      throw new ObjectNotFoundException(from);
+    }
+    // the renamed object starts out with the version of a newly put one
+    Path target = toObjectPath(to, String.format("%06X", Long.parseLong(newVersion, 16) + 1));
+    File targetFile = target.toFile();
+    // on rollback: remove created directory tree
+    wal.appendUndoAction(new UndoCreateDirectories(targetFile));
+    readWriteLocker.writeLockObjects(from, to);
+    try {
+      Files.createDirectories(target.getParent());
+      // on rollback: move the object back to where it came from
+      wal.appendUndoAction(new RevertToBackup(to, source.toAbsolutePath().toFile(), targetFile.getAbsoluteFile()));
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+      indexVersion(from, NULL_VERSION);
+      indexVersion(to, String.format("%06X", Long.parseLong(newVersion, 16) + 1));
+    } catch (IOException e) {
+      LOGGER.warn("Can't rename: {} to {}", source, target, e);
+      throw new ObjectStoreException(to, "Can't rename", e);
+    } finally {
+      readWriteLocker.writeUnlockObjects(from, to);
     }
-    String version = getVersion(objectName);
-    readWriteLocker.readUnlockObject(objectName);
-    // StoreObject successfully found + initialized
-    return new FilesystemStoreObject(objectName, target, version);
   }
 
   @Override
@@ -426,14 +688,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       },
       value = "eureka.filesystem.object-store.check-exists")
   public boolean checkObjectExists(final ObjectName objectName) {
-    final Path objectPath = toObjectPath(objectName, getVersion(objectName));
-    readWriteLocker.readLockObject(objectName);
-    if (Files.exists(objectPath)) {
-      readWriteLocker.readUnlockObject(objectName);
-      return true;
-    }
-    readWriteLocker.readUnlockObject(objectName);
-    return false;
+    return !NULL_VERSION.equals(getVersion(objectName));
   }
 
   private void backupPrefix(final ObjectName objectName, final Path folderPath) throws IOException {
@@ -474,12 +729,13 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
   public void delete(final ObjectName objectName) {
     Path objectPath = toObjectPath(objectName, getVersion(objectName));
     if (Files.isRegularFile(objectPath)) {
-      // delete targets object - just backup it
-      backupObject(objectName, objectPath);
+      // delete targets object - just move it out of the way
+      readWriteLocker.writeLockObject(objectName);
       try {
-        Files.delete(objectPath);
-      } catch (IOException e) {
-        throw new ObjectStoreException(objectName, "Can't delete", e);
+        moveToBackup(objectName, objectPath);
+        indexVersion(objectName, NULL_VERSION);
+      } finally {
+        readWriteLocker.writeUnlockObject(objectName);
       }
     }
     Path folderPath = toPathWithRoot(objectName);
@@ -488,6 +744,7 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
       try {
         backupPrefix(objectName, folderPath);
         delete(objectName, folderPath);
+        versionIndex.invalidate(folderPath);
       } catch (IOException e) {
         throw new ObjectStoreException(objectName, "Can't delete", e);
       }
@@ -530,6 +787,11 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
     };
   }
 
+  private boolean isCurrentVersion(final Path file) {
+    Matcher m = VERSION_PATTERN.matcher(file.getFileName().toString());
+    return m.matches() && m.group(2).equals(getVersion(toObjectName(file)));
+  }
+
   private FilesystemStoreObject toStoreObject(final Path key) {
     ObjectName objectName = toObjectName(key);
     String version = getVersion(objectName);
@@ -565,29 +827,26 @@ public class FilesystemObjectStoreService implements ObjectStoreService {
     return Paths.get(objectName.stream().map(s -> escape(s)).collect(joining(DELIMITER)));
   }
 
-  private static final Pattern VERSION_PATTERN = Pattern.compile("(.*)\\.\\$(\\p{XDigit}{6})$");
+  private static final Pattern VERSION_PATTERN = FilesystemVersionIndex.VERSION_PATTERN;
 
-  private static final String NULL_VERSION = String.format("%06X", 0);
+  private static final String NULL_VERSION = FilesystemVersionIndex.NULL_VERSION;
 
   private String getVersion(final ObjectName objectName) {
     Path pathWithRoot = toPathWithRoot(objectName);
     Path searchFolder = pathWithRoot.getParent();
-    String filenamePrefix = pathWithRoot.getFileName().toString();
     if (null == searchFolder)
       searchFolder = root;
     try {
-      return Files
-          .find(searchFolder, 1, (p, a) -> a.isRegularFile() && p.getFileName().toString().startsWith(filenamePrefix)) //
-          .map(p -> VERSION_PATTERN.matcher(p.getFileName().toString())) //
-          .filter(Matcher::matches) //
-          .map(m -> m.group(2)) //
-          .max(Comparator.naturalOrder()) //
-          .orElse(NULL_VERSION);
-    } catch (NoSuchFileException e) {
-      return NULL_VERSION;
+      return versionIndex.getVersion(searchFolder, pathWithRoot.getFileName().toString());
     } catch (IOException e) {
       throw new ObjectStoreException(objectName, "Can't get current version", e);
     }
   }
 
+  private void indexVersion(final ObjectName objectName, final String version) {
+    Path pathWithRoot = toPathWithRoot(objectName);
+    Path folder = pathWithRoot.getParent();
+    versionIndex.update(null != folder ? folder : root, pathWithRoot.getFileName().toString(), version);
+  }
+
 }
\ No newline at end of file
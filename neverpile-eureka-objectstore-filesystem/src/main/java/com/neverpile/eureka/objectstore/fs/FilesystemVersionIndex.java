@@ -0,0 +1,256 @@
+package com.neverpile.eureka.objectstore.fs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory index of the current versions of the objects kept by the
+ * {@link FilesystemObjectStoreService}. Objects are stored as files named
+ * <code>&lt;name&gt;.$&lt;version&gt;</code>, so that determining the current version of an object
+ * otherwise requires a scan of its parent directory.
+ * <p>
+ * The index is populated lazily by scanning a directory once upon its first access. Afterwards, the
+ * store keeps it up to date upon mutations while undo actions simply invalidate the affected
+ * directories. Indexed versions are validated by checking for the existence of the corresponding
+ * file, so that objects removed behind the store's back are noticed. Objects created behind the
+ * store's back are not.
+ * <p>
+ * The index can be saved to and restored from a compact snapshot so that a restarted node doesn't
+ * have to rescan the directories. As the recovery of incomplete transactions upon startup may
+ * modify directories before the snapshot is restored, the snapshot records the modification time
+ * of each directory and entries of directories modified since are discarded.
+ */
+class FilesystemVersionIndex {
+  static final Pattern VERSION_PATTERN = Pattern.compile("(.*)\\.\\$(\\p{XDigit}{6})$");
+
+  static final String NULL_VERSION = String.format("%06X", 0);
+
+  private static final int SNAPSHOT_MAGIC = 0x4e505649; // "NPVI"
+
+  private static final int STRIPES = 64;
+
+  private final Map<Path, Map<String, String>> directories = new ConcurrentHashMap<>();
+
+  /**
+   * Modification counters guarding against caching the result of a directory scan which raced with
+   * a concurrent modification of the directory.
+   */
+  private final AtomicLongArray modifications = new AtomicLongArray(STRIPES);
+
+  private volatile boolean enabled = true;
+
+  private volatile int maxDirectories = 100000;
+
+  void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled)
+      directories.clear();
+  }
+
+  void setMaxDirectories(final int maxDirectories) {
+    this.maxDirectories = maxDirectories;
+  }
+
+  /**
+   * Return the current version of the object stored under the given file name prefix in the given
+   * directory.
+   *
+   * @param directory the directory
+   * @param name the file name without the version suffix
+   * @return the version or {@link #NULL_VERSION} if there is no such object
+   * @throws IOException if the directory cannot be scanned
+   */
+  String getVersion(Path directory, final String name) throws IOException {
+    directory = key(directory);
+    if (!enabled)
+      return scan(directory).getOrDefault(name, NULL_VERSION);
+
+    Map<String, String> versions = directories.get(directory);
+    if (null != versions) {
+      String version = versions.get(name);
+      if (null == version)
+        return NULL_VERSION;
+      if (Files.exists(directory.resolve(name + ".$" + version)))
+        return version;
+
+      // modified behind our back
+      directories.remove(directory, versions);
+    }
+
+    int stripe = stripe(directory);
+    long before = modifications.get(stripe);
+    versions = scan(directory);
+    if (modifications.get(stripe) == before) {
+      evictIfFull();
+      directories.putIfAbsent(directory, versions);
+    }
+    return versions.getOrDefault(name, NULL_VERSION);
+  }
+
+  /**
+   * Record the current version of an object.
+   *
+   * @param directory the directory
+   * @param name the file name without the version suffix
+   * @param version the version or {@link #NULL_VERSION} if the object has been removed
+   */
+  void update(Path directory, final String name, final String version) {
+    directory = key(directory);
+    modifications.incrementAndGet(stripe(directory));
+    directories.computeIfPresent(directory, (d, versions) -> {
+      if (NULL_VERSION.equals(version))
+        versions.remove(name);
+      else
+        versions.put(name, version);
+      return versions;
+    });
+  }
+
+  /**
+   * Forget everything known about the given path, which may be a file or a directory, and all paths
+   * below it.
+   *
+   * @param path the path
+   */
+  void invalidate(Path path) {
+    path = key(path);
+    // a scan of any directory below the path might be in progress
+    invalidateScans();
+
+    Path parent = path.getParent();
+    if (null != parent)
+      directories.remove(parent);
+    directories.keySet().removeIf(d -> d.startsWith(path));
+  }
+
+  void clear() {
+    invalidateScans();
+    directories.clear();
+  }
+
+  private void invalidateScans() {
+    for (int i = 0; i < STRIPES; i++)
+      modifications.incrementAndGet(i);
+  }
+
+  private static Path key(final Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  private static int stripe(final Path directory) {
+    return (directory.hashCode() & 0x7fffffff) % STRIPES;
+  }
+
+  private void evictIfFull() {
+    // not LRU, just bounded
+    Iterator<Path> i = directories.keySet().iterator();
+    while (directories.size() >= maxDirectories && i.hasNext()) {
+      i.next();
+      i.remove();
+    }
+  }
+
+  private static Map<String, String> scan(final Path directory) throws IOException {
+    Map<String, String> versions = new ConcurrentHashMap<>();
+    try (Stream<Path> files = Files.find(directory, 1, (p, a) -> a.isRegularFile())) {
+      files.forEach(p -> {
+        Matcher m = VERSION_PATTERN.matcher(p.getFileName().toString());
+        if (m.matches())
+          versions.merge(m.group(1), m.group(2), (a, b) -> a.compareTo(b) >= 0 ? a : b);
+      });
+    } catch (NoSuchFileException e) {
+      // no such directory - no objects
+    }
+    return versions;
+  }
+
+  /**
+   * Write a snapshot of the index. Directories are recorded relative to the given root, along with
+   * their modification time.
+   *
+   * @param root the root of the object store
+   * @param snapshot the snapshot file
+   * @throws IOException if the snapshot cannot be written
+   */
+  void writeSnapshot(final Path root, final Path snapshot) throws IOException {
+    Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      Map<Path, Map<String, String>> copy = new HashMap<>(directories);
+      out.writeInt(copy.size());
+      for (Map.Entry<Path, Map<String, String>> directory : copy.entrySet()) {
+        Map<String, String> versions = new HashMap<>(directory.getValue());
+        out.writeUTF(key(root).relativize(directory.getKey()).toString());
+        out.writeLong(lastModified(directory.getKey()));
+        out.writeInt(versions.size());
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+          out.writeUTF(version.getKey());
+          out.writeInt(Integer.parseInt(version.getValue(), 16));
+        }
+      }
+    }
+    Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Restore the index from a snapshot written by {@link #writeSnapshot(Path, Path)}. Directories
+   * which have been modified since the snapshot was written are skipped and will be scanned upon
+   * their first access.
+   *
+   * @param root the root of the object store
+   * @param snapshot the snapshot file
+   * @throws IOException if the snapshot cannot be read
+   */
+  void readSnapshot(final Path root, final Path snapshot) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC)
+        throw new IOException("Not a version index snapshot: " + snapshot);
+
+      int directoryCount = in.readInt();
+      for (int i = 0; i < directoryCount; i++) {
+        Path directory = key(root.resolve(in.readUTF()));
+        long lastModified = in.readLong();
+        int versionCount = in.readInt();
+        Map<String, String> versions = new ConcurrentHashMap<>();
+        for (int j = 0; j < versionCount; j++)
+          versions.put(in.readUTF(), String.format("%06X", in.readInt()));
+        // e.g. a rolled back delete moved an object back in place
+        if (lastModified(directory) == lastModified)
+          directories.put(directory, versions);
+      }
+    }
+  }
+
+  private static long lastModified(final Path directory) throws IOException {
+    try {
+      return Files.getLastModifiedTime(directory).to(TimeUnit.NANOSECONDS);
+    } catch (NoSuchFileException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Return the number of indexed directories. For testing purposes only.
+   *
+   * @return the number of directories
+   */
+  int size() {
+    return directories.size();
+  }
+}
@@ -12,4 +12,21 @@ public interface ReadWriteLocker {
 
   public void readUnlockObject(ObjectName targetFile);
 
+  /**
+   * Acquire the write locks of two objects in an order which cannot lead to deadlocks with other
+   * threads doing the same.
+   *
+   * @param first the first object
+   * @param second the second object
+   */
+  public void writeLockObjects(ObjectName first, ObjectName second);
+
+  /**
+   * Release the write locks acquired using {@link #writeLockObjects(ObjectName, ObjectName)}.
+   *
+   * @param first the first object
+   * @param second the second object
+   */
+  public void writeUnlockObjects(ObjectName first, ObjectName second);
+
 }
@@ -0,0 +1,84 @@
+package com.neverpile.eureka.objectstore.fs;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * A {@link ReadWriteLocker} backed by a fixed table of read-write locks. Objects are mapped to the
+ * locks by the hash of their name, so that unrelated objects rarely contend while neither locking
+ * nor unlocking requires any allocation or bookkeeping. Objects sharing a lock merely serialize
+ * needlessly.
+ * <p>
+ * The locks are reentrant, so a thread may lock two objects which happen to share a lock.
+ */
+public class StripedReadWriteLocker implements ReadWriteLocker {
+
+  private final ReentrantReadWriteLock[] locks;
+
+  private final int mask;
+
+  /**
+   * Create a locker with the given number of locks, rounded up to the next power of two.
+   *
+   * @param stripes the number of locks
+   */
+  public StripedReadWriteLocker(final int stripes) {
+    int size = tableSize(stripes);
+    locks = new ReentrantReadWriteLock[size];
+    for (int i = 0; i < size; i++)
+      locks[i] = new ReentrantReadWriteLock();
+    mask = size - 1;
+  }
+
+  static int tableSize(final int stripes) {
+    return stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+  }
+
+  public int getStripes() {
+    return locks.length;
+  }
+
+  private int stripe(final ObjectName target) {
+    int h = target.hashCode();
+    // spread the higher bits as the table size is a power of two
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  @Override
+  public void writeLockObject(final ObjectName target) {
+    locks[stripe(target)].writeLock().lock();
+  }
+
+  @Override
+  public void readLockObject(final ObjectName target) {
+    locks[stripe(target)].readLock().lock();
+  }
+
+  @Override
+  public void writeUnlockObject(final ObjectName target) {
+    locks[stripe(target)].writeLock().unlock();
+  }
+
+  @Override
+  public void readUnlockObject(final ObjectName target) {
+    locks[stripe(target)].readLock().unlock();
+  }
+
+  @Override
+  public void writeLockObjects(final ObjectName first, final ObjectName second) {
+    // acquire in stripe order to prevent deadlocks
+    int a = stripe(first);
+    int b = stripe(second);
+    locks[Math.min(a, b)].writeLock().lock();
+    locks[Math.max(a, b)].writeLock().lock();
+  }
+
+  @Override
+  public void writeUnlockObjects(final ObjectName first, final ObjectName second) {
+    int a = stripe(first);
+    int b = stripe(second);
+    locks[Math.max(a, b)].writeLock().unlock();
+    locks[Math.min(a, b)].writeLock().unlock();
+  }
+}
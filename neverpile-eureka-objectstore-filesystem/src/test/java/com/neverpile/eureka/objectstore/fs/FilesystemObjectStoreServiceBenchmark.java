@@ -0,0 +1,166 @@
+package com.neverpile.eureka.objectstore.fs;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.CustomScopeConfigurer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.RequestScope;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+/**
+ * Measures the put and get throughput of the {@link FilesystemObjectStoreService} for an increasing
+ * number of threads. Run using {@link #main(String[])} from the IDE or the test classpath, e.g.
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.neverpile.eureka.objectstore.fs.FilesystemObjectStoreServiceBenchmark</code>.
+ * <p>
+ * Puts go to distinct objects, gets read randomly chosen ones out of a fixed set. Both should scale
+ * with the number of threads until the disk becomes the bottleneck.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class FilesystemObjectStoreServiceBenchmark {
+  private static final String ROOT_PATH = "target/benchmark-store";
+
+  private static final int OBJECT_COUNT = 1000;
+
+  private static final byte[] CONTENT = new byte[4096];
+
+  @Configuration
+  @EnableAutoConfiguration
+  @EnableTransactionManagement
+  @Import(TestConfig.class)
+  public static class BenchmarkConfig {
+    // the WAL is request scoped
+    @Bean
+    static CustomScopeConfigurer requestScope() {
+      CustomScopeConfigurer configurer = new CustomScopeConfigurer();
+      configurer.addScope("request", new RequestScope());
+      return configurer;
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Store {
+    ConfigurableApplicationContext context;
+
+    ObjectStoreService objectStore;
+
+    TransactionTemplate transactionTemplate;
+
+    final AtomicInteger putCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+      FileSystemUtils.deleteRecursively(Paths.get(ROOT_PATH));
+      context = new SpringApplicationBuilder(BenchmarkConfig.class) //
+          .web(WebApplicationType.NONE) //
+          .properties("neverpile-eureka.storage.filesystem.rootPath=" + ROOT_PATH) //
+          .run();
+      objectStore = context.getBean(ObjectStoreService.class);
+      transactionTemplate = context.getBean(TransactionTemplate.class);
+
+      inRequest(() -> {
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+          ObjectName name = ObjectName.of("get", Integer.toString(i));
+          transactionTemplate.executeWithoutResult(
+              s -> objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(CONTENT)));
+        }
+      });
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+      context.close();
+      FileSystemUtils.deleteRecursively(Paths.get(ROOT_PATH));
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Request {
+    @Setup(Level.Trial)
+    public void bind() {
+      RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @TearDown(Level.Trial)
+    public void unbind() {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  private static void inRequest(final Runnable r) {
+    RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    try {
+      r.run();
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+  }
+
+  @Benchmark
+  public void put(final Store store, final Request request) {
+    ObjectName name = ObjectName.of("put", Integer.toString(store.putCounter.getAndIncrement()));
+    store.transactionTemplate.executeWithoutResult(
+        s -> store.objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(CONTENT)));
+  }
+
+  @Benchmark
+  public long get(final Store store) throws IOException {
+    ObjectName name = ObjectName.of("get", Integer.toString(ThreadLocalRandom.current().nextInt(OBJECT_COUNT)));
+    try (InputStream is = store.objectStore.get(name).getInputStream()) {
+      return is.transferTo(OutputStream.nullOutputStream());
+    }
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    for (int threads : new int[]{
+        1, 2, 4, 8, 16
+    }) {
+      Options options = new OptionsBuilder() //
+          .include(FilesystemObjectStoreServiceBenchmark.class.getSimpleName()) //
+          .threads(threads) //
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
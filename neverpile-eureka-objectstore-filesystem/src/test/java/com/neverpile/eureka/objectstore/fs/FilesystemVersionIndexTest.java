@@ -0,0 +1,114 @@
+package com.neverpile.eureka.objectstore.fs;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FilesystemVersionIndexTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path root;
+
+  private Path dir;
+
+  @Before
+  public void createObjects() throws IOException {
+    root = folder.getRoot().toPath();
+    dir = Files.createDirectories(root.resolve("foo"));
+    Files.createFile(dir.resolve("bar.$000001"));
+    Files.createFile(dir.resolve("bar.$000002"));
+    Files.createFile(dir.resolve("barbaz.$000007"));
+  }
+
+  @Test
+  public void testThat_versionsAreDeterminedByScanning() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+
+    assertThat(index.getVersion(dir, "bar"), equalTo("000002"));
+    assertThat(index.getVersion(dir, "barbaz"), equalTo("000007"));
+    assertThat(index.getVersion(dir, "ba"), equalTo(FilesystemVersionIndex.NULL_VERSION));
+    assertThat(index.getVersion(root.resolve("nonexistent"), "bar"), equalTo(FilesystemVersionIndex.NULL_VERSION));
+    assertThat(index.size(), equalTo(1));
+  }
+
+  @Test
+  public void testThat_updatesAreReflected() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+    index.getVersion(dir, "bar");
+
+    Files.createFile(dir.resolve("bar.$000003"));
+    index.update(dir, "bar", "000003");
+    assertThat(index.getVersion(dir, "bar"), equalTo("000003"));
+
+    index.update(dir, "bar", FilesystemVersionIndex.NULL_VERSION);
+    assertThat(index.getVersion(dir, "bar"), equalTo(FilesystemVersionIndex.NULL_VERSION));
+  }
+
+  @Test
+  public void testThat_externalDeletionsAreDetected() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+    assertThat(index.getVersion(dir, "bar"), equalTo("000002"));
+
+    Files.delete(dir.resolve("bar.$000002"));
+    assertThat(index.getVersion(dir, "bar"), equalTo("000001"));
+  }
+
+  @Test
+  public void testThat_invalidationForcesRescan() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+    assertThat(index.getVersion(dir, "quux"), equalTo(FilesystemVersionIndex.NULL_VERSION));
+
+    Files.createFile(dir.resolve("quux.$000001"));
+    index.invalidate(dir.resolve("quux.$000001"));
+    assertThat(index.getVersion(dir, "quux"), equalTo("000001"));
+  }
+
+  @Test
+  public void testThat_indexCanBeRestoredFromSnapshot() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+    index.getVersion(dir, "bar");
+    Path snapshot = folder.getRoot().toPath().resolve("index.snapshot");
+    index.writeSnapshot(root, snapshot);
+
+    FilesystemVersionIndex restored = new FilesystemVersionIndex();
+    restored.readSnapshot(root, snapshot);
+    assertThat(restored.size(), equalTo(1));
+
+    // served from the index: a file created behind the index' back is not noticed
+    Files.createFile(dir.resolve("quux.$000001"));
+    assertThat(restored.getVersion(dir, "bar"), equalTo("000002"));
+    assertThat(restored.getVersion(dir, "barbaz"), equalTo("000007"));
+    assertThat(restored.getVersion(dir, "quux"), equalTo(FilesystemVersionIndex.NULL_VERSION));
+  }
+
+  @Test
+  public void testThat_snapshotDoesNotHideObjectsRestoredByRecovery() throws IOException {
+    FilesystemVersionIndex index = new FilesystemVersionIndex();
+    assertThat(index.getVersion(dir, "barbaz"), equalTo("000007"));
+
+    // a delete moves the object to a backup and the node goes down before the transaction completes
+    Path object = dir.resolve("barbaz.$000007");
+    Path backup = dir.resolve("barbaz.$000007-backup");
+    Files.move(object, backup);
+    index.update(dir, "barbaz", FilesystemVersionIndex.NULL_VERSION);
+    Path snapshot = folder.getRoot().toPath().resolve("index.snapshot");
+    index.writeSnapshot(root, snapshot);
+
+    // upon restart the recovery rolls back the delete before the snapshot is restored
+    Files.move(backup, object);
+
+    FilesystemVersionIndex restored = new FilesystemVersionIndex();
+    restored.readSnapshot(root, snapshot);
+    assertThat(restored.size(), equalTo(0));
+    assertThat(restored.getVersion(dir, "barbaz"), equalTo("000007"));
+  }
+}
@@ -1,5 +1,6 @@
 package com.neverpile.eureka.objectstore.fs;
 
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.startsWith;
@@ -8,7 +9,11 @@ import static org.junit.Assert.assertThat;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.Before;
@@ -20,6 +25,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.support.TransactionCallback;
@@ -241,6 +247,73 @@ public class TransactionalFileHandlingTest {
     is.close();
   }
 
+  @Test
+  public void testThat_objectsExposeTheirBackingFile() throws IOException {
+    ObjectName someObject = ObjectName.of("foo", "bar", "baz");
+    transactionTemplate.execute(new TransactionCallback<Void>() {
+
+      @Override
+      public Void doInTransaction(final TransactionStatus status) {
+        oss.put(someObject, ObjectStoreService.NEW_VERSION, createDummyStream());
+        return null;
+      }
+
+    });
+    Path file = oss.get(someObject).getLocalFile().orElseThrow();
+    assertThat(new String(Files.readAllBytes(file)), equalTo("foo"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testThat_releasingAnUnreadObjectClosesItsChannel() throws IOException {
+    ObjectName someObject = ObjectName.of("foo", "bar", "released");
+    transactionTemplate.execute(status -> {
+      oss.put(someObject, ObjectStoreService.NEW_VERSION, createDummyStream());
+      return null;
+    });
+
+    ObjectStoreService.StoreObject storeObject = oss.get(someObject);
+    FileChannel channel = ((AtomicReference<FileChannel>) ReflectionTestUtils.getField(storeObject,
+        "openChannel")).get();
+    assertThat(channel.isOpen(), equalTo(true));
+
+    storeObject.release();
+    assertThat(channel.isOpen(), equalTo(false));
+
+    // the object can still be read as long as its file exists
+    try (InputStream is = storeObject.getInputStream()) {
+      assertThat(StreamUtils.copyToString(is, Charset.defaultCharset()), equalTo("foo"));
+    }
+  }
+
+  @Test
+  public void testThat_readInterleavedWithOverwritingCommitSeesRetrievedVersion() throws IOException {
+    ObjectName someObject = ObjectName.of("foo", "bar", "interleaved");
+    transactionTemplate.execute(status -> {
+      oss.put(someObject, ObjectStoreService.NEW_VERSION, toStream("old content"));
+      return null;
+    });
+
+    // retrieve the object, but don't read it yet
+    ObjectStoreService.StoreObject whole = oss.get(someObject);
+    ObjectStoreService.StoreObject range = oss.get(someObject, 4, 7);
+
+    // an overwriting transaction commits and thereby purges the retrieved version
+    transactionTemplate.execute(status -> {
+      oss.put(someObject, whole.getVersion(), toStream("new content"));
+      return null;
+    });
+    assertThat(Files.exists(whole.getLocalFile().orElseThrow()), equalTo(false));
+
+    try (InputStream is = whole.getInputStream()) {
+      assertThat(StreamUtils.copyToString(is, Charset.defaultCharset()), equalTo("old content"));
+    }
+    try (InputStream is = range.getInputStream()) {
+      assertThat(StreamUtils.copyToString(is, Charset.defaultCharset()), equalTo("content"));
+    }
+    assertObjectContent(someObject, "new content");
+  }
+
   private ByteArrayInputStream toStream(final String contents) {
     return new ByteArrayInputStream(contents.getBytes());
   }
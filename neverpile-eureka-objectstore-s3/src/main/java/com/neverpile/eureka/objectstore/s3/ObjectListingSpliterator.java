@@ -0,0 +1,173 @@
+package com.neverpile.eureka.objectstore.s3;
+
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.BACKUP_SUFFIX;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.neverpile.eureka.api.ObjectStoreService.ObjectStoreException;
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
+
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * A spliterator over the objects and common prefixes listed below a prefix.
+ * <p>
+ * As soon as a page of the listing has been received, the next one is requested in the background
+ * so that it is usually available by the time the current one has been consumed.
+ * <p>
+ * Until the first page has been requested, the listing can be split by partitioning the keyspace by
+ * the first character following the prefix. Since object name components are escaped to
+ * {@link #KEY_ALPHABET} characters, each partition can be listed independently by starting after
+ * its lower bound and stopping at its upper bound. This allows parallel streams to list a large
+ * prefix, like that of all documents, concurrently.
+ */
+class ObjectListingSpliterator implements Spliterator<StoreObject> {
+  /**
+   * The characters escaped object name components can start with, in S3 key order.
+   *
+   * @see com.neverpile.eureka.util.ObjectNames#escape(String)
+   */
+  static final String KEY_ALPHABET = "%-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+  private final ListObjectsV2Request request;
+
+  private final Function<ListObjectsV2Request, CompletableFuture<ListObjectsV2Response>> pageFetcher;
+
+  private final Function<S3Object, StoreObject> objectMapper;
+
+  private final Function<String, StoreObject> prefixMapper;
+
+  /**
+   * The partition of the keyspace covered by this spliterator, given as the range of indexes into
+   * the {@link #KEY_ALPHABET}.
+   */
+  private int from;
+
+  private final int to;
+
+  private CompletableFuture<ListObjectsV2Response> nextPage;
+
+  private boolean exhausted;
+
+  private Iterator<StoreObject> page = Collections.emptyIterator();
+
+  /**
+   * Create a spliterator for the given listing request.
+   *
+   * @param request the request, whose prefix must either be empty or end with the delimiter
+   * @param pageFetcher the function requesting a page of the listing
+   * @param objectMapper the function mapping listed objects to {@link StoreObject}s
+   * @param prefixMapper the function mapping listed common prefixes to {@link StoreObject}s
+   */
+  ObjectListingSpliterator(final ListObjectsV2Request request,
+      final Function<ListObjectsV2Request, CompletableFuture<ListObjectsV2Response>> pageFetcher,
+      final Function<S3Object, StoreObject> objectMapper, final Function<String, StoreObject> prefixMapper) {
+    this(request, pageFetcher, objectMapper, prefixMapper, 0, KEY_ALPHABET.length());
+  }
+
+  private ObjectListingSpliterator(final ListObjectsV2Request request,
+      final Function<ListObjectsV2Request, CompletableFuture<ListObjectsV2Response>> pageFetcher,
+      final Function<S3Object, StoreObject> objectMapper, final Function<String, StoreObject> prefixMapper,
+      final int from, final int to) {
+    this.request = request;
+    this.pageFetcher = pageFetcher;
+    this.objectMapper = objectMapper;
+    this.prefixMapper = prefixMapper;
+    this.from = from;
+    this.to = to;
+  }
+
+  @Override
+  public boolean tryAdvance(final Consumer<? super StoreObject> action) {
+    while (!page.hasNext()) {
+      if (exhausted)
+        return false;
+
+      if (null == nextPage)
+        nextPage = pageFetcher.apply(firstPageRequest());
+
+      ListObjectsV2Response listing = join(nextPage);
+      String upperBound = upperBound();
+      boolean beyondUpperBound = false;
+
+      List<StoreObject> objects = new ArrayList<>();
+      for (S3Object s : listing.contents()) {
+        if (null != upperBound && s.key().compareTo(upperBound) >= 0)
+          beyondUpperBound = true;
+        else if (!s.key().endsWith(BACKUP_SUFFIX)) // hide backups
+          objects.add(objectMapper.apply(s));
+      }
+      for (CommonPrefix p : listing.commonPrefixes()) {
+        if (null != upperBound && p.prefix().compareTo(upperBound) >= 0)
+          beyondUpperBound = true;
+        else
+          objects.add(prefixMapper.apply(p.prefix()));
+      }
+
+      if (!beyondUpperBound && Boolean.TRUE.equals(listing.isTruncated()))
+        nextPage = pageFetcher.apply(request.toBuilder().continuationToken(listing.nextContinuationToken()).build());
+      else
+        exhausted = true;
+
+      page = objects.iterator();
+    }
+
+    action.accept(page.next());
+    return true;
+  }
+
+  private ListObjectsV2Request firstPageRequest() {
+    if (from == 0)
+      return request;
+
+    // all keys starting with the preceding character sort before this: keys are plain ASCII
+    return request.toBuilder().startAfter(request.prefix() + (char) (KEY_ALPHABET.charAt(from) - 1) + '\u007f').build();
+  }
+
+  private String upperBound() {
+    return to < KEY_ALPHABET.length() ? request.prefix() + KEY_ALPHABET.charAt(to) : null;
+  }
+
+  private static ListObjectsV2Response join(final CompletableFuture<ListObjectsV2Response> page) {
+    try {
+      return page.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re)
+        throw re;
+      throw new ObjectStoreException(null, "Can't list objects", e.getCause());
+    }
+  }
+
+  @Override
+  public Spliterator<StoreObject> trySplit() {
+    if (null != nextPage || to - from < 2)
+      return null;
+
+    int mid = (from + to) >>> 1;
+    ObjectListingSpliterator lowerHalf = new ObjectListingSpliterator(request, pageFetcher, objectMapper,
+        prefixMapper, from, mid);
+    from = mid;
+    return lowerHalf;
+  }
+
+  @Override
+  public long estimateSize() {
+    return Long.MAX_VALUE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
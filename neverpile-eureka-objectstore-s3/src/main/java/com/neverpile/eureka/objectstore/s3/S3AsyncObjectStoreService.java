@@ -0,0 +1,454 @@
+package com.neverpile.eureka.objectstore.s3;
+
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.BACKUP_SUFFIX;
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.MAX_DELETE_BATCH_SIZE;
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.MIN_PART_SIZE;
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.NAME_DELIMITER;
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.toKey;
+import static com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.toObjectName;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+
+import com.neverpile.common.opentracing.Tag;
+import com.neverpile.common.opentracing.TraceInvocation;
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.api.exception.VersionMismatchException;
+import com.neverpile.eureka.model.ObjectName;
+import com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.MoveObjectAction;
+import com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.ObjectNameMapper;
+import com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.PurgeObjectAction;
+import com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.PurgeObjectVersionAction;
+import com.neverpile.eureka.objectstore.s3.S3ObjectStoreService.S3TXAction;
+import com.neverpile.eureka.tx.wal.TransactionWAL;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.BlockingInputStreamAsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CopyObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * An S3 object store built on the non-blocking {@link S3AsyncClient}. It offers the same
+ * transactional semantics as the {@link S3ObjectStoreService} but issues all requests through a
+ * single, shared pool of non-blocking connections. Requests run without occupying a thread while
+ * waiting for S3: bulk operations issue their requests without waiting for the responses, with at
+ * most {@link S3ObjectStoreConfiguration#getGetManyParallelism()} of them in flight, and uploads are
+ * streamed by the calling thread. The synchronous {@link ObjectStoreService} methods merely wait for the completion
+ * of the requests.
+ * <p>
+ * Uploads of unknown length are performed as multipart uploads by the client itself, buffering at
+ * most {@link S3ObjectStoreConfiguration#getMultipartParallelism()} parts per upload.
+ * <p>
+ * Transactional actions are recorded in the {@link TransactionWAL} by the calling thread only, as
+ * the WAL is bound to it.
+ */
+public class S3AsyncObjectStoreService implements ObjectStoreService {
+  @Autowired
+  private S3ConnectionConfiguration connectionConfiguration;
+
+  @Autowired(required = false)
+  private S3ObjectStoreConfiguration objectStoreConfiguration = new S3ObjectStoreConfiguration();
+
+  @Autowired
+  private TransactionWAL writeAheadLog;
+
+  private S3AsyncClient s3client;
+
+  private volatile boolean bucketVersioningVerified;
+
+  /**
+   * Bounds the number of requests of bulk operations in flight, so that they neither exhaust the
+   * connection pool, starving other requests, nor time out waiting for a connection themselves.
+   */
+  private Semaphore bulkRequestPermits;
+
+  @PostConstruct
+  private void init() {
+    bulkRequestPermits = new Semaphore(Math.max(1,
+        Math.min(objectStoreConfiguration.getGetManyParallelism(), connectionConfiguration.getMaxConnections())));
+
+    long partSize = Math.max(MIN_PART_SIZE, objectStoreConfiguration.getMultipartPartSize());
+    s3client = connectionConfiguration.getSharedAsyncClient(partSize,
+        partSize * Math.max(1, objectStoreConfiguration.getMultipartParallelism()));
+    S3TXAction.setConnectionConfiguration(connectionConfiguration);
+  }
+
+  @Override
+  @Timed(description = "put object store element", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.put")
+  @TraceInvocation
+  public void put(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName,
+      final String version, final InputStream content, @Tag(name = "length") final long length) {
+    String bucket = connectionConfiguration.getDefaultBucketName();
+    String key = toKey(objectName);
+
+    if (isBucketVersioning()) {
+      // conditional write: no need to check the version beforehand
+      PutObjectResponse response;
+      try {
+        response = upload(objectName, bucket, key, version, content, length);
+      } catch (S3Exception e) {
+        // 404: If-Match for a missing object, 409: concurrent conditional write
+        if (e.statusCode() == HttpStatus.PRECONDITION_FAILED.value() || e.statusCode() == HttpStatus.NOT_FOUND.value()
+            || e.statusCode() == HttpStatus.CONFLICT.value())
+          throw new VersionMismatchException("Can't Put", version, getCurrentVersion(bucket, key));
+        throw e;
+      }
+      writeAheadLog.appendUndoAction(new PurgeObjectVersionAction(bucket, key, response.versionId()));
+      return;
+    }
+
+    String currentVersion = getCurrentVersion(bucket, key);
+    if (!currentVersion.equals(version)) {
+      throw new VersionMismatchException("Can't Put", version, currentVersion);
+    }
+
+    if (!currentVersion.equals(NEW_VERSION)) {
+      appendBackupActions(bucket, key);
+      join(objectName, copyToBackup(bucket, key));
+    } else {
+      writeAheadLog.appendUndoAction(new PurgeObjectAction(bucket, key));
+    }
+
+    upload(objectName, bucket, key, null, content, length);
+  }
+
+  /**
+   * Upload the content, optionally conditional on the current version of the object. The content is
+   * written by the calling thread as the client consumes it.
+   */
+  private PutObjectResponse upload(final ObjectName objectName, final String bucket, final String key,
+      final String precondition, final InputStream content, final long length) {
+    PutObjectRequest.Builder request = PutObjectRequest.builder().bucket(bucket).key(key);
+    if (length > 0)
+      request.contentLength(length);
+    if (null != precondition) {
+      if (precondition.equals(NEW_VERSION))
+        request.ifNoneMatch("*");
+      else
+        request.ifMatch(precondition);
+    }
+
+    // unknown length: the client resorts to a multipart upload
+    BlockingInputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingInputStream(length > 0 ? length : null);
+    CompletableFuture<PutObjectResponse> response = s3client.putObject(request.build(), body);
+    try {
+      body.writeInputStream(content);
+    } catch (RuntimeException e) {
+      // the request may have failed first, causing the write to fail
+      if (response.isCompletedExceptionally())
+        join(objectName, response);
+      response.cancel(true);
+      throw new ObjectStoreException(objectName, "Failed to upload content", e);
+    }
+    return join(objectName, response);
+  }
+
+  private String getCurrentVersion(final String bucket, final String key) {
+    try {
+      return join(null, s3client.headObject(b -> b.bucket(bucket).key(key))).eTag();
+    } catch (S3Exception e) {
+      if (e.statusCode() != HttpStatus.NOT_FOUND.value())
+        throw e;
+      return NEW_VERSION;
+    }
+  }
+
+  private boolean isBucketVersioning() {
+    if (!objectStoreConfiguration.isBucketVersioning())
+      return false;
+
+    if (!bucketVersioningVerified) {
+      // rollback relies on version ids, so refuse to write to an unversioned bucket
+      String bucket = connectionConfiguration.getDefaultBucketName();
+      if (join(null, s3client.getBucketVersioning(b -> b.bucket(bucket))).status() != BucketVersioningStatus.ENABLED)
+        throw new IllegalStateException("Versioning is not enabled for bucket " + bucket);
+      bucketVersioningVerified = true;
+    }
+    return true;
+  }
+
+  private StoreObject toStoreObject(final S3Object s) {
+    return new StoreObject() {
+      @Override
+      public String getVersion() {
+        return s.eTag();
+      }
+
+      @Override
+      public ObjectName getObjectName() {
+        return toObjectName(s.key());
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        return S3AsyncObjectStoreService.this.get(getObjectName()).getInputStream();
+      }
+    };
+  }
+
+  @Override
+  @TraceInvocation
+  public Stream<StoreObject> list(
+      @Tag(name = "prefix", valueAdapter = ObjectNameMapper.class) final ObjectName prefix) {
+    String prefixKey = toKey(prefix);
+
+    ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(
+        connectionConfiguration.getDefaultBucketName()).prefix(
+        prefixKey.isEmpty() ? prefixKey : prefixKey + NAME_DELIMITER).delimiter(NAME_DELIMITER).build();
+
+    return StreamSupport.stream(new ObjectListingSpliterator(request, s3client::listObjectsV2, this::toStoreObject,
+        S3ObjectStoreService::toPrefixObject), false);
+  }
+
+  @Override
+  @Timed(description = "get object store element", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get")
+  @TraceInvocation
+  public StoreObject get(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName) {
+    return get(objectName, GetObjectRequest.builder().bucket(
+        connectionConfiguration.getDefaultBucketName()).key(toKey(objectName)).build());
+  }
+
+  @Override
+  @Timed(description = "get object store element range", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get-range")
+  @TraceInvocation
+  public StoreObject get(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName,
+      final long offset, final long length) {
+    if (length == 0)
+      return emptyRange(objectName);
+
+    String range = "bytes=" + offset + "-" + (length > 0 ? Long.toString(offset + length - 1) : "");
+    try {
+      return get(objectName, GetObjectRequest.builder().bucket(
+          connectionConfiguration.getDefaultBucketName()).key(toKey(objectName)).range(range).build());
+    } catch (S3Exception e) {
+      // offset beyond the end of the object
+      if (e.statusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value())
+        return emptyRange(objectName);
+      throw e;
+    }
+  }
+
+  private StoreObject emptyRange(final ObjectName objectName) {
+    String version = getCurrentVersion(connectionConfiguration.getDefaultBucketName(), toKey(objectName));
+    if (version.equals(NEW_VERSION))
+      return null;
+
+    return storeObject(objectName, version, InputStream.nullInputStream());
+  }
+
+  /**
+   * Retrieve an object. The returned future completes as soon as the response headers have been
+   * received, the payload is streamed as it is consumed.
+   */
+  private StoreObject get(final ObjectName objectName, final GetObjectRequest getRequest) {
+    try {
+      ResponseInputStream<GetObjectResponse> response = join(objectName,
+          s3client.getObject(getRequest, AsyncResponseTransformer.toBlockingInputStream()));
+      return storeObject(objectName, response.response().eTag(), response);
+    } catch (S3Exception e) {
+      if (e.statusCode() != HttpStatus.NOT_FOUND.value())
+        throw e;
+      return null;
+    }
+  }
+
+  /**
+   * Retrieve the given objects by issuing the GET requests without waiting for the responses, with
+   * at most {@link S3ObjectStoreConfiguration#getGetManyParallelism()} of them in flight. The payloads
+   * are read into memory, so this method is suited for bulk retrieval of small objects only.
+   */
+  @Override
+  @Timed(description = "get multiple object store elements", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get-many")
+  @TraceInvocation
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    String bucket = connectionConfiguration.getDefaultBucketName();
+    Map<ObjectName, CompletableFuture<ResponseBytes<GetObjectResponse>>> requests = new LinkedHashMap<>();
+    objectNames.forEach(n -> requests.computeIfAbsent(n, k -> issueBulkRequest(
+        () -> s3client.getObject(b -> b.bucket(bucket).key(toKey(k)), AsyncResponseTransformer.toBytes()))));
+
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    requests.forEach((objectName, request) -> {
+      try {
+        ResponseBytes<GetObjectResponse> response = join(objectName, request);
+        result.put(objectName, storeObject(objectName, response.response().eTag(), response.asInputStream()));
+      } catch (S3Exception e) {
+        if (e.statusCode() != HttpStatus.NOT_FOUND.value())
+          throw e;
+      }
+    });
+    return result;
+  }
+
+  private static StoreObject storeObject(final ObjectName objectName, final String version,
+      final InputStream content) {
+    return new StoreObject() {
+      @Override
+      public String getVersion() {
+        return version;
+      }
+
+      @Override
+      public ObjectName getObjectName() {
+        return objectName;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        return content;
+      }
+    };
+  }
+
+  @Override
+  @Timed(description = "delete object store element", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.delete")
+  public void delete(final ObjectName prefix) {
+    String bucket = connectionConfiguration.getDefaultBucketName();
+
+    // the listing tells us which objects exist: no need to check them one by one
+    List<String> keys = new ArrayList<>();
+    ListObjectsV2Request request = ListObjectsV2Request.builder().bucket(bucket).prefix(toKey(prefix)).build();
+    join(prefix, s3client.listObjectsV2Paginator(request).contents().subscribe(s -> {
+      if (!s.key().endsWith(BACKUP_SUFFIX)) // hide backups
+        keys.add(s.key());
+    }));
+    if (keys.isEmpty())
+      return;
+
+    boolean versioning = isBucketVersioning();
+    if (!versioning) {
+      List<CompletableFuture<?>> copies = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        appendBackupActions(bucket, key);
+        copies.add(issueBulkRequest(() -> copyToBackup(bucket, key)));
+      }
+      for (CompletableFuture<?> copy : copies)
+        join(prefix, copy);
+    }
+
+    List<CompletableFuture<DeleteObjectsResponse>> batches = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += MAX_DELETE_BATCH_SIZE) {
+      List<ObjectIdentifier> batch = keys.subList(i, Math.min(i + MAX_DELETE_BATCH_SIZE, keys.size())).stream() //
+          .map(k -> ObjectIdentifier.builder().key(k).build()) //
+          .collect(Collectors.toList());
+      // in versioning mode we need to learn about the delete markers created
+      batches.add(issueBulkRequest(
+          () -> s3client.deleteObjects(b -> b.bucket(bucket).delete(d -> d.objects(batch).quiet(!versioning)))));
+    }
+
+    // await all batches before failing, so that the delete markers of every batch are rolled back
+    RuntimeException failure = null;
+    S3Error error = null;
+    for (CompletableFuture<DeleteObjectsResponse> batch : batches) {
+      DeleteObjectsResponse response;
+      try {
+        response = join(prefix, batch);
+      } catch (RuntimeException e) {
+        if (null == failure)
+          failure = e;
+        continue;
+      }
+      if (versioning) {
+        // deletion merely created delete markers which are removed again upon rollback
+        response.deleted().forEach(d -> writeAheadLog.appendUndoAction(
+            new PurgeObjectVersionAction(bucket, d.key(), d.deleteMarkerVersionId())));
+      }
+      if (null == error && !response.errors().isEmpty())
+        error = response.errors().get(0);
+    }
+
+    if (null != failure)
+      throw failure;
+    if (null != error)
+      throw new ObjectStoreException(toObjectName(error.key()), "Can't delete: " + error.message());
+  }
+
+  private void appendBackupActions(final String bucket, final String key) {
+    String backupKey = key + BACKUP_SUFFIX;
+
+    writeAheadLog.appendCommitAction(new PurgeObjectAction(bucket, backupKey));
+    writeAheadLog.appendUndoAction(new MoveObjectAction(bucket, backupKey, key));
+  }
+
+  private CompletableFuture<CopyObjectResponse> copyToBackup(final String bucket, final String key) {
+    return s3client.copyObject(b -> b.sourceBucket(bucket).sourceKey(key).destinationBucket(bucket).destinationKey(
+        key + BACKUP_SUFFIX));
+  }
+
+  @Override
+  @Timed(description = "verify object store element exists", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.check-exists")
+  @TraceInvocation
+  public boolean checkObjectExists(
+      @Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName) {
+    return !getCurrentVersion(connectionConfiguration.getDefaultBucketName(), toKey(objectName)).equals(NEW_VERSION);
+  }
+
+  /**
+   * Issue a request of a bulk operation as soon as one of the {@link #bulkRequestPermits} is
+   * available. The permit is returned once the request completes.
+   */
+  private <T> CompletableFuture<T> issueBulkRequest(final Supplier<CompletableFuture<T>> request) {
+    bulkRequestPermits.acquireUninterruptibly();
+    CompletableFuture<T> future;
+    try {
+      future = request.get();
+    } catch (RuntimeException e) {
+      bulkRequestPermits.release();
+      throw e;
+    }
+    future.whenComplete((r, t) -> bulkRequestPermits.release());
+    return future;
+  }
+
+  /**
+   * Wait for the completion of a request, rethrowing failures as they would have been thrown by the
+   * synchronous client.
+   */
+  private static <T> T join(final ObjectName objectName, final CompletableFuture<T> request) {
+    try {
+      return request.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re)
+        throw re;
+      if (e.getCause() instanceof IOException)
+        throw new ObjectStoreException(objectName, "I/O error talking to S3", e.getCause());
+      throw new ObjectStoreException(objectName, e.getCause());
+    }
+  }
+}
@@ -3,6 +3,8 @@ package com.neverpile.eureka.objectstore.s3;
 import java.io.Serializable;
 import java.net.URI;
 
+import jakarta.annotation.PreDestroy;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -10,7 +12,9 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.sts.StsClient;
 import software.amazon.awssdk.services.sts.auth.StsAssumeRoleCredentialsProvider;
@@ -61,7 +65,96 @@ public class S3ConnectionConfiguration implements Serializable {
   private String roleSessionName;
   private int durationSeconds;
 
+  /**
+   * The maximum number of concurrent connections (and thus requests) of the asynchronous client.
+   */
+  private int maxConnections = 100;
+
+  private transient volatile S3Client sharedClient;
+
+  private transient volatile S3AsyncClient sharedAsyncClient;
+
   public S3Client createClient() {
+    return S3Client.builder().credentialsProvider(createCredentialsProvider()).endpointOverride(
+        URI.create(this.getEndpoint())).region(Region.of(this.getSigningRegion())).overrideConfiguration(
+        getClientConfiguration()).forcePathStyle(accessStyle == AccessStyle.Path).build();
+  }
+
+  /**
+   * Create an asynchronous client using a non-blocking HTTP client with a pool of up to
+   * {@link #getMaxConnections()} connections. Uploads of unknown length are performed as multipart
+   * uploads using parts of the given size. At most <code>maxBufferSize</code> bytes are buffered per
+   * upload.
+   *
+   * @param partSize the size of the parts of multipart uploads
+   * @param maxBufferSize the maximum number of bytes buffered per upload
+   * @return the client
+   */
+  public S3AsyncClient createAsyncClient(final long partSize, final long maxBufferSize) {
+    return S3AsyncClient.builder().credentialsProvider(createCredentialsProvider()).endpointOverride(
+        URI.create(this.getEndpoint())).region(Region.of(this.getSigningRegion())).overrideConfiguration(
+        getClientConfiguration()).forcePathStyle(accessStyle == AccessStyle.Path) //
+        .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConnections)) //
+        .multipartEnabled(true) //
+        .multipartConfiguration(c -> c.thresholdInBytes(partSize).minimumPartSizeInBytes(partSize) //
+            .apiCallBufferSizeInBytes(maxBufferSize)) //
+        .build();
+  }
+
+  /**
+   * Return a client shared by all users of this configuration. Unlike clients obtained from
+   * {@link #createClient()}, which come with their own connection pool each, the shared client must
+   * not be closed by its users.
+   *
+   * @return the shared client
+   */
+  public S3Client getSharedClient() {
+    S3Client client = sharedClient;
+    if (null == client) {
+      synchronized (this) {
+        client = sharedClient;
+        if (null == client)
+          sharedClient = client = createClient();
+      }
+    }
+    return client;
+  }
+
+  /**
+   * Return an asynchronous client shared by all users of this configuration. The shared client must
+   * not be closed by its users.
+   *
+   * @param partSize the size of the parts of multipart uploads, used upon the first call only
+   * @param maxBufferSize the maximum number of bytes buffered per upload, used upon the first call
+   *          only
+   * @return the shared client
+   * @see #createAsyncClient(long, long)
+   */
+  public S3AsyncClient getSharedAsyncClient(final long partSize, final long maxBufferSize) {
+    S3AsyncClient client = sharedAsyncClient;
+    if (null == client) {
+      synchronized (this) {
+        client = sharedAsyncClient;
+        if (null == client)
+          sharedAsyncClient = client = createAsyncClient(partSize, maxBufferSize);
+      }
+    }
+    return client;
+  }
+
+  @PreDestroy
+  public synchronized void closeSharedClients() {
+    if (null != sharedClient) {
+      sharedClient.close();
+      sharedClient = null;
+    }
+    if (null != sharedAsyncClient) {
+      sharedAsyncClient.close();
+      sharedAsyncClient = null;
+    }
+  }
+
+  private AwsCredentialsProvider createCredentialsProvider() {
     AwsCredentialsProvider credentialsProvider;
 
     AwsBasicCredentials basicAWSCredentials = AwsBasicCredentials.create(getAccessKeyId(), getSecretAccessKey());
@@ -85,9 +178,7 @@ public class S3ConnectionConfiguration implements Serializable {
 
     System.setProperty("aws.disableCertChecking", Boolean.toString(disableCertificateChecking));
 
-    return S3Client.builder().credentialsProvider(credentialsProvider).endpointOverride(
-        URI.create(this.getEndpoint())).region(Region.of(this.getSigningRegion())).overrideConfiguration(
-        getClientConfiguration()).forcePathStyle(accessStyle == AccessStyle.Path).build();
+    return credentialsProvider;
   }
 
   public String getRoleArn() {
@@ -194,6 +285,14 @@ public class S3ConnectionConfiguration implements Serializable {
     this.accessStyle = accessStyle;
   }
 
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(final int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
   public boolean isDisableCertificateChecking() {
     return disableCertificateChecking;
   }
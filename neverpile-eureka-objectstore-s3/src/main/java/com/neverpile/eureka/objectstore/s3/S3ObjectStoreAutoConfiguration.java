@@ -21,7 +21,14 @@ import com.neverpile.eureka.autoconfig.NeverpileEurekaAutoConfiguration;
 @AutoConfigureOrder(Ordered.HIGHEST_PRECEDENCE)
 public class S3ObjectStoreAutoConfiguration {
   @Bean
+  @ConditionalOnProperty(name = "neverpile-eureka.storage.s3.async", havingValue = "false", matchIfMissing = true)
   S3ObjectStoreService s3ObjectStoreService() {
     return new S3ObjectStoreService();
   }
+
+  @Bean
+  @ConditionalOnProperty(name = "neverpile-eureka.storage.s3.async", havingValue = "true")
+  S3AsyncObjectStoreService s3AsyncObjectStoreService() {
+    return new S3AsyncObjectStoreService();
+  }
 }
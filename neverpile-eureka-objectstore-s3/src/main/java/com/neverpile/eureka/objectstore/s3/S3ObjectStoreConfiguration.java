@@ -12,6 +12,45 @@ public class S3ObjectStoreConfiguration  {
 
   private boolean enabled;
 
+  /**
+   * The maximum number of concurrent requests issued by bulk operations, i.e. the retrieval or
+   * deletion of multiple objects.
+   */
+  private int getManyParallelism = 16;
+
+  /**
+   * The size of the parts of a multipart upload in bytes. Multipart uploads are used for content of
+   * unknown length. S3 requires parts to be at least 5 MiB in size and allows at most 10000 parts per
+   * object, limiting such uploads to about 78 GiB with the default part size.
+   */
+  private int multipartPartSize = 8 * 1024 * 1024;
+
+  /**
+   * The maximum number of parts of a single multipart upload being uploaded concurrently.
+   */
+  private int multipartParallelism = 4;
+
+  /**
+   * The maximum number of part buffers shared by all multipart uploads. Together with the part size
+   * this bounds the heap used for buffering uploads. Uploads block while no buffer is available.
+   */
+  private int multipartBufferCount = 8;
+
+  /**
+   * Whether to rely on S3 object versioning for transactional mutations instead of backup copies.
+   * Writes are then made conditional on the object's version (ETag) and rolled back by removing the
+   * object versions or delete markers they created. Versioning must be enabled for the bucket.
+   * Superseded versions are not removed by the object store and should be expired using a lifecycle
+   * rule of the bucket.
+   */
+  private boolean bucketVersioning;
+
+  /**
+   * Whether to use the {@link S3AsyncObjectStoreService} built on the non-blocking S3 client instead
+   * of the {@link S3ObjectStoreService}.
+   */
+  private boolean async;
+
   public boolean isEnabled() {
     return enabled;
   }
@@ -19,4 +58,52 @@ public class S3ObjectStoreConfiguration  {
   public void setEnabled(final boolean enabled) {
     this.enabled = enabled;
   }
+
+  public int getGetManyParallelism() {
+    return getManyParallelism;
+  }
+
+  public void setGetManyParallelism(final int getManyParallelism) {
+    this.getManyParallelism = getManyParallelism;
+  }
+
+  public int getMultipartPartSize() {
+    return multipartPartSize;
+  }
+
+  public void setMultipartPartSize(final int multipartPartSize) {
+    this.multipartPartSize = multipartPartSize;
+  }
+
+  public int getMultipartParallelism() {
+    return multipartParallelism;
+  }
+
+  public void setMultipartParallelism(final int multipartParallelism) {
+    this.multipartParallelism = multipartParallelism;
+  }
+
+  public int getMultipartBufferCount() {
+    return multipartBufferCount;
+  }
+
+  public void setMultipartBufferCount(final int multipartBufferCount) {
+    this.multipartBufferCount = multipartBufferCount;
+  }
+
+  public boolean isBucketVersioning() {
+    return bucketVersioning;
+  }
+
+  public void setBucketVersioning(final boolean bucketVersioning) {
+    this.bucketVersioning = bucketVersioning;
+  }
+
+  public boolean isAsync() {
+    return async;
+  }
+
+  public void setAsync(final boolean async) {
+    this.async = async;
+  }
 }
@@ -4,19 +4,29 @@ import static com.neverpile.eureka.util.ObjectNames.escape;
 import static com.neverpile.eureka.util.ObjectNames.unescape;
 import static java.util.stream.Collectors.joining;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
-import java.util.Spliterator;
-import java.util.Spliterators;
-import java.util.function.Consumer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import com.neverpile.common.opentracing.Tag;
 import com.neverpile.common.opentracing.TraceInvocation;
@@ -25,27 +35,34 @@ import com.neverpile.eureka.api.exception.VersionMismatchException;
 import com.neverpile.eureka.model.ObjectName;
 import com.neverpile.eureka.tx.wal.TransactionWAL;
 import com.neverpile.eureka.tx.wal.TransactionWAL.TransactionalAction;
+import com.neverpile.eureka.util.BufferPool;
 import com.neverpile.eureka.util.ObjectNames;
 
 import io.micrometer.core.annotation.Timed;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.http.HttpStatusCode;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 public class S3ObjectStoreService implements ObjectStoreService {
   public static class ObjectNameMapper implements Function<ObjectName, String> {
@@ -55,13 +72,20 @@ public class S3ObjectStoreService implements ObjectStoreService {
     }
   }
 
-  private static final String BACKUP_SUFFIX = ".%BACKUP%";
+  static final String BACKUP_SUFFIX = ".%BACKUP%";
 
-  private static final String NAME_DELIMITER = "/";
+  static final String NAME_DELIMITER = "/";
+
+  static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+  /**
+   * The maximum number of keys S3 accepts per DeleteObjects request.
+   */
+  static final int MAX_DELETE_BATCH_SIZE = 1000;
 
   private static final Pattern DELIMITER_SPLIT_PATTERN = Pattern.compile(Pattern.quote(NAME_DELIMITER));
 
-  private abstract static class S3TXAction implements TransactionalAction {
+  abstract static class S3TXAction implements TransactionalAction {
     private static final long serialVersionUID = 1L;
 
     /**
@@ -86,7 +110,7 @@ public class S3ObjectStoreService implements ObjectStoreService {
     }
   }
 
-  private static final class PurgeObjectAction extends S3TXAction {
+  static final class PurgeObjectAction extends S3TXAction {
     private static final long serialVersionUID = 1L;
 
     private final String bucket;
@@ -99,11 +123,11 @@ public class S3ObjectStoreService implements ObjectStoreService {
 
     @Override
     public void run() {
-      getConnectionConfiguration().createClient().deleteObject(builder -> builder.bucket(bucket).key(key));
+      getConnectionConfiguration().getSharedClient().deleteObject(builder -> builder.bucket(bucket).key(key));
     }
   }
 
-  private static final class MoveObjectAction extends S3TXAction {
+  static final class MoveObjectAction extends S3TXAction {
     private static final long serialVersionUID = 1L;
 
     private final String bucket;
@@ -120,25 +144,82 @@ public class S3ObjectStoreService implements ObjectStoreService {
 
     @Override
     public void run() {
-      S3Client c = getConnectionConfiguration().createClient();
+      S3Client c = getConnectionConfiguration().getSharedClient();
       c.copyObject(
           builder -> builder.sourceBucket(bucket).sourceKey(fromKey).destinationKey(toKey).destinationBucket(bucket));
       c.deleteObject(builder -> builder.bucket(bucket).key(fromKey));
     }
   }
 
+  /**
+   * Remove a single version of an object. Used to roll back mutations of versioned buckets: removing
+   * the version created by a put or the delete marker created by a delete makes the prior version
+   * current again.
+   */
+  static final class PurgeObjectVersionAction extends S3TXAction {
+    private static final long serialVersionUID = 1L;
+
+    private final String bucket;
+    private final String key;
+    private final String versionId;
+
+    public PurgeObjectVersionAction(final String bucket, final String key, final String versionId) {
+      this.bucket = bucket;
+      this.key = key;
+      this.versionId = versionId;
+    }
+
+    @Override
+    public void run() {
+      getConnectionConfiguration().getSharedClient().deleteObject(
+          builder -> builder.bucket(bucket).key(key).versionId(versionId));
+    }
+  }
+
   @Autowired
   private S3ConnectionConfiguration connectionConfiguration;
 
+  @Autowired(required = false)
+  private S3ObjectStoreConfiguration objectStoreConfiguration = new S3ObjectStoreConfiguration();
+
   @Autowired
   private TransactionWAL writeAheadLog;
 
   private S3Client s3client;
 
+  private volatile boolean bucketVersioningVerified;
+
+  private ExecutorService bulkRequestExecutor;
+
+  private BufferPool partBufferPool;
+
+  private ExecutorService multipartUploadExecutor;
+
   @PostConstruct
   private void init() {
-    s3client = connectionConfiguration.createClient();
+    s3client = connectionConfiguration.getSharedClient();
     S3TXAction.setConnectionConfiguration(connectionConfiguration);
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("s3-bulk-request-");
+    threadFactory.setDaemon(true);
+    bulkRequestExecutor = Executors.newFixedThreadPool(Math.max(1, objectStoreConfiguration.getGetManyParallelism()),
+        threadFactory);
+
+    // S3 rejects parts smaller than 5 MiB (except for the last one)
+    int bufferCount = Math.max(1, objectStoreConfiguration.getMultipartBufferCount());
+    partBufferPool = new BufferPool(bufferCount,
+        Math.max(MIN_PART_SIZE, objectStoreConfiguration.getMultipartPartSize()));
+
+    // parts being uploaded hold a buffer, so there can't be more of them than buffers
+    CustomizableThreadFactory uploadThreadFactory = new CustomizableThreadFactory("s3-multipart-upload-");
+    uploadThreadFactory.setDaemon(true);
+    multipartUploadExecutor = Executors.newFixedThreadPool(bufferCount, uploadThreadFactory);
+  }
+
+  @PreDestroy
+  private void shutdown() {
+    bulkRequestExecutor.shutdownNow();
+    multipartUploadExecutor.shutdownNow();
   }
 
   @Override
@@ -150,6 +231,11 @@ public class S3ObjectStoreService implements ObjectStoreService {
     String bucket = connectionConfiguration.getDefaultBucketName();
     String key = toKey(objectName);
 
+    if (isBucketVersioning()) {
+      putVersioned(objectName, bucket, key, version, content, length);
+      return;
+    }
+
     // fetch existing object metadata
     String currentVersion = getCurrentVersion(bucket, key);
     boolean alreadyExists = !currentVersion.equals(NEW_VERSION);
@@ -165,25 +251,172 @@ public class S3ObjectStoreService implements ObjectStoreService {
       writeAheadLog.appendUndoAction(new PurgeObjectAction(bucket, key));
     }
 
-    PutObjectRequest.Builder putObjectRequestBuilder = PutObjectRequest.builder().bucket(bucket).key(key);
+    upload(objectName, bucket, key, null, content, length);
+  }
+
+  /**
+   * Put an object into a bucket with versioning enabled. Instead of checking the version using a HEAD
+   * request, the write is made conditional on the version using <code>If-Match</code> or
+   * <code>If-None-Match</code>. Instead of backing up the current object, the new object version is
+   * recorded so that it can be removed upon rollback, making the prior version current again.
+   */
+  private void putVersioned(final ObjectName objectName, final String bucket, final String key,
+      final String version, final InputStream content, final long length) {
+    String versionId;
+    try {
+      versionId = upload(objectName, bucket, key, version, content, length);
+    } catch (S3Exception e) {
+      // 404: If-Match for a missing object, 409: concurrent conditional write
+      if (e.statusCode() == HttpStatus.PRECONDITION_FAILED.value() || e.statusCode() == HttpStatus.NOT_FOUND.value()
+          || e.statusCode() == HttpStatus.CONFLICT.value())
+        throw new VersionMismatchException("Can't Put", version, getCurrentVersion(bucket, key));
+      throw e;
+    }
+
+    writeAheadLog.appendUndoAction(new PurgeObjectVersionAction(bucket, key, versionId));
+  }
 
-    //    Request Body
-    RequestBody requestBody;
+  /**
+   * Upload the content, optionally conditional on the current version of the object.
+   *
+   * @param precondition the expected current version or <code>null</code> to upload
+   *                     unconditionally
+   * @return the S3 version id of the uploaded object if the bucket is versioned
+   */
+  private String upload(final ObjectName objectName, final String bucket, final String key,
+      final String precondition, final InputStream content, final long length) {
     if (length > 0) {
-      putObjectRequestBuilder.contentLength(length);
-      requestBody = RequestBody.fromInputStream(content, length);
-    } else {
-      // Read stream into memory
-      byte[] bytes;
+      PutObjectRequest.Builder putObjectRequest = PutObjectRequest.builder().bucket(bucket).key(key).contentLength(
+          length);
+      return s3client.putObject(precondition(putObjectRequest, precondition).build(),
+          RequestBody.fromInputStream(content, length)).versionId();
+    }
+
+    // unknown length: stream the content using a multipart upload
+    try {
+      return putMultipart(objectName, bucket, key, precondition, content);
+    } catch (IOException e) {
+      throw new ObjectStoreException(objectName, "Failed to read input stream", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ObjectStoreException(objectName, "Interrupted while uploading", e);
+    }
+  }
+
+  private static PutObjectRequest.Builder precondition(final PutObjectRequest.Builder builder,
+      final String version) {
+    if (null == version)
+      return builder;
+    return version.equals(NEW_VERSION) ? builder.ifNoneMatch("*") : builder.ifMatch(version);
+  }
+
+  private static CompleteMultipartUploadRequest.Builder precondition(
+      final CompleteMultipartUploadRequest.Builder builder, final String version) {
+    if (null == version)
+      return builder;
+    return version.equals(NEW_VERSION) ? builder.ifNoneMatch("*") : builder.ifMatch(version);
+  }
+
+  private boolean isBucketVersioning() {
+    if (!objectStoreConfiguration.isBucketVersioning())
+      return false;
+
+    if (!bucketVersioningVerified) {
+      // rollback relies on version ids, so refuse to write to an unversioned bucket
+      String bucket = connectionConfiguration.getDefaultBucketName();
+      if (s3client.getBucketVersioning(b -> b.bucket(bucket)).status() != BucketVersioningStatus.ENABLED)
+        throw new IllegalStateException("Versioning is not enabled for bucket " + bucket);
+      bucketVersioningVerified = true;
+    }
+    return true;
+  }
+
+  /**
+   * Upload content of unknown length without buffering it as a whole. The content is read into
+   * buffers from the {@link BufferPool} which are uploaded as the parts of a multipart upload,
+   * up to {@link S3ObjectStoreConfiguration#getMultipartParallelism()} of them concurrently. Content
+   * fitting into a single part is uploaded using a plain PUT instead.
+   * <p>
+   * The ETag S3 assigns to the completed object serves as its version just like for objects uploaded
+   * in one piece.
+   *
+   * @return the S3 version id of the uploaded object if the bucket is versioned
+   */
+  private String putMultipart(final ObjectName objectName, final String bucket, final String key,
+      final String precondition, final InputStream content) throws IOException, InterruptedException {
+    int partSize = partBufferPool.getBufferSize();
+    byte[] buffer = partBufferPool.acquire();
+    try {
+      int n = content.readNBytes(buffer, 0, partSize);
+      if (n < partSize) {
+        return s3client.putObject(
+            precondition(PutObjectRequest.builder().bucket(bucket).key(key).contentLength((long) n),
+                precondition).build(), partBody(buffer, n)).versionId();
+      }
+
+      String uploadId = s3client.createMultipartUpload(b -> b.bucket(bucket).key(key)).uploadId();
+      Semaphore inFlight = new Semaphore(Math.max(1, objectStoreConfiguration.getMultipartParallelism()));
+      AtomicBoolean failed = new AtomicBoolean();
+      List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+      boolean completed = false;
       try {
-        bytes = content.readAllBytes();
-        requestBody = RequestBody.fromBytes(bytes);
-      } catch (IOException e) {
-        throw new RuntimeException("Failed to read input stream", e);
+        for (int partNumber = 1; n > 0 && !failed.get(); partNumber++) {
+          inFlight.acquire();
+          CompletableFuture<CompletedPart> part = uploadPart(bucket, key, uploadId, partNumber, buffer, n, inFlight);
+          buffer = null; // now owned by the part upload
+          part.whenComplete((p, t) -> {
+            if (null != t)
+              failed.set(true);
+          });
+          parts.add(part);
+
+          if (n < partSize)
+            break; // end of stream
+
+          buffer = partBufferPool.acquire();
+          n = content.readNBytes(buffer, 0, partSize);
+        }
+
+        List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+        for (CompletableFuture<CompletedPart> part : parts)
+          completedParts.add(awaitResponse(objectName, part, "Can't upload part"));
+
+        String versionId = s3client.completeMultipartUpload(precondition(
+            CompleteMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).multipartUpload(
+                u -> u.parts(completedParts)), precondition).build()).versionId();
+        completed = true;
+        return versionId;
+      } finally {
+        if (!completed) {
+          // parts still being uploaded would outlive an abort
+          CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).handle((v, t) -> null).join();
+          s3client.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+        }
       }
+    } finally {
+      if (null != buffer)
+        partBufferPool.release(buffer);
     }
-    PutObjectRequest putObjectRequest = putObjectRequestBuilder.build();
-    s3client.putObject(putObjectRequest, requestBody);
+  }
+
+  private CompletableFuture<CompletedPart> uploadPart(final String bucket, final String key, final String uploadId,
+      final int partNumber, final byte[] buffer, final int length, final Semaphore inFlight) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        UploadPartResponse response = s3client.uploadPart(b -> b.bucket(bucket).key(key).uploadId(
+            uploadId).partNumber(partNumber).contentLength((long) length), partBody(buffer, length));
+        return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+      } finally {
+        partBufferPool.release(buffer);
+        inFlight.release();
+      }
+    }, multipartUploadExecutor);
+  }
+
+  private static RequestBody partBody(final byte[] buffer, final int length) {
+    // unlike RequestBody.fromBytes() this doesn't copy the buffer
+    return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(buffer, 0, length), length,
+        "application/octet-stream");
   }
 
   private String getCurrentVersion(final String bucket, final String key) {
@@ -202,129 +435,195 @@ public class S3ObjectStoreService implements ObjectStoreService {
     return currentVersion;
   }
 
-  private String toKey(final ObjectName objectName) {
+  static String toKey(final ObjectName objectName) {
     return objectName.stream().map(s -> escape(s)).collect(joining(NAME_DELIMITER));
   }
 
-  private final class ObjectListingSpliterator extends Spliterators.AbstractSpliterator<StoreObject> {
-    private ListObjectsV2Response listing;
-    private Iterator<S3Object> summaries;
-    private Iterator<String> prefixes;
-    private String continuationToken;
-
-    public ObjectListingSpliterator(final ListObjectsV2Response listing) {
-      super(listing.isTruncated() ? Long.MAX_VALUE : listing.contents().size(), Spliterator.ORDERED);
-      this.listing = listing;
-      this.continuationToken = listing.nextContinuationToken();
-      summaries = listing.contents().iterator();
-      prefixes = listing.commonPrefixes().stream().map(CommonPrefix::prefix).iterator();
-    }
+  private StoreObject toStoreObject(final S3Object s) {
+    return new StoreObject() {
+      @Override
+      public String getVersion() {
+        return s.eTag();
+      }
 
-    @Override
-    public boolean tryAdvance(final Consumer<? super StoreObject> action) {
-      if (summaries.hasNext()) {
-        S3Object s;
-        do {
-          s = summaries.next();
-        } while (s.key().endsWith(BACKUP_SUFFIX) && summaries.hasNext()); // hide backups
-
-        if (!s.key().endsWith(BACKUP_SUFFIX)) {
-          action.accept(toStoreObject(s));
-          return true;
-        }
+      @Override
+      public ObjectName getObjectName() {
+        return toObjectName(s.key());
       }
 
-      if (prefixes.hasNext()) {
-        String p = prefixes.next();
-        action.accept(toStoreObject(p));
-        return true;
+      @Override
+      public InputStream getInputStream() {
+        return S3ObjectStoreService.this.get(getObjectName()).getInputStream();
       }
+    };
+  }
 
-      if (listing.isTruncated() && continuationToken != null) {
-        // fetch next chunk
-        ListObjectsV2Request nextRequest = ListObjectsV2Request.builder().bucket(
-                listing.name()) // Note: you may need to store bucket name separately
-            .continuationToken(continuationToken).build();
+  static StoreObject toPrefixObject(final String prefix) {
+    return new StoreObject() {
+      @Override
+      public String getVersion() {
+        return null;
+      }
 
-        listing = s3client.listObjectsV2(nextRequest);
-        continuationToken = listing.nextContinuationToken();
-        summaries = listing.contents().iterator();
-        prefixes = listing.commonPrefixes().stream().map(CommonPrefix::prefix).iterator();
+      @Override
+      public ObjectName getObjectName() {
+        return toObjectName(prefix);
+      }
 
-        return tryAdvance(action);
+      @Override
+      public InputStream getInputStream() {
+        throw new UnsupportedOperationException();
       }
+    };
+  }
 
-      return false;
-    }
+  /**
+   * List the objects below the given prefix. The listing is prefetched page by page and can be
+   * consumed by a parallel stream, listing partitions of the keyspace concurrently.
+   *
+   * @see ObjectListingSpliterator
+   */
+  @Override
+  @TraceInvocation
+  public Stream<StoreObject> list(
+      @Tag(name = "prefix", valueAdapter = ObjectNameMapper.class) final ObjectName prefix) {
+    String prefixKey = toKey(prefix);
 
-    private StoreObject toStoreObject(final S3Object s) {
-      return new StoreObject() {
-        @Override
-        public String getVersion() {
-          return s.eTag();
-        }
+    ListObjectsV2Request lor = ListObjectsV2Request.builder().bucket(
+        connectionConfiguration.getDefaultBucketName()).prefix(
+        prefixKey.isEmpty() ? prefixKey : prefixKey + NAME_DELIMITER).delimiter(NAME_DELIMITER).build();
 
-        @Override
-        public ObjectName getObjectName() {
-          return toObjectName(s.key());
-        }
+    return StreamSupport.stream(new ObjectListingSpliterator(lor,
+        r -> CompletableFuture.supplyAsync(() -> s3client.listObjectsV2(r), bulkRequestExecutor), this::toStoreObject,
+        S3ObjectStoreService::toPrefixObject), false);
+  }
 
-        @Override
-        public InputStream getInputStream() {
-          return S3ObjectStoreService.this.get(getObjectName()).getInputStream();
-        }
-      };
+  @Override
+  @Timed(description = "get object store element", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get")
+  @TraceInvocation
+  public StoreObject get(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName) {
+    return get(objectName, GetObjectRequest.builder().bucket(
+        connectionConfiguration.getDefaultBucketName()).key(toKey(objectName)).build());
+  }
+
+  /**
+   * Retrieve a range of an object using a GET request with a <code>Range</code> header, so that only
+   * the requested bytes are transferred.
+   */
+  @Override
+  @Timed(description = "get object store element range", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get-range")
+  @TraceInvocation
+  public StoreObject get(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName,
+      final long offset, final long length) {
+    if (length == 0)
+      return emptyRange(objectName);
+
+    String range = "bytes=" + offset + "-" + (length > 0 ? Long.toString(offset + length - 1) : "");
+    try {
+      return get(objectName, GetObjectRequest.builder().bucket(
+          connectionConfiguration.getDefaultBucketName()).key(toKey(objectName)).range(range).build());
+    } catch (S3Exception e) {
+      // offset beyond the end of the object
+      if (e.statusCode() == 416)
+        return emptyRange(objectName);
+      throw e;
     }
+  }
+
+  private StoreObject emptyRange(final ObjectName objectName) {
+    String version = getCurrentVersion(connectionConfiguration.getDefaultBucketName(), toKey(objectName));
+    if (version.equals(NEW_VERSION))
+      return null;
+
+    return new StoreObject() {
+      @Override
+      public String getVersion() {
+        return version;
+      }
+
+      @Override
+      public ObjectName getObjectName() {
+        return objectName;
+      }
+
+      @Override
+      public InputStream getInputStream() {
+        return InputStream.nullInputStream();
+      }
+    };
+  }
+
+  private StoreObject get(final ObjectName objectName, final GetObjectRequest getRequest) {
+    try {
+      final ResponseInputStream<GetObjectResponse> responseStream = s3client.getObject(getRequest);
+      final GetObjectResponse response = responseStream.response();
 
-    private StoreObject toStoreObject(final String prefix) {
       return new StoreObject() {
         @Override
         public String getVersion() {
-          return null;
+          return response.eTag();
         }
 
         @Override
         public ObjectName getObjectName() {
-          return toObjectName(prefix);
+          return objectName;
         }
 
         @Override
         public InputStream getInputStream() {
-          throw new UnsupportedOperationException();
+          return responseStream;
         }
       };
+    } catch (NoSuchKeyException e) {
+      // Object doesn't exist
+      return null;
+    } catch (S3Exception e) {
+      if (e.statusCode() != HttpStatusCode.NOT_FOUND) {
+        throw e;
+      }
+      return null;
     }
   }
 
+  /**
+   * Retrieve the given objects by issuing up to
+   * {@link S3ObjectStoreConfiguration#getGetManyParallelism()} GET requests concurrently. Unlike
+   * {@link #get(ObjectName)}, the payloads are read into memory right away so that the objects don't
+   * hold on to the connections of the HTTP connection pool until they are consumed. This method is
+   * thus suited for bulk retrieval of small objects like document metadata only.
+   */
   @Override
+  @Timed(description = "get multiple object store elements", extraTags = {"subsystem", "s3.object-store"
+  }, value = "eureka.s3.object-store.get-many")
   @TraceInvocation
-  public Stream<StoreObject> list(
-      @Tag(name = "prefix", valueAdapter = ObjectNameMapper.class) final ObjectName prefix) {
-    String prefixKey = toKey(prefix);
-
-    ListObjectsV2Request lor = ListObjectsV2Request.builder().bucket(
-        connectionConfiguration.getDefaultBucketName()).prefix(
-        prefixKey.isEmpty() ? prefixKey : prefixKey + NAME_DELIMITER).delimiter(NAME_DELIMITER).build();
-
-    return StreamSupport.stream(new ObjectListingSpliterator(s3client.listObjectsV2(lor)), false);
+  public Map<ObjectName, StoreObject> getMany(final Collection<ObjectName> objectNames) {
+    Map<ObjectName, CompletableFuture<StoreObject>> requests = new LinkedHashMap<>();
+    objectNames.forEach(
+        n -> requests.computeIfAbsent(n,
+            k -> CompletableFuture.supplyAsync(() -> getBuffered(k), bulkRequestExecutor)));
+
+    Map<ObjectName, StoreObject> result = new LinkedHashMap<>();
+    requests.forEach((objectName, request) -> {
+      StoreObject storeObject = awaitResponse(objectName, request, "Can't get");
+      if (null != storeObject)
+        result.put(objectName, storeObject);
+    });
+    return result;
   }
 
-  @Override
-  @Timed(description = "get object store element", extraTags = {"subsystem", "s3.object-store"
-  }, value = "eureka.s3.object-store.get")
-  @TraceInvocation
-  public StoreObject get(@Tag(name = "key", valueAdapter = ObjectNameMapper.class) final ObjectName objectName) {
+  private StoreObject getBuffered(final ObjectName objectName) {
     try {
       GetObjectRequest getRequest = GetObjectRequest.builder().bucket(
           connectionConfiguration.getDefaultBucketName()).key(toKey(objectName)).build();
 
-      final ResponseInputStream<GetObjectResponse> responseStream = s3client.getObject(getRequest);
-      final GetObjectResponse response = responseStream.response();
+      final ResponseBytes<GetObjectResponse> responseBytes = s3client.getObjectAsBytes(getRequest);
 
       return new StoreObject() {
         @Override
         public String getVersion() {
-          return response.eTag();
+          return responseBytes.response().eTag();
         }
 
         @Override
@@ -334,7 +633,7 @@ public class S3ObjectStoreService implements ObjectStoreService {
 
         @Override
         public InputStream getInputStream() {
-          return responseStream;
+          return responseBytes.asInputStream();
         }
       };
     } catch (NoSuchKeyException e) {
@@ -348,33 +647,86 @@ public class S3ObjectStoreService implements ObjectStoreService {
     }
   }
 
+  private static <T> T awaitResponse(final ObjectName objectName, final CompletableFuture<T> request,
+      final String message) {
+    try {
+      return request.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re)
+        throw re;
+      throw new ObjectStoreException(objectName, message, e.getCause());
+    }
+  }
+
   @Override
   @Timed(description = "delete object store element", extraTags = {"subsystem", "s3.object-store"
   }, value = "eureka.s3.object-store.delete")
   public void delete(final ObjectName prefix) {
-    ListObjectsV2Request listRequest = ListObjectsV2Request.builder().bucket(
-        connectionConfiguration.getDefaultBucketName()).prefix(toKey(prefix)).build();
-
-    StreamSupport.stream(new ObjectListingSpliterator(s3client.listObjectsV2(listRequest)), false).forEach(
-        o -> deleteSingleObject(o.getObjectName()));
-  }
-
-  private void deleteSingleObject(final ObjectName objectName) {
     String bucket = connectionConfiguration.getDefaultBucketName();
-    String key = toKey(objectName);
 
-    // fetch current version
-    String currentVersion = getCurrentVersion(bucket, key);
-    boolean alreadyExists = !currentVersion.equals(NEW_VERSION);
+    // the listing tells us which objects exist: no need to check them one by one
+    List<String> keys = s3client.listObjectsV2Paginator(b -> b.bucket(bucket).prefix(toKey(prefix))) //
+        .contents().stream() //
+        .map(S3Object::key) //
+        .filter(k -> !k.endsWith(BACKUP_SUFFIX)) // hide backups
+        .collect(Collectors.toList());
+    if (keys.isEmpty())
+      return;
+
+    boolean versioning = isBucketVersioning();
+    if (!versioning)
+      createBackups(prefix, bucket, keys);
+
+    List<CompletableFuture<DeleteObjectsResponse>> batches = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += MAX_DELETE_BATCH_SIZE) {
+      List<ObjectIdentifier> batch = keys.subList(i, Math.min(i + MAX_DELETE_BATCH_SIZE, keys.size())).stream() //
+          .map(k -> ObjectIdentifier.builder().key(k).build()) //
+          .collect(Collectors.toList());
+      // in versioning mode we need to learn about the delete markers created
+      batches.add(CompletableFuture.supplyAsync(
+          () -> s3client.deleteObjects(b -> b.bucket(bucket).delete(d -> d.objects(batch).quiet(!versioning))),
+          bulkRequestExecutor));
+    }
 
-    if (alreadyExists) {
-      createBackup(bucket, key);
+    // await all batches before failing, so that the delete markers of every batch are rolled back
+    RuntimeException failure = null;
+    S3Error error = null;
+    for (CompletableFuture<DeleteObjectsResponse> batch : batches) {
+      DeleteObjectsResponse response;
+      try {
+        response = awaitResponse(prefix, batch, "Can't delete");
+      } catch (RuntimeException e) {
+        if (null == failure)
+          failure = e;
+        continue;
+      }
+      if (versioning) {
+        // deletion merely created delete markers which are removed again upon rollback
+        response.deleted().forEach(d -> writeAheadLog.appendUndoAction(
+            new PurgeObjectVersionAction(bucket, d.key(), d.deleteMarkerVersionId())));
+      }
+      if (null == error && !response.errors().isEmpty())
+        error = response.errors().get(0);
+    }
 
-      // delete object
-      DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder().bucket(bucket).key(key).build();
+    if (null != failure)
+      throw failure;
+    if (null != error)
+      throw new ObjectStoreException(toObjectName(error.key()), "Can't delete: " + error.message());
+  }
 
-      s3client.deleteObject(deleteRequest);
+  /**
+   * Backup the objects for the given keys concurrently and register transactional actions to purge
+   * the backups upon commit or restore the objects upon rollback.
+   */
+  private void createBackups(final ObjectName prefix, final String bucket, final List<String> keys) {
+    List<CompletableFuture<Void>> copies = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      appendBackupActions(bucket, key);
+      copies.add(CompletableFuture.runAsync(() -> copyToBackup(bucket, key), bulkRequestExecutor));
     }
+    for (CompletableFuture<Void> copy : copies)
+      awaitResponse(prefix, copy, "Can't create backup");
   }
 
   /**
@@ -385,13 +737,20 @@ public class S3ObjectStoreService implements ObjectStoreService {
    * @param key    the S3 object key
    */
   private void createBackup(final String bucket, final String key) {
+    appendBackupActions(bucket, key);
+    copyToBackup(bucket, key);
+  }
+
+  private void appendBackupActions(final String bucket, final String key) {
     String backupKey = key + BACKUP_SUFFIX;
 
     writeAheadLog.appendCommitAction(new PurgeObjectAction(bucket, backupKey));
-    writeAheadLog.appendUndoAction(new MoveObjectAction(bucket, key + BACKUP_SUFFIX, key));
+    writeAheadLog.appendUndoAction(new MoveObjectAction(bucket, backupKey, key));
+  }
 
+  private void copyToBackup(final String bucket, final String key) {
     CopyObjectRequest copyRequest = CopyObjectRequest.builder().sourceBucket(bucket).sourceKey(key).destinationBucket(
-        bucket).destinationKey(backupKey).build();
+        bucket).destinationKey(key + BACKUP_SUFFIX).build();
 
     s3client.copyObject(copyRequest);
   }
@@ -408,7 +767,7 @@ public class S3ObjectStoreService implements ObjectStoreService {
     return !getCurrentVersion(bucket, key).equals(NEW_VERSION);
   }
 
-  private ObjectName toObjectName(final String key) {
+  static ObjectName toObjectName(final String key) {
     String[] components = DELIMITER_SPLIT_PATTERN.split(key);
     for (int i = 0; i < components.length; i++) {
       components[i] = unescape(components[i]);
@@ -0,0 +1,150 @@
+package com.neverpile.eureka.objectstore.s3;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
+
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+public class ObjectListingSpliteratorTest {
+  private static final int PAGE_SIZE = 10;
+
+  private final TreeSet<String> keys = new TreeSet<>();
+
+  private final List<String> documentIds = new ArrayList<>();
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  @Before
+  public void createKeys() {
+    for (int i = 0; i < 200; i++) {
+      String id = UUID.randomUUID().toString();
+      documentIds.add(id);
+      keys.add("document/" + id + "/document.json");
+      keys.add("document/" + id + "/document.json" + S3ObjectStoreService.BACKUP_SUFFIX);
+    }
+    keys.add("document/x.json");
+    documentIds.add("x.json");
+    keys.add("other/foo");
+  }
+
+  /**
+   * Emulates ListObjectsV2 on the keys. The continuation token is simply the last key returned.
+   */
+  private CompletableFuture<ListObjectsV2Response> listObjects(final ListObjectsV2Request request) {
+    requests.incrementAndGet();
+
+    String after = null != request.continuationToken() ? request.continuationToken() : request.startAfter();
+    List<S3Object> contents = new ArrayList<>();
+    TreeSet<String> prefixes = new TreeSet<>();
+    String last = null;
+    for (String key : null != after ? keys.tailSet(after, false) : keys) {
+      if (!key.startsWith(request.prefix()))
+        continue;
+      if (contents.size() + prefixes.size() == PAGE_SIZE)
+        return CompletableFuture.completedFuture(response(contents, prefixes, last));
+
+      int delimiter = key.indexOf(request.delimiter(), request.prefix().length());
+      if (delimiter >= 0) {
+        String prefix = key.substring(0, delimiter + 1);
+        if (prefixes.add(prefix))
+          last = prefix + Character.MAX_VALUE;
+      } else {
+        contents.add(S3Object.builder().key(key).build());
+        last = key;
+      }
+    }
+    return CompletableFuture.completedFuture(response(contents, prefixes, null));
+  }
+
+  private static ListObjectsV2Response response(final List<S3Object> contents, final TreeSet<String> prefixes,
+      final String continuationToken) {
+    return ListObjectsV2Response.builder().contents(contents) //
+        .commonPrefixes(prefixes.stream().map(p -> CommonPrefix.builder().prefix(p).build()).collect(
+            Collectors.toList())) //
+        .isTruncated(null != continuationToken).nextContinuationToken(continuationToken).build();
+  }
+
+  private ObjectListingSpliterator listDocuments() {
+    ListObjectsV2Request request = ListObjectsV2Request.builder().bucket("test").prefix("document/").delimiter(
+        "/").build();
+    return new ObjectListingSpliterator(request, this::listObjects,
+        s -> S3ObjectStoreService.toPrefixObject(s.key()), S3ObjectStoreService::toPrefixObject);
+  }
+
+  private static String lastComponent(final StoreObject o) {
+    return o.getObjectName().tail();
+  }
+
+  @Test
+  public void testThat_allObjectsAreListedSequentially() {
+    List<String> listed = StreamSupport.stream(listDocuments(), false).map(
+        ObjectListingSpliteratorTest::lastComponent).collect(Collectors.toList());
+
+    assertThat(listed, containsInAnyOrder(documentIds.toArray()));
+  }
+
+  @Test
+  public void testThat_allObjectsAreListedInParallel() {
+    List<String> listed = StreamSupport.stream(listDocuments(), true).map(
+        ObjectListingSpliteratorTest::lastComponent).collect(Collectors.toList());
+
+    assertThat(listed, containsInAnyOrder(documentIds.toArray()));
+  }
+
+  @Test
+  public void testThat_partitionsAreDisjoint() {
+    ObjectListingSpliterator upper = listDocuments();
+    Spliterator<StoreObject> lower = upper.trySplit();
+
+    List<String> lowerIds = StreamSupport.stream(lower, false).map(
+        ObjectListingSpliteratorTest::lastComponent).collect(Collectors.toList());
+    List<String> upperIds = StreamSupport.stream(upper, false).map(
+        ObjectListingSpliteratorTest::lastComponent).collect(Collectors.toList());
+
+    // the lower half ends before 'U', so it holds the UUIDs starting with a digit
+    assertThat(lowerIds.stream().allMatch(id -> Character.isDigit(id.charAt(0))), equalTo(true));
+    assertThat(upperIds.stream().noneMatch(id -> Character.isDigit(id.charAt(0))), equalTo(true));
+
+    List<String> all = new ArrayList<>(lowerIds);
+    all.addAll(upperIds);
+    assertThat(all, containsInAnyOrder(documentIds.toArray()));
+  }
+
+  @Test
+  public void testThat_listingCantBeSplitOnceStarted() {
+    ObjectListingSpliterator spliterator = listDocuments();
+    spliterator.tryAdvance(o -> {
+    });
+
+    assertThat(spliterator.trySplit(), nullValue());
+  }
+
+  @Test
+  public void testThat_nextPageIsPrefetched() {
+    ObjectListingSpliterator spliterator = listDocuments();
+    spliterator.tryAdvance(o -> {
+    });
+
+    assertThat(requests.get(), equalTo(2));
+  }
+}
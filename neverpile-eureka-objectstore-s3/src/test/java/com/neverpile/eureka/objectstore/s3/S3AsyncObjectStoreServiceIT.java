@@ -0,0 +1,24 @@
+package com.neverpile.eureka.objectstore.s3;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.ContextConfiguration;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+
+/**
+ * Runs the object store tests against the {@link S3AsyncObjectStoreService}.
+ */
+@ContextConfiguration(classes = S3AsyncObjectStoreServiceIT.AsyncConfiguration.class)
+public class S3AsyncObjectStoreServiceIT extends S3ObjectStoreServiceIT {
+
+  @Configuration
+  public static class AsyncConfiguration {
+    @Bean
+    @Primary
+    ObjectStoreService s3AsyncOSS() {
+      return new S3AsyncObjectStoreService();
+    }
+  }
+}
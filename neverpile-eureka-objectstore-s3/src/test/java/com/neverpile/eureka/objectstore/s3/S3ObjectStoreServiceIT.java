@@ -1,22 +1,40 @@
 package com.neverpile.eureka.objectstore.s3;
 
+import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.api.ObjectStoreService.StoreObject;
 import com.neverpile.eureka.api.objectstore.AbstractObjectStoreServiceTest;
+import com.neverpile.eureka.model.ObjectName;
 
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
 import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ListObjectVersionsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectVersionsResponse;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest()
@@ -24,22 +42,31 @@ import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 @EnableAutoConfiguration()
 public class S3ObjectStoreServiceIT extends AbstractObjectStoreServiceTest {
 
-  private static final String BUCKET_NAME = "unit-tests";
+  static final String BUCKET_NAME = "unit-tests";
 
   @Autowired
   S3ConnectionConfiguration connectionConfiguration;
 
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
   @Before
   public void createBucket() {
     S3Client s3Client = connectionConfiguration.createClient();
     try {
-      // List and delete all objects in the bucket
-      ListObjectsV2Request listRequest = ListObjectsV2Request.builder().bucket(BUCKET_NAME).build();
+      // List and delete all objects in the bucket, including all versions if it is versioned
+      ListObjectVersionsRequest listRequest = ListObjectVersionsRequest.builder().bucket(BUCKET_NAME).build();
 
-      ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
+      ListObjectVersionsResponse listResponse = s3Client.listObjectVersions(listRequest);
 
-      listResponse.contents().forEach(object -> {
-        DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder().bucket(BUCKET_NAME).key(object.key()).build();
+      listResponse.versions().forEach(version -> {
+        DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder().bucket(BUCKET_NAME).key(
+            version.key()).versionId(version.versionId()).build();
+        s3Client.deleteObject(deleteRequest);
+      });
+      listResponse.deleteMarkers().forEach(marker -> {
+        DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder().bucket(BUCKET_NAME).key(
+            marker.key()).versionId(marker.versionId()).build();
         s3Client.deleteObject(deleteRequest);
       });
 
@@ -55,6 +82,52 @@ public class S3ObjectStoreServiceIT extends AbstractObjectStoreServiceTest {
     s3Client.createBucket(createBucketRequest);
   }
 
+  @Test
+  @Transactional
+  public void testThat_contentOfUnknownLengthIsUploadedInParts() throws IOException {
+    // three parts with the default part size of 8 MiB
+    byte[] content = new byte[20 * 1024 * 1024];
+    new Random(42).nextBytes(content);
+    ObjectName name = ObjectName.of("multipart");
+
+    objectStore.put(name, ObjectStoreService.NEW_VERSION, new ByteArrayInputStream(content), -1);
+
+    StoreObject so = objectStore.get(name);
+    // the ETag of a multipart upload is suffixed with the number of parts
+    assertThat(so.getVersion(), endsWith("-3\""));
+    try (InputStream is = so.getInputStream()) {
+      assertThat(is.readAllBytes(), equalTo(content));
+    }
+
+    // the ETag serves as the version for subsequent updates
+    objectStore.put(name, so.getVersion(), new ByteArrayInputStream(content, 0, 1024), -1);
+    try (InputStream is = objectStore.get(name).getInputStream()) {
+      assertThat(is.readAllBytes().length, equalTo(1024));
+    }
+  }
+
+  @Test
+  public void testThat_moreObjectsThanFitIntoOneBatchCanBeDeletedViaPrefix() {
+    // more than the 1000 keys a single DeleteObjects request accepts
+    S3Client s3Client = connectionConfiguration.createClient();
+    for (int i = 0; i < 1010; i++) {
+      String key = "bulk/" + i;
+      s3Client.putObject(b -> b.bucket(BUCKET_NAME).key(key), RequestBody.fromString(key));
+    }
+
+    TransactionTemplate tt = new TransactionTemplate(transactionManager);
+    tt.executeWithoutResult(s -> {
+      objectStore.delete(ObjectName.of("bulk"));
+      s.setRollbackOnly();
+    });
+    assertThat(s3Client.listObjectsV2Paginator(b -> b.bucket(BUCKET_NAME).prefix("bulk/")).contents().stream().count(),
+        equalTo(1010L));
+    assertThat(objectStore.get(ObjectName.of("bulk", "1009")), notNullValue());
+
+    tt.executeWithoutResult(s -> objectStore.delete(ObjectName.of("bulk")));
+    assertThat(s3Client.listObjectsV2(b -> b.bucket(BUCKET_NAME).prefix("bulk/")).keyCount(), equalTo(0));
+  }
+
   // For the problem with object collision using MinIO see:
   // https://min.io/docs/minio/linux/operations/concepts/thresholds.html#conflicting-objects
 
@@ -0,0 +1,73 @@
+package com.neverpile.eureka.objectstore.s3;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.neverpile.eureka.api.ObjectStoreService;
+import com.neverpile.eureka.model.ObjectName;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.BucketVersioningStatus;
+
+/**
+ * Runs the object store tests against a versioned bucket using conditional writes instead of backup
+ * copies.
+ */
+@ContextConfiguration(classes = S3VersionedObjectStoreServiceIT.VersioningConfiguration.class)
+public class S3VersionedObjectStoreServiceIT extends S3ObjectStoreServiceIT {
+
+  @Configuration
+  public static class VersioningConfiguration {
+    @Bean
+    S3ObjectStoreConfiguration objectStoreConfiguration() {
+      S3ObjectStoreConfiguration c = new S3ObjectStoreConfiguration();
+      c.setBucketVersioning(true);
+      return c;
+    }
+  }
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Before
+  public void enableVersioning() {
+    S3Client s3Client = connectionConfiguration.createClient();
+    s3Client.putBucketVersioning(
+        b -> b.bucket(BUCKET_NAME).versioningConfiguration(v -> v.status(BucketVersioningStatus.ENABLED)));
+  }
+
+  @Test
+  public void testThat_rollbackRestoresPriorVersionWithoutBackups() {
+    ObjectName name = ObjectName.of("versioned");
+    transactionTemplate.executeWithoutResult(s -> objectStore.put(name, ObjectStoreService.NEW_VERSION,
+        new ByteArrayInputStream("v1".getBytes(StandardCharsets.UTF_8))));
+    String v1 = objectStore.get(name).getVersion();
+
+    transactionTemplate.executeWithoutResult(s -> {
+      objectStore.put(name, v1, new ByteArrayInputStream("v2".getBytes(StandardCharsets.UTF_8)));
+      s.setRollbackOnly();
+    });
+    assertThat(objectStore.get(name).getVersion(), equalTo(v1));
+
+    transactionTemplate.executeWithoutResult(s -> {
+      objectStore.delete(name);
+      s.setRollbackOnly();
+    });
+    assertThat(objectStore.get(name).getVersion(), equalTo(v1));
+
+    // no backup objects have been created
+    assertThat(connectionConfiguration.createClient().listObjectsV2(b -> b.bucket(BUCKET_NAME)).keyCount(),
+        equalTo(1));
+  }
+}
@@ -1,21 +1,43 @@
 package com.neverpile.eureka.search.elastic;
 
 import java.io.IOException;
-import java.util.Objects;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.rest.RestStatus;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.neverpile.eureka.api.DocumentService;
 import com.neverpile.eureka.api.index.IndexMaintenanceService;
+import com.neverpile.eureka.api.index.IndexRebuildStatus;
 import com.neverpile.eureka.api.index.Schema;
 import com.neverpile.eureka.event.AggregatedUpdateEvent;
 import com.neverpile.eureka.event.CreateEvent;
@@ -25,166 +47,431 @@ import com.neverpile.eureka.tasks.DistributedPersistentQueueType;
 import com.neverpile.eureka.tasks.TaskQueue;
 import com.neverpile.eureka.tasks.TaskQueue.ProcessElement;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * An {@link IndexMaintenanceService} which records the index maintenance jobs in a
+ * {@link TaskQueue} and executes them asynchronously. A bounded pool of workers takes the jobs from
+ * the queue in batches, loads the documents and hands the index requests to a {@link BulkProcessor}.
+ * <p>
+ * Jobs for a document whose previous job is still in flight on this node are held back and
+ * coalesced with any further jobs for the same document, so that the requests for a document are
+ * executed in order. Once the number of jobs in flight reaches the configured limit, the workers
+ * stop taking jobs from the queue until enough jobs have completed. The queue lag, the jobs in
+ * flight and the backpressure state are exposed as metrics.
+ */
 @Service
 public class AsynchronousIndexMaintenanceService implements IndexMaintenanceService {
   private enum EventType {
     CREATE, UPDATE, DELETE
   }
 
+  /**
+   * The value of a queue entry: the job type and the time it was enqueued.
+   */
+  private record IndexJob(EventType type, long enqueued) implements Serializable {
+  }
+
   private final static Logger LOGGER = LoggerFactory.getLogger(AsynchronousIndexMaintenanceService.class);
 
+  /**
+   * The maximum number of jobs taken from the queue at once.
+   */
+  private static final int JOB_BATCH_SIZE = 100;
+
   @Autowired
   private ElasticsearchDocumentIndex index;
 
   @Autowired
   DocumentService documentService;
 
+  @Autowired
+  private ElasticsearchIndexRebuilder rebuilder;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
   @DistributedPersistentQueueType("neverpile-index-maintenance")
-  TaskQueue<EventType> indexMaintenanceQueue;
+  TaskQueue<IndexJob> indexMaintenanceQueue;
+
+  @Value("${neverpile-eureka.elastic.bulk.actions:1000}")
+  private int bulkActions = 1000;
+
+  @Value("${neverpile-eureka.elastic.bulk.size:5242880}")
+  private long bulkSize = 5242880;
+
+  @Value("${neverpile-eureka.elastic.bulk.flush-interval:1000}")
+  private long bulkFlushInterval = 1000;
+
+  @Value("${neverpile-eureka.elastic.bulk.concurrent-requests:2}")
+  private int bulkConcurrentRequests = 2;
+
+  @Value("${neverpile-eureka.elastic.bulk.retry-delay:5000}")
+  private long retryDelay = 5000;
+
+  @Value("${neverpile-eureka.elastic.index-maintenance.workers:4}")
+  private int workerCount = 4;
+
+  @Value("${neverpile-eureka.elastic.index-maintenance.virtual-threads:false}")
+  private boolean virtualThreads = false;
+
+  @Value("${neverpile-eureka.elastic.index-maintenance.max-in-flight:10000}")
+  private int maxInFlight = 10000;
+
+  /**
+   * The documents with jobs in flight on this node, mapped to the coalesced job held back until the
+   * job in flight has completed, if any.
+   */
+  private final Map<String, Optional<EventType>> inFlight = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean backpressure = new AtomicBoolean(false);
+
+  private ExecutorService workers;
+
+  private Semaphore idleWorkers;
+
+  private BulkProcessor bulkProcessor;
+
+  private Timer queueLagTimer;
 
-  private final AtomicBoolean dbJobActive = new AtomicBoolean(false);
-  private final AtomicBoolean rebuildActive = new AtomicBoolean(false);
+  private Counter coalescedCounter;
 
-  class ElasticQueueUpdateListener implements TaskQueue.QueueListener<EventType> {
+  /**
+   * Handles the outcome of the individual index requests: jobs are removed from the queue once they
+   * have been executed successfully. Failed jobs are put back into the queue after the retry delay,
+   * unless the failure is permanent.
+   */
+  class QueueUpdatingResultHandler implements ElasticsearchDocumentIndex.BulkResultHandler {
     @Override
-    public void notifyUpdate() {
-      if (!dbJobActive.getAndSet(true)) {
-        getDBJobFromQueue();
+    public void succeeded(final DocWriteRequest<?> request) {
+      jobDone(request.id());
+    }
+
+    @Override
+    public void failed(final DocWriteRequest<?> request, final RestStatus status, final Throwable cause) {
+      EventType type = toEventType(request.opType());
+      if (type == EventType.UPDATE && status == RestStatus.NOT_FOUND) {
+        // the document has never made it into the index
+        type = EventType.CREATE;
+      } else if (null != status && isPermanentFailure(status)) {
+        LOGGER.error("Indexing document {} failed permanently with status {}", request.id(), status, cause);
+        jobDone(request.id());
+        return;
       }
+
+      LOGGER.warn("Indexing document {} failed, retrying in {}ms", request.id(), retryDelay, cause);
+      retry(request.id(), type);
     }
   }
 
-  private void getDBJobFromQueue() {
-    ProcessElement<EventType> job = indexMaintenanceQueue.getElementToProcess();
-    if (null == job) {
-      dbJobActive.set(false);
-      if (rebuildActive.getAndSet(false)) {
-        finalizeIndexRebuild();
+  private static EventType toEventType(final DocWriteRequest.OpType opType) {
+    switch (opType){
+      case DELETE :
+        return EventType.DELETE;
+      case UPDATE :
+        return EventType.UPDATE;
+      default :
+        return EventType.CREATE;
+    }
+  }
+
+  private static boolean isPermanentFailure(final RestStatus status) {
+    return status.getStatus() >= 400 && status.getStatus() < 500 && status != RestStatus.REQUEST_TIMEOUT
+        && status != RestStatus.CONFLICT && status != RestStatus.TOO_MANY_REQUESTS;
+  }
+
+  /**
+   * Combine a job held back with a subsequent job for the same document.
+   *
+   * @param older the job held back or <code>null</code>
+   * @param newer the subsequent job
+   * @return the job to execute instead of both
+   */
+  private static EventType coalesce(final EventType older, final EventType newer) {
+    // an update of a document which has not been indexed yet is a creation
+    return older == EventType.CREATE && newer == EventType.UPDATE ? EventType.CREATE : newer;
+  }
+
+  /**
+   * Take jobs from the queue and hand them to idle workers as long as there are idle workers and
+   * the number of jobs in flight is below the limit.
+   */
+  private void takeJobs() {
+    while (!checkBackpressure() && idleWorkers.tryAcquire()) {
+      List<ProcessElement<IndexJob>> jobs = takeBatch();
+      if (jobs.isEmpty()) {
+        idleWorkers.release();
+        return;
       }
-      return;
+
+      workers.execute(() -> {
+        try {
+          submitJobs(jobs);
+        } finally {
+          idleWorkers.release();
+          // jobs may have been enqueued while all workers were busy
+          takeJobs();
+        }
+      });
     }
-    if (job.getValue() == EventType.DELETE) {
-      doDeleteDocument(job.getKey());
-      getDBJobFromQueue();
-      return;
+  }
+
+  private List<ProcessElement<IndexJob>> takeBatch() {
+    List<ProcessElement<IndexJob>> jobs = new ArrayList<>();
+    ProcessElement<IndexJob> job;
+    while (jobs.size() < JOB_BATCH_SIZE && null != (job = indexMaintenanceQueue.getElementToProcess())) {
+      jobs.add(job);
     }
+    return jobs;
+  }
 
-    Document doc = documentService.getDocument(job.getKey()).orElse(null);
-    if (null == doc) {
-      LOGGER.error("Document Not Found: {}", job.getKey());
-      indexMaintenanceQueue.removeProcessedElement(job.getKey());
-      getDBJobFromQueue();
-      return;
+  /**
+   * Return whether the consumption of the queue is paused because the number of jobs in flight has
+   * reached the limit.
+   *
+   * @return whether backpressure is active
+   */
+  public boolean isBackpressureActive() {
+    return backpressure.get();
+  }
+
+  private boolean checkBackpressure() {
+    if (inFlight.size() < maxInFlight)
+      return false;
+
+    if (!backpressure.getAndSet(true)) {
+      LOGGER.warn("{} index maintenance jobs in flight, pausing queue consumption", inFlight.size());
+
+      // jobs may have completed before the flag was set
+      if (inFlight.size() < maxInFlight && backpressure.compareAndSet(true, false))
+        return false;
     }
+    return true;
+  }
+
+  /**
+   * Mark the job for the given document as being in flight unless a job for the document is already
+   * in flight, in which case the job is held back.
+   *
+   * @param documentId the document id
+   * @param type the job type
+   * @return whether the job may be executed now
+   */
+  private boolean claim(final String documentId, final EventType type) {
+    AtomicBoolean claimed = new AtomicBoolean();
+    inFlight.compute(documentId, (k, pending) -> {
+      if (null == pending) {
+        claimed.set(true);
+        return Optional.empty();
+      }
+      return Optional.of(coalesce(pending.orElse(null), type));
+    });
+    if (!claimed.get())
+      coalescedCounter.increment();
+    return claimed.get();
+  }
 
-    if (job.getValue() == EventType.CREATE) {
-      doIndexDocument(doc);
-      getDBJobFromQueue();
+  /**
+   * Complete the job in flight for the given document. If a job has been held back in the meantime,
+   * it is executed next. Otherwise the document is removed from the queue.
+   *
+   * @param documentId the document id
+   */
+  private void jobDone(final String documentId) {
+    AtomicReference<EventType> next = new AtomicReference<>();
+    inFlight.computeIfPresent(documentId, (k, pending) -> {
+      if (pending.isPresent()) {
+        next.set(pending.get());
+        return Optional.empty();
+      }
+      return null;
+    });
+
+    if (null != next.get()) {
+      // not on the thread delivering the bulk response, as adding requests may block
+      CompletableFuture.runAsync(() -> submit(Collections.singletonMap(documentId, next.get())), workers);
       return;
     }
-    if (job.getValue() == EventType.UPDATE) {
-      doUpdateDocument(doc);
-      getDBJobFromQueue();
-      return;
+
+    indexMaintenanceQueue.removeProcessedElement(documentId);
+    releaseBackpressure();
+  }
+
+  /**
+   * Resume the consumption of the queue if it has been paused and the number of jobs in flight has
+   * dropped below the limit.
+   */
+  private void releaseBackpressure() {
+    if (backpressure.get() && inFlight.size() < maxInFlight && backpressure.compareAndSet(true, false)) {
+      LOGGER.info("Resuming queue consumption");
+      CompletableFuture.runAsync(this::takeJobs, workers);
+    }
+  }
+
+  /**
+   * Put the job for the given document back into the queue after the retry delay, coalesced with
+   * any job held back in the meantime.
+   *
+   * @param documentId the document id
+   * @param type the job type
+   */
+  private void retry(final String documentId, final EventType type) {
+    Optional<EventType> pending = inFlight.remove(documentId);
+    EventType retryType = null != pending && pending.isPresent() ? coalesce(type, pending.get()) : type;
+    CompletableFuture.delayedExecutor(retryDelay, TimeUnit.MILLISECONDS).execute(
+        () -> indexMaintenanceQueue.putInQueue(documentId, new IndexJob(retryType, System.currentTimeMillis())));
+
+    releaseBackpressure();
+  }
+
+  private void submitJobs(final List<ProcessElement<IndexJob>> jobs) {
+    long now = System.currentTimeMillis();
+    Map<String, EventType> claimed = new LinkedHashMap<>();
+    for (ProcessElement<IndexJob> job : jobs) {
+      queueLagTimer.record(now - job.getValue().enqueued(), TimeUnit.MILLISECONDS);
+      if (claim(job.getKey(), job.getValue().type()))
+        claimed.put(job.getKey(), job.getValue().type());
+    }
+    submit(claimed);
+  }
+
+  /**
+   * Load the documents of the given jobs using a single call and hand the index requests to the bulk
+   * processor. If this fails, the jobs whose requests have not been handed to the bulk processor yet
+   * are retried. The outcome of the others is reported to the result handler.
+   *
+   * @param jobs the jobs mapped by document id
+   */
+  private void submit(final Map<String, EventType> jobs) {
+    Map<String, EventType> unsubmitted = new LinkedHashMap<>(jobs);
+    try {
+      List<String> ids = jobs.entrySet().stream() //
+          .filter(j -> j.getValue() != EventType.DELETE) //
+          .map(Map.Entry::getKey) //
+          .collect(Collectors.toList());
+      Map<String, Document> documents = ids.isEmpty()
+          ? Collections.emptyMap()
+          : documentService.getDocuments(ids).stream().collect(
+              Collectors.toMap(Document::getDocumentId, Function.identity(), (a, b) -> b));
+
+      for (Map.Entry<String, EventType> job : jobs.entrySet()) {
+        String indexName = ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE;
+        DocWriteRequest<?> request;
+        if (job.getValue() == EventType.DELETE) {
+          request = index.createDeleteRequest(job.getKey(), indexName);
+        } else {
+          Document doc = documents.get(job.getKey());
+          if (null == doc) {
+            LOGGER.error("Document Not Found: {}", job.getKey());
+            unsubmitted.remove(job.getKey());
+            jobDone(job.getKey());
+            continue;
+          }
+
+          request = job.getValue() == EventType.CREATE
+              ? index.createIndexRequest(doc, indexName)
+              : index.createUpdateRequest(doc, indexName);
+        }
+
+        bulkProcessor.add(request);
+        unsubmitted.remove(job.getKey());
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Failed to process index maintenance jobs, retrying {} of them in {}ms", unsubmitted.size(),
+          retryDelay, e);
+      unsubmitted.forEach(this::retry);
     }
   }
 
+  private void enqueue(final String documentId, final EventType type) {
+    indexMaintenanceQueue.putInQueue(documentId, new IndexJob(type, System.currentTimeMillis()));
+  }
+
   @PostConstruct
   public void init() {
+    workers = virtualThreads
+        ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("neverpile-index-maintenance-", 0).factory())
+        : Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("neverpile-index-maintenance-"));
+    idleWorkers = new Semaphore(workerCount);
+
+    queueLagTimer = Timer.builder("elastic.index.queue.lag") //
+        .description("The time index maintenance jobs spend in the queue") //
+        .register(meterRegistry);
+    coalescedCounter = Counter.builder("elastic.index.queue.coalesced") //
+        .description("The number of index maintenance jobs coalesced with a job in flight") //
+        .register(meterRegistry);
+    Gauge.builder("elastic.index.queue.in-flight", inFlight, Map::size) //
+        .description("The number of index maintenance jobs in flight") //
+        .register(meterRegistry);
+    Gauge.builder("elastic.index.queue.backpressure", backpressure, b -> b.get() ? 1 : 0) //
+        .description("Whether the consumption of index maintenance jobs is paused") //
+        .register(meterRegistry);
+
+    bulkProcessor = index.createBulkProcessor(new QueueUpdatingResultHandler(), bulkActions, bulkSize,
+        bulkFlushInterval, bulkConcurrentRequests);
+
     ensureIndexUpToDateOrRebuildInProgress();
 
-    indexMaintenanceQueue.registerListener(new ElasticQueueUpdateListener());
+    indexMaintenanceQueue.registerListener(this::takeJobs);
   }
 
   @EventListener
   public void onApplicationEvent(final CreateEvent event) {
-    indexMaintenanceQueue.putInQueue(event.getDocument().getDocumentId(), EventType.CREATE);
+    enqueue(event.getDocument().getDocumentId(), EventType.CREATE);
   }
 
   @EventListener
   public void onApplicationEvent(final AggregatedUpdateEvent event) {
-    indexMaintenanceQueue.putInQueue(event.getDocument().getDocumentId(), EventType.UPDATE);
+    enqueue(event.getDocument().getDocumentId(), EventType.UPDATE);
   }
 
   @EventListener
   public void onApplicationEvent(final DeleteEvent event) {
-    indexMaintenanceQueue.putInQueue(event.getDocumentId(), EventType.DELETE);
+    enqueue(event.getDocumentId(), EventType.DELETE);
   }
 
   @Override
   public void indexDocument(final Document doc) {
-    indexMaintenanceQueue.putInQueue(doc.getDocumentId(), EventType.CREATE);
+    enqueue(doc.getDocumentId(), EventType.CREATE);
   }
 
   @Override
   public void updateDocument(final Document doc) {
-    indexMaintenanceQueue.putInQueue(doc.getDocumentId(), EventType.UPDATE);
+    enqueue(doc.getDocumentId(), EventType.UPDATE);
   }
 
   @Override
   public void deleteDocument(final String documentId) {
-    indexMaintenanceQueue.putInQueue(documentId, EventType.DELETE);
+    enqueue(documentId, EventType.DELETE);
   }
 
-  private void doIndexDocument(final Document doc) {
-    index.addDocument(doc, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
-  }
-
-
-  private void doUpdateDocument(final Document doc) {
-    index.updateDocument(doc, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
-  }
-
-
-  private void doDeleteDocument(final String documentId) {
-    index.deleteDocument(documentId, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
+  @PreDestroy
+  public void destroy() throws InterruptedException {
+    workers.shutdown();
+    workers.awaitTermination(30, TimeUnit.SECONDS);
+    bulkProcessor.awaitClose(30, TimeUnit.SECONDS);
   }
 
   @Override
   public void hardResetIndex() {
-    index.hardResetIndex();
+    rebuilder.hardResetIndex();
   }
 
   @Override
   public void rebuildIndex() {
-    LOGGER.info("Index rebuild started.");
-    rebuildActive.set(true);
     try {
-      String inProgressIndexName = index.createIndex();
-      index.setAliasForIndex(inProgressIndexName, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
-
-      LOGGER.info("New index created.");
-
-      Stream<String> stream = documentService.getAllDocumentIds();
-      long enqueuedElements = stream.filter(Objects::nonNull).peek(
-          documentId -> indexMaintenanceQueue.putInQueue(documentId, EventType.CREATE)).count();
-      LOGGER.info("Index rebuild enqueued {} Elements.", enqueuedElements);
-
-      if (enqueuedElements < 1) {
-        rebuildActive.set(false);
-        finalizeIndexRebuild();
-      }
-
+      rebuilder.startRebuild();
     } catch (Exception e) {
       LOGGER.error("Failed to (re)bulild index.", e);
     }
   }
 
-  private void finalizeIndexRebuild() {
-    try {
-      String obsoleteIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
-      String newIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
-
-      // switch active index
-      index.setAliasForIndex(newIndexName, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
-
-      // delete old one
-      if (null != obsoleteIndexName) {
-        index.deleteIndex(obsoleteIndexName);
-      }
-    } catch (IOException e) {
-      LOGGER.error("Error while finalizing index rebuild!");
-    }
+  @Override
+  public Optional<IndexRebuildStatus> getRebuildStatus() {
+    return rebuilder.getStatus();
   }
 
   private void ensureIndexUpToDateOrRebuildInProgress() {
@@ -203,6 +490,7 @@ public class AsynchronousIndexMaintenanceService implements IndexMaintenanceServ
 
       if (expectedMapping.equals(currentWriteMapping)) {
         LOGGER.info("Current schema mapping is outdated, but rebuild seems to be in progress");
+        rebuilder.resume();
         return;
       }
     } catch (IOException e) {
@@ -5,24 +5,30 @@ import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import jakarta.annotation.PostConstruct;
 
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
@@ -32,11 +38,14 @@ import org.elasticsearch.client.indices.CreateIndexRequest;
 import org.elasticsearch.client.indices.GetMappingsRequest;
 import org.elasticsearch.client.indices.GetMappingsResponse;
 import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.crypto.codec.Hex;
 import org.springframework.stereotype.Service;
 
@@ -47,7 +56,6 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.neverpile.common.specifier.Specifier;
 import com.neverpile.common.util.DevNullOutputStream;
 import com.neverpile.common.util.VisibleForTesting;
-import com.neverpile.eureka.api.DocumentService;
 import com.neverpile.eureka.api.index.Array;
 import com.neverpile.eureka.api.index.Field;
 import com.neverpile.eureka.api.index.Field.Type;
@@ -58,7 +66,9 @@ import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.rest.api.document.DocumentFacet;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 public class ElasticsearchDocumentIndex {
@@ -72,43 +82,85 @@ public class ElasticsearchDocumentIndex {
 
   private static final String SCHEMA_MAPPING_VERSION = "1";
 
+  /**
+   * Receives the outcome of the individual requests executed by a {@link BulkProcessor} created
+   * using {@link ElasticsearchDocumentIndex#createBulkProcessor(BulkResultHandler, int, long, long, int)}.
+   */
+  interface BulkResultHandler {
+    /**
+     * Called for every request which has been executed successfully.
+     *
+     * @param request the request
+     */
+    void succeeded(DocWriteRequest<?> request);
+
+    /**
+     * Called for every request which has failed.
+     *
+     * @param request the request
+     * @param status the status of the individual request or <code>null</code> if the whole bulk
+     *          request failed
+     * @param cause the cause of the failure
+     */
+    void failed(DocWriteRequest<?> request, RestStatus status, Throwable cause);
+  }
+
   @Autowired
   private final List<DocumentFacet<?>> facets = new ArrayList<>();
 
   @Autowired
   private ObjectMapper objectMapper;
 
-  @Autowired
-  private DocumentService documentService;
-
   @Autowired
   private RestHighLevelClient client;
 
   @Autowired
   private MeterRegistry meterRegistry;
 
-  private final AtomicBoolean rebuildActive = new AtomicBoolean(false);
-
   private Counter indexSuccessCounter;
 
   private Counter indexFailureCounter;
 
+  private DistributionSummary bulkSizeSummary;
+
+  private Timer bulkLatencyTimer;
+
   private Structure indexSchema;
 
   @PostConstruct
   public void init() {
     indexSuccessCounter = meterRegistry.counter("elastic.index.success");
     indexFailureCounter = meterRegistry.counter("elastic.index.failure");
+    bulkSizeSummary = DistributionSummary.builder("elastic.bulk.size") //
+        .description("The number of index requests per bulk request") //
+        .register(meterRegistry);
+    bulkLatencyTimer = Timer.builder("elastic.bulk.latency") //
+        .description("The time taken to execute bulk requests") //
+        .register(meterRegistry);
 
     indexSchema = createIndexSchema();
   }
 
-  public void addDocument(final Document doc, final String indexName) {
+  IndexRequest createIndexRequest(final Document doc, final String indexName) {
     IndexRequest indexRequest = new IndexRequest(indexName);
     indexRequest.id(doc.getDocumentId());
     indexRequest.source(getFacetIndexData(doc), XContentType.JSON);
+    return indexRequest;
+  }
+
+  UpdateRequest createUpdateRequest(final Document doc, final String indexName) {
+    UpdateRequest updateRequest = new UpdateRequest(indexName, doc.getDocumentId());
+    updateRequest.doc(getFacetIndexData(doc));
+    return updateRequest;
+  }
+
+  DeleteRequest createDeleteRequest(final String documentId, final String indexName) {
+    return new DeleteRequest(indexName, documentId);
+  }
+
+  public void addDocument(final Document doc, final String indexName) {
     try {
-      client.index(indexRequest, RequestOptions.DEFAULT);
+      client.index(createIndexRequest(doc, indexName), RequestOptions.DEFAULT);
       indexSuccessCounter.increment();
     } catch (Exception e) {
       indexFailureCounter.increment();
@@ -117,10 +169,8 @@ public class ElasticsearchDocumentIndex {
   }
 
   public void updateDocument(final Document doc, final String indexName) {
-    UpdateRequest updateRequest = new UpdateRequest(indexName, doc.getDocumentId());
-    updateRequest.doc(getFacetIndexData(doc));
     try {
-      client.update(updateRequest, RequestOptions.DEFAULT);
+      client.update(createUpdateRequest(doc, indexName), RequestOptions.DEFAULT);
       indexSuccessCounter.increment();
     } catch (Exception e) {
       indexFailureCounter.increment();
@@ -129,89 +179,126 @@ public class ElasticsearchDocumentIndex {
   }
 
   public void deleteDocument(final String documentId, final String indexName) {
-    DeleteRequest deleteRequest = new DeleteRequest(indexName, documentId);
     try {
-      client.delete(deleteRequest, RequestOptions.DEFAULT);
+      client.delete(createDeleteRequest(documentId, indexName), RequestOptions.DEFAULT);
       indexSuccessCounter.increment();
     } catch (Exception e) {
       indexFailureCounter.increment();
     }
   }
 
-  @Async
-  public void hardResetIndex() {
-    DeleteIndexRequest request = null;
+  /**
+   * Index the given documents using a single <code>_bulk</code> request. Requests rejected by an
+   * overloaded cluster cause the whole batch to fail, so that it can be retried later.
+   *
+   * @param docs the documents to index
+   * @param indexName the name of the index
+   * @return the ids of the documents which failed to be indexed
+   * @throws IOException if the bulk request failed or has been rejected
+   */
+  Set<String> addDocuments(final List<Document> docs, final String indexName) throws IOException {
+    Set<String> failed = new HashSet<>();
+    if (docs.isEmpty())
+      return failed;
+
+    BulkRequest request = new BulkRequest();
+    docs.forEach(d -> request.add(createIndexRequest(d, indexName)));
+
+    BulkResponse response;
+    long start = System.nanoTime();
     try {
-      request = new DeleteIndexRequest(getIndexNameFromAlias(INDEX_ALIAS_WRITE),
-          getIndexNameFromAlias(INDEX_ALIAS_READ));
-      client.indices().delete(request, RequestOptions.DEFAULT);
+      response = client.bulk(request, RequestOptions.DEFAULT);
+    } catch (IOException | RuntimeException e) {
+      indexFailureCounter.increment(docs.size());
+      throw e;
+    } finally {
+      bulkLatencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      bulkSizeSummary.record(request.numberOfActions());
+    }
 
-      ensureIndexUpToDateOrRebuildInProgress();
-    } catch (IOException e) {
-      throw new IndexMaintenanceException("Index reset failed", e);
+    for (BulkItemResponse item : response.getItems()) {
+      if (item.isFailed()) {
+        if (item.status() == RestStatus.TOO_MANY_REQUESTS) {
+          indexFailureCounter.increment(docs.size());
+          throw new IOException("Bulk request rejected: " + item.getFailureMessage());
+        }
+        LOGGER.warn("Indexing document {} failed: {}", item.getId(), item.getFailureMessage());
+        failed.add(item.getId());
+      }
     }
+    indexSuccessCounter.increment(docs.size() - failed.size());
+    indexFailureCounter.increment(failed.size());
+    return failed;
   }
 
-  @Async
-  public void rebuildIndex() {
-    LOGGER.info("Index rebuild started.");
-    rebuildActive.set(true);
+  /**
+   * Create a {@link BulkProcessor} sending the requests added to it using the <code>_bulk</code>
+   * API. A bulk request is sent as soon as the given number of requests or bytes has been added or
+   * the flush interval has elapsed, whichever comes first. Requests rejected by an overloaded
+   * cluster are retried with an exponential back-off, all other failures are reported to the
+   * handler. The size and latency of bulk requests are recorded as <code>elastic.bulk.size</code>
+   * and <code>elastic.bulk.latency</code>.
+   *
+   * @param handler the handler receiving the outcome of the individual requests
+   * @param actions the maximum number of requests per bulk request
+   * @param sizeBytes the maximum size of a bulk request in bytes
+   * @param flushIntervalMillis the maximum time requests are held back
+   * @param concurrentRequests the maximum number of bulk requests in flight
+   * @return the bulk processor
+   */
+  BulkProcessor createBulkProcessor(final BulkResultHandler handler, final int actions, final long sizeBytes,
+      final long flushIntervalMillis, final int concurrentRequests) {
+    Map<Long, Long> startTimes = new ConcurrentHashMap<>();
+
+    BulkProcessor.Listener listener = new BulkProcessor.Listener() {
+      @Override
+      public void beforeBulk(final long executionId, final BulkRequest request) {
+        startTimes.put(executionId, System.nanoTime());
+      }
 
-    try {
-      String obsoleteIndexName = getIndexNameFromAlias(INDEX_ALIAS_READ);
-
-      String inProgressIndexName = createIndex();
-      setAliasForIndex(inProgressIndexName, INDEX_ALIAS_WRITE);
-
-      try {
-        LOGGER.info("Starting index rebuild");
-
-        AtomicInteger indexedDocuments = new AtomicInteger();
-        AtomicLong lastLogMessage = new AtomicLong(System.currentTimeMillis());
-        Stream<String> stream = documentService.getAllDocumentIds();
-        long indexed = stream //
-            .map(d -> documentService.getDocument(d).orElse(null)) //
-            .filter(Objects::nonNull) //
-            .peek(d -> {
-              addDocument(d, inProgressIndexName);
-              indexedDocuments.incrementAndGet();
-
-              long last = lastLogMessage.get();
-              if (last < System.currentTimeMillis() - 10000
-                  && lastLogMessage.compareAndSet(last, System.currentTimeMillis())) {
-                LOGGER.info("Indexed {} documents", indexedDocuments);
-              }
-            }).count();
-        LOGGER.info("Index rebuild completed with {} elements.", indexed);
-
-        // switch active index
-        setAliasForIndex(inProgressIndexName, INDEX_ALIAS_READ);
-
-        // delete old one
-        if (null != obsoleteIndexName) {
-          deleteIndex(obsoleteIndexName);
-        }
-        LOGGER.info("Index rebuild finished");
-      } catch (Exception e) {
-        LOGGER.error("Index rebuild failed", e);
-
-        try {
-          // switch active index
-          if (null != obsoleteIndexName) {
-            setAliasForIndex(obsoleteIndexName, INDEX_ALIAS_WRITE);
+      @Override
+      public void afterBulk(final long executionId, final BulkRequest request, final BulkResponse response) {
+        recordBulk(executionId, request);
+
+        List<DocWriteRequest<?>> requests = request.requests();
+        for (BulkItemResponse item : response.getItems()) {
+          DocWriteRequest<?> itemRequest = requests.get(item.getItemId());
+          if (item.isFailed()) {
+            indexFailureCounter.increment();
+            handler.failed(itemRequest, item.status(), item.getFailure().getCause());
+          } else {
+            indexSuccessCounter.increment();
+            handler.succeeded(itemRequest);
           }
-
-          // delete the one we tried to create
-          deleteIndex(inProgressIndexName);
-        } catch (IOException f) {
-          LOGGER.error("Also, failed to cleanup after rebuild failure", e);
         }
+      }
+
+      @Override
+      public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+        recordBulk(executionId, request);
 
-        throw new IndexMaintenanceException("Index rebuild failed", e);
+        LOGGER.warn("Bulk request with {} actions failed", request.numberOfActions(), failure);
+        indexFailureCounter.increment(request.numberOfActions());
+        request.requests().forEach(r -> handler.failed(r, null, failure));
       }
-    } catch (Exception e) {
-      LOGGER.error("Failed to (re)bulild index", e);
-    }
+
+      private void recordBulk(final long executionId, final BulkRequest request) {
+        Long start = startTimes.remove(executionId);
+        if (null != start)
+          bulkLatencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        bulkSizeSummary.record(request.numberOfActions());
+      }
+    };
+
+    return BulkProcessor.builder( //
+        (request, bulkListener) -> client.bulkAsync(request, RequestOptions.DEFAULT, bulkListener), //
+        listener, "neverpile-index-maintenance") //
+        .setBulkActions(actions) //
+        .setBulkSize(new ByteSizeValue(sizeBytes, ByteSizeUnit.BYTES)) //
+        .setFlushInterval(TimeValue.timeValueMillis(flushIntervalMillis)) //
+        .setConcurrentRequests(concurrentRequests) //
+        .setBackoffPolicy(BackoffPolicy.exponentialBackoff()) //
+        .build();
   }
 
   String createIndex() throws IOException {
@@ -242,8 +329,8 @@ public class ElasticsearchDocumentIndex {
     return indexName;
   }
 
-  void deleteIndex(final String indexName) throws IOException {
-    DeleteIndexRequest request = new DeleteIndexRequest(indexName);
+  void deleteIndex(final String... indexNames) throws IOException {
+    DeleteIndexRequest request = new DeleteIndexRequest(indexNames);
     client.indices().delete(request, RequestOptions.DEFAULT);
   }
 
@@ -348,28 +435,16 @@ public class ElasticsearchDocumentIndex {
         .keySet().stream().findAny().orElse(null);
   }
 
-  @Async
-  public void ensureIndexUpToDateOrRebuildInProgress() {
-    try {
-      Schema schema = createIndexSchema();
-
-      String expectedHash = schemaHash(schemaToMapping(schema));
-
-      if (verifyMapping(expectedHash, INDEX_ALIAS_READ, true)) {
-        LOGGER.info("Current schema mapping is up to date");
-        return;
-      }
-
-      if (verifyMapping(expectedHash, INDEX_ALIAS_WRITE, true)) {
-        LOGGER.info("Current schema mapping is outdated, but rebuild seems to be in progress");
-        return;
-      }
-    } catch (IOException e) {
-      LOGGER.info("Index not found, creating new index...");
-    }
-
-    // needs rebuild
-    rebuildIndex();
+  /**
+   * Check whether the mapping of the index the given alias points to matches the current index
+   * schema.
+   *
+   * @param aliasName the name of the alias
+   * @return <code>true</code> if the mapping is up to date
+   * @throws IOException if the alias could not be resolved
+   */
+  boolean isMappingUpToDate(final String aliasName) throws IOException {
+    return verifyMapping(schemaHash(schemaToMapping(createIndexSchema())), aliasName, true);
   }
 
   private boolean verifyMapping(final String expectedHash, final String aliasName, final boolean logInfo)
@@ -25,6 +25,9 @@ public class ElasticsearchIndexHealthCheck implements HealthIndicator {
   @Autowired(required = false)
   ElasticsearchDocumentIndex index;
 
+  @Autowired(required = false)
+  AsynchronousIndexMaintenanceService indexMaintenanceService;
+
   @Autowired
   ObjectMapper mapper;
 
@@ -57,6 +60,9 @@ public class ElasticsearchIndexHealthCheck implements HealthIndicator {
       builder.withDetail("Cluster Health", responseJson.path("status").asText("<unknown>"));
       builder.withDetail("Cluster Details", responseJson);
 
+      if (null != indexMaintenanceService)
+        builder.withDetail("Index Maintenance Backpressure", indexMaintenanceService.isBackpressureActive());
+
       return builder.up();
     } catch (IOException e1) {
       logger.error("ConnectException - Can not connect to elasticsearch");
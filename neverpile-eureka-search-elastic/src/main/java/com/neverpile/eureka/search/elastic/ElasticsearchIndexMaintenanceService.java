@@ -1,5 +1,7 @@
 package com.neverpile.eureka.search.elastic;
 
+import java.util.Optional;
+
 import jakarta.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -7,6 +9,7 @@ import org.springframework.stereotype.Service;
 
 import com.neverpile.common.opentracing.TraceInvocation;
 import com.neverpile.eureka.api.index.IndexMaintenanceService;
+import com.neverpile.eureka.api.index.IndexRebuildStatus;
 import com.neverpile.eureka.model.Document;
 
 @Service
@@ -15,9 +18,12 @@ public class ElasticsearchIndexMaintenanceService implements IndexMaintenanceSer
   @Autowired
   private ElasticsearchDocumentIndex index;
 
+  @Autowired
+  private ElasticsearchIndexRebuilder rebuilder;
+
   @PostConstruct
   public void init() {
-    index.ensureIndexUpToDateOrRebuildInProgress();
+    rebuilder.ensureIndexUpToDateOrRebuildInProgress();
   }
 
   @Override
@@ -40,12 +46,17 @@ public class ElasticsearchIndexMaintenanceService implements IndexMaintenanceSer
 
   @Override
   public void hardResetIndex() {
-    index.hardResetIndex();
+    rebuilder.hardResetIndex();
   }
 
   @Override
   public void rebuildIndex() {
-    index.rebuildIndex();
+    rebuilder.rebuildIndex();
+  }
+
+  @Override
+  public Optional<IndexRebuildStatus> getRebuildStatus() {
+    return rebuilder.getStatus();
   }
 
 }
\ No newline at end of file
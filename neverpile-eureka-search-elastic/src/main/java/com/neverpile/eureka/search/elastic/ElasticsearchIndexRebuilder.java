@@ -0,0 +1,392 @@
+package com.neverpile.eureka.search.elastic;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import com.neverpile.eureka.api.DocumentService;
+import com.neverpile.eureka.api.index.IndexMaintenanceException;
+import com.neverpile.eureka.api.index.IndexRebuildStatus;
+import com.neverpile.eureka.model.Document;
+import com.neverpile.eureka.tasks.DistributedPersistentQueueType;
+import com.neverpile.eureka.tasks.TaskQueue;
+import com.neverpile.eureka.tasks.TaskQueue.ProcessElement;
+import com.neverpile.eureka.tx.atomic.DistributedAtomicReference;
+import com.neverpile.eureka.tx.atomic.DistributedAtomicType;
+
+/**
+ * Rebuilds the document index from the documents held by the {@link DocumentService}. The document
+ * id space is split into a fixed number of partitions by the hash of the ids. The partitions are
+ * handed out through a {@link TaskQueue}, so that they are processed by the workers of all nodes of
+ * the cluster. A worker streams the document ids, picking a window of the smallest ids of its
+ * partition following the partition's checkpoint, so that only a bounded number of ids is held at a
+ * time. The window is indexed in batches using the <code>_bulk</code> API, in the order of the
+ * document ids, and the next window is picked until the partition is exhausted. After each batch the
+ * id of the last document is recorded as the checkpoint of the partition in the cluster-wide
+ * {@link IndexRebuildState}, from which an interrupted rebuild is resumed. Documents which failed to
+ * be indexed are retried until they succeed. Once all documents of all partitions have been
+ * indexed, the read alias is switched to the new index and the obsolete index is deleted.
+ * <p>
+ * Resuming a rebuild after a restart of the whole cluster requires persistent implementations of
+ * the {@link TaskQueue} and {@link DistributedAtomicReference}. Otherwise the rebuild starts over.
+ */
+@Service
+public class ElasticsearchIndexRebuilder {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ElasticsearchIndexRebuilder.class);
+
+  private static final String PARTITION_KEY_PREFIX = "partition-";
+
+  /**
+   * The work on a partition. The document ids are picked by the worker, starting from the
+   * partition's checkpoint.
+   *
+   * @param partition the partition number
+   */
+  record PartitionWork(int partition) implements Serializable {
+    private static final long serialVersionUID = 1L;
+  }
+
+  @Autowired
+  private ElasticsearchDocumentIndex index;
+
+  @Autowired
+  private DocumentService documentService;
+
+  @DistributedPersistentQueueType("neverpile-index-rebuild")
+  TaskQueue<PartitionWork> partitionQueue;
+
+  @DistributedAtomicType("neverpile-index-rebuild-state")
+  DistributedAtomicReference<IndexRebuildState> rebuildState;
+
+  @Value("${neverpile-eureka.elastic.rebuild.partitions:16}")
+  private int partitionCount = 16;
+
+  @Value("${neverpile-eureka.elastic.rebuild.workers:4}")
+  private int workerCount = 4;
+
+  @Value("${neverpile-eureka.elastic.rebuild.batch-size:500}")
+  private int batchSize = 500;
+
+  @Value("${neverpile-eureka.elastic.rebuild.window-size:50000}")
+  private int windowSize = 50000;
+
+  @Value("${neverpile-eureka.elastic.rebuild.retry-delay:30000}")
+  private long retryDelay = 30000;
+
+  private ExecutorService workers;
+
+  private Semaphore idleWorkers;
+
+  @PostConstruct
+  public void init() {
+    workers = Executors.newFixedThreadPool(workerCount, new CustomizableThreadFactory("neverpile-index-rebuild-"));
+    idleWorkers = new Semaphore(workerCount);
+
+    partitionQueue.registerListener(this::takePartitions);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    workers.shutdownNow();
+  }
+
+  /**
+   * Verify that the read alias points to an index matching the current index schema. Otherwise,
+   * resume the rebuild into the index the write alias points to if it matches, or start a new
+   * rebuild.
+   */
+  @Async
+  public void ensureIndexUpToDateOrRebuildInProgress() {
+    try {
+      if (index.isMappingUpToDate(ElasticsearchDocumentIndex.INDEX_ALIAS_READ)) {
+        LOGGER.info("Current schema mapping is up to date");
+        return;
+      }
+
+      if (index.isMappingUpToDate(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE)) {
+        LOGGER.info("Current schema mapping is outdated, but rebuild seems to be in progress");
+        resume();
+        return;
+      }
+    } catch (IOException e) {
+      LOGGER.info("Index not found, creating new index...");
+    }
+
+    // needs rebuild
+    rebuildIndex();
+  }
+
+  /**
+   * Delete the current indices and start over with a new, empty one.
+   */
+  @Async
+  public void hardResetIndex() {
+    try {
+      index.deleteIndex(index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE),
+          index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ));
+
+      ensureIndexUpToDateOrRebuildInProgress();
+    } catch (IOException e) {
+      throw new IndexMaintenanceException("Index reset failed", e);
+    }
+  }
+
+  @Async
+  public void rebuildIndex() {
+    try {
+      startRebuild();
+    } catch (Exception e) {
+      LOGGER.error("Failed to (re)bulild index", e);
+    }
+  }
+
+  /**
+   * Start rebuilding the index into a new index. A rebuild already in progress is left alone.
+   *
+   * @throws IOException if the new index could not be created
+   */
+  public synchronized void startRebuild() throws IOException {
+    IndexRebuildState current = rebuildState.get();
+    if (null != current && !current.isFinished()
+        && current.indexName().equals(index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE))) {
+      LOGGER.info("Index rebuild into {} is already in progress", current.indexName());
+      return;
+    }
+
+    String indexName = index.createIndex();
+    index.setAliasForIndex(indexName, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
+
+    start(indexName);
+  }
+
+  /**
+   * Resume the rebuild of the index the write alias points to. Partitions which have not been
+   * completed are processed again, starting from their checkpoints. If no rebuild state is known
+   * for the index, the rebuild starts over.
+   *
+   * @throws IOException if the write alias could not be resolved
+   */
+  public synchronized void resume() throws IOException {
+    String writeIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
+    if (null == writeIndexName)
+      return;
+
+    IndexRebuildState state = rebuildState.get();
+    if (null != state && state.indexName().equals(writeIndexName)) {
+      if (state.isFinished())
+        return;
+
+      LOGGER.info("Resuming index rebuild into {}", writeIndexName);
+      enqueueIncompletePartitions(state);
+    } else {
+      LOGGER.info("No checkpoints found for index rebuild into {}, starting over", writeIndexName);
+      start(writeIndexName);
+    }
+  }
+
+  /**
+   * Return the status of the current or most recent rebuild.
+   *
+   * @return the status or nothing if no rebuild is known
+   */
+  public Optional<IndexRebuildStatus> getStatus() {
+    return Optional.ofNullable(rebuildState.get()).map(IndexRebuildState::toStatus);
+  }
+
+  private void start(final String indexName) {
+    LOGGER.info("Index rebuild into {} started with {} partitions", indexName, partitionCount);
+
+    IndexRebuildState state = IndexRebuildState.start(indexName, partitionCount, System.currentTimeMillis());
+    rebuildState.set(state);
+    enqueueIncompletePartitions(state);
+  }
+
+  /**
+   * Enqueue the work on the partitions which have not been completed.
+   */
+  private void enqueueIncompletePartitions(final IndexRebuildState state) {
+    Map<String, PartitionWork> work = new HashMap<>();
+    for (int partition = 0; partition < state.partitionCount(); partition++) {
+      if (!state.progress(partition).complete())
+        work.put(PARTITION_KEY_PREFIX + partition, new PartitionWork(partition));
+    }
+    partitionQueue.putAllInQueue(work);
+  }
+
+  /**
+   * Retrieve the next window of document ids of a partition: the smallest ids following the
+   * checkpoint, in ascending order. The ids are streamed, holding no more than a window of them.
+   *
+   * @return the ids, fewer than the window size if the partition is exhausted
+   */
+  private List<String> nextWindow(final int partition, final int partitionCount, final String checkpoint) {
+    TreeSet<String> window = new TreeSet<>();
+    try (Stream<String> ids = documentService.getAllDocumentIds()) {
+      ids.filter(Objects::nonNull) //
+          .filter(id -> partitionOf(id, partitionCount) == partition) //
+          .filter(id -> null == checkpoint || id.compareTo(checkpoint) > 0) //
+          .forEach(id -> {
+            window.add(id);
+            if (window.size() > windowSize)
+              window.pollLast();
+          });
+    }
+    return new ArrayList<>(window);
+  }
+
+  static int partitionOf(final String documentId, final int partitionCount) {
+    return Math.floorMod(documentId.hashCode(), partitionCount);
+  }
+
+  /**
+   * Take partitions from the queue as long as there are idle workers.
+   */
+  private void takePartitions() {
+    while (idleWorkers.tryAcquire()) {
+      ProcessElement<PartitionWork> element = partitionQueue.getElementToProcess();
+      if (null == element) {
+        idleWorkers.release();
+        return;
+      }
+
+      workers.execute(() -> {
+        try {
+          processPartition(element);
+        } finally {
+          idleWorkers.release();
+          // partitions may have been enqueued while all workers were busy
+          takePartitions();
+        }
+      });
+    }
+  }
+
+  private void processPartition(final ProcessElement<PartitionWork> element) {
+    int partition = element.getValue().partition();
+    IndexRebuildState state = rebuildState.get();
+    if (null == state || state.isFinished() || state.progress(partition).complete()) {
+      partitionQueue.removeProcessedElement(element.getKey());
+      return;
+    }
+
+    String indexName = state.indexName();
+    try {
+      IndexRebuildState updated = state;
+      List<String> documentIds;
+      do {
+        documentIds = nextWindow(partition, updated.partitionCount(), updated.progress(partition).lastDocumentId());
+        LOGGER.debug("Indexing {} documents of partition {}", documentIds.size(), partition);
+
+        updated = indexBatches(indexName, partition, documentIds);
+      } while (documentIds.size() >= windowSize && isCurrent(updated, indexName));
+
+      // retry the documents which failed to be indexed, by this or an earlier attempt
+      if (isCurrent(updated, indexName))
+        updated = indexBatches(indexName, partition, new ArrayList<>(updated.progress(partition).failedDocumentIds()));
+
+      if (isCurrent(updated, indexName))
+        updated = rebuildState.alterAndGet(IndexRebuildState.complete(indexName, partition));
+
+      if (!isCurrent(updated, indexName)) {
+        LOGGER.info("Index rebuild into {} has been superseded", indexName);
+        partitionQueue.removeProcessedElement(element.getKey());
+        return;
+      }
+
+      long failed = updated.progress(partition).failed();
+      if (failed > 0) {
+        LOGGER.warn("{} documents of partition {} failed to be indexed, retrying in {}ms", failed, partition,
+            retryDelay);
+        retry(element);
+        return;
+      }
+
+      partitionQueue.removeProcessedElement(element.getKey());
+      LOGGER.info("Partition {} of index rebuild into {} completed ({}/{})", partition, indexName,
+          updated.toStatus().getCompletedPartitionCount(), updated.partitionCount());
+
+      finalizeRebuild(indexName);
+    } catch (Exception e) {
+      LOGGER.warn("Indexing partition {} failed, retrying in {}ms", partition, retryDelay, e);
+      retry(element);
+    }
+  }
+
+  /**
+   * Index the given documents of a partition in batches, recording the progress after each batch.
+   *
+   * @return the updated state, which belongs to a different rebuild if this one has been superseded
+   */
+  private IndexRebuildState indexBatches(final String indexName, final int partition, final List<String> documentIds)
+      throws IOException {
+    IndexRebuildState updated = rebuildState.get();
+    for (int i = 0; i < documentIds.size() && isCurrent(updated, indexName); i += batchSize) {
+      List<String> batch = documentIds.subList(i, Math.min(i + batchSize, documentIds.size()));
+      List<Document> documents = documentService.getDocuments(batch);
+      Set<String> failed = index.addDocuments(documents, indexName);
+
+      updated = rebuildState.alterAndGet(
+          IndexRebuildState.advance(indexName, partition, batch, documents.size() - failed.size(), failed));
+    }
+    return updated;
+  }
+
+  private static boolean isCurrent(final IndexRebuildState state, final String indexName) {
+    return null != state && !state.isFinished() && state.indexName().equals(indexName);
+  }
+
+  private void retry(final ProcessElement<PartitionWork> element) {
+    CompletableFuture.delayedExecutor(retryDelay, TimeUnit.MILLISECONDS).execute(
+        () -> partitionQueue.putInQueue(element.getKey(), element.getValue()));
+  }
+
+  /**
+   * Switch the read alias to the new index once all documents of all partitions have been indexed.
+   * Only the node which manages to mark the rebuild as finished performs the switch.
+   */
+  private void finalizeRebuild(final String indexName) throws IOException {
+    IndexRebuildState state;
+    do {
+      state = rebuildState.get();
+      if (null == state || !state.indexName().equals(indexName) || state.isFinished() || !state.isComplete())
+        return;
+    } while (!rebuildState.compareAndSet(state, state.finish(System.currentTimeMillis())));
+
+    String obsoleteIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+
+    // switch active index
+    index.setAliasForIndex(indexName, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+
+    // delete old one
+    if (null != obsoleteIndexName && !obsoleteIndexName.equals(indexName)) {
+      index.deleteIndex(obsoleteIndexName);
+    }
+
+    LOGGER.info("Index rebuild into {} finished: {} documents indexed", indexName,
+        state.toStatus().getIndexedDocumentCount());
+  }
+}
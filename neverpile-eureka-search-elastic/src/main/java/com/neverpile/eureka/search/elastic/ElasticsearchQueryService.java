@@ -1,31 +1,54 @@
 package com.neverpile.eureka.search.elastic;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.neverpile.common.util.VisibleForTesting;
 import com.neverpile.eureka.api.DocumentService;
 import com.neverpile.eureka.api.index.DocumentQuery;
+import com.neverpile.eureka.api.index.IndexedDocument;
+import com.neverpile.eureka.api.index.InvalidContinuationTokenException;
+import com.neverpile.eureka.api.index.QueryResultPage;
 import com.neverpile.eureka.api.index.QueryService;
 import com.neverpile.eureka.model.Document;
 
 @Service
 public class ElasticsearchQueryService implements QueryService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ElasticsearchQueryService.class);
+
   @Autowired
   private DocumentService documentService;
 
@@ -35,13 +58,141 @@ public class ElasticsearchQueryService implements QueryService {
   @Autowired
   private ElasticsearchDocumentIndex elasticsearchIndex;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${neverpile-eureka.elastic.query.point-in-time-keep-alive:60000}")
+  private long pointInTimeKeepAlive = 60000;
+
+  /**
+   * The position of a cursor-based query: the point in time searched and the sort values of the last
+   * hit returned.
+   */
+  record Cursor(String pointInTimeId, Object[] searchAfter) {
+    String encode(final ObjectMapper mapper) {
+      ObjectNode node = mapper.createObjectNode().put("pit", pointInTimeId);
+      node.set("after", mapper.valueToTree(searchAfter));
+      try {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mapper.writeValueAsBytes(node));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    static Cursor decode(final String token, final ObjectMapper mapper) {
+      JsonNode node;
+      try {
+        node = mapper.readTree(Base64.getUrlDecoder().decode(token));
+      } catch (IOException | IllegalArgumentException e) {
+        throw new InvalidContinuationTokenException("Invalid continuation token", e);
+      }
+      if (null == node || !node.path("pit").isTextual() || !node.path("after").isArray())
+        throw new InvalidContinuationTokenException("Invalid continuation token");
+      try {
+        return new Cursor(node.get("pit").asText(), mapper.treeToValue(node.get("after"), Object[].class));
+      } catch (IOException e) {
+        throw new InvalidContinuationTokenException("Invalid continuation token", e);
+      }
+    }
+  }
+
   @Override
   public List<Document> queryDocuments(final DocumentQuery searchQuery) {
     return documentService.getDocuments(searchDocument(searchQuery, ElasticsearchDocumentIndex.INDEX_ALIAS_READ));
   }
 
+  @Override
+  public List<IndexedDocument> queryIndexData(final DocumentQuery searchQuery, final Collection<String> facetNames) {
+    return queryPage(searchQuery, facetNames).getResults();
+  }
+
+  /**
+   * Cursor-based queries are paged using <code>search_after</code> within a point in time, so that
+   * deep pages are as cheap as the first one and not limited by the <code>max_result_window</code>.
+   * The continuation token encodes the point in time id and the sort values of the last hit. The
+   * point in time is closed once the last page has been retrieved, abandoned ones expire after the
+   * configured keep-alive.
+   */
+  @Override
+  public QueryResultPage queryPage(final DocumentQuery searchQuery, final Collection<String> facetNames) {
+    String token = searchQuery.getContinuationToken();
+    Cursor cursor = null;
+    if (null != token) {
+      cursor = DocumentQuery.INITIAL_CONTINUATION_TOKEN.equals(token)
+          ? new Cursor(openPointInTime(ElasticsearchDocumentIndex.INDEX_ALIAS_READ), null)
+          : Cursor.decode(token, objectMapper);
+    }
+
+    SearchRequest searchRequest = createSearchRequest(searchQuery, ElasticsearchDocumentIndex.INDEX_ALIAS_READ,
+        cursor);
+    // just return the facets to be rendered
+    searchRequest.source().fetchSource(facetNames.toArray(new String[0]), null);
+
+    try {
+      SearchResponse searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
+      List<IndexedDocument> results = new ArrayList<>();
+      SearchHit[] hits = searchResponse.getHits().getHits();
+      for (SearchHit hit : hits) {
+        Map<String, JsonNode> indexData = new HashMap<>();
+        if (hit.hasSource()) {
+          objectMapper.readTree(hit.getSourceRef().streamInput()).fields().forEachRemaining(
+              e -> indexData.put(e.getKey(), e.getValue()));
+        }
+        results.add(new IndexedDocument(hit.getId(), indexData));
+      }
+
+      String continuationToken = null;
+      if (null != cursor) {
+        // the point in time id may change between requests
+        String pointInTimeId = null != searchResponse.pointInTimeId()
+            ? searchResponse.pointInTimeId()
+            : cursor.pointInTimeId();
+        if (hits.length < searchQuery.getPageSize())
+          closePointInTime(pointInTimeId);
+        else
+          continuationToken = new Cursor(pointInTimeId, hits[hits.length - 1].getSortValues()).encode(objectMapper);
+      }
+
+      return new QueryResultPage(results, continuationToken);
+    } catch (ElasticsearchStatusException e) {
+      closePointInTimeIfOpened(cursor);
+
+      // a continued cursor refers to a point in time which may have expired or sort values which
+      // don't match the query
+      if (null != cursor && null != cursor.searchAfter()) {
+        if (e.status() == RestStatus.NOT_FOUND)
+          throw new InvalidContinuationTokenException("The cursor has expired", e);
+        if (e.status() == RestStatus.BAD_REQUEST)
+          throw new InvalidContinuationTokenException("Invalid continuation token", e);
+      }
+      throw e;
+    } catch (IOException e) {
+      LOGGER.error("Failed to query the index", e);
+      closePointInTimeIfOpened(cursor);
+      throw new UncheckedIOException("Failed to query the index", e);
+    }
+  }
+
+  /**
+   * Close the point in time of the given cursor if it has been opened for the first page, since no
+   * continuation token referring to it will be handed out.
+   */
+  private void closePointInTimeIfOpened(final Cursor cursor) {
+    if (null != cursor && null == cursor.searchAfter())
+      closePointInTime(cursor.pointInTimeId());
+  }
+
   @VisibleForTesting
   List<String> searchDocument(final DocumentQuery searchQuery, final String index) {
+    SearchRequest searchRequest = createSearchRequest(searchQuery, index, null);
+    // the document id is the id of the hit
+    searchRequest.source().fetchSource(false);
+
+    return getSearchResultDocumentIds(searchRequest);
+  }
+
+  private SearchRequest createSearchRequest(final DocumentQuery searchQuery, final String index,
+      final Cursor cursor) {
     QueryBuilder requestQueryBuilder = ElasticsearchQueryBuilder.getQueryBuilderFor(searchQuery,
         elasticsearchIndex.getIndexSchema());
 
@@ -58,15 +209,46 @@ public class ElasticsearchQueryService implements QueryService {
       sortBuilder.order(searchQuery.getSortOrder() == DocumentQuery.SortOrder.ASC ? SortOrder.ASC : SortOrder.DESC);
 
       searchSourceBuilder.sort(sortBuilder);
+    } else if (null != cursor) {
+      // the cheapest order to page through
+      searchSourceBuilder.sort(new FieldSortBuilder("_shard_doc"));
     }
 
-    searchSourceBuilder.from(searchQuery.getPageNo() * searchQuery.getPageSize());
     searchSourceBuilder.size(searchQuery.getPageSize());
 
-    SearchRequest searchRequest = new SearchRequest(index);
-    searchRequest.source(searchSourceBuilder);
+    if (null == cursor) {
+      searchSourceBuilder.from(searchQuery.getPageNo() * searchQuery.getPageSize());
 
-    return getSearchResultDocumentIds(searchRequest);
+      SearchRequest searchRequest = new SearchRequest(index);
+      searchRequest.source(searchSourceBuilder);
+      return searchRequest;
+    }
+
+    // a search within a point in time must not name an index
+    searchSourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(cursor.pointInTimeId()) //
+        .setKeepAlive(TimeValue.timeValueMillis(pointInTimeKeepAlive)));
+    if (null != cursor.searchAfter())
+      searchSourceBuilder.searchAfter(cursor.searchAfter());
+
+    return new SearchRequest().source(searchSourceBuilder);
+  }
+
+  private String openPointInTime(final String index) {
+    try {
+      OpenPointInTimeRequest request = new OpenPointInTimeRequest(index) //
+          .keepAlive(TimeValue.timeValueMillis(pointInTimeKeepAlive));
+      return client.openPointInTime(request, RequestOptions.DEFAULT).getPointInTimeId();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't open point in time", e);
+    }
+  }
+
+  private void closePointInTime(final String pointInTimeId) {
+    try {
+      client.closePointInTime(new ClosePointInTimeRequest(pointInTimeId), RequestOptions.DEFAULT);
+    } catch (IOException | ElasticsearchException e) {
+      LOGGER.warn("Failed to close point in time - it will expire after the keep-alive", e);
+    }
   }
 
   private List<String> getSearchResultDocumentIds(final SearchRequest searchRequest) {
@@ -76,7 +258,7 @@ public class ElasticsearchQueryService implements QueryService {
       SearchHits hits = searchResponse.getHits();
       List<String> results = new ArrayList<>();
       for (SearchHit hit : hits) {
-        results.add((String) hit.getSourceAsMap().get("documentId"));
+        results.add(hit.getId());
       }
       return results;
     } catch (IOException e) {
@@ -0,0 +1,157 @@
+package com.neverpile.eureka.search.elastic;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.neverpile.eureka.api.index.IndexRebuildStatus;
+import com.neverpile.eureka.tx.atomic.DistributedAtomicReference.ReferenceFunction;
+
+/**
+ * The cluster-wide state of an index rebuild performed by the {@link ElasticsearchIndexRebuilder}.
+ * Instances are immutable, modifications return altered copies. The functions modifying the state
+ * of a particular rebuild leave the state of any other rebuild alone, so that workers still busy
+ * with a superseded rebuild don't interfere with the current one.
+ *
+ * @param indexName the name of the index being built
+ * @param partitionCount the number of partitions the document ids are split into
+ * @param started the start time in milliseconds since the epoch
+ * @param finished the completion time in milliseconds since the epoch, or zero
+ * @param partitions the progress of the partitions which have been worked on
+ */
+record IndexRebuildState(String indexName, int partitionCount, long started, long finished,
+    Map<Integer, IndexRebuildState.PartitionProgress> partitions) implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The progress of a single partition. Documents are indexed in the order of their ids, so the id
+   * of the last document attempted serves as the checkpoint from which to resume. Documents which
+   * failed to be indexed are kept track of until they have been indexed by a retry.
+   *
+   * @param lastDocumentId the id of the last document attempted or <code>null</code>
+   * @param indexed the number of documents indexed
+   * @param failedDocumentIds the ids of the documents before the checkpoint which failed to be
+   *          indexed
+   * @param complete whether all documents of the partition have been indexed
+   */
+  record PartitionProgress(String lastDocumentId, long indexed, SortedSet<String> failedDocumentIds,
+      boolean complete) implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final PartitionProgress NONE = new PartitionProgress(null, 0, Collections.emptySortedSet(), false);
+
+    long failed() {
+      return failedDocumentIds.size();
+    }
+  }
+
+  static IndexRebuildState start(final String indexName, final int partitionCount, final long started) {
+    return new IndexRebuildState(indexName, partitionCount, started, 0, Collections.emptyMap());
+  }
+
+  PartitionProgress progress(final int partition) {
+    return partitions.getOrDefault(partition, PartitionProgress.NONE);
+  }
+
+  boolean isFinished() {
+    return finished > 0;
+  }
+
+  boolean isComplete() {
+    return partitions.size() == partitionCount
+        && partitions.values().stream().allMatch(p -> p.complete() && p.failed() == 0);
+  }
+
+  private IndexRebuildState withProgress(final int partition, final PartitionProgress progress) {
+    Map<Integer, PartitionProgress> updated = new TreeMap<>(partitions);
+    updated.put(partition, progress);
+    return new IndexRebuildState(indexName, partitionCount, started, finished, updated);
+  }
+
+  IndexRebuildState finish(final long time) {
+    return new IndexRebuildState(indexName, partitionCount, started, time, partitions);
+  }
+
+  /**
+   * Return a function recording that a batch of documents of a partition has been indexed. The
+   * checkpoint is moved past the batch, the documents of the batch which failed to be indexed are
+   * recorded so that they are retried. Documents recorded as failed by an earlier batch which are
+   * part of this one are no longer considered failed, unless they failed again.
+   *
+   * @param indexName the name of the index being built
+   * @param partition the partition number
+   * @param batch the ids of the documents of the batch, in ascending order
+   * @param indexed the number of documents indexed
+   * @param failed the ids of the documents which failed to be indexed
+   * @return the function
+   */
+  static ReferenceFunction<IndexRebuildState> advance(final String indexName, final int partition,
+      final List<String> batch, final long indexed, final Collection<String> failed) {
+    // the function may be sent to other nodes
+    String lastDocumentId = batch.get(batch.size() - 1);
+    Set<String> batchIds = new HashSet<>(batch);
+    Set<String> failedIds = new HashSet<>(failed);
+
+    return state -> {
+      if (null == state || !state.indexName().equals(indexName))
+        return state;
+
+      PartitionProgress p = state.progress(partition);
+      // a partition may have been processed twice, e.g. after a node restart, and retries of failed
+      // documents lie before the checkpoint
+      String checkpoint = null == p.lastDocumentId() || p.lastDocumentId().compareTo(lastDocumentId) < 0
+          ? lastDocumentId
+          : p.lastDocumentId();
+
+      SortedSet<String> failedDocumentIds = new TreeSet<>(p.failedDocumentIds());
+      failedDocumentIds.removeAll(batchIds);
+      failedDocumentIds.addAll(failedIds);
+
+      return state.withProgress(partition, new PartitionProgress(checkpoint, p.indexed() + indexed,
+          Collections.unmodifiableSortedSet(failedDocumentIds), p.complete()));
+    };
+  }
+
+  /**
+   * Return a function recording that all documents of a partition have been indexed. A partition
+   * with documents which failed to be indexed is left incomplete.
+   *
+   * @param indexName the name of the index being built
+   * @param partition the partition number
+   * @return the function
+   */
+  static ReferenceFunction<IndexRebuildState> complete(final String indexName, final int partition) {
+    return state -> {
+      if (null == state || !state.indexName().equals(indexName))
+        return state;
+
+      PartitionProgress p = state.progress(partition);
+      if (p.failed() > 0)
+        return state;
+
+      return state.withProgress(partition,
+          new PartitionProgress(p.lastDocumentId(), p.indexed(), p.failedDocumentIds(), true));
+    };
+  }
+
+  IndexRebuildStatus toStatus() {
+    IndexRebuildStatus status = new IndexRebuildStatus();
+    status.setState(isFinished() ? IndexRebuildStatus.State.COMPLETED : IndexRebuildStatus.State.RUNNING);
+    status.setIndexName(indexName);
+    status.setStarted(Instant.ofEpochMilli(started));
+    status.setFinished(isFinished() ? Instant.ofEpochMilli(finished) : null);
+    status.setPartitionCount(partitionCount);
+    status.setCompletedPartitionCount((int) partitions.values().stream().filter(PartitionProgress::complete).count());
+    status.setIndexedDocumentCount(partitions.values().stream().mapToLong(PartitionProgress::indexed).sum());
+    status.setFailedDocumentCount(partitions.values().stream().mapToLong(PartitionProgress::failed).sum());
+    return status;
+  }
+}
@@ -12,11 +12,209 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties("neverpile-eureka.elastic")
 public class NeverpileElasticsearchConfiguration {
+  /**
+   * Settings for the bulk indexing performed by the asynchronous index maintenance.
+   */
+  public static class Bulk {
+    /**
+     * The maximum number of index requests per bulk request.
+     */
+    private int actions = 1000;
+
+    /**
+     * The maximum size of a bulk request in bytes.
+     */
+    private long size = 5242880;
+
+    /**
+     * The maximum time in milliseconds index requests are held back before being sent.
+     */
+    private long flushInterval = 1000;
+
+    /**
+     * The maximum number of bulk requests in flight.
+     */
+    private int concurrentRequests = 2;
+
+    /**
+     * The time in milliseconds after which failed index requests are retried.
+     */
+    private long retryDelay = 5000;
+
+    public int getActions() {
+      return actions;
+    }
+
+    public void setActions(final int actions) {
+      this.actions = actions;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public void setSize(final long size) {
+      this.size = size;
+    }
+
+    public long getFlushInterval() {
+      return flushInterval;
+    }
+
+    public void setFlushInterval(final long flushInterval) {
+      this.flushInterval = flushInterval;
+    }
+
+    public int getConcurrentRequests() {
+      return concurrentRequests;
+    }
+
+    public void setConcurrentRequests(final int concurrentRequests) {
+      this.concurrentRequests = concurrentRequests;
+    }
+
+    public long getRetryDelay() {
+      return retryDelay;
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+      this.retryDelay = retryDelay;
+    }
+  }
+
+  /**
+   * Settings for the workers of the asynchronous index maintenance.
+   */
+  public static class IndexMaintenance {
+    /**
+     * The maximum number of workers taking jobs from the queue concurrently.
+     */
+    private int workers = 4;
+
+    /**
+     * Whether to run the workers on virtual threads.
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * The number of jobs in flight at which the workers stop taking jobs from the queue.
+     */
+    private int maxInFlight = 10000;
+
+    public int getWorkers() {
+      return workers;
+    }
+
+    public void setWorkers(final int workers) {
+      this.workers = workers;
+    }
+
+    public boolean isVirtualThreads() {
+      return virtualThreads;
+    }
+
+    public void setVirtualThreads(final boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+    }
+
+    public int getMaxInFlight() {
+      return maxInFlight;
+    }
+
+    public void setMaxInFlight(final int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+  }
+
+  /**
+   * Settings for queries.
+   */
+  public static class Query {
+    /**
+     * The time in milliseconds the point in time of a cursor-based query is kept alive between the
+     * retrieval of two pages.
+     */
+    private long pointInTimeKeepAlive = 60000;
+
+    public long getPointInTimeKeepAlive() {
+      return pointInTimeKeepAlive;
+    }
+
+    public void setPointInTimeKeepAlive(final long pointInTimeKeepAlive) {
+      this.pointInTimeKeepAlive = pointInTimeKeepAlive;
+    }
+  }
+
+  /**
+   * Settings for the partitioned index rebuild.
+   */
+  public static class Rebuild {
+    /**
+     * The number of partitions the document ids are split into.
+     */
+    private int partitions = 16;
+
+    /**
+     * The maximum number of partitions processed concurrently by each node.
+     */
+    private int workers = 4;
+
+    /**
+     * The number of documents indexed per bulk request.
+     */
+    private int batchSize = 500;
+
+    /**
+     * The time in milliseconds after which failed partitions are retried.
+     */
+    private long retryDelay = 30000;
+
+    public int getPartitions() {
+      return partitions;
+    }
+
+    public void setPartitions(final int partitions) {
+      this.partitions = partitions;
+    }
+
+    public int getWorkers() {
+      return workers;
+    }
+
+    public void setWorkers(final int workers) {
+      this.workers = workers;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(final int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public long getRetryDelay() {
+      return retryDelay;
+    }
+
+    public void setRetryDelay(final long retryDelay) {
+      this.retryDelay = retryDelay;
+    }
+  }
+
   /**
    * Whether to enable the elasticsearch subsystem.
    */
   private boolean enabled;
 
+  private final Bulk bulk = new Bulk();
+
+  private final IndexMaintenance indexMaintenance = new IndexMaintenance();
+
+  private final Rebuild rebuild = new Rebuild();
+
+  private final Query query = new Query();
+
   public boolean isEnabled() {
     return enabled;
   }
@@ -24,4 +222,20 @@ public class NeverpileElasticsearchConfiguration {
   public void setEnabled(final boolean enabled) {
     this.enabled = enabled;
   }
+
+  public Bulk getBulk() {
+    return bulk;
+  }
+
+  public IndexMaintenance getIndexMaintenance() {
+    return indexMaintenance;
+  }
+
+  public Rebuild getRebuild() {
+    return rebuild;
+  }
+
+  public Query getQuery() {
+    return query;
+  }
 }
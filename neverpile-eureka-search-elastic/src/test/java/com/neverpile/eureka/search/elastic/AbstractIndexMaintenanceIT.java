@@ -58,7 +58,16 @@ public abstract class AbstractIndexMaintenanceIT extends AbstractManualIT {
   @Before
   @Override
   public void prepare() throws IOException {
-    index.ensureIndexUpToDateOrRebuildInProgress();
+    // documents are loaded in batches by the asynchronous maintenance
+    BDDMockito.given(mockDocumentService.getDocuments(any())).willAnswer(i -> {
+      List<String> docIds = i.getArgument(0);
+      return docIds.stream() //
+          .map(mockDocumentService::getDocument) //
+          .flatMap(Optional::stream) //
+          .collect(Collectors.toList());
+    });
+
+    rebuilder.ensureIndexUpToDateOrRebuildInProgress();
     waitOrNot();
     testIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
     waitOrNot();
@@ -93,6 +102,19 @@ public abstract class AbstractIndexMaintenanceIT extends AbstractManualIT {
         RequestOptions.DEFAULT).isExists());
   }
 
+  @Test
+  public void testThat_multipleDocumentsCanBeInsertedIntoTheIndex() throws IOException {
+    BDDMockito.given(mockDocumentService.getDocument(any())).willAnswer(i -> listOfDocuments.stream() //
+        .filter(d -> d.getDocumentId().equals(i.getArgument(0))) //
+        .findFirst());
+
+    listOfDocuments.forEach(indexMaintenanceService::indexDocument);
+    waitOrNot();
+
+    for (Document doc : listOfDocuments)
+      assertTrue(client.get(new GetRequest(testIndexName, doc.getDocumentId()), RequestOptions.DEFAULT).isExists());
+  }
+
   @Test
   public void testThat_IndexEntryCanBeUpdated() throws IOException, InterruptedException {
     client.index(new IndexRequest(testIndexName).id("id" + 0).source(getTestDocMap(0), XContentType.JSON),
@@ -139,7 +161,7 @@ public abstract class AbstractIndexMaintenanceIT extends AbstractManualIT {
       ids.add("id" + i);
     }
 
-    BDDMockito.given(mockDocumentService.getAllDocumentIds()).willReturn(ids.stream());
+    BDDMockito.given(mockDocumentService.getAllDocumentIds()).willAnswer(i -> ids.stream());
     BDDMockito.given(mockDocumentService.getDocument(any())).willAnswer(i -> {
       String docId = i.getArgument(0);
       Document d = new Document();
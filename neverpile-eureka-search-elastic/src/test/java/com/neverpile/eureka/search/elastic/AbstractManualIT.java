@@ -41,6 +41,9 @@ public abstract class AbstractManualIT {
   @Autowired
   protected ElasticsearchDocumentIndex index;
 
+  @Autowired
+  protected ElasticsearchIndexRebuilder rebuilder;
+
   @MockBean
   protected MetadataService metadataService;
 
@@ -94,7 +97,7 @@ public abstract class AbstractManualIT {
 
   @Before
   public void prepare() throws IOException {
-    index.ensureIndexUpToDateOrRebuildInProgress();
+    rebuilder.ensureIndexUpToDateOrRebuildInProgress();
     testIndexName = index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
   }
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.neverpile.eureka.search.elastic;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.eureka.api.DocumentService;
+import com.neverpile.eureka.model.Document;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Verify the handling of index maintenance jobs and of the outcome of individual bulk items.
+ * Elasticsearch is replaced by a bulk processor collecting the requests, whose outcome is reported
+ * to the result handler by the tests. A single worker takes the jobs from the queue.
+ */
+public class AsynchronousIndexMaintenanceServiceTest {
+  private static final long RETRY_DELAY = 200;
+
+  private final ElasticsearchDocumentIndex index = mock(ElasticsearchDocumentIndex.class);
+
+  private final BulkProcessor bulkProcessor = mock(BulkProcessor.class);
+
+  private final DocumentService documentService = mock(DocumentService.class);
+
+  private final MockTaskQueue<Object> queue = spy(new MockTaskQueue<>());
+
+  private final List<DocWriteRequest<?>> requests = new CopyOnWriteArrayList<>();
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private ElasticsearchDocumentIndex.BulkResultHandler handler;
+
+  private AsynchronousIndexMaintenanceService service;
+
+  @Before
+  public void setUp() throws IOException {
+    ObjectNode mapping = JsonNodeFactory.instance.objectNode();
+    given(index.schemaToMapping(any())).willReturn(mapping);
+    given(index.getCurrentMapping(ElasticsearchDocumentIndex.INDEX_ALIAS_READ)).willReturn(mapping);
+    given(index.createBulkProcessor(any(), anyInt(), anyLong(), anyLong(), anyInt())).willAnswer(i -> {
+      handler = i.getArgument(0);
+      return bulkProcessor;
+    });
+    given(index.createIndexRequest(any(), anyString())).willAnswer(
+        i -> new IndexRequest(i.<String> getArgument(1)).id(i.<Document> getArgument(0).getDocumentId()));
+    given(index.createUpdateRequest(any(), anyString())).willAnswer(
+        i -> new UpdateRequest(i.<String> getArgument(1), i.<Document> getArgument(0).getDocumentId()));
+    given(index.createDeleteRequest(anyString(), anyString())).willAnswer(
+        i -> new DeleteRequest(i.<String> getArgument(1), i.<String> getArgument(0)));
+    given(bulkProcessor.add(any(DocWriteRequest.class))).willAnswer(i -> {
+      requests.add(i.getArgument(0));
+      return bulkProcessor;
+    });
+    given(documentService.getDocuments(any())).willAnswer(
+        i -> i.<List<String>> getArgument(0).stream().map(Document::new).collect(Collectors.toList()));
+
+    service = new AsynchronousIndexMaintenanceService();
+    ReflectionTestUtils.setField(service, "index", index);
+    ReflectionTestUtils.setField(service, "documentService", documentService);
+    ReflectionTestUtils.setField(service, "rebuilder", mock(ElasticsearchIndexRebuilder.class));
+    ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(service, "indexMaintenanceQueue", queue);
+    ReflectionTestUtils.setField(service, "retryDelay", RETRY_DELAY);
+    ReflectionTestUtils.setField(service, "workerCount", 1);
+    service.init();
+  }
+
+  @After
+  public void tearDown() throws InterruptedException {
+    service.destroy();
+  }
+
+  /**
+   * Wait until the given number of requests has been handed to the bulk processor.
+   */
+  private List<DocWriteRequest<?>> awaitRequests(final int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (requests.size() < count && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertThat(requests, hasSize(count));
+    return new ArrayList<>(requests);
+  }
+
+  private DocWriteRequest<?> requestFor(final List<DocWriteRequest<?>> candidates, final String id) {
+    return candidates.stream().filter(r -> r.id().equals(id)).findFirst().orElseThrow();
+  }
+
+  private void await(final BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertTrue(condition.getAsBoolean());
+  }
+
+  /**
+   * Wait until the given number of jobs has been held back because a job for the same document was
+   * in flight.
+   */
+  private void awaitHeldBack(final int count) throws InterruptedException {
+    await(() -> meterRegistry.counter("elastic.index.queue.coalesced").count() == count);
+  }
+
+  @Test
+  public void testThat_succeededJobIsRemovedFromQueue() throws Exception {
+    service.indexDocument(new Document("a"));
+
+    DocWriteRequest<?> request = awaitRequests(1).get(0);
+    assertThat(request.opType(), equalTo(DocWriteRequest.OpType.INDEX));
+    verify(queue, never()).removeProcessedElement("a");
+
+    handler.succeeded(request);
+
+    verify(queue).removeProcessedElement("a");
+    verify(queue, after(2 * RETRY_DELAY).times(1)).putInQueue(eq("a"), any());
+  }
+
+  @Test
+  public void testThat_onlyFailedJobsAreRequeuedAfterRetryDelay() throws Exception {
+    service.indexDocument(new Document("a"));
+    service.indexDocument(new Document("b"));
+
+    List<DocWriteRequest<?>> submitted = awaitRequests(2);
+    handler.succeeded(requestFor(submitted, "a"));
+    handler.failed(requestFor(submitted, "b"), RestStatus.SERVICE_UNAVAILABLE, new IOException("unavailable"));
+
+    // not before the retry delay has elapsed
+    verify(queue, times(1)).putInQueue(eq("b"), any());
+    verify(queue, timeout(5000).times(2)).putInQueue(eq("b"), any());
+
+    DocWriteRequest<?> retried = awaitRequests(3).get(2);
+    assertThat(retried.id(), equalTo("b"));
+    assertThat(retried.opType(), equalTo(DocWriteRequest.OpType.INDEX));
+
+    verify(queue).removeProcessedElement("a");
+    verify(queue, never()).removeProcessedElement("b");
+    verify(queue, times(1)).putInQueue(eq("a"), any());
+  }
+
+  @Test
+  public void testThat_updateOfDocumentMissingFromIndexIsRetriedAsCreate() throws Exception {
+    service.updateDocument(new Document("a"));
+
+    DocWriteRequest<?> request = awaitRequests(1).get(0);
+    assertThat(request.opType(), equalTo(DocWriteRequest.OpType.UPDATE));
+
+    handler.failed(request, RestStatus.NOT_FOUND, new IOException("document missing"));
+
+    DocWriteRequest<?> retried = awaitRequests(2).get(1);
+    assertThat(retried.id(), equalTo("a"));
+    assertThat(retried.opType(), equalTo(DocWriteRequest.OpType.INDEX));
+  }
+
+  @Test
+  public void testThat_permanentlyFailedJobIsDropped() throws Exception {
+    service.indexDocument(new Document("a"));
+
+    handler.failed(awaitRequests(1).get(0), RestStatus.BAD_REQUEST, new IOException("mapping conflict"));
+
+    verify(queue).removeProcessedElement("a");
+    verify(queue, after(2 * RETRY_DELAY).times(1)).putInQueue(eq("a"), any());
+    assertThat(requests, hasSize(1));
+  }
+
+  @Test
+  public void testThat_failedBulkRequestRequeuesAllItsJobs() throws Exception {
+    service.indexDocument(new Document("a"));
+    service.deleteDocument("b");
+
+    List<DocWriteRequest<?>> submitted = awaitRequests(2);
+    // a failure of the whole bulk request is reported for every item without a status
+    IOException failure = new IOException("connection refused");
+    submitted.forEach(r -> handler.failed(r, null, failure));
+
+    List<DocWriteRequest<?>> retried = awaitRequests(4).subList(2, 4);
+    assertThat(requestFor(retried, "a").opType(), equalTo(DocWriteRequest.OpType.INDEX));
+    assertThat(requestFor(retried, "b").opType(), equalTo(DocWriteRequest.OpType.DELETE));
+    verify(queue, never()).removeProcessedElement(any());
+  }
+
+  @Test
+  public void testThat_jobsForDocumentInFlightAreHeldBackUntilItCompletes() throws Exception {
+    service.indexDocument(new Document("a"));
+    DocWriteRequest<?> created = awaitRequests(1).get(0);
+
+    service.updateDocument(new Document("a"));
+    awaitHeldBack(1);
+    verify(queue, after(2 * RETRY_DELAY).never()).removeProcessedElement("a");
+    assertThat(requests, hasSize(1));
+
+    handler.succeeded(created);
+
+    DocWriteRequest<?> updated = awaitRequests(2).get(1);
+    assertThat(updated.id(), equalTo("a"));
+    assertThat(updated.opType(), equalTo(DocWriteRequest.OpType.UPDATE));
+    verify(queue, never()).removeProcessedElement("a");
+
+    handler.succeeded(updated);
+    verify(queue).removeProcessedElement("a");
+  }
+
+  /**
+   * Hold back the two given jobs for a document in flight and return the type of the request the
+   * coalesced job is executed as.
+   */
+  private DocWriteRequest.OpType coalesce(final Runnable older, final Runnable newer) throws Exception {
+    service.updateDocument(new Document("a"));
+    DocWriteRequest<?> inFlight = awaitRequests(1).get(0);
+
+    older.run();
+    awaitHeldBack(1);
+    newer.run();
+    awaitHeldBack(2);
+
+    handler.succeeded(inFlight);
+    return awaitRequests(2).get(1).opType();
+  }
+
+  @Test
+  public void testThat_heldBackCreationAndUpdateAreCoalescedToCreation() throws Exception {
+    assertThat(coalesce(() -> service.indexDocument(new Document("a")), () -> service.updateDocument(new Document("a"))),
+        equalTo(DocWriteRequest.OpType.INDEX));
+  }
+
+  @Test
+  public void testThat_heldBackUpdateAndDeletionAreCoalescedToDeletion() throws Exception {
+    assertThat(coalesce(() -> service.updateDocument(new Document("a")), () -> service.deleteDocument("a")),
+        equalTo(DocWriteRequest.OpType.DELETE));
+  }
+
+  @Test
+  public void testThat_heldBackDeletionAndCreationAreCoalescedToCreation() throws Exception {
+    assertThat(coalesce(() -> service.deleteDocument("a"), () -> service.indexDocument(new Document("a"))),
+        equalTo(DocWriteRequest.OpType.INDEX));
+  }
+
+  @Test
+  public void testThat_queueConsumptionResumesWhenJobCompletes() throws Exception {
+    ReflectionTestUtils.setField(service, "maxInFlight", 2);
+
+    service.indexDocument(new Document("a"));
+    service.indexDocument(new Document("b"));
+    List<DocWriteRequest<?>> submitted = awaitRequests(2);
+
+    service.indexDocument(new Document("c"));
+    await(service::isBackpressureActive);
+    verify(queue, after(2 * RETRY_DELAY).never()).removeProcessedElement(any());
+    assertThat(requests, hasSize(2));
+
+    handler.succeeded(requestFor(submitted, "a"));
+
+    assertThat(awaitRequests(3).get(2).id(), equalTo("c"));
+  }
+
+  @Test
+  public void testThat_queueConsumptionResumesWhenJobIsRetried() throws Exception {
+    ReflectionTestUtils.setField(service, "maxInFlight", 2);
+
+    service.indexDocument(new Document("a"));
+    service.indexDocument(new Document("b"));
+    List<DocWriteRequest<?>> submitted = awaitRequests(2);
+
+    service.indexDocument(new Document("c"));
+    await(service::isBackpressureActive);
+
+    handler.failed(requestFor(submitted, "a"), RestStatus.SERVICE_UNAVAILABLE, new IOException("unavailable"));
+
+    // not waiting for the failed job to be retried
+    assertThat(awaitRequests(3).get(2).id(), equalTo("c"));
+    verify(queue, times(1)).putInQueue(eq("a"), any());
+  }
+
+  @Test
+  public void testThat_failureToSubmitRetriesOnlyJobsNotSubmittedYet() throws Exception {
+    service.indexDocument(new Document("a"));
+    DocWriteRequest<?> created = awaitRequests(1).get(0);
+
+    // keep the worker busy while further jobs are enqueued, so that they are taken as one batch
+    CountDownLatch busy = new CountDownLatch(1);
+    willAnswer(i -> {
+      busy.await();
+      return Collections.singletonList(new Document("x"));
+    }).given(documentService).getDocuments(Collections.singletonList("x"));
+    service.indexDocument(new Document("x"));
+    verify(documentService, timeout(5000)).getDocuments(Collections.singletonList("x"));
+
+    service.updateDocument(new Document("a"));
+    service.indexDocument(new Document("b"));
+    service.indexDocument(new Document("c"));
+
+    // the request for x and the first one of the batch are accepted, the second one is refused
+    AtomicInteger added = new AtomicInteger();
+    willAnswer(i -> {
+      if (added.incrementAndGet() == 3)
+        throw new IllegalStateException("bulk processor closed");
+      requests.add(i.getArgument(0));
+      return bulkProcessor;
+    }).given(bulkProcessor).add(any(DocWriteRequest.class));
+    busy.countDown();
+
+    List<DocWriteRequest<?>> submitted = awaitRequests(3);
+    String accepted = submitted.get(2).id();
+    String refused = "b".equals(accepted) ? "c" : "b";
+
+    // the refused job is retried, the one submitted and the held back one are left alone
+    verify(queue, timeout(5000).times(2)).putInQueue(eq(refused), any());
+    assertThat(awaitRequests(4).get(3).id(), equalTo(refused));
+    verify(queue, times(1)).putInQueue(eq(accepted), any());
+    verify(queue, times(2)).putInQueue(eq("a"), any());
+
+    handler.succeeded(created);
+    DocWriteRequest<?> updated = awaitRequests(5).get(4);
+    assertThat(updated.id(), equalTo("a"));
+    assertThat(updated.opType(), equalTo(DocWriteRequest.OpType.UPDATE));
+  }
+}
@@ -0,0 +1,219 @@
+package com.neverpile.eureka.search.elastic;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.neverpile.eureka.api.DocumentService;
+import com.neverpile.eureka.api.index.IndexRebuildStatus;
+import com.neverpile.eureka.impl.tx.atomic.LocalAtomicReference;
+import com.neverpile.eureka.model.Document;
+
+/**
+ * Verify the partitioning, checkpointing and finalization of index rebuilds. Elasticsearch is
+ * replaced by a mocked index recording the batches of documents indexed.
+ */
+public class ElasticsearchIndexRebuilderTest {
+  private static final String NEW_INDEX = "document-new";
+
+  private static final String OLD_INDEX = "document-old";
+
+  private static final int PARTITIONS = 4;
+
+  private static final int BATCH_SIZE = 3;
+
+  private static final int WINDOW_SIZE = 4;
+
+  private static final long RETRY_DELAY = 100;
+
+  private final ElasticsearchDocumentIndex index = mock(ElasticsearchDocumentIndex.class);
+
+  private final DocumentService documentService = mock(DocumentService.class);
+
+  private final LocalAtomicReference<IndexRebuildState> rebuildState = new LocalAtomicReference<>("rebuild-state");
+
+  private final List<String> documentIds = IntStream.range(0, 20).mapToObj(i -> "id" + i).collect(
+      Collectors.toList());
+
+  private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+  private final Set<String> failing = ConcurrentHashMap.newKeySet();
+
+  private ElasticsearchIndexRebuilder rebuilder;
+
+  @Before
+  public void setUp() throws Exception {
+    given(index.createIndex()).willReturn(NEW_INDEX);
+    given(index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE)).willReturn(NEW_INDEX);
+    given(index.getIndexNameFromAlias(ElasticsearchDocumentIndex.INDEX_ALIAS_READ)).willReturn(OLD_INDEX);
+    given(index.addDocuments(any(), eq(NEW_INDEX))).willAnswer(i -> {
+      List<String> batch = i.<List<Document>> getArgument(0).stream().map(Document::getDocumentId).collect(
+          Collectors.toList());
+      batches.add(batch);
+      return batch.stream().filter(failing::contains).collect(Collectors.toSet());
+    });
+    given(documentService.getAllDocumentIds()).willAnswer(i -> documentIds.stream());
+    given(documentService.getDocuments(any())).willAnswer(
+        i -> i.<List<String>> getArgument(0).stream().map(Document::new).collect(Collectors.toList()));
+
+    rebuilder = new ElasticsearchIndexRebuilder();
+    ReflectionTestUtils.setField(rebuilder, "index", index);
+    ReflectionTestUtils.setField(rebuilder, "documentService", documentService);
+    ReflectionTestUtils.setField(rebuilder, "partitionQueue", new MockTaskQueue<>());
+    ReflectionTestUtils.setField(rebuilder, "rebuildState", rebuildState);
+    ReflectionTestUtils.setField(rebuilder, "partitionCount", PARTITIONS);
+    ReflectionTestUtils.setField(rebuilder, "workerCount", 2);
+    ReflectionTestUtils.setField(rebuilder, "batchSize", BATCH_SIZE);
+    ReflectionTestUtils.setField(rebuilder, "windowSize", WINDOW_SIZE);
+    ReflectionTestUtils.setField(rebuilder, "retryDelay", RETRY_DELAY);
+    rebuilder.init();
+  }
+
+  @After
+  public void tearDown() {
+    rebuilder.destroy();
+  }
+
+  private void await(final BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertTrue(condition.getAsBoolean());
+  }
+
+  private void awaitFinished() throws InterruptedException {
+    await(() -> null != rebuildState.get() && rebuildState.get().isFinished());
+  }
+
+  private IndexRebuildStatus status() {
+    return rebuilder.getStatus().orElseThrow();
+  }
+
+  private List<String> indexedDocumentIds() {
+    return batches.stream().flatMap(List::stream).collect(Collectors.toList());
+  }
+
+  private List<String> idsOfPartition(final int partition, final int partitionCount) {
+    return documentIds.stream() //
+        .filter(id -> ElasticsearchIndexRebuilder.partitionOf(id, partitionCount) == partition) //
+        .sorted() //
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void testThat_documentIdsAreIndexedInAscendingWindowsPerPartition() throws Exception {
+    rebuilder.startRebuild();
+    awaitFinished();
+
+    // each document is indexed exactly once
+    assertThat(indexedDocumentIds(), containsInAnyOrder(documentIds.toArray()));
+
+    // each batch holds ids of a single partition, which are indexed in ascending order
+    for (List<String> batch : batches) {
+      assertThat(batch.size(), lessThanOrEqualTo(Math.min(BATCH_SIZE, WINDOW_SIZE)));
+      int partition = ElasticsearchIndexRebuilder.partitionOf(batch.get(0), PARTITIONS);
+      assertThat(batch.stream().map(id -> ElasticsearchIndexRebuilder.partitionOf(id, PARTITIONS)).collect(
+          Collectors.toList()), everyItem(equalTo(partition)));
+    }
+    for (int partition = 0; partition < PARTITIONS; partition++) {
+      List<String> indexed = new ArrayList<>();
+      for (List<String> batch : batches) {
+        if (ElasticsearchIndexRebuilder.partitionOf(batch.get(0), PARTITIONS) == partition)
+          indexed.addAll(batch);
+      }
+      assertThat(indexed, equalTo(idsOfPartition(partition, PARTITIONS)));
+    }
+
+    // the ids are streamed once per window instead of being held for the whole rebuild
+    verify(documentService, atLeast(PARTITIONS + 1)).getAllDocumentIds();
+
+    IndexRebuildStatus status = status();
+    assertThat(status.getState(), equalTo(IndexRebuildStatus.State.COMPLETED));
+    assertThat(status.getCompletedPartitionCount(), equalTo(PARTITIONS));
+    assertThat(status.getIndexedDocumentCount(), equalTo(20L));
+    assertThat(status.getFailedDocumentCount(), equalTo(0L));
+  }
+
+  @Test
+  public void testThat_rebuildIsFinalizedBySwitchingTheReadAlias() throws Exception {
+    rebuilder.startRebuild();
+    awaitFinished();
+
+    verify(index).setAliasForIndex(NEW_INDEX, ElasticsearchDocumentIndex.INDEX_ALIAS_WRITE);
+    verify(index).setAliasForIndex(NEW_INDEX, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+    verify(index).deleteIndex(OLD_INDEX);
+  }
+
+  @Test
+  public void testThat_rebuildIsResumedFromCheckpoints() throws Exception {
+    List<String> completed = idsOfPartition(0, 2);
+    List<String> started = idsOfPartition(1, 2);
+
+    // partition 0 is complete, the first batch of partition 1 has been indexed
+    IndexRebuildState state = IndexRebuildState.start(NEW_INDEX, 2, System.currentTimeMillis());
+    state = IndexRebuildState.advance(NEW_INDEX, 0, completed, completed.size(), Collections.emptySet()).apply(state);
+    state = IndexRebuildState.complete(NEW_INDEX, 0).apply(state);
+    state = IndexRebuildState.advance(NEW_INDEX, 1, started.subList(0, 2), 2, Collections.emptySet()).apply(state);
+    rebuildState.set(state);
+
+    rebuilder.resume();
+    awaitFinished();
+
+    verify(index, never()).createIndex();
+    assertThat(indexedDocumentIds(), equalTo(started.subList(2, started.size())));
+    assertThat(status().getIndexedDocumentCount(), equalTo(20L));
+    verify(index).setAliasForIndex(NEW_INDEX, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+  }
+
+  @Test
+  public void testThat_rebuildIsNotFinalizedWhileDocumentsFailToBeIndexed() throws Exception {
+    failing.add("id7");
+
+    rebuilder.startRebuild();
+    await(() -> status().getCompletedPartitionCount() == PARTITIONS - 1 && status().getFailedDocumentCount() == 1);
+
+    // the failed document is retried, but the rebuild doesn't finish
+    await(() -> indexedDocumentIds().stream().filter("id7"::equals).count() > 1);
+    assertFalse(rebuildState.get().isFinished());
+    int partition = ElasticsearchIndexRebuilder.partitionOf("id7", PARTITIONS);
+    assertThat(rebuildState.get().progress(partition).failedDocumentIds(), hasItem("id7"));
+    verify(index, never()).setAliasForIndex(NEW_INDEX, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+
+    failing.clear();
+    awaitFinished();
+
+    verify(index).setAliasForIndex(NEW_INDEX, ElasticsearchDocumentIndex.INDEX_ALIAS_READ);
+    assertThat(status().getFailedDocumentCount(), equalTo(0L));
+    assertThat(status().getIndexedDocumentCount(), equalTo(20L));
+    // only the failed document has been indexed more than once
+    assertThat(indexedDocumentIds().stream().filter(id -> !id.equals("id7")).collect(Collectors.toList()),
+        containsInAnyOrder(documentIds.stream().filter(id -> !id.equals("id7")).toArray()));
+  }
+}
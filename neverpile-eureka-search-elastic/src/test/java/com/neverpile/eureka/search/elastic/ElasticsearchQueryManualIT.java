@@ -3,6 +3,7 @@ package com.neverpile.eureka.search.elastic;
 import static com.neverpile.common.condition.EqualsCondition.eq;
 import static com.neverpile.eureka.api.index.DocumentQuery.query;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.IOException;
 import java.time.Instant;
@@ -15,8 +16,11 @@ import java.util.Optional;
 
 import jakarta.ws.rs.core.MediaType;
 
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.xcontent.XContentType;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -39,6 +43,8 @@ import com.neverpile.common.condition.Condition;
 import com.neverpile.common.condition.EqualsCondition;
 import com.neverpile.common.condition.RangeCondition;
 import com.neverpile.eureka.api.index.DocumentQuery;
+import com.neverpile.eureka.api.index.IndexedDocument;
+import com.neverpile.eureka.api.index.QueryResultPage;
 import com.neverpile.eureka.model.Document;
 import com.neverpile.eureka.model.EncryptionType;
 import com.neverpile.eureka.plugin.metadata.rest.MetadataFacet;
@@ -101,6 +107,50 @@ public class ElasticsearchQueryManualIT extends AbstractManualIT {
     Assert.assertTrue(response.contains("id11"));
   }
 
+  @Test
+  public void testThat_cursorPagesPastTheMaxResultWindow() throws IOException, InterruptedException {
+    // distinguished from the documents of other tests by the modification date
+    for (int i = 0; i < 30; i++) {
+      Map<String, Object> json = new HashMap<>();
+      json.put("documentId", "cursor" + i);
+      json.put("dateCreated", 1L);
+      json.put("dateModified", 1L);
+      client.index(new IndexRequest(testIndexName).id("cursor" + i).source(json, XContentType.JSON),
+          RequestOptions.DEFAULT);
+    }
+
+    client.indices().putSettings(new UpdateSettingsRequest(testIndexName).settings(
+        Settings.builder().put("index.max_result_window", 10)), RequestOptions.DEFAULT);
+    try {
+      // wait for index to process
+      Thread.sleep(1000);
+
+      Condition cond = createEqualsCondition("dateModified", "1");
+
+      // pages beyond the window can't be retrieved by page number
+      DocumentQuery pagedQuery = query(cond).pageSize(4).pageNo(3).build();
+      assertThatThrownBy(() -> elasticsearchQueryService.searchDocument(pagedQuery, testIndexName)) //
+          .isInstanceOf(ElasticsearchStatusException.class);
+
+      // but by following the cursor
+      DocumentQuery cursorQuery = query(cond).pageSize(4).withCursor().build();
+      List<String> ids = new ArrayList<>();
+      int pages = 0;
+      while (null != cursorQuery.getContinuationToken()) {
+        QueryResultPage page = elasticsearchQueryService.queryPage(cursorQuery, Arrays.asList("documentId"));
+        page.getResults().stream().map(IndexedDocument::getDocumentId).forEach(ids::add);
+        cursorQuery.setContinuationToken(page.getContinuationToken());
+        pages++;
+      }
+
+      assertThat(pages).isEqualTo(8);
+      assertThat(ids).hasSize(30).doesNotHaveDuplicates().allMatch(id -> id.startsWith("cursor"));
+    } finally {
+      client.indices().putSettings(new UpdateSettingsRequest(testIndexName).settings(
+          Settings.builder().putNull("index.max_result_window")), RequestOptions.DEFAULT);
+    }
+  }
+
   @Test
   public void testThat_metadataQueryingWorks() throws IOException, InterruptedException {
     // place one document with plenty of metadata into index
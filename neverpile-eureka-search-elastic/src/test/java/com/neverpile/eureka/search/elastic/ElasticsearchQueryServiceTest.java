@@ -0,0 +1,162 @@
+package com.neverpile.eureka.search.elastic;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.search.OpenPointInTimeResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.common.condition.AndCondition;
+import com.neverpile.eureka.api.index.DocumentQuery;
+import com.neverpile.eureka.api.index.InvalidContinuationTokenException;
+import com.neverpile.eureka.search.elastic.ElasticsearchQueryService.Cursor;
+
+/**
+ * Verify the encoding of cursors into continuation tokens and the handling of invalid ones.
+ * Elasticsearch is replaced by a mocked client.
+ */
+public class ElasticsearchQueryServiceTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final RestHighLevelClient client = mock(RestHighLevelClient.class);
+
+  private ElasticsearchQueryService queryService;
+
+  @Before
+  public void setUp() throws Exception {
+    OpenPointInTimeResponse pointInTime = mock(OpenPointInTimeResponse.class);
+    given(pointInTime.getPointInTimeId()).willReturn("pit-1");
+    given(client.openPointInTime(any(), any())).willReturn(pointInTime);
+
+    queryService = new ElasticsearchQueryService();
+    ReflectionTestUtils.setField(queryService, "client", client);
+    ReflectionTestUtils.setField(queryService, "elasticsearchIndex", mock(ElasticsearchDocumentIndex.class));
+    ReflectionTestUtils.setField(queryService, "objectMapper", objectMapper);
+  }
+
+  private static String base64(final String s) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static DocumentQuery query(final String continuationToken) {
+    DocumentQuery query = new DocumentQuery(new AndCondition(), null, DocumentQuery.SortOrder.ASC, 0, 10);
+    query.setContinuationToken(continuationToken);
+    return query;
+  }
+
+  private void assertInvalid(final DocumentQuery query, final String message) {
+    try {
+      queryService.queryPage(query, Collections.emptySet());
+      fail("Expected InvalidContinuationTokenException");
+    } catch (InvalidContinuationTokenException e) {
+      assertThat(e.getMessage(), equalTo(message));
+    }
+  }
+
+  @Test
+  public void testThat_cursorSurvivesEncoding() {
+    String token = new Cursor("pit-1", new Object[]{"foo", 42}).encode(objectMapper);
+
+    Cursor cursor = Cursor.decode(token, objectMapper);
+
+    assertThat(cursor.pointInTimeId(), equalTo("pit-1"));
+    assertThat(cursor.searchAfter(), arrayContaining("foo", 42));
+  }
+
+  @Test
+  public void testThat_malformedTokensAreRejected() {
+    for (String token : new String[]{
+        "not base64!", base64("garbage"), base64("{\"pit\":\"pit-1\"}"), base64("{\"after\":[]}"),
+        base64("{\"pit\":{},\"after\":[]}"), ""
+    }) {
+      try {
+        Cursor.decode(token, objectMapper);
+        fail("Expected InvalidContinuationTokenException for " + token);
+      } catch (InvalidContinuationTokenException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testThat_expiredCursorIsReported() throws Exception {
+    given(client.search(any(), any())).willThrow(
+        new ElasticsearchStatusException("No search context found", RestStatus.NOT_FOUND));
+
+    assertInvalid(query(new Cursor("pit-1", new Object[]{1}).encode(objectMapper)), "The cursor has expired");
+  }
+
+  @Test
+  public void testThat_cursorNotMatchingTheQueryIsReported() throws Exception {
+    given(client.search(any(), any())).willThrow(
+        new ElasticsearchStatusException("search_after has 2 values but sort has 1", RestStatus.BAD_REQUEST));
+
+    assertInvalid(query(new Cursor("pit-1", new Object[]{1, 2}).encode(objectMapper)), "Invalid continuation token");
+  }
+
+  @Test
+  public void testThat_badRequestForFirstPageIsNotBlamedOnTheToken() throws Exception {
+    given(client.search(any(), any())).willThrow(
+        new ElasticsearchStatusException("No mapping found for sort key", RestStatus.BAD_REQUEST));
+
+    try {
+      queryService.queryPage(query(DocumentQuery.INITIAL_CONTINUATION_TOKEN), Collections.emptySet());
+      fail("Expected ElasticsearchStatusException");
+    } catch (ElasticsearchStatusException e) {
+      // expected
+    }
+
+    // the point in time opened for the first page is released
+    verify(client).closePointInTime(argThat(r -> r.getId().equals("pit-1")), any());
+  }
+
+  @Test
+  public void testThat_ioFailureIsNotMistakenForTheLastPage() throws Exception {
+    given(client.search(any(), any())).willThrow(new IOException("Connection reset"));
+
+    try {
+      queryService.queryPage(query(DocumentQuery.INITIAL_CONTINUATION_TOKEN), Collections.emptySet());
+      fail("Expected UncheckedIOException");
+    } catch (UncheckedIOException e) {
+      // expected
+    }
+
+    verify(client).closePointInTime(argThat(r -> r.getId().equals("pit-1")), any());
+  }
+
+  @Test
+  public void testThat_ioFailureOfContinuedCursorKeepsThePointInTime() throws Exception {
+    given(client.search(any(), any())).willThrow(new IOException("Connection reset"));
+
+    try {
+      queryService.queryPage(query(new Cursor("pit-1", new Object[]{1}).encode(objectMapper)),
+          Collections.emptySet());
+      fail("Expected UncheckedIOException");
+    } catch (UncheckedIOException e) {
+      // expected
+    }
+
+    // the client may retry using the same token
+    verify(client, never()).closePointInTime(any(), any());
+  }
+}
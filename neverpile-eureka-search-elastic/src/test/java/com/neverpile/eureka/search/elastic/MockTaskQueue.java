@@ -2,12 +2,12 @@ package com.neverpile.eureka.search.elastic;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -65,7 +65,7 @@ public class MockTaskQueue<T> implements TaskQueue<T> {
     }
   }
 
-  private Map<String, CacheData<T>> queueCache = new HashMap<>();
+  private Map<String, CacheData<T>> queueCache = new ConcurrentHashMap<>();
 
   private final ExecutorService notificationExecutor = Executors.newFixedThreadPool(10);
 
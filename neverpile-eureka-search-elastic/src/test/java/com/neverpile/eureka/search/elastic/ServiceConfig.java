@@ -5,15 +5,20 @@ import java.time.Instant;
 import org.apache.http.HttpHost;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.springframework.beans.factory.InjectionPoint;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
 
+import com.neverpile.eureka.impl.tx.atomic.LocalAtomicReference;
 import com.neverpile.eureka.rest.api.document.DocumentFacet;
 import com.neverpile.eureka.rest.api.document.core.CreationDateFacet;
 import com.neverpile.eureka.rest.api.document.core.IdFacet;
 import com.neverpile.eureka.rest.api.document.core.ModificationDateFacet;
 import com.neverpile.eureka.tasks.TaskQueue;
+import com.neverpile.eureka.tx.atomic.DistributedAtomicReference;
+import com.neverpile.eureka.tx.atomic.DistributedAtomicType;
 
 @Configuration
 public class ServiceConfig {
@@ -53,7 +58,19 @@ public class ServiceConfig {
   }
 
   @Bean
+  ElasticsearchIndexRebuilder getElasticsearchIndexRebuilder() {
+    return new ElasticsearchIndexRebuilder();
+  }
+
+  @Bean
+  @Scope("prototype")
   TaskQueue<?> distributedPersistentQueue() {
     return new MockTaskQueue<>();
   }
+
+  @Bean
+  @Scope("prototype")
+  DistributedAtomicReference<?> distributedAtomicReference(final InjectionPoint ip) {
+    return new LocalAtomicReference<>(ip.getAnnotation(DistributedAtomicType.class).value());
+  }
 }
\ No newline at end of file